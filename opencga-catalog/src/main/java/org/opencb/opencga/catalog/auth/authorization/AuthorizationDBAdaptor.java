@@ -20,6 +20,7 @@ import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.opencga.catalog.exceptions.CatalogDBException;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.core.models.acls.permissions.AbstractAclEntry;
+import org.opencb.opencga.core.models.acls.permissions.StudyAclEntry;
 
 import java.util.List;
 
@@ -53,6 +54,22 @@ public interface AuthorizationDBAdaptor {
     <E extends AbstractAclEntry> List<QueryResult<E>> get(List<Long> resourceIds, List<String> members, String entity)
             throws CatalogException;
 
+    /**
+     * Filter the list of resources of the study, keeping only the ones where the user has the permission given. All the resources are
+     * checked with a single query.
+     *
+     * @param studyId study id where the resources belong to.
+     * @param resourceIds ids of the file, sample... to be checked.
+     * @param user user for whom the permissions will be checked.
+     * @param studyPermission permission at the study level that grants the entry permission to the resources.
+     * @param entryPermission permission at the resource level.
+     * @param entity Entity of the resources.
+     * @return the ids of the resources where the user has the permission, in the same order they were received.
+     * @throws CatalogException  CatalogException.
+     */
+    List<Long> getAuthorisedIds(long studyId, List<Long> resourceIds, String user, StudyAclEntry.StudyPermissions studyPermission,
+                                String entryPermission, String entity) throws CatalogException;
+
     /**
      * Remove all the Acls defined for the member in the resource for the study.
      *
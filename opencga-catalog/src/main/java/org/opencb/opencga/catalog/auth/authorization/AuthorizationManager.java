@@ -124,6 +124,81 @@ public interface AuthorizationManager {
     void checkCohortPermission(long studyId, long cohortId, String userId, CohortAclEntry.CohortPermissions permission)
             throws CatalogException;
 
+    /**
+     * Filter the list of samples, keeping only the ones where the user has the permission. All the samples are checked at once.
+     *
+     * @param studyId study id.
+     * @param sampleIds sample ids.
+     * @param userId user id.
+     * @param permission permission to check.
+     * @return the ids of the samples where the user has the permission, in the same order.
+     * @throws CatalogException if the study does not exist or the user does not belong to it.
+     */
+    List<Long> filterSamples(long studyId, List<Long> sampleIds, String userId, SampleAclEntry.SamplePermissions permission)
+            throws CatalogException;
+
+    /**
+     * Check the permission for all the samples at once.
+     *
+     * @param studyId study id.
+     * @param sampleIds sample ids.
+     * @param userId user id.
+     * @param permission permission to check.
+     * @throws CatalogException if the user does not have the permission in any of the samples.
+     */
+    void checkSamplePermissions(long studyId, List<Long> sampleIds, String userId, SampleAclEntry.SamplePermissions permission)
+            throws CatalogException;
+
+    /**
+     * Filter the list of individuals, keeping only the ones where the user has the permission. All the individuals are checked at once.
+     *
+     * @param studyId study id.
+     * @param individualIds individual ids.
+     * @param userId user id.
+     * @param permission permission to check.
+     * @return the ids of the individuals where the user has the permission, in the same order.
+     * @throws CatalogException if the study does not exist or the user does not belong to it.
+     */
+    List<Long> filterIndividuals(long studyId, List<Long> individualIds, String userId,
+                                 IndividualAclEntry.IndividualPermissions permission) throws CatalogException;
+
+    /**
+     * Check the permission for all the individuals at once.
+     *
+     * @param studyId study id.
+     * @param individualIds individual ids.
+     * @param userId user id.
+     * @param permission permission to check.
+     * @throws CatalogException if the user does not have the permission in any of the individuals.
+     */
+    void checkIndividualPermissions(long studyId, List<Long> individualIds, String userId,
+                                    IndividualAclEntry.IndividualPermissions permission) throws CatalogException;
+
+    /**
+     * Filter the list of cohorts, keeping only the ones where the user has the permission. All the cohorts are checked at once.
+     *
+     * @param studyId study id.
+     * @param cohortIds cohort ids.
+     * @param userId user id.
+     * @param permission permission to check.
+     * @return the ids of the cohorts where the user has the permission, in the same order.
+     * @throws CatalogException if the study does not exist or the user does not belong to it.
+     */
+    List<Long> filterCohorts(long studyId, List<Long> cohortIds, String userId, CohortAclEntry.CohortPermissions permission)
+            throws CatalogException;
+
+    /**
+     * Check the permission for all the cohorts at once.
+     *
+     * @param studyId study id.
+     * @param cohortIds cohort ids.
+     * @param userId user id.
+     * @param permission permission to check.
+     * @throws CatalogException if the user does not have the permission in any of the cohorts.
+     */
+    void checkCohortPermissions(long studyId, List<Long> cohortIds, String userId, CohortAclEntry.CohortPermissions permission)
+            throws CatalogException;
+
     void checkDiseasePanelPermission(long studyId, long panelId, String userId, DiseasePanelAclEntry.DiseasePanelPermissions permission)
             throws CatalogException;
 
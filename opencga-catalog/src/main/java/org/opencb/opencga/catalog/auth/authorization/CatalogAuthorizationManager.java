@@ -36,9 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -76,6 +74,9 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
 
     private final AuthorizationDBAdaptor aclDBAdaptor;
 
+    // Decisions taken by checkUserPermission, keyed by the ACL version of the study
+    private final PermissionDecisionCache permissionCache = new PermissionDecisionCache();
+
     public CatalogAuthorizationManager(DBAdaptorFactory dbFactory, CatalogAuditManager auditManager, Configuration configuration)
             throws CatalogDBException, CatalogAuthorizationException {
         this.logger = LoggerFactory.getLogger(CatalogAuthorizationManager.class);
@@ -305,22 +306,28 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
                 throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
         }
 
-        if (checkUserPermission(userId, query, studyPermission, fileDBAdaptor)) {
+        if (checkUserPermission(studyId, "File", fileId, userId, query, studyPermission, fileDBAdaptor)) {
             return;
         }
         throw CatalogAuthorizationException.deny(userId, permission.toString(), "File", fileId, null);
     }
 
-    private boolean checkUserPermission(String userId, Query query, StudyAclEntry.StudyPermissions studyPermission, DBAdaptor dbAdaptor)
+    private boolean checkUserPermission(long studyId, String entity, long entityId, String userId, Query query,
+                                        StudyAclEntry.StudyPermissions studyPermission, DBAdaptor dbAdaptor)
             throws CatalogDBException, CatalogAuthorizationException {
         if (userId.equals(ADMIN)) {
             if (getSpecialPermissions(ADMIN).getPermissions().contains(studyPermission)) {
                 return true;
             }
         } else {
-            if ((Long) dbAdaptor.count(query, userId, studyPermission).first() == 1) {
-                return true;
+            long aclVersion = studyDBAdaptor.getAclVersion(studyId);
+            PermissionDecisionCache.Key key = permissionCache.key(studyId, aclVersion, userId, entity, entityId, studyPermission);
+            Boolean granted = permissionCache.get(key);
+            if (granted == null) {
+                granted = (Long) dbAdaptor.count(query, userId, studyPermission).first() == 1;
+                permissionCache.put(key, granted);
             }
+            return granted;
         }
         return false;
     }
@@ -331,31 +338,9 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         Query query = new Query()
                 .append(SampleDBAdaptor.QueryParams.ID.key(), sampleId)
                 .append(SampleDBAdaptor.QueryParams.STUDY_ID.key(), studyId);
-        StudyAclEntry.StudyPermissions studyPermission;
-        switch (permission) {
-            case VIEW:
-                studyPermission = StudyAclEntry.StudyPermissions.VIEW_SAMPLES;
-                break;
-            case UPDATE:
-                studyPermission = StudyAclEntry.StudyPermissions.WRITE_SAMPLES;
-                break;
-            case DELETE:
-                studyPermission = StudyAclEntry.StudyPermissions.DELETE_SAMPLES;
-                break;
-            case WRITE_ANNOTATIONS:
-                studyPermission = StudyAclEntry.StudyPermissions.WRITE_SAMPLE_ANNOTATIONS;
-                break;
-            case VIEW_ANNOTATIONS:
-                studyPermission = StudyAclEntry.StudyPermissions.VIEW_SAMPLE_ANNOTATIONS;
-                break;
-            case DELETE_ANNOTATIONS:
-                studyPermission = StudyAclEntry.StudyPermissions.DELETE_SAMPLE_ANNOTATIONS;
-                break;
-            default:
-                throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
-        }
+        StudyAclEntry.StudyPermissions studyPermission = getSampleStudyPermission(permission);
 
-        if (checkUserPermission(userId, query, studyPermission, sampleDBAdaptor)) {
+        if (checkUserPermission(studyId, "Sample", sampleId, userId, query, studyPermission, sampleDBAdaptor)) {
             return;
         }
         throw CatalogAuthorizationException.deny(userId, permission.toString(), "Sample", sampleId, null);
@@ -367,31 +352,9 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         Query query = new Query()
                 .append(IndividualDBAdaptor.QueryParams.ID.key(), individualId)
                 .append(IndividualDBAdaptor.QueryParams.STUDY_ID.key(), studyId);
-        StudyAclEntry.StudyPermissions studyPermission;
-        switch (permission) {
-            case VIEW:
-                studyPermission = StudyAclEntry.StudyPermissions.VIEW_INDIVIDUALS;
-                break;
-            case UPDATE:
-                studyPermission = StudyAclEntry.StudyPermissions.WRITE_INDIVIDUALS;
-                break;
-            case DELETE:
-                studyPermission = StudyAclEntry.StudyPermissions.DELETE_INDIVIDUALS;
-                break;
-            case WRITE_ANNOTATIONS:
-                studyPermission = StudyAclEntry.StudyPermissions.WRITE_INDIVIDUAL_ANNOTATIONS;
-                break;
-            case VIEW_ANNOTATIONS:
-                studyPermission = StudyAclEntry.StudyPermissions.VIEW_INDIVIDUAL_ANNOTATIONS;
-                break;
-            case DELETE_ANNOTATIONS:
-                studyPermission = StudyAclEntry.StudyPermissions.DELETE_INDIVIDUAL_ANNOTATIONS;
-                break;
-            default:
-                throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
-        }
+        StudyAclEntry.StudyPermissions studyPermission = getIndividualStudyPermission(permission);
 
-        if (checkUserPermission(userId, query, studyPermission, individualDBAdaptor)) {
+        if (checkUserPermission(studyId, "Individual", individualId, userId, query, studyPermission, individualDBAdaptor)) {
             return;
         }
         throw CatalogAuthorizationException.deny(userId, permission.toString(), "Individual", individualId, null);
@@ -417,7 +380,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
                 throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
         }
 
-        if (checkUserPermission(userId, query, studyPermission, jobDBAdaptor)) {
+        if (checkUserPermission(studyId, "Job", jobId, userId, query, studyPermission, jobDBAdaptor)) {
             return;
         }
         throw CatalogAuthorizationException.deny(userId, permission.toString(), "Job", jobId, null);
@@ -429,35 +392,180 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         Query query = new Query()
                 .append(CohortDBAdaptor.QueryParams.ID.key(), cohortId)
                 .append(CohortDBAdaptor.QueryParams.STUDY_ID.key(), studyId);
-        StudyAclEntry.StudyPermissions studyPermission;
+        StudyAclEntry.StudyPermissions studyPermission = getCohortStudyPermission(permission);
+
+        if (checkUserPermission(studyId, "Cohort", cohortId, userId, query, studyPermission, cohortDBAdaptor)) {
+            return;
+        }
+        throw CatalogAuthorizationException.deny(userId, permission.toString(), "Cohort", cohortId, null);
+
+    }
+
+    @Override
+    public List<Long> filterSamples(long studyId, List<Long> sampleIds, String userId, SampleAclEntry.SamplePermissions permission)
+            throws CatalogException {
+        return filterUserPermission(studyId, "Sample", MongoDBAdaptorFactory.SAMPLE_COLLECTION, sampleIds, userId,
+                getSampleStudyPermission(permission), permission.name());
+    }
+
+    @Override
+    public void checkSamplePermissions(long studyId, List<Long> sampleIds, String userId, SampleAclEntry.SamplePermissions permission)
+            throws CatalogException {
+        checkAllPermitted(sampleIds, filterSamples(studyId, sampleIds, userId, permission), userId, permission, "Sample");
+    }
+
+    @Override
+    public List<Long> filterIndividuals(long studyId, List<Long> individualIds, String userId,
+                                        IndividualAclEntry.IndividualPermissions permission) throws CatalogException {
+        return filterUserPermission(studyId, "Individual", MongoDBAdaptorFactory.INDIVIDUAL_COLLECTION, individualIds, userId,
+                getIndividualStudyPermission(permission), permission.name());
+    }
+
+    @Override
+    public void checkIndividualPermissions(long studyId, List<Long> individualIds, String userId,
+                                           IndividualAclEntry.IndividualPermissions permission) throws CatalogException {
+        checkAllPermitted(individualIds, filterIndividuals(studyId, individualIds, userId, permission), userId, permission, "Individual");
+    }
+
+    @Override
+    public List<Long> filterCohorts(long studyId, List<Long> cohortIds, String userId, CohortAclEntry.CohortPermissions permission)
+            throws CatalogException {
+        return filterUserPermission(studyId, "Cohort", MongoDBAdaptorFactory.COHORT_COLLECTION, cohortIds, userId,
+                getCohortStudyPermission(permission), permission.name());
+    }
+
+    @Override
+    public void checkCohortPermissions(long studyId, List<Long> cohortIds, String userId, CohortAclEntry.CohortPermissions permission)
+            throws CatalogException {
+        checkAllPermitted(cohortIds, filterCohorts(studyId, cohortIds, userId, permission), userId, permission, "Cohort");
+    }
+
+    /**
+     * Bulk version of checkUserPermission. The decisions not found in the cache are taken with a single query for all the entries.
+     *
+     * @param studyId         Study id.
+     * @param entity          Entity name, as used in the cache.
+     * @param collection      Collection of the entity.
+     * @param entityIds       Ids of the entries to check.
+     * @param userId          User id.
+     * @param studyPermission Permission at the study level.
+     * @param entryPermission Permission at the entry level.
+     * @return The ids of the entries where the user has the permission, in the same order.
+     * @throws CatalogException if the study does not exist or the user does not belong to it.
+     */
+    private List<Long> filterUserPermission(long studyId, String entity, String collection, List<Long> entityIds, String userId,
+                                            StudyAclEntry.StudyPermissions studyPermission, String entryPermission)
+            throws CatalogException {
+        if (entityIds == null || entityIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (userId.equals(ADMIN)) {
+            if (getSpecialPermissions(ADMIN).getPermissions().contains(studyPermission)) {
+                return new ArrayList<>(entityIds);
+            }
+            return Collections.emptyList();
+        }
+
+        Set<Long> granted = new HashSet<>();
+        // The version is read before querying the database, so decisions taken while the ACLs change are not reused
+        long aclVersion = studyDBAdaptor.getAclVersion(studyId);
+        Map<Long, PermissionDecisionCache.Key> pending = new LinkedHashMap<>();
+        for (Long entityId : entityIds) {
+            PermissionDecisionCache.Key key = permissionCache.key(studyId, aclVersion, userId, entity, entityId, studyPermission);
+            Boolean decision = permissionCache.get(key);
+            if (decision == null) {
+                pending.put(entityId, key);
+            } else if (decision) {
+                granted.add(entityId);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            Set<Long> authorised = new HashSet<>(aclDBAdaptor.getAuthorisedIds(studyId, new ArrayList<>(pending.keySet()), userId,
+                    studyPermission, entryPermission, collection));
+            for (Map.Entry<Long, PermissionDecisionCache.Key> entry : pending.entrySet()) {
+                boolean decision = authorised.contains(entry.getKey());
+                permissionCache.put(entry.getValue(), decision);
+                if (decision) {
+                    granted.add(entry.getKey());
+                }
+            }
+        }
+
+        return entityIds.stream().filter(granted::contains).collect(Collectors.toList());
+    }
+
+    private static void checkAllPermitted(List<Long> entityIds, List<Long> permittedIds, String userId, Enum permission, String entity)
+            throws CatalogAuthorizationException {
+        if (entityIds == null || permittedIds.size() == entityIds.size()) {
+            return;
+        }
+        Set<Long> permitted = new HashSet<>(permittedIds);
+        for (Long entityId : entityIds) {
+            if (!permitted.contains(entityId)) {
+                throw CatalogAuthorizationException.deny(userId, permission.toString(), entity, entityId, null);
+            }
+        }
+    }
+
+    private static StudyAclEntry.StudyPermissions getSampleStudyPermission(SampleAclEntry.SamplePermissions permission)
+            throws CatalogAuthorizationException {
         switch (permission) {
             case VIEW:
-                studyPermission = StudyAclEntry.StudyPermissions.VIEW_COHORTS;
-                break;
+                return StudyAclEntry.StudyPermissions.VIEW_SAMPLES;
             case UPDATE:
-                studyPermission = StudyAclEntry.StudyPermissions.WRITE_COHORTS;
-                break;
+                return StudyAclEntry.StudyPermissions.WRITE_SAMPLES;
             case DELETE:
-                studyPermission = StudyAclEntry.StudyPermissions.DELETE_COHORTS;
-                break;
+                return StudyAclEntry.StudyPermissions.DELETE_SAMPLES;
             case WRITE_ANNOTATIONS:
-                studyPermission = StudyAclEntry.StudyPermissions.WRITE_COHORT_ANNOTATIONS;
-                break;
+                return StudyAclEntry.StudyPermissions.WRITE_SAMPLE_ANNOTATIONS;
             case VIEW_ANNOTATIONS:
-                studyPermission = StudyAclEntry.StudyPermissions.VIEW_COHORT_ANNOTATIONS;
-                break;
+                return StudyAclEntry.StudyPermissions.VIEW_SAMPLE_ANNOTATIONS;
             case DELETE_ANNOTATIONS:
-                studyPermission = StudyAclEntry.StudyPermissions.DELETE_COHORT_ANNOTATIONS;
-                break;
+                return StudyAclEntry.StudyPermissions.DELETE_SAMPLE_ANNOTATIONS;
             default:
                 throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
         }
+    }
 
-        if (checkUserPermission(userId, query, studyPermission, cohortDBAdaptor)) {
-            return;
+    private static StudyAclEntry.StudyPermissions getIndividualStudyPermission(IndividualAclEntry.IndividualPermissions permission)
+            throws CatalogAuthorizationException {
+        switch (permission) {
+            case VIEW:
+                return StudyAclEntry.StudyPermissions.VIEW_INDIVIDUALS;
+            case UPDATE:
+                return StudyAclEntry.StudyPermissions.WRITE_INDIVIDUALS;
+            case DELETE:
+                return StudyAclEntry.StudyPermissions.DELETE_INDIVIDUALS;
+            case WRITE_ANNOTATIONS:
+                return StudyAclEntry.StudyPermissions.WRITE_INDIVIDUAL_ANNOTATIONS;
+            case VIEW_ANNOTATIONS:
+                return StudyAclEntry.StudyPermissions.VIEW_INDIVIDUAL_ANNOTATIONS;
+            case DELETE_ANNOTATIONS:
+                return StudyAclEntry.StudyPermissions.DELETE_INDIVIDUAL_ANNOTATIONS;
+            default:
+                throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
         }
-        throw CatalogAuthorizationException.deny(userId, permission.toString(), "Cohort", cohortId, null);
+    }
 
+    private static StudyAclEntry.StudyPermissions getCohortStudyPermission(CohortAclEntry.CohortPermissions permission)
+            throws CatalogAuthorizationException {
+        switch (permission) {
+            case VIEW:
+                return StudyAclEntry.StudyPermissions.VIEW_COHORTS;
+            case UPDATE:
+                return StudyAclEntry.StudyPermissions.WRITE_COHORTS;
+            case DELETE:
+                return StudyAclEntry.StudyPermissions.DELETE_COHORTS;
+            case WRITE_ANNOTATIONS:
+                return StudyAclEntry.StudyPermissions.WRITE_COHORT_ANNOTATIONS;
+            case VIEW_ANNOTATIONS:
+                return StudyAclEntry.StudyPermissions.VIEW_COHORT_ANNOTATIONS;
+            case DELETE_ANNOTATIONS:
+                return StudyAclEntry.StudyPermissions.DELETE_COHORT_ANNOTATIONS;
+            default:
+                throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
+        }
     }
 
     @Override
@@ -481,7 +589,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
                 throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
         }
 
-        if (checkUserPermission(userId, query, studyPermission, panelDBAdaptor)) {
+        if (checkUserPermission(studyId, "Panel", panelId, userId, query, studyPermission, panelDBAdaptor)) {
             return;
         }
         throw CatalogAuthorizationException.deny(userId, permission.toString(), "Panel", panelId, null);
@@ -517,7 +625,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
                 throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
         }
 
-        if (checkUserPermission(userId, query, studyPermission, familyDBAdaptor)) {
+        if (checkUserPermission(studyId, "Family", familyId, userId, query, studyPermission, familyDBAdaptor)) {
             return;
         }
         throw CatalogAuthorizationException.deny(userId, permission.toString(), "Family", familyId, null);
@@ -545,7 +653,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
                 throw new CatalogAuthorizationException("Permission " + permission.toString() + " not found");
         }
 
-        if (checkUserPermission(userId, query, studyPermission, clinicalAnalysisDBAdaptor)) {
+        if (checkUserPermission(studyId, "ClinicalAnalysis", analysisId, userId, query, studyPermission, clinicalAnalysisDBAdaptor)) {
             return;
         }
         throw CatalogAuthorizationException.deny(userId, permission.toString(), "ClinicalAnalysis", analysisId, null);
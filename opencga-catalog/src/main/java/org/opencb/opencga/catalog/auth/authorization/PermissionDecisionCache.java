@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.auth.authorization;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of permission decisions (user, study, entity, permission) -> granted.
+ *
+ * Keys contain the ACL version of the study, which is stored in the study document and increased by every change of the
+ * ACLs or groups of the study, and of the status of its entries. Decisions taken before the change are never read again,
+ * even when the change was made by another catalog instance, and are eventually evicted or expired.
+ */
+class PermissionDecisionCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 100000;
+    static final long DEFAULT_EXPIRATION_MILLIS = 60000;
+
+    private final long expirationMillis;
+    private final Map<Key, Decision> decisions;
+
+    /**
+     * Identifies a decision. Contains the ACL version of the study read before checking the permission, so a decision
+     * computed while the ACLs are being modified is stored under an outdated key.
+     */
+    static final class Key {
+        private final long studyId;
+        private final long aclVersion;
+        private final String userId;
+        private final String entity;
+        private final long entityId;
+        private final Enum permission;
+
+        private Key(long studyId, long aclVersion, String userId, String entity, long entityId, Enum permission) {
+            this.studyId = studyId;
+            this.aclVersion = aclVersion;
+            this.userId = userId;
+            this.entity = entity;
+            this.entityId = entityId;
+            this.permission = permission;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return studyId == key.studyId
+                    && aclVersion == key.aclVersion
+                    && entityId == key.entityId
+                    && Objects.equals(userId, key.userId)
+                    && Objects.equals(entity, key.entity)
+                    && Objects.equals(permission, key.permission);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(studyId, aclVersion, userId, entity, entityId, permission);
+        }
+    }
+
+    private static final class Decision {
+        private final boolean granted;
+        private final long timestamp;
+
+        private Decision(boolean granted, long timestamp) {
+            this.granted = granted;
+            this.timestamp = timestamp;
+        }
+    }
+
+    PermissionDecisionCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_EXPIRATION_MILLIS);
+    }
+
+    PermissionDecisionCache(int maxEntries, long expirationMillis) {
+        this.expirationMillis = expirationMillis;
+        // Access ordered map, to evict the least recently used decision
+        this.decisions = new LinkedHashMap<Key, Decision>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Decision> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Build the key of a decision. The ACL version must be read before checking the permission in the database.
+     *
+     * @param studyId       Study id
+     * @param aclVersion    ACL version of the study
+     * @param userId        User id
+     * @param entity        Entity type
+     * @param entityId      Entity id
+     * @param permission    Permission to check
+     * @return              Key of the decision
+     */
+    Key key(long studyId, long aclVersion, String userId, String entity, long entityId, Enum permission) {
+        return new Key(studyId, aclVersion, userId, entity, entityId, permission);
+    }
+
+    /**
+     * @param key   Key of the decision
+     * @return      The cached decision, or null if missing or expired
+     */
+    Boolean get(Key key) {
+        Decision decision;
+        synchronized (decisions) {
+            decision = decisions.get(key);
+        }
+        if (decision == null || System.currentTimeMillis() - decision.timestamp > expirationMillis) {
+            return null;
+        }
+        return decision.granted;
+    }
+
+    /**
+     * @param key       Key of the decision
+     * @param granted   If the permission was granted
+     */
+    void put(Key key, boolean granted) {
+        Decision decision = new Decision(granted, System.currentTimeMillis());
+        synchronized (decisions) {
+            decisions.put(key, decision);
+        }
+    }
+
+    /**
+     * @return Number of cached decisions, including the outdated ones not yet evicted
+     */
+    int size() {
+        synchronized (decisions) {
+            return decisions.size();
+        }
+    }
+}
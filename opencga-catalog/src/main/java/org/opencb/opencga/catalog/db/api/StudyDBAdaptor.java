@@ -97,6 +97,16 @@ public interface StudyDBAdaptor extends DBAdaptor<Study> {
 
     String getOwnerId(long studyId) throws CatalogDBException;
 
+    /**
+     * Obtains the ACL version of the study, increased on every change of the ACLs or groups of the study or its entries, and on
+     * every change of the status of its entries. Changes made by other processes may take a second to be read.
+     *
+     * @param studyId study id.
+     * @return the ACL version, 0 if the ACLs of the study have never been modified.
+     * @throws CatalogDBException if the study does not exist.
+     */
+    long getAclVersion(long studyId) throws CatalogDBException;
+
     QueryResult<Group> createGroup(long studyId, Group group) throws CatalogDBException;
 
     /**
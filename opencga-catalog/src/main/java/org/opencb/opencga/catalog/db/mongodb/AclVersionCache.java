@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.db.mongodb;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide cache of the ACL versions read by {@link StudyMongoDBAdaptor#getAclVersion}.
+ *
+ * Shared by every adaptor of the process, so the versions increased here are invalidated right away, whichever adaptor increased
+ * them. Versions increased by other processes are read again once expired.
+ */
+final class AclVersionCache {
+
+    static final long EXPIRATION_MILLIS = 1000;
+
+    private static final Map<Key, Version> VERSIONS = new ConcurrentHashMap<>();
+    // Increased on every invalidation. Versions read from the database before an invalidation are not cached.
+    private static final AtomicLong INVALIDATIONS = new AtomicLong();
+
+    private AclVersionCache() {
+    }
+
+    private static final class Key {
+        private final String database;
+        private final long studyId;
+
+        private Key(String database, long studyId) {
+            this.database = database;
+            this.studyId = studyId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return studyId == key.studyId && Objects.equals(database, key.database);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(database, studyId);
+        }
+    }
+
+    private static final class Version {
+        private final long version;
+        private final long timestamp;
+
+        private Version(long version, long timestamp) {
+            this.version = version;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * @param database  Catalog database
+     * @param studyId   Study id
+     * @return The cached ACL version, or null if missing or expired
+     */
+    static Long get(String database, long studyId) {
+        Version version = VERSIONS.get(new Key(database, studyId));
+        if (version == null || System.currentTimeMillis() - version.timestamp > EXPIRATION_MILLIS) {
+            return null;
+        }
+        return version.version;
+    }
+
+    /**
+     * Must be read before reading the ACL version from the database, and given back to {@link #put}.
+     *
+     * @return Current number of invalidations
+     */
+    static long getInvalidations() {
+        return INVALIDATIONS.get();
+    }
+
+    /**
+     * Cache an ACL version, unless any version was invalidated since it was read from the database.
+     *
+     * @param database      Catalog database
+     * @param studyId       Study id
+     * @param aclVersion    ACL version read from the database
+     * @param invalidations Number of invalidations before reading the ACL version
+     */
+    static void put(String database, long studyId, long aclVersion, long invalidations) {
+        Key key = new Key(database, studyId);
+        VERSIONS.put(key, new Version(aclVersion, System.currentTimeMillis()));
+        if (INVALIDATIONS.get() != invalidations) {
+            VERSIONS.remove(key);
+        }
+    }
+
+    /**
+     * Must be called after increasing the ACL version of the studies in the database.
+     *
+     * @param database  Catalog database
+     * @param studyIds  Study ids
+     */
+    static void invalidate(String database, Collection<?> studyIds) {
+        INVALIDATIONS.incrementAndGet();
+        for (Object studyId : studyIds) {
+            VERSIONS.remove(new Key(database, ((Number) studyId).longValue()));
+        }
+    }
+
+    /**
+     * Must be called after increasing the ACL version of an unknown set of studies, or after removing the database.
+     *
+     * @param database  Catalog database
+     */
+    static void invalidateAll(String database) {
+        INVALIDATIONS.incrementAndGet();
+        VERSIONS.keySet().removeIf(key -> key.database.equals(database));
+    }
+}
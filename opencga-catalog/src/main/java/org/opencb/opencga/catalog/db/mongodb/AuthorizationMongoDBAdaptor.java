@@ -20,6 +20,7 @@ import com.mongodb.MongoClient;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
 import org.bson.conversions.Bson;
@@ -35,6 +36,7 @@ import org.opencb.commons.utils.CollectionUtils;
 import org.opencb.opencga.catalog.auth.authorization.AuthorizationDBAdaptor;
 import org.opencb.opencga.catalog.exceptions.CatalogDBException;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
+import org.opencb.opencga.core.models.Status;
 import org.opencb.opencga.core.models.acls.permissions.*;
 import org.opencb.opencga.core.config.Configuration;
 import org.slf4j.LoggerFactory;
@@ -384,6 +386,43 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
         return retList;
     }
 
+    @Override
+    public List<Long> getAuthorisedIds(long studyId, List<Long> resourceIds, String user,
+                                       StudyAclEntry.StudyPermissions studyPermission, String entryPermission, String entity)
+            throws CatalogException {
+        validateCollection(entity);
+        if (resourceIds == null || resourceIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        QueryResult<Document> studyResult = dbCollectionMap.get(STUDY_COLLECTION).find(Filters.eq(PRIVATE_ID, studyId), null);
+        if (studyResult.getNumResults() == 0) {
+            throw new CatalogDBException("Study " + studyId + " not found");
+        }
+        Document queryForAuthorisedEntries = AuthorizationMongoDBUtils.getQueryForAuthorisedEntries(studyResult.first(), user,
+                studyPermission.name(), entryPermission);
+
+        List<Bson> aggregation = new ArrayList<>();
+        aggregation.add(Aggregates.match(Filters.and(
+                Filters.in(PRIVATE_ID, resourceIds),
+                Filters.eq(PRIVATE_STUDY_ID, studyId),
+                Filters.nin("status.name", Status.TRASHED, Status.DELETED),
+                queryForAuthorisedEntries)));
+        aggregation.add(Aggregates.project(Projections.include(PRIVATE_ID)));
+
+        for (Bson bson : aggregation) {
+            logger.debug("Get authorised ids: {}", bson.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
+        }
+
+        QueryResult<Document> aggregate = dbCollectionMap.get(entity).aggregate(aggregation, null);
+        Set<Long> authorisedIds = new HashSet<>();
+        for (Document document : aggregate.getResult()) {
+            authorisedIds.add(((Number) document.get(PRIVATE_ID)).longValue());
+        }
+
+        return resourceIds.stream().filter(authorisedIds::contains).collect(Collectors.toList());
+    }
+
     @Override
     public void removeFromStudy(long studyId, String member, String entity) throws CatalogException {
         validateCollection(entity);
@@ -396,6 +435,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
                 query.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()),
                 update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
         dbCollectionMap.get(entity).update(query, update, new QueryOptions(MongoDBCollection.MULTI, true));
+        incrementStudyAclVersion(Collections.singletonList(studyId));
 
         logger.debug("Remove all the Acls for member {} in study {}", member, studyId);
     }
@@ -421,7 +461,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
             Document queryDocument = new Document()
                     .append("$isolated", 1)
                     .append(PRIVATE_ID, resourceId);
-            Document update = new Document("$set", new Document(QueryParams.ACL.key(), permissionArray));
+            Document update = withAclVersion(new Document("$set", new Document(QueryParams.ACL.key(), permissionArray)), entity);
 
             logger.debug("Set Acls (set): Query {}, Push {}",
                     queryDocument.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()),
@@ -429,6 +469,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
 
             collection.update(queryDocument, update, new QueryOptions(MongoDBCollection.MULTI, true));
         }
+        incrementAclVersion(resourceIds, entity);
     }
 
     @Override
@@ -446,12 +487,14 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
         Document queryDocument = new Document()
                 .append("$isolated", 1)
                 .append(PRIVATE_ID, new Document("$in", resourceIds));
-        Document update = new Document("$addToSet", new Document(QueryParams.ACL.key(), new Document("$each", myPermissions)));
+        Document update = withAclVersion(new Document("$addToSet", new Document(QueryParams.ACL.key(),
+                new Document("$each", myPermissions))), entity);
         logger.debug("Add Acls (addToSet): Query {}, Push {}",
                 queryDocument.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()),
                 update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
 
         collection.update(queryDocument, update, new QueryOptions("multi", true));
+        incrementAclVersion(resourceIds, entity);
     }
 
     @Override
@@ -476,12 +519,13 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
         Document queryDocument = new Document()
                 .append("$isolated", 1)
                 .append(PRIVATE_ID, new Document("$in", resourceIds));
-        Document update = new Document("$pullAll", new Document(QueryParams.ACL.key(), removePermissions));
+        Document update = withAclVersion(new Document("$pullAll", new Document(QueryParams.ACL.key(), removePermissions)), entity);
         logger.debug("Remove Acls (pullAll): Query {}, Pull {}",
                 queryDocument.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()),
                 update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
 
         collection.update(queryDocument, update, new QueryOptions("multi", true));
+        incrementAclVersion(resourceIds, entity);
     }
 
     @Override
@@ -523,7 +567,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
             Document queryDocument = new Document()
                     .append("$isolated", 1)
                     .append(PRIVATE_ID, resourceId);
-            Document update = new Document("$set", new Document(QueryParams.ACL.key(), permissionArray));
+            Document update = withAclVersion(new Document("$set", new Document(QueryParams.ACL.key(), permissionArray)), entity);
 
             logger.debug("Set Acls (set): Query {}, Push {}",
                     queryDocument.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()),
@@ -531,6 +575,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
 
             collection.update(queryDocument, update, new QueryOptions(MongoDBCollection.MULTI, true));
         }
+        incrementAclVersion(resourceIds, entity);
     }
 
     private void removePermissions(long studyId, List<String> users, String entity) {
@@ -547,6 +592,48 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
         collection.update(queryDocument, update, new QueryOptions("multi", true));
     }
 
+    /**
+     * Add the increment of the ACL version to an update of the ACLs of a study, so both are applied atomically.
+     *
+     * @param update Update of the ACLs.
+     * @param entity Collection of the entries updated.
+     * @return The same update.
+     */
+    private Document withAclVersion(Document update, String entity) {
+        if (STUDY_COLLECTION.equals(entity)) {
+            update.append("$inc", new Document(PRIVATE_ACL_VERSION, 1));
+        }
+        return update;
+    }
+
+    /**
+     * Increase the ACL version of the studies the entries belong to. Must be called after updating the ACLs of the entries. The
+     * studies themselves are already increased by the update of their ACLs, so only their cached versions are invalidated.
+     *
+     * @param resourceIds Ids of the entries updated.
+     * @param entity      Collection of the entries updated.
+     */
+    private void incrementAclVersion(List<Long> resourceIds, String entity) {
+        if (resourceIds.isEmpty()) {
+            return;
+        }
+        if (STUDY_COLLECTION.equals(entity)) {
+            AclVersionCache.invalidate(mongoDataStore.getDatabaseName(), resourceIds);
+            return;
+        }
+        QueryResult studyIds = dbCollectionMap.get(entity).distinct(PRIVATE_STUDY_ID, Filters.in(PRIVATE_ID, resourceIds));
+        incrementStudyAclVersion(studyIds.getResult());
+    }
+
+    private void incrementStudyAclVersion(List<?> studyIds) {
+        if (studyIds.isEmpty()) {
+            return;
+        }
+        dbCollectionMap.get(STUDY_COLLECTION).update(Filters.in(PRIVATE_ID, studyIds), Updates.inc(PRIVATE_ACL_VERSION, 1),
+                new QueryOptions(MongoDBCollection.MULTI, true));
+        AclVersionCache.invalidate(mongoDataStore.getDatabaseName(), studyIds);
+    }
+
     private List<String> createPermissionArray(Map<String, List<String>> memberPermissionsMap) {
         List<String> myPermissions = new ArrayList<>(memberPermissionsMap.size() * 2);
         for (Map.Entry<String, List<String>> stringListEntry : memberPermissionsMap.entrySet()) {
@@ -282,7 +282,11 @@ public class CohortMongoDBAdaptor extends AnnotationMongoDBAdaptor implements Co
         }
 
         if (!cohortParams.isEmpty()) {
-            QueryResult<UpdateResult> update = cohortCollection.update(parseQuery(query, false), new Document("$set", cohortParams), null);
+            Bson bson = parseQuery(query, false);
+            List<?> studyIds = cohortParams.containsKey(QueryParams.STATUS_NAME.key())
+                    ? getStudyIds(cohortCollection, bson) : Collections.emptyList();
+            QueryResult<UpdateResult> update = cohortCollection.update(bson, new Document("$set", cohortParams), null);
+            incrementStudyAclVersions(studyIds);
             return endQuery("Update cohort", startTime, Arrays.asList(update.getNumTotalResults()));
         }
 
@@ -297,7 +301,10 @@ public class CohortMongoDBAdaptor extends AnnotationMongoDBAdaptor implements Co
 
     @Override
     public void delete(Query query) throws CatalogDBException {
-        QueryResult<DeleteResult> remove = cohortCollection.remove(parseQuery(query, false), null);
+        Bson bson = parseQuery(query, false);
+        List<?> studyIds = getStudyIds(cohortCollection, bson);
+        QueryResult<DeleteResult> remove = cohortCollection.remove(bson, null);
+        incrementStudyAclVersions(studyIds);
 
         if (remove.first().getDeletedCount() == 0) {
             throw CatalogDBException.deleteError("Cohort");
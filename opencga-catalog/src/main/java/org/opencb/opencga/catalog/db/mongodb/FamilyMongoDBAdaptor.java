@@ -181,8 +181,11 @@ public class FamilyMongoDBAdaptor extends AnnotationMongoDBAdaptor implements Fa
         Document familyParameters = parseAndValidateUpdateParams(parameters, query);
         if (familyParameters.containsKey(QueryParams.STATUS_NAME.key())) {
             query.put(Constants.ALL_VERSIONS, true);
-            QueryResult<UpdateResult> update = familyCollection.update(parseQuery(query, false),
+            Bson bson = parseQuery(query, false);
+            List<?> studyIds = getStudyIds(familyCollection, bson);
+            QueryResult<UpdateResult> update = familyCollection.update(bson,
                     new Document("$set", familyParameters), new QueryOptions("multi", true));
+            incrementStudyAclVersions(studyIds);
 
             return endQuery("Update family", startTime, Arrays.asList(update.getNumTotalResults()));
         }
@@ -341,7 +344,10 @@ public class FamilyMongoDBAdaptor extends AnnotationMongoDBAdaptor implements Fa
 
     @Override
     public void delete(Query query) throws CatalogDBException {
-        QueryResult<DeleteResult> remove = familyCollection.remove(parseQuery(query, false), null);
+        Bson bson = parseQuery(query, false);
+        List<?> studyIds = getStudyIds(familyCollection, bson);
+        QueryResult<DeleteResult> remove = familyCollection.remove(bson, null);
+        incrementStudyAclVersions(studyIds);
 
         if (remove.first().getDeletedCount() == 0) {
             throw CatalogDBException.deleteError("Family");
@@ -332,8 +332,11 @@ public class IndividualMongoDBAdaptor extends AnnotationMongoDBAdaptor implement
         Document individualParameters = parseAndValidateUpdateParams(parameters, query);
         if (individualParameters.containsKey(QueryParams.STATUS_NAME.key())) {
             query.put(Constants.ALL_VERSIONS, true);
-            QueryResult<UpdateResult> update = individualCollection.update(parseQuery(query, false),
+            Bson bson = parseQuery(query, false);
+            List<?> studyIds = getStudyIds(individualCollection, bson);
+            QueryResult<UpdateResult> update = individualCollection.update(bson,
                     new Document("$set", individualParameters), new QueryOptions("multi", true));
+            incrementStudyAclVersions(studyIds);
 
             return endQuery("Update individual", startTime, Arrays.asList(update.getNumTotalResults()));
         }
@@ -514,7 +517,10 @@ public class IndividualMongoDBAdaptor extends AnnotationMongoDBAdaptor implement
 
     @Override
     public void delete(Query query) throws CatalogDBException {
-        QueryResult<DeleteResult> remove = individualCollection.remove(parseQuery(query, false), null);
+        Bson bson = parseQuery(query, false);
+        List<?> studyIds = getStudyIds(individualCollection, bson);
+        QueryResult<DeleteResult> remove = individualCollection.remove(bson, null);
+        incrementStudyAclVersions(studyIds);
 
         if (remove.first().getDeletedCount() == 0) {
             throw CatalogDBException.deleteError("Individual");
@@ -526,7 +532,9 @@ public class IndividualMongoDBAdaptor extends AnnotationMongoDBAdaptor implement
         checkId(id);
         QueryResult<Individual> individual = get(id, new QueryOptions());
         Bson bson = Filters.eq(QueryParams.ID.key(), id);
+        List<?> studyIds = getStudyIds(individualCollection, bson);
         QueryResult<DeleteResult> remove = individualCollection.remove(bson, null);
+        incrementStudyAclVersions(studyIds);
         return endQuery("Delete individual", startTime, individual);
     }
 
@@ -216,7 +216,11 @@ public class JobMongoDBAdaptor extends MongoDBAdaptor implements JobDBAdaptor {
         Map<String, Object> jobParameters = getValidatedUpdateParams(parameters);
 
         if (!jobParameters.isEmpty()) {
-            QueryResult<UpdateResult> update = jobCollection.update(parseQuery(query, false), new Document("$set", jobParameters), null);
+            Bson bson = parseQuery(query, false);
+            List<?> studyIds = jobParameters.containsKey(QueryParams.STATUS_NAME.key())
+                    ? getStudyIds(jobCollection, bson) : Collections.emptyList();
+            QueryResult<UpdateResult> update = jobCollection.update(bson, new Document("$set", jobParameters), null);
+            incrementStudyAclVersions(studyIds);
             return endQuery("Update job", startTime, Arrays.asList(update.getNumTotalResults()));
         }
         return endQuery("Update job", startTime, new QueryResult<Long>());
@@ -230,7 +234,10 @@ public class JobMongoDBAdaptor extends MongoDBAdaptor implements JobDBAdaptor {
 
     @Override
     public void delete(Query query) throws CatalogDBException {
-        QueryResult<DeleteResult> remove = jobCollection.remove(parseQuery(query, false), null);
+        Bson bson = parseQuery(query, false);
+        List<?> studyIds = getStudyIds(jobCollection, bson);
+        QueryResult<DeleteResult> remove = jobCollection.remove(bson, null);
+        incrementStudyAclVersions(studyIds);
 
         if (remove.first().getDeletedCount() == 0) {
             throw CatalogDBException.deleteError("Job");
@@ -304,7 +311,10 @@ public class JobMongoDBAdaptor extends MongoDBAdaptor implements JobDBAdaptor {
         Query query = new Query(QueryParams.ID.key(), id);
         QueryResult<Job> jobQueryResult = get(query, null);
         if (jobQueryResult.getResult().size() == 1) {
-            QueryResult<DeleteResult> delete = jobCollection.remove(parseQuery(query, false), null);
+            Bson bson = parseQuery(query, false);
+            List<?> studyIds = getStudyIds(jobCollection, bson);
+            QueryResult<DeleteResult> delete = jobCollection.remove(bson, null);
+            incrementStudyAclVersions(studyIds);
             if (delete.getResult().size() == 0) {
                 throw CatalogDBException.newInstance("Job id '{}' has not been deleted", id);
             }
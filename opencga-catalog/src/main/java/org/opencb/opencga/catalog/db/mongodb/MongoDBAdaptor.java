@@ -50,6 +50,8 @@ public class MongoDBAdaptor extends AbstractDBAdaptor {
     static final String PRIVATE_PROJECT_ID = "_projectId";
     static final String PRIVATE_OWNER_ID = "_ownerId";
     static final String PRIVATE_STUDY_ID = "_studyId";
+    // Increased on every change of the ACLs or groups of a study, or of the status of its entries
+    static final String PRIVATE_ACL_VERSION = "_aclVersion";
 
     static final String FILTER_ROUTE_PROJECTS = "projects.";
     static final String FILTER_ROUTE_STUDIES = "projects.studies.";
@@ -76,6 +78,23 @@ public class MongoDBAdaptor extends AbstractDBAdaptor {
         return dbAdaptorFactory.getCatalogMetaDBAdaptor().getNewAutoIncrementId();
     }
 
+    /**
+     * Get the studies of the entries matching the query. Permission checks never grant access to trashed or deleted entries, so the
+     * ACL version of these studies has to be increased after changing the status of the entries or removing them. See
+     * {@link #incrementStudyAclVersions}.
+     *
+     * @param collection Collection of the entries.
+     * @param query      Query matching the entries, before changing them.
+     * @return The distinct study ids.
+     */
+    List<?> getStudyIds(MongoDBCollection collection, Bson query) {
+        return collection.distinct(PRIVATE_STUDY_ID, query).getResult();
+    }
+
+    void incrementStudyAclVersions(List<?> studyIds) {
+        dbAdaptorFactory.getCatalogStudyDBAdaptor().incrementAclVersion(studyIds);
+    }
+
 
     @Deprecated
     protected void addIntegerOrQuery(String mongoDbField, String queryParam, Query query, List<Bson> andBsonList) {
@@ -235,6 +235,11 @@ public class MongoDBAdaptorFactory implements DBAdaptorFactory {
     @Override
     public void deleteCatalogDB() throws CatalogDBException {
         mongoManager.drop(database);
+        AclVersionCache.invalidateAll(database);
+    }
+
+    String getDatabaseName() {
+        return database;
     }
 
     @Override
@@ -254,7 +254,11 @@ public class PanelMongoDBAdaptor extends MongoDBAdaptor implements PanelDBAdapto
         }
 
         if (updateOperations.size() > 0) {
-            QueryResult<UpdateResult> update = panelCollection.update(parseQuery(query, false), updateOperations, null);
+            Bson bson = parseQuery(query, false);
+            List<?> studyIds = panelSetParameters.containsKey(QueryParams.STATUS_NAME.key())
+                    ? getStudyIds(panelCollection, bson) : Collections.emptyList();
+            QueryResult<UpdateResult> update = panelCollection.update(bson, updateOperations, null);
+            incrementStudyAclVersions(studyIds);
             return endQuery("Update panel", startTime, Arrays.asList(update.getNumTotalResults()));
         }
 
@@ -269,7 +273,10 @@ public class PanelMongoDBAdaptor extends MongoDBAdaptor implements PanelDBAdapto
 
     @Override
     public void delete(Query query) throws CatalogDBException {
-        QueryResult<DeleteResult> remove = panelCollection.remove(parseQuery(query, false), null);
+        Bson bson = parseQuery(query, false);
+        List<?> studyIds = getStudyIds(panelCollection, bson);
+        QueryResult<DeleteResult> remove = panelCollection.remove(bson, null);
+        incrementStudyAclVersions(studyIds);
 
         if (remove.first().getDeletedCount() == 0) {
             throw CatalogDBException.deleteError("Disease panel");
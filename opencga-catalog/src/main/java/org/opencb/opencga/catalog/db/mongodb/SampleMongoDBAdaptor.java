@@ -150,8 +150,11 @@ public class SampleMongoDBAdaptor extends AnnotationMongoDBAdaptor implements Sa
         Document sampleParameters = parseAndValidateUpdateParams(parameters, query);
         if (sampleParameters.containsKey(QueryParams.STATUS_NAME.key())) {
             query.put(Constants.ALL_VERSIONS, true);
-            QueryResult<UpdateResult> update = sampleCollection.update(parseQuery(query, false),
+            Bson bson = parseQuery(query, false);
+            List<?> studyIds = getStudyIds(sampleCollection, bson);
+            QueryResult<UpdateResult> update = sampleCollection.update(bson,
                     new Document("$set", sampleParameters), new QueryOptions("multi", true));
+            incrementStudyAclVersions(studyIds);
 
             return endQuery("Update sample", startTime, Arrays.asList(update.getNumTotalResults()));
         }
@@ -406,7 +409,10 @@ public class SampleMongoDBAdaptor extends AnnotationMongoDBAdaptor implements Sa
 
     @Override
     public void delete(Query query) throws CatalogDBException {
-        QueryResult<DeleteResult> remove = sampleCollection.remove(parseQuery(query, false), null);
+        Bson bson = parseQuery(query, false);
+        List<?> studyIds = getStudyIds(sampleCollection, bson);
+        QueryResult<DeleteResult> remove = sampleCollection.remove(bson, null);
+        incrementStudyAclVersions(studyIds);
 
         if (remove.first().getDeletedCount() == 0) {
             throw CatalogDBException.deleteError("Sample");
@@ -239,6 +239,49 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         return documentQueryResult.first().getString(PRIVATE_OWNER_ID);
     }
 
+    @Override
+    public long getAclVersion(long studyId) throws CatalogDBException {
+        String database = dbAdaptorFactory.getDatabaseName();
+        Long cachedAclVersion = AclVersionCache.get(database, studyId);
+        if (cachedAclVersion != null) {
+            return cachedAclVersion;
+        }
+        long invalidations = AclVersionCache.getInvalidations();
+        Query query = new Query(QueryParams.ID.key(), studyId);
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, PRIVATE_ACL_VERSION);
+        QueryResult<Document> documentQueryResult = nativeGet(query, options);
+        if (documentQueryResult.getNumResults() == 0) {
+            throw CatalogDBException.idNotFound("Study", studyId);
+        }
+        Object aclVersionObject = documentQueryResult.first().get(PRIVATE_ACL_VERSION);
+        long aclVersion = aclVersionObject instanceof Number ? ((Number) aclVersionObject).longValue() : 0;
+        AclVersionCache.put(database, studyId, aclVersion, invalidations);
+        return aclVersion;
+    }
+
+    /**
+     * Increase the ACL version of the studies. Used when a change of the entries of the studies, like the change of their status,
+     * modifies the result of the permission checks.
+     *
+     * @param studyIds Study ids.
+     */
+    void incrementAclVersion(Collection<?> studyIds) {
+        if (studyIds.isEmpty()) {
+            return;
+        }
+        studyCollection.update(Filters.in(PRIVATE_ID, studyIds), Updates.inc(PRIVATE_ACL_VERSION, 1),
+                new QueryOptions(MongoDBCollection.MULTI, true));
+        invalidateAclVersion(studyIds);
+    }
+
+    private void invalidateAclVersion(long studyId) {
+        invalidateAclVersion(Collections.singletonList(studyId));
+    }
+
+    private void invalidateAclVersion(Collection<?> studyIds) {
+        AclVersionCache.invalidate(dbAdaptorFactory.getDatabaseName(), studyIds);
+    }
+
     @Override
     public QueryResult<Group> createGroup(long studyId, Group group) throws CatalogDBException {
         long startTime = startQuery();
@@ -246,9 +289,11 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         Document query = new Document()
                 .append(PRIVATE_ID, studyId)
                 .append(QueryParams.GROUP_NAME.key(), new Document("$ne", group.getName()));
-        Document update = new Document("$push", new Document(QueryParams.GROUPS.key(), getMongoDBDocument(group, "Group")));
+        Document update = new Document("$push", new Document(QueryParams.GROUPS.key(), getMongoDBDocument(group, "Group")))
+                .append("$inc", new Document(PRIVATE_ACL_VERSION, 1));
 
         QueryResult<UpdateResult> queryResult = studyCollection.update(query, update, null);
+        invalidateAclVersion(studyId);
 
         if (queryResult.first().getModifiedCount() != 1) {
             QueryResult<Group> group1 = getGroup(studyId, group.getName(), Collections.emptyList());
@@ -328,8 +373,10 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(PRIVATE_ID, studyId)
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
-        Document update = new Document("$set", new Document("groups.$.userIds", members));
+        Document update = new Document("$set", new Document("groups.$.userIds", members))
+                .append("$inc", new Document(PRIVATE_ACL_VERSION, 1));
         QueryResult<UpdateResult> queryResult = studyCollection.update(query, update, null);
+        invalidateAclVersion(studyId);
 
         if (queryResult.first().getMatchedCount() != 1) {
             throw new CatalogDBException("Unable to set users to group " + groupId + ". The group does not exist.");
@@ -346,8 +393,10 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(PRIVATE_ID, studyId)
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
-        Document update = new Document("$addToSet", new Document("groups.$.userIds", new Document("$each", members)));
+        Document update = new Document("$addToSet", new Document("groups.$.userIds", new Document("$each", members)))
+                .append("$inc", new Document(PRIVATE_ACL_VERSION, 1));
         QueryResult<UpdateResult> queryResult = studyCollection.update(query, update, null);
+        invalidateAclVersion(studyId);
 
         if (queryResult.first().getMatchedCount() != 1) {
             throw new CatalogDBException("Unable to add members to group " + groupId + ". The group does not exist.");
@@ -364,8 +413,9 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(PRIVATE_ID, studyId)
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
-        Bson pull = Updates.pullAll("groups.$.userIds", members);
+        Bson pull = Updates.combine(Updates.pullAll("groups.$.userIds", members), Updates.inc(PRIVATE_ACL_VERSION, 1));
         QueryResult<UpdateResult> update = studyCollection.update(query, pull, null);
+        invalidateAclVersion(studyId);
         if (update.first().getMatchedCount() != 1) {
             throw new CatalogDBException("Unable to remove members from group " + groupId + ". The group does not exist.");
         }
@@ -381,13 +431,14 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(PRIVATE_ID, studyId)
                 .append(QueryParams.GROUP_USER_IDS.key(), new Document("$in", users))
                 .append("$isolated", 1);
-        Bson pull = Updates.pullAll("groups.$.userIds", users);
+        Bson pull = Updates.combine(Updates.pullAll("groups.$.userIds", users), Updates.inc(PRIVATE_ACL_VERSION, 1));
 
         // Pull those users while they are still there
         QueryResult<UpdateResult> update;
         do {
             update = studyCollection.update(query, pull, null);
         } while (update.first().getModifiedCount() > 0);
+        invalidateAclVersion(studyId);
     }
 
     @Override
@@ -396,8 +447,10 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(PRIVATE_ID, studyId)
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
-        Document pull = new Document("$pull", new Document("groups", new Document("name", groupId)));
+        Document pull = new Document("$pull", new Document("groups", new Document("name", groupId)))
+                .append("$inc", new Document(PRIVATE_ACL_VERSION, 1));
         QueryResult<UpdateResult> update = studyCollection.update(queryBson, pull, null);
+        invalidateAclVersion(studyId);
 
         if (update.first().getModifiedCount() != 1) {
             throw new CatalogDBException("Could not remove the group " + groupId);
@@ -412,8 +465,10 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(PRIVATE_ID, studyId)
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
-        Document updates = new Document("$set", new Document("groups.$.syncedFrom", mongoDBDocument));
+        Document updates = new Document("$set", new Document("groups.$.syncedFrom", mongoDBDocument))
+                .append("$inc", new Document(PRIVATE_ACL_VERSION, 1));
         studyCollection.update(query, updates, null);
+        invalidateAclVersion(studyId);
     }
 
     @Override
@@ -429,7 +484,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                         .append("syncedFrom.authOrigin", authOrigin)
                 ))
                 .append("$isolated", 1);
-        Bson pull = Updates.pull("groups.$.userIds", user);
+        Bson pull = Updates.combine(Updates.pull("groups.$.userIds", user), Updates.inc(PRIVATE_ACL_VERSION, 1));
 
         // Pull the user while it still belongs to a synced group
         QueryOptions multi = new QueryOptions(MongoDBCollection.MULTI, true);
@@ -448,7 +503,8 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                             .append("syncedFrom.authOrigin", authOrigin)
                     ))
                     .append("$isolated", 1);
-            Document push = new Document("$addToSet", new Document("groups.$.userIds", user));
+            Document push = new Document("$addToSet", new Document("groups.$.userIds", user))
+                    .append("$inc", new Document(PRIVATE_ACL_VERSION, 1));
             do {
                 update = studyCollection.update(query, push, multi);
             } while (update.first().getModifiedCount() > 0);
@@ -464,6 +520,8 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 addUsersToGroup(study.getId(), "@members", Arrays.asList(user));
             }
         }
+        // The studies of the synced groups are not known
+        AclVersionCache.invalidateAll(dbAdaptorFactory.getDatabaseName());
     }
 
     /*
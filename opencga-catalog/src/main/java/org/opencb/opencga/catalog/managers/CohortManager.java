@@ -129,9 +129,7 @@ public class CohortManager extends AnnotationSetManager<Cohort> {
 
         if (cohortQueryResult.getNumResults() == 0 && query.containsKey("id")) {
             List<Long> idList = query.getAsLongList("id");
-            for (Long myId : idList) {
-                authorizationManager.checkCohortPermission(studyId, myId, userId, CohortAclEntry.CohortPermissions.VIEW);
-            }
+            authorizationManager.checkCohortPermissions(studyId, idList, userId, CohortAclEntry.CohortPermissions.VIEW);
         }
 
         return cohortQueryResult;
@@ -409,9 +407,8 @@ public class CohortManager extends AnnotationSetManager<Cohort> {
         String userId = resource.getUser();
 
         // Check all the cohorts can be deleted
+        authorizationManager.checkCohortPermissions(resource.getStudyId(), cohortIds, userId, CohortAclEntry.CohortPermissions.DELETE);
         for (Long cohortId : cohortIds) {
-            authorizationManager.checkCohortPermission(resource.getStudyId(), cohortId, userId, CohortAclEntry.CohortPermissions.DELETE);
-
             QueryResult<Cohort> myCohortQR = cohortDBAdaptor.get(cohortId, new QueryOptions());
             if (myCohortQR.getNumResults() == 0) {
                 throw new CatalogException("Internal error: Cohort " + cohortId + "not found");
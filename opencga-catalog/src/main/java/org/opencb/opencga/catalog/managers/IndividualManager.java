@@ -238,9 +238,7 @@ public class IndividualManager extends AnnotationSetManager<Individual> {
 
         if (individualQueryResult.getNumResults() == 0 && query.containsKey("id")) {
             List<Long> idList = query.getAsLongList("id");
-            for (Long myId : idList) {
-                authorizationManager.checkIndividualPermission(studyId, myId, userId, IndividualAclEntry.IndividualPermissions.VIEW);
-            }
+            authorizationManager.checkIndividualPermissions(studyId, idList, userId, IndividualAclEntry.IndividualPermissions.VIEW);
         }
 
         return individualQueryResult;
@@ -298,9 +298,7 @@ public class SampleManager extends AnnotationSetManager<Sample> {
 
         if (sampleQueryResult.getNumResults() == 0 && query.containsKey("id")) {
             List<Long> sampleIds = query.getAsLongList("id");
-            for (Long sampleId : sampleIds) {
-                authorizationManager.checkSamplePermission(studyId, sampleId, userId, SampleAclEntry.SamplePermissions.VIEW);
-            }
+            authorizationManager.checkSamplePermissions(studyId, sampleIds, userId, SampleAclEntry.SamplePermissions.VIEW);
         }
         addIndividualInformation(sampleQueryResult, studyId, options, sessionId);
 
@@ -1074,10 +1072,8 @@ public class SampleManager extends AnnotationSetManager<Sample> {
     // **************************   Private methods  ******************************** //
 
     void checkCanDeleteSamples(MyResourceIds resources) throws CatalogException {
-        for (Long sampleId : resources.getResourceIds()) {
-            authorizationManager.checkSamplePermission(resources.getStudyId(), sampleId, resources.getUser(),
-                    SampleAclEntry.SamplePermissions.DELETE);
-        }
+        authorizationManager.checkSamplePermissions(resources.getStudyId(), resources.getResourceIds(), resources.getUser(),
+                SampleAclEntry.SamplePermissions.DELETE);
 
         // Check that the samples are not being used in cohorts
         Query query = new Query()
@@ -703,6 +703,36 @@ public class CatalogAuthorizationManagerTest extends GenericTest {
         catalogManager.getSampleManager().get(smp1.getId(), null, externalSessionId);
     }
 
+    @Test
+    public void readSampleUnsharedByOtherCatalogInstance() throws CatalogException {
+        AuthorizationManager authorizationManager = catalogManager.getAuthorizationManager();
+        // The decision is cached by this instance
+        authorizationManager.checkSamplePermission(s1, smp1.getId(), externalUser, SampleAclEntry.SamplePermissions.VIEW);
+
+        CatalogManager otherCatalogManager = new CatalogManager(catalogManager.getConfiguration());
+        try {
+            otherCatalogManager.getAuthorizationManager().removeAcls(Arrays.asList(smp1.getId()), Arrays.asList(externalUser), null,
+                    MongoDBAdaptorFactory.SAMPLE_COLLECTION);
+        } finally {
+            otherCatalogManager.close();
+        }
+
+        thrown.expect(CatalogAuthorizationException.class);
+        authorizationManager.checkSamplePermission(s1, smp1.getId(), externalUser, SampleAclEntry.SamplePermissions.VIEW);
+    }
+
+    @Test
+    public void readSampleDeleted() throws Exception {
+        AuthorizationManager authorizationManager = catalogManager.getAuthorizationManager();
+        // The decision is cached
+        authorizationManager.checkSamplePermission(s1, smp1.getId(), externalUser, SampleAclEntry.SamplePermissions.VIEW);
+
+        catalogManager.getSampleManager().delete(Long.toString(s1), Long.toString(smp1.getId()), null, ownerSessionId);
+
+        thrown.expect(CatalogAuthorizationException.class);
+        authorizationManager.checkSamplePermission(s1, smp1.getId(), externalUser, SampleAclEntry.SamplePermissions.VIEW);
+    }
+
     @Test
     public void readSampleNoShared() throws CatalogException {
         thrown.expect(CatalogAuthorizationException.class);
@@ -715,6 +745,23 @@ public class CatalogAuthorizationManagerTest extends GenericTest {
         catalogManager.getSampleManager().get(smp3.getId(), null, externalSessionId);
     }
 
+    @Test
+    public void filterSamples() throws CatalogException {
+        AuthorizationManager authorizationManager = catalogManager.getAuthorizationManager();
+        List<Long> sampleIds = Arrays.asList(smp3.getId(), smp1.getId(), smp2.getId(), smp5.getId());
+
+        assertEquals(Collections.singletonList(smp1.getId()),
+                authorizationManager.filterSamples(s1, sampleIds, externalUser, SampleAclEntry.SamplePermissions.VIEW));
+        assertEquals(sampleIds, authorizationManager.filterSamples(s1, sampleIds, ownerUser, SampleAclEntry.SamplePermissions.VIEW));
+
+        // Cached decisions must be consistent with the single checks
+        authorizationManager.checkSamplePermission(s1, smp1.getId(), externalUser, SampleAclEntry.SamplePermissions.VIEW);
+        authorizationManager.checkSamplePermissions(s1, Arrays.asList(smp1.getId()), externalUser, SampleAclEntry.SamplePermissions.VIEW);
+
+        thrown.expect(CatalogAuthorizationException.class);
+        authorizationManager.checkSamplePermissions(s1, sampleIds, externalUser, SampleAclEntry.SamplePermissions.VIEW);
+    }
+
     @Test
     public void readSampleExternalUser() throws CatalogException, IOException {
         String newUser = "newUser";
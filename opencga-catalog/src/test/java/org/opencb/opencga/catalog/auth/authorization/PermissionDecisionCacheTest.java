@@ -0,0 +1,67 @@
+package org.opencb.opencga.catalog.auth.authorization;
+
+import org.junit.Test;
+import org.opencb.opencga.core.models.acls.permissions.StudyAclEntry;
+
+import static org.junit.Assert.*;
+
+public class PermissionDecisionCacheTest {
+
+    private static final StudyAclEntry.StudyPermissions VIEW = StudyAclEntry.StudyPermissions.VIEW_SAMPLES;
+
+    @Test
+    public void testGetPut() {
+        PermissionDecisionCache cache = new PermissionDecisionCache();
+        assertNull(cache.get(cache.key(1, 0, "user", "Sample", 10, VIEW)));
+
+        cache.put(cache.key(1, 0, "user", "Sample", 10, VIEW), true);
+        cache.put(cache.key(1, 0, "user", "Sample", 11, VIEW), false);
+
+        assertEquals(Boolean.TRUE, cache.get(cache.key(1, 0, "user", "Sample", 10, VIEW)));
+        assertEquals(Boolean.FALSE, cache.get(cache.key(1, 0, "user", "Sample", 11, VIEW)));
+        assertNull(cache.get(cache.key(1, 0, "user", "Sample", 10, StudyAclEntry.StudyPermissions.WRITE_SAMPLES)));
+        assertNull(cache.get(cache.key(1, 0, "user", "File", 10, VIEW)));
+        assertNull(cache.get(cache.key(1, 0, "user2", "Sample", 10, VIEW)));
+        assertNull(cache.get(cache.key(2, 0, "user", "Sample", 10, VIEW)));
+    }
+
+    @Test
+    public void testAclVersion() {
+        PermissionDecisionCache cache = new PermissionDecisionCache();
+        cache.put(cache.key(1, 0, "user", "Sample", 10, VIEW), true);
+        cache.put(cache.key(2, 0, "user", "Sample", 20, VIEW), true);
+
+        // The ACLs of the study 1 were modified
+        assertNull(cache.get(cache.key(1, 1, "user", "Sample", 10, VIEW)));
+        assertEquals(Boolean.TRUE, cache.get(cache.key(2, 0, "user", "Sample", 20, VIEW)));
+    }
+
+    @Test
+    public void testDecisionTakenDuringAclChange() {
+        PermissionDecisionCache cache = new PermissionDecisionCache();
+        // The version is read before reading the ACLs, which are modified before storing the decision
+        PermissionDecisionCache.Key key = cache.key(1, 0, "user", "Sample", 10, VIEW);
+        cache.put(key, true);
+
+        assertNull(cache.get(cache.key(1, 1, "user", "Sample", 10, VIEW)));
+    }
+
+    @Test
+    public void testBounded() {
+        PermissionDecisionCache cache = new PermissionDecisionCache(100, PermissionDecisionCache.DEFAULT_EXPIRATION_MILLIS);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(cache.key(1, 0, "user", "Sample", i, VIEW), true);
+        }
+        assertEquals(100, cache.size());
+        assertNull(cache.get(cache.key(1, 0, "user", "Sample", 0, VIEW)));
+        assertEquals(Boolean.TRUE, cache.get(cache.key(1, 0, "user", "Sample", 999, VIEW)));
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        PermissionDecisionCache cache = new PermissionDecisionCache(100, 10);
+        cache.put(cache.key(1, 0, "user", "Sample", 10, VIEW), true);
+        Thread.sleep(50);
+        assertNull(cache.get(cache.key(1, 0, "user", "Sample", 10, VIEW)));
+    }
+}
@@ -24,6 +24,7 @@ import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.servlet.ServletContainer;
 import org.opencb.opencga.core.config.Configuration;
 import org.opencb.opencga.server.rest.AdminRestWebService;
+import org.opencb.opencga.storage.core.alignment.local.BamManagerPool;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.slf4j.LoggerFactory;
 
@@ -151,6 +152,8 @@ public class RestServer extends AbstractStorageServer {
         // By setting exit to true the monitor thread will close the Jetty server
         logger.info("Shutting down Jetty server");
         server.stop();
+        // Release the open BAM readers cached by the alignment queries
+        BamManagerPool.closeShared();
         logger.info("REST server shut down");
     }
 
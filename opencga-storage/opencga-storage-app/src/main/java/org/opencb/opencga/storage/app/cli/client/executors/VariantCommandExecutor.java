@@ -422,7 +422,12 @@ public class VariantCommandExecutor extends CommandExecutor {
 //                annotationFile = new URI(null, c.load, null);
                 annotationFile = Paths.get(annotateVariantsCommandOptions.load).toUri();
             }
-            variantAnnotationManager.loadAnnotation(annotationFile, new QueryOptions(options));
+            try {
+                variantAnnotationManager.loadAnnotation(annotationFile, new QueryOptions(options));
+            } finally {
+                // Annotations are shared by all the studies
+                variantStorageEngine.invalidateCache();
+            }
 
             logger.info("Finished annotation load {}ms", System.currentTimeMillis() - start);
         }
@@ -523,6 +528,9 @@ public class VariantCommandExecutor extends CommandExecutor {
         } catch (Exception e) {   // file not found? wrong file id or study id? bad parameters to ParallelTaskRunner?
             e.printStackTrace();
             logger.error(e.getMessage());
+        } finally {
+            // Stats are loaded without the VariantStorageEngine
+            variantStorageEngine.invalidateCache(studyConfiguration.getStudyId());
         }
     }
 
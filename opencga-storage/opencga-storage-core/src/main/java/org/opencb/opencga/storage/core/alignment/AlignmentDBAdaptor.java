@@ -119,5 +119,17 @@ public interface AlignmentDBAdaptor {
 
     QueryResult<RegionCoverage> coverage(Path path, Region region, int windowSize) throws Exception;
 
+    /**
+     * Coverage of a region, using the precomputed coverage stored in the workspace, if any.
+     *
+     * @param path          Alignment file
+     * @param workspace     Directory where the alignment file was indexed. If null, only the files next to the alignment are used.
+     * @param region        Region
+     * @param windowSize    Window size
+     * @return  The coverage of the region
+     * @throws Exception if the coverage can not be computed
+     */
+    QueryResult<RegionCoverage> coverage(Path path, Path workspace, Region region, int windowSize) throws Exception;
+
 //    QueryResult<RegionCoverage> coverage(Path path, Path workspace, Query query, QueryOptions options) throws Exception;
 }
@@ -16,14 +16,30 @@
 
 package org.opencb.opencga.storage.core.alignment.iterators;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Created by pfurio on 26/10/16.
  */
 public abstract class AlignmentIterator<T> implements Iterator<T>, AutoCloseable {
 
+    private List<AutoCloseable> closeables = new ArrayList<>();
+
     public AlignmentIterator() {
     }
 
+    public AlignmentIterator<T> addCloseable(AutoCloseable closeable) {
+        this.closeables.add(closeable);
+        return this;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (AutoCloseable closeable : closeables) {
+            closeable.close();
+        }
+    }
+
 }
@@ -32,7 +32,11 @@ public class ProtoAlignmentIterator extends AlignmentIterator<Reads.ReadAlignmen
 
     @Override
     public void close() throws Exception {
-        protoIterator.close();
+        try {
+            protoIterator.close();
+        } finally {
+            super.close();
+        }
     }
 
     @Override
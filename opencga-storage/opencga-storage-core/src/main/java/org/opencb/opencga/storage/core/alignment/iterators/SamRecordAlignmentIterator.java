@@ -32,7 +32,11 @@ public class SamRecordAlignmentIterator extends AlignmentIterator<SAMRecord> {
 
     @Override
     public void close() throws Exception {
-        bamIterator.close();
+        try {
+            bamIterator.close();
+        } finally {
+            super.close();
+        }
     }
 
     @Override
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.alignment.local;
+
+import htsjdk.samtools.*;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.tools.alignment.AlignmentOptions;
+import org.opencb.biodata.tools.alignment.filters.AlignmentFilters;
+import org.opencb.biodata.tools.alignment.iterators.BamIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Counts alignments without converting them into ReadAlignment models.
+ *
+ * Unfiltered counts of whole chromosomes, or of the whole file, are read from the metadata stored in the BAI index.
+ * Any other count iterates over the raw SAMRecords, which are lazily decoded by htsjdk, splitting the region into
+ * sub-regions counted in parallel. Each alignment is counted only in the sub-region containing its start, so the
+ * result is the same as iterating over the whole region.
+ */
+public class AlignmentCounter {
+
+    public static final int MIN_SUB_REGION_SIZE = 1000000;
+
+    private final BamManagerPool bamManagerPool;
+    private final int numThreads;
+
+    private final Logger logger = LoggerFactory.getLogger(AlignmentCounter.class);
+
+    public AlignmentCounter(BamManagerPool bamManagerPool) {
+        this(bamManagerPool, Runtime.getRuntime().availableProcessors());
+    }
+
+    public AlignmentCounter(BamManagerPool bamManagerPool, int numThreads) {
+        this.bamManagerPool = bamManagerPool;
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Count the alignments of a file.
+     *
+     * @param path              Alignment file
+     * @param region            Region to count. Null for the whole file.
+     * @param filters           Supplier of the filters to apply. One instance is used for each sub-region.
+     * @param filtered          If the supplied filters discard any alignment
+     * @param contained         Count only alignments fully contained in the region
+     * @return                  Number of alignments
+     * @throws Exception if there is any error reading the file
+     */
+    public long count(Path path, Region region, Supplier<AlignmentFilters<SAMRecord>> filters, boolean filtered, boolean contained)
+            throws Exception {
+        SAMFileHeader header;
+        long indexCount;
+        long noCoordinateCount;
+        try (BamManagerPool.Lease lease = bamManagerPool.borrow(path)) {
+            SamReader reader = lease.getSamReader();
+            header = reader.getFileHeader();
+            indexCount = filtered || contained ? -1 : countFromIndex(reader, region);
+            noCoordinateCount = noCoordinateCount(reader);
+        }
+        if (indexCount >= 0) {
+            logger.debug("Count of {} in {} read from the index", region == null ? "all alignments" : region, path);
+            return indexCount;
+        }
+
+        if (region == null && noCoordinateCount != 0) {
+            // Unaligned reads without coordinates are not returned by region queries. Iterate over the whole file.
+            return countSequential(path, filters);
+        }
+
+        List<Region> subRegions = new ArrayList<>();
+        if (region == null) {
+            for (SAMSequenceRecord sequence : header.getSequenceDictionary().getSequences()) {
+                split(new Region(sequence.getSequenceName(), 1, sequence.getSequenceLength()), subRegions);
+            }
+        } else {
+            SAMSequenceRecord sequence = header.getSequence(region.getChromosome());
+            if (sequence == null) {
+                return 0;
+            }
+            split(new Region(region.getChromosome(), Math.max(1, region.getStart()),
+                    Math.min(region.getEnd(), sequence.getSequenceLength())), subRegions);
+        }
+        if (subRegions.isEmpty()) {
+            // The region starts after the end of the chromosome
+            return 0;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, subRegions.size()));
+        try {
+            List<Future<Long>> futures = new ArrayList<>(subRegions.size());
+            for (int i = 0; i < subRegions.size(); i++) {
+                Region subRegion = subRegions.get(i);
+                // The first sub-region of the query also counts the alignments starting before the region
+                boolean first = region != null && i == 0;
+                futures.add(executor.submit(() -> countRegion(path, subRegion, filters.get(), first,
+                        contained ? region : null)));
+            }
+            long count = 0;
+            for (Future<Long> future : futures) {
+                count += future.get();
+            }
+            return count;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Unfiltered count from the metadata of the BAI index.
+     *
+     * @return Number of alignments, or -1 if it can not be obtained from the index.
+     */
+    private long countFromIndex(SamReader reader, Region region) {
+        if (!reader.hasIndex() || reader.type() != SamReader.Type.BAM_TYPE) {
+            return -1;
+        }
+        BAMIndex index = reader.indexing().getIndex();
+        SAMSequenceDictionary dictionary = reader.getFileHeader().getSequenceDictionary();
+        if (region == null) {
+            long count = noCoordinateCount(reader);
+            if (count < 0) {
+                return -1;
+            }
+            for (int i = 0; i < dictionary.size(); i++) {
+                BAMIndexMetaData metaData = index.getMetaData(i);
+                count += metaData.getAlignedRecordCount() + metaData.getUnalignedRecordCount();
+            }
+            return count;
+        } else {
+            SAMSequenceRecord sequence = dictionary.getSequence(region.getChromosome());
+            if (sequence == null || region.getStart() > 1 || region.getEnd() < sequence.getSequenceLength()) {
+                // The index only knows the number of alignments of each chromosome
+                return -1;
+            }
+            BAMIndexMetaData metaData = index.getMetaData(sequence.getSequenceIndex());
+            return metaData.getAlignedRecordCount() + metaData.getUnalignedRecordCount();
+        }
+    }
+
+    /**
+     * Number of unaligned reads without coordinates, from the BAI index.
+     *
+     * @return Number of reads, or -1 if unknown.
+     */
+    private long noCoordinateCount(SamReader reader) {
+        if (!reader.hasIndex() || reader.type() != SamReader.Type.BAM_TYPE) {
+            return -1;
+        }
+        BAMIndex index = reader.indexing().getIndex();
+        if (!(index instanceof AbstractBAMFileIndex)) {
+            return -1;
+        }
+        Long noCoordinateCount = ((AbstractBAMFileIndex) index).getNoCoordinateCount();
+        return noCoordinateCount == null ? 0 : noCoordinateCount;
+    }
+
+    private long countRegion(Path path, Region region, AlignmentFilters<SAMRecord> filters, boolean countOverlapping,
+                             Region containedIn) throws Exception {
+        AlignmentOptions options = new AlignmentOptions();
+        options.setContained(false);
+        long count = 0;
+        try (BamManagerPool.Lease lease = bamManagerPool.borrow(path)) {
+            BamIterator<SAMRecord> iterator = lease.getBamManager().iterator(region, filters, options, SAMRecord.class);
+            try {
+                while (iterator.hasNext()) {
+                    SAMRecord record = iterator.next();
+                    if (!countOverlapping && record.getAlignmentStart() < region.getStart()) {
+                        // Already counted in a previous sub-region
+                        continue;
+                    }
+                    if (containedIn != null && (record.getAlignmentStart() < containedIn.getStart()
+                            || record.getAlignmentEnd() > containedIn.getEnd())) {
+                        continue;
+                    }
+                    count++;
+                }
+            } finally {
+                iterator.close();
+            }
+        }
+        return count;
+    }
+
+    private long countSequential(Path path, Supplier<AlignmentFilters<SAMRecord>> filters) throws IOException {
+        AlignmentOptions options = new AlignmentOptions();
+        options.setContained(false);
+        long count = 0;
+        try (BamManagerPool.Lease lease = bamManagerPool.borrow(path)) {
+            BamIterator<SAMRecord> iterator = lease.getBamManager().iterator(filters.get(), options, SAMRecord.class);
+            try {
+                while (iterator.hasNext()) {
+                    iterator.next();
+                    count++;
+                }
+            } finally {
+                iterator.close();
+            }
+        }
+        return count;
+    }
+
+    private void split(Region region, List<Region> subRegions) {
+        int length = region.getEnd() - region.getStart() + 1;
+        int subRegionSize = Math.max(MIN_SUB_REGION_SIZE, length / (numThreads * 4) + 1);
+        for (int start = region.getStart(); start <= region.getEnd(); start += subRegionSize) {
+            int end = (int) Math.min((long) start + subRegionSize - 1, region.getEnd());
+            subRegions.add(new Region(region.getChromosome(), start, end));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.alignment.local;
+
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import org.opencb.biodata.tools.alignment.BamManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded pool of open {@link BamManager}s, keyed by path.
+ *
+ * A BamManager keeps the SamReader open, so the header and the BAI index are parsed only once and reused by every
+ * query. BamManagers are not thread safe, so each one is confined to the thread that borrowed it until the lease is
+ * closed. Every borrow returns a new lease, that gives back the BamManager only once. Idle readers are reused only if
+ * the modification time of the BAM and its index did not change, and the least recently used ones are closed when there
+ * are more than {@code maxIdle} idle readers.
+ *
+ * A process wide pool, shared by every {@link LocalAlignmentDBAdaptor}, is available through {@link #getShared()}. It
+ * is closed on JVM shutdown, or explicitly with {@link #closeShared()}.
+ */
+public class BamManagerPool implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private static BamManagerPool shared;
+    private static boolean shutdownHookRegistered = false;
+
+    private final int maxIdle;
+    // Most recently used first
+    private final LinkedList<PooledBamManager> idle = new LinkedList<>();
+    private boolean closed = false;
+
+    private final Logger logger = LoggerFactory.getLogger(BamManagerPool.class);
+
+    public BamManagerPool() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    public BamManagerPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Get the process wide pool, creating it if needed.
+     *
+     * @return  Shared pool
+     */
+    public static synchronized BamManagerPool getShared() {
+        if (shared == null) {
+            shared = new BamManagerPool();
+            if (!shutdownHookRegistered) {
+                Runtime.getRuntime().addShutdownHook(new Thread(BamManagerPool::closeShared));
+                shutdownHookRegistered = true;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Close the process wide pool, if any. A new one is created by the next call to {@link #getShared()}.
+     */
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    /**
+     * Borrow a BamManager for the given file. The lease must be closed to return the BamManager to the pool.
+     *
+     * @param path  BAM file
+     * @return      Lease with an open BamManager, not shared with any other thread
+     * @throws IOException if the file can not be opened
+     */
+    public Lease borrow(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        long lastModified = lastModified(key);
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("BamManagerPool closed");
+            }
+            Iterator<PooledBamManager> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                PooledBamManager pooled = iterator.next();
+                if (pooled.path.equals(key)) {
+                    iterator.remove();
+                    if (pooled.lastModified == lastModified) {
+                        return new Lease(pooled);
+                    } else {
+                        logger.debug("File {} modified. Discard cached reader", key);
+                        pooled.close();
+                    }
+                }
+            }
+        }
+
+        return new Lease(new PooledBamManager(key, lastModified, new BamManager(key)));
+    }
+
+    /**
+     * Number of idle BamManagers in the pool.
+     *
+     * @return number of idle BamManagers
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (PooledBamManager pooled : idle) {
+                pooled.close();
+            }
+            idle.clear();
+        }
+    }
+
+    private void release(PooledBamManager pooled) {
+        boolean modified = pooled.lastModified != lastModifiedOrNegative(pooled.path);
+        PooledBamManager evicted = null;
+        synchronized (this) {
+            if (!closed && !modified) {
+                idle.addFirst(pooled);
+                if (idle.size() > maxIdle) {
+                    evicted = idle.removeLast();
+                }
+            } else {
+                evicted = pooled;
+            }
+        }
+        if (evicted != null) {
+            evicted.close();
+        }
+    }
+
+    /**
+     * Last modification time of the file and its index, if any.
+     */
+    private static long lastModified(Path path) throws IOException {
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        String fileName = path.getFileName().toString();
+        List<Path> indexes = new ArrayList<>(2);
+        indexes.add(path.resolveSibling(fileName + ".bai"));
+        if (fileName.endsWith(".bam")) {
+            indexes.add(path.resolveSibling(fileName.substring(0, fileName.length() - 4) + ".bai"));
+        }
+        for (Path index : indexes) {
+            if (Files.exists(index)) {
+                lastModified = Math.max(lastModified, Files.getLastModifiedTime(index).toMillis());
+            }
+        }
+        return lastModified;
+    }
+
+    private static long lastModifiedOrNegative(Path path) {
+        try {
+            return lastModified(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * BamManager owned by the pool, either idle or borrowed by exactly one lease.
+     */
+    private final class PooledBamManager {
+        private final Path path;
+        private final long lastModified;
+        private final BamManager bamManager;
+        // Opened on demand, to read the header and the index metadata
+        private SamReader samReader;
+
+        private PooledBamManager(Path path, long lastModified, BamManager bamManager) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.bamManager = bamManager;
+        }
+
+        private void close() {
+            try {
+                bamManager.close();
+            } catch (Exception e) {
+                logger.warn("Error closing BamManager from " + path, e);
+            }
+            if (samReader != null) {
+                try {
+                    samReader.close();
+                } catch (Exception e) {
+                    logger.warn("Error closing SamReader from " + path, e);
+                }
+            }
+        }
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final PooledBamManager pooled;
+        private final AtomicBoolean returned = new AtomicBoolean(false);
+
+        private Lease(PooledBamManager pooled) {
+            this.pooled = pooled;
+        }
+
+        /**
+         * @return the borrowed BamManager
+         * @throws IllegalStateException if the lease was already closed, as the BamManager may belong to another lease
+         */
+        public BamManager getBamManager() {
+            checkNotReturned();
+            return pooled.bamManager;
+        }
+
+        /**
+         * Get a SamReader of the same file, to read its header and index metadata. It is owned by the pool, and must
+         * not be closed.
+         *
+         * @return the borrowed SamReader
+         * @throws IllegalStateException if the lease was already closed
+         */
+        public SamReader getSamReader() {
+            checkNotReturned();
+            if (pooled.samReader == null) {
+                pooled.samReader = SamReaderFactory.makeDefault().open(pooled.path.toFile());
+            }
+            return pooled.samReader;
+        }
+
+        private void checkNotReturned() {
+            if (returned.get()) {
+                throw new IllegalStateException("Lease of " + pooled.path + " already closed");
+            }
+        }
+
+        /**
+         * Return the BamManager to the pool. Any iterator obtained from it must be closed before. Closing the lease more
+         * than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (returned.compareAndSet(false, true)) {
+                release(pooled);
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.alignment.local;
+
+import htsjdk.samtools.*;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.opencb.biodata.models.alignment.RegionCoverage;
+import org.opencb.biodata.models.core.Region;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-resolution coverage of an alignment file, stored in a binary file.
+ *
+ * For each chromosome and level, the file contains the mean depth of every bin of {@code level} bases, as unsigned 16 bit
+ * integers. Coverage queries are answered from the coarsest level not bigger than the requested window size, mapping into
+ * memory only the bins that overlap the region. Windows smaller than the first level are not answered, and have to be
+ * computed from the reads.
+ *
+ * File layout:
+ * <pre>
+ *  MAGIC VERSION headerSize numLevels level[numLevels] numChromosomes
+ *  (nameLength name chromosomeLength offset[numLevels]) x numChromosomes
+ *  bins
+ * </pre>
+ */
+public final class CoveragePyramid implements AutoCloseable {
+
+    public static final String EXTENSION = ".coverage.bin";
+    // The base level keeps the file around 200MB for a human genome
+    public static final int[] DEFAULT_LEVELS = {32, 256, 2048, 16384};
+
+    private static final byte[] MAGIC = "OCGACOVP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2;
+    private static final int BYTES_PER_BIN = Character.BYTES;
+    private static final int CHUNK_SIZE = 1000000;
+
+    private static Logger logger = LoggerFactory.getLogger(CoveragePyramid.class);
+
+    private final FileChannel channel;
+    private final int[] levels;
+    private final Map<String, Chromosome> chromosomes;
+
+    private static final class Chromosome {
+        private final int length;
+        private final long[] offsets;
+
+        private Chromosome(int length, long[] offsets) {
+            this.length = length;
+            this.offsets = offsets;
+        }
+    }
+
+    private CoveragePyramid(FileChannel channel, int[] levels, Map<String, Chromosome> chromosomes) {
+        this.channel = channel;
+        this.levels = levels;
+        this.chromosomes = chromosomes;
+    }
+
+    /**
+     * Location of the coverage pyramid of an alignment file.
+     *
+     * A workspace may hold the coverage of alignment files with the same name from different directories, so there the
+     * name also contains a hash of the absolute path of the alignment file.
+     *
+     * @param bamPath   Alignment file
+     * @param workspace Directory where the coverage is stored. If null, next to the alignment file.
+     * @return  Path of the coverage pyramid
+     */
+    public static Path getPath(Path bamPath, Path workspace) {
+        if (workspace == null) {
+            return bamPath.resolveSibling(bamPath.getFileName() + EXTENSION);
+        }
+        String hash = DigestUtils.sha1Hex(bamPath.toAbsolutePath().normalize().toString()).substring(0, 16);
+        return workspace.resolve(bamPath.getFileName() + "." + hash + EXTENSION);
+    }
+
+    /**
+     * Build the coverage pyramid of a sorted and indexed BAM file, using the default levels.
+     *
+     * @param bamPath   Sorted and indexed BAM file
+     * @param output    Output file
+     * @throws IOException if there is any error reading the BAM or writing the output
+     */
+    public static void build(Path bamPath, Path output) throws IOException {
+        build(bamPath, output, DEFAULT_LEVELS);
+    }
+
+    /**
+     * Build the coverage pyramid of a sorted and indexed BAM file.
+     *
+     * @param bamPath   Sorted and indexed BAM file
+     * @param output    Output file
+     * @param levels    Bin sizes, in increasing order. Each level has to divide the biggest one.
+     * @throws IOException if there is any error reading the BAM or writing the output
+     */
+    public static void build(Path bamPath, Path output, int[] levels) throws IOException {
+        int maxLevel = levels[levels.length - 1];
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] <= 0 || maxLevel % levels[i] != 0 || (i > 0 && levels[i] <= levels[i - 1])) {
+                throw new IllegalArgumentException("Invalid coverage levels " + Arrays.toString(levels));
+            }
+        }
+        // Chunks must be aligned with the bins of every level
+        int chunkSize = Math.max(1, CHUNK_SIZE / maxLevel) * maxLevel;
+
+        SamReaderFactory readerFactory = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT);
+        try (SamReader reader = readerFactory.open(bamPath.toFile());
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (!reader.hasIndex()) {
+                throw new IOException("Missing index for file " + bamPath);
+            }
+            List<SAMSequenceRecord> sequences = reader.getFileHeader().getSequenceDictionary().getSequences();
+
+            // Header
+            int headerSize = MAGIC.length + Integer.BYTES * (4 + levels.length);
+            for (SAMSequenceRecord sequence : sequences) {
+                headerSize += Short.BYTES + sequence.getSequenceName().getBytes(StandardCharsets.UTF_8).length
+                        + Integer.BYTES + Long.BYTES * levels.length;
+            }
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            header.put(MAGIC).putInt(VERSION).putInt(headerSize).putInt(levels.length);
+            for (int level : levels) {
+                header.putInt(level);
+            }
+            header.putInt(sequences.size());
+            long offset = headerSize;
+            long[][] offsets = new long[sequences.size()][levels.length];
+            for (int s = 0; s < sequences.size(); s++) {
+                SAMSequenceRecord sequence = sequences.get(s);
+                byte[] name = sequence.getSequenceName().getBytes(StandardCharsets.UTF_8);
+                header.putShort((short) name.length).put(name).putInt(sequence.getSequenceLength());
+                for (int l = 0; l < levels.length; l++) {
+                    offsets[s][l] = offset;
+                    header.putLong(offset);
+                    offset += numBins(sequence.getSequenceLength(), levels[l]) * BYTES_PER_BIN;
+                }
+            }
+            header.flip();
+            writeFully(out, header, 0);
+
+            // Bins
+            int[] depth = new int[chunkSize + 1];
+            ByteBuffer buffer = ByteBuffer.allocate(chunkSize * BYTES_PER_BIN);
+            for (int s = 0; s < sequences.size(); s++) {
+                SAMSequenceRecord sequence = sequences.get(s);
+                logger.debug("Building coverage of {}", sequence.getSequenceName());
+                for (int chunkStart = 1; chunkStart <= sequence.getSequenceLength(); chunkStart += chunkSize) {
+                    int chunkEnd = Math.min(chunkStart + chunkSize - 1, sequence.getSequenceLength());
+                    int size = chunkEnd - chunkStart + 1;
+                    fillDepth(reader, sequence.getSequenceName(), chunkStart, chunkEnd, depth);
+                    for (int l = 0; l < levels.length; l++) {
+                        int level = levels[l];
+                        buffer.clear();
+                        for (int binStart = 0; binStart < size; binStart += level) {
+                            int binEnd = Math.min(binStart + level, size);
+                            long sum = 0;
+                            for (int i = binStart; i < binEnd; i++) {
+                                sum += depth[i];
+                            }
+                            long mean = Math.round(((double) sum) / (binEnd - binStart));
+                            buffer.putChar((char) Math.min(mean, Character.MAX_VALUE));
+                        }
+                        buffer.flip();
+                        writeFully(out, buffer, offsets[s][l] + ((long) (chunkStart - 1) / level) * BYTES_PER_BIN);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Open an existing coverage pyramid.
+     *
+     * @param path  Coverage pyramid file
+     * @return      Opened CoveragePyramid. Must be closed.
+     * @throws IOException if the file can not be read or is not a coverage pyramid
+     */
+    public static CoveragePyramid open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            // Read only the header. Bins are mapped on demand
+            ByteBuffer header = readFully(channel, 0, MAGIC.length + Integer.BYTES * 2, path);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION) {
+                throw new IOException("File " + path + " is not a valid coverage file");
+            }
+            int headerSize = header.getInt();
+            header = readFully(channel, header.position(), headerSize - header.position(), path);
+            int[] levels = new int[header.getInt()];
+            for (int l = 0; l < levels.length; l++) {
+                levels[l] = header.getInt();
+            }
+            int numChromosomes = header.getInt();
+            Map<String, Chromosome> chromosomes = new HashMap<>(numChromosomes);
+            for (int s = 0; s < numChromosomes; s++) {
+                byte[] name = new byte[header.getShort()];
+                header.get(name);
+                int length = header.getInt();
+                long[] offsets = new long[levels.length];
+                for (int l = 0; l < levels.length; l++) {
+                    offsets[l] = header.getLong();
+                }
+                chromosomes.put(new String(name, StandardCharsets.UTF_8), new Chromosome(length, offsets));
+            }
+            return new CoveragePyramid(channel, levels, chromosomes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Mean coverage of a region, in windows of the given size.
+     *
+     * @param region        Region to query
+     * @param windowSize    Window size. Answered from the coarsest level not bigger than the window size.
+     * @return  RegionCoverage, or null if the chromosome is not in the file or the window is smaller than the first level
+     * @throws IOException if the file can not be read
+     */
+    public RegionCoverage coverage(Region region, int windowSize) throws IOException {
+        Chromosome chromosome = chromosomes.get(region.getChromosome());
+        if (chromosome == null || windowSize < levels[0]) {
+            return null;
+        }
+        int start = Math.max(region.getStart(), 1);
+        int end = Math.min(region.getEnd(), chromosome.length);
+        if (end < start) {
+            return new RegionCoverage(new Region(region.getChromosome(), start, end), windowSize, new float[0]);
+        }
+
+        int l = 0;
+        while (l + 1 < levels.length && levels[l + 1] <= windowSize) {
+            l++;
+        }
+        int level = levels[l];
+
+        int firstBin = (start - 1) / level;
+        int lastBin = (end - 1) / level;
+        MappedByteBuffer bins = channel.map(FileChannel.MapMode.READ_ONLY,
+                chromosome.offsets[l] + ((long) firstBin) * BYTES_PER_BIN, ((long) lastBin - firstBin + 1) * BYTES_PER_BIN);
+
+        float[] values = new float[(end - start) / windowSize + 1];
+        for (int w = 0; w < values.length; w++) {
+            int windowStart = start + w * windowSize;
+            int windowEnd = Math.min(windowStart + windowSize - 1, end);
+            int fromBin = (windowStart - 1) / level;
+            int toBin = (windowEnd - 1) / level;
+            long sum = 0;
+            for (int bin = fromBin; bin <= toBin; bin++) {
+                sum += bins.getChar((bin - firstBin) * BYTES_PER_BIN);
+            }
+            values[w] = ((float) sum) / (toBin - fromBin + 1);
+        }
+        return new RegionCoverage(new Region(region.getChromosome(), start, end), windowSize, values);
+    }
+
+    public int[] getLevels() {
+        return levels.clone();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void fillDepth(SamReader reader, String chromosome, int chunkStart, int chunkEnd, int[] depth) {
+        int size = chunkEnd - chunkStart + 1;
+        Arrays.fill(depth, 0, size + 1, 0);
+        try (SAMRecordIterator iterator = reader.queryOverlapping(chromosome, chunkStart, chunkEnd)) {
+            while (iterator.hasNext()) {
+                SAMRecord record = iterator.next();
+                if (record.getReadUnmappedFlag() || record.getNotPrimaryAlignmentFlag() || record.getDuplicateReadFlag()) {
+                    continue;
+                }
+                for (AlignmentBlock block : record.getAlignmentBlocks()) {
+                    int blockStart = Math.max(block.getReferenceStart(), chunkStart);
+                    int blockEnd = Math.min(block.getReferenceStart() + block.getLength() - 1, chunkEnd);
+                    if (blockStart <= blockEnd) {
+                        depth[blockStart - chunkStart]++;
+                        depth[blockEnd - chunkStart + 1]--;
+                    }
+                }
+            }
+        }
+        for (int i = 1; i < size; i++) {
+            depth[i] += depth[i - 1];
+        }
+    }
+
+    private static long numBins(int length, int level) {
+        return (length + level - 1) / level;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int size, Path path) throws IOException {
+        if (size < 0 || position + size > channel.size()) {
+            throw new IOException("File " + path + " is not a valid coverage file");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file " + path);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Check if the coverage file exists and is not older than the alignment file.
+     *
+     * @param bamPath       Alignment file
+     * @param coveragePath  Coverage pyramid file
+     * @return  if the coverage pyramid can be used
+     * @throws IOException if the modification times can not be read
+     */
+    public static boolean isUpToDate(Path bamPath, Path coveragePath) throws IOException {
+        return Files.exists(coveragePath)
+                && Files.getLastModifiedTime(coveragePath).compareTo(Files.getLastModifiedTime(bamPath)) >= 0;
+    }
+}
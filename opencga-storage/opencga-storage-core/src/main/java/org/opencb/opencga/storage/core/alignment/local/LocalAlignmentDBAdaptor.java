@@ -50,6 +50,8 @@ import java.util.List;
 public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
     private int chunkSize;
+    private final BamManagerPool bamManagerPool;
+    private final AlignmentCounter alignmentCounter;
 
     private static final int MINOR_CHUNK_SIZE = 1000;
     private static final int DEFAULT_CHUNK_SIZE = 1000;
@@ -64,7 +66,17 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
     }
 
     public LocalAlignmentDBAdaptor(int chunkSize) {
+        this(chunkSize, BamManagerPool.getShared());
+    }
+
+    public LocalAlignmentDBAdaptor(int chunkSize, BamManagerPool bamManagerPool) {
         this.chunkSize = chunkSize;
+        this.bamManagerPool = bamManagerPool;
+        this.alignmentCounter = new AlignmentCounter(bamManagerPool);
+    }
+
+    public BamManagerPool getBamManagerPool() {
+        return bamManagerPool;
     }
 
 
@@ -75,22 +87,23 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
             StopWatch watch = StopWatch.createStarted();
 
-            BamManager bamManager = new BamManager(path);
             Region region = parseRegion(query);
             AlignmentFilters<SAMRecord> alignmentFilters = parseQuery(query);
             AlignmentOptions alignmentOptions = parseQueryOptions(options);
 
             String queryResultId;
             List<ReadAlignment> readAlignmentList;
-            if (region != null) {
-                readAlignmentList = bamManager.query(region, alignmentFilters, alignmentOptions, ReadAlignment.class);
-                queryResultId = region.toString();
-            } else {
-                readAlignmentList = bamManager.query(alignmentFilters, alignmentOptions, ReadAlignment.class);
-                queryResultId = "Get alignments";
+            try (BamManagerPool.Lease lease = bamManagerPool.borrow(path)) {
+                BamManager bamManager = lease.getBamManager();
+                if (region != null) {
+                    readAlignmentList = bamManager.query(region, alignmentFilters, alignmentOptions, ReadAlignment.class);
+                    queryResultId = region.toString();
+                } else {
+                    readAlignmentList = bamManager.query(alignmentFilters, alignmentOptions, ReadAlignment.class);
+                    queryResultId = "Get alignments";
+                }
             }
 
-            bamManager.close();
             watch.stop();
             return new QueryResult<>(queryResultId, ((int) watch.getTime()), readAlignmentList.size(), readAlignmentList.size(), null, null,
                     readAlignmentList);
@@ -112,39 +125,55 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
     @Override
     public <T> AlignmentIterator<T> iterator(Path path, Query query, QueryOptions options, Class<T> clazz) {
+        BamManagerPool.Lease lease = null;
         try {
             FileUtils.checkFile(path);
 
-            BamManager bamManager = new BamManager(path);
+            lease = bamManagerPool.borrow(path);
+            BamManager bamManager = lease.getBamManager();
             Region region = parseRegion(query);
             AlignmentFilters<SAMRecord> alignmentFilters = parseQuery(query);
             AlignmentOptions alignmentOptions = parseQueryOptions(options);
 
+            AlignmentIterator<?> iterator = null;
             if (region != null) {
                 if (Reads.ReadAlignment.class == clazz) {
-                    return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(region,
+                    iterator = new ProtoAlignmentIterator(bamManager.iterator(region,
                             alignmentFilters, alignmentOptions, Reads.ReadAlignment.class));
                 } else if (SAMRecord.class == clazz) {
-                    return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(region,
+                    iterator = new SamRecordAlignmentIterator(bamManager.iterator(region,
                             alignmentFilters, alignmentOptions, SAMRecord.class));
                 }
             } else {
                 if (Reads.ReadAlignment.class == clazz) {
-                    return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(alignmentFilters,
+                    iterator = new ProtoAlignmentIterator(bamManager.iterator(alignmentFilters,
                             alignmentOptions, Reads.ReadAlignment.class));
                 } else if (SAMRecord.class == clazz) {
-                    return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(alignmentFilters,
+                    iterator = new SamRecordAlignmentIterator(bamManager.iterator(alignmentFilters,
                             alignmentOptions, SAMRecord.class));
                 }
             }
+            if (iterator != null) {
+                // The BamManager returns to the pool once the iterator is closed
+                iterator.addCloseable(lease);
+                return (AlignmentIterator<T>) iterator;
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        if (lease != null) {
+            lease.close();
+        }
         return null;
     }
 
     @Override
     public QueryResult<RegionCoverage> coverage(Path path, Region region, int windowSize) throws Exception {
+        return coverage(path, null, region, windowSize);
+    }
+
+    @Override
+    public QueryResult<RegionCoverage> coverage(Path path, Path workspace, Region region, int windowSize) throws Exception {
 //        QueryOptions options = new QueryOptions();
 //        options.put(QueryParams.WINDOW_SIZE.key(), DEFAULT_WINDOW_SIZE);
 //        options.put(QueryParams.CONTAINED.key(), false);
@@ -153,11 +182,27 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
         StopWatch watch = StopWatch.createStarted();
 
-        RegionCoverage regionCoverage;
-        if (path.toFile().getName().endsWith(".bam")) {
-            BamManager bamManager = new BamManager(path);
-            regionCoverage = bamManager.coverage(region, windowSize);
-            bamManager.close();
+        RegionCoverage regionCoverage = null;
+        if (path.toFile().getName().endsWith(CoveragePyramid.EXTENSION)) {
+            try (CoveragePyramid coveragePyramid = CoveragePyramid.open(path)) {
+                regionCoverage = coveragePyramid.coverage(region, windowSize);
+            }
+        } else if (path.toFile().getName().endsWith(".bam")) {
+            // Use the precomputed coverage from the nearest resolution level, if any
+            Path coveragePath = CoveragePyramid.getPath(path, workspace);
+            if (workspace != null && !CoveragePyramid.isUpToDate(path, coveragePath)) {
+                coveragePath = CoveragePyramid.getPath(path, null);
+            }
+            if (CoveragePyramid.isUpToDate(path, coveragePath)) {
+                try (CoveragePyramid coveragePyramid = CoveragePyramid.open(coveragePath)) {
+                    regionCoverage = coveragePyramid.coverage(region, windowSize);
+                }
+            }
+            if (regionCoverage == null) {
+                try (BamManagerPool.Lease lease = bamManagerPool.borrow(path)) {
+                    regionCoverage = lease.getBamManager().coverage(region, windowSize);
+                }
+            }
         } else {
             BamManager bamManager = new BamManager();
             regionCoverage = bamManager.coverage(region, windowSize, path);
@@ -171,11 +216,19 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
     public QueryResult<Long> count(Path path, Query query, QueryOptions options) {
         StopWatch watch = StopWatch.createStarted();
 
-        ProtoAlignmentIterator iterator = iterator(path, query, options);
         long count = 0;
-        while (iterator.hasNext()) {
-            iterator.next();
-            count++;
+        try {
+            FileUtils.checkFile(path);
+
+            boolean contained = options != null && options.getBoolean(QueryParams.CONTAINED.key(), false);
+            count = alignmentCounter.count(path, parseRegion(query), () -> parseQuery(query), isFiltered(query), contained);
+
+            int limit = options == null ? 0 : options.getInt(QueryOptions.LIMIT);
+            if (limit > 0) {
+                count = Math.min(count, limit);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
 
         watch.stop();
@@ -197,8 +250,9 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
             ObjectMapper objectMapper = new ObjectMapper();
             alignmentGlobalStats = objectMapper.readValue(statsPath.toFile(), AlignmentGlobalStats.class);
         } else {
-            BamManager alignmentManager = new BamManager(path);
-            alignmentGlobalStats = alignmentManager.stats();
+            try (BamManagerPool.Lease lease = bamManagerPool.borrow(path)) {
+                alignmentGlobalStats = lease.getBamManager().stats();
+            }
             ObjectMapper objectMapper = new ObjectMapper();
             ObjectWriter objectWriter = objectMapper.typedWriter(AlignmentGlobalStats.class);
             objectWriter.writeValue(statsPath.toFile(), alignmentGlobalStats);
@@ -226,8 +280,10 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
         AlignmentFilters alignmentFilters = parseQuery(query);
         AlignmentOptions alignmentOptions = parseQueryOptions(options);
 
-        BamManager alignmentManager = new BamManager(path);
-        AlignmentGlobalStats alignmentGlobalStats = alignmentManager.stats(region, alignmentFilters, alignmentOptions);
+        AlignmentGlobalStats alignmentGlobalStats;
+        try (BamManagerPool.Lease lease = bamManagerPool.borrow(path)) {
+            alignmentGlobalStats = lease.getBamManager().stats(region, alignmentFilters, alignmentOptions);
+        }
 
         watch.stop();
         return new QueryResult<>("Get stats", (int) watch.getTime(), 1, 1, "", "", Arrays.asList(alignmentGlobalStats));
@@ -351,6 +407,19 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
         return alignmentFilters;
     }
 
+    /**
+     * Check if any of the filters created by {@link #parseQuery(Query)} would be applied.
+     */
+    private boolean isFiltered(Query query) {
+        return query != null && (query.getInt(QueryParams.MIN_MAPQ.key()) > 0
+                || query.getInt(QueryParams.MAX_NM.key()) > 0
+                || query.getInt(QueryParams.MAX_NH.key()) > 0
+                || query.getBoolean(QueryParams.PROPERLY_PAIRED.key())
+                || query.getInt(QueryParams.MAX_INSERT_SIZE.key()) > 0
+                || query.getBoolean(QueryParams.SKIP_UNMAPPED.key())
+                || query.getBoolean(QueryParams.SKIP_DUPLICATED.key()));
+    }
+
     private AlignmentOptions parseQueryOptions(QueryOptions options) {
         AlignmentOptions alignmentOptions = new AlignmentOptions();
 
@@ -83,7 +83,13 @@ public class LocalAlignmentStoragePipeline implements StoragePipeline {
             objectWriter.writeValue(statsPath.toFile(), stats);
         }
 
-        // 3) Create the BigWig file containing the coverage using the bamCoverage from the DeepTools package
+        // 3) Create the multi-resolution coverage file
+        Path coveragePath = CoveragePyramid.getPath(path, workspace);
+        if (!CoveragePyramid.isUpToDate(path, coveragePath)) {
+            CoveragePyramid.build(path, coveragePath);
+        }
+
+        // 4) Create the BigWig file containing the coverage using the bamCoverage from the DeepTools package
         Path bwPath = workspace.resolve(path.getFileName() + ".bw");
         bamManager.calculateBigWigCoverage(bwPath, 50);
 
@@ -26,13 +26,17 @@ import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.redisson.Config;
 import org.redisson.Redisson;
 import org.redisson.RedissonClient;
-import org.redisson.client.RedisConnectionException;
+import org.redisson.client.RedisException;
 import org.redisson.codec.JsonJacksonCodec;
 import org.redisson.codec.KryoCodec;
+import org.redisson.core.RAtomicLong;
 import org.redisson.core.RKeys;
 import org.redisson.core.RMap;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 /**
@@ -43,12 +47,43 @@ public class CacheManager {
     private StorageConfiguration storageConfiguration;
 
     private Config redissonConfig;
+    private String redissonConfigKey;
     private Set<String> allowedTypesSet;
     private RedissonClient redissonClient;
     private boolean redisState;
+    private LocalCache localCache;
+    // Last epochs read from Redis, to avoid one round trip for each key.
+    private final Map<String, RemoteEpoch> remoteEpochs = new ConcurrentHashMap<>();
 
+    // Epochs increased by this process. Shared by all the instances, so any invalidation is seen right away by the whole process.
+    // Only used for the keys of the local cache, as other processes can not see them.
+    private static final Map<String, AtomicLong> LOCAL_EPOCHS = new ConcurrentHashMap<>();
+    // Redisson clients shared by all the instances connecting to the same server. Every storage engine has its own CacheManager.
+    private static final Map<String, SharedClient> REDISSON_CLIENTS = new HashMap<>();
 
     private static final String PREFIX_DATABASE_KEY = "ocga:";
+    // Out of the PREFIX_DATABASE_KEY namespace, so clearing the cached results never resets the epochs.
+    private static final String PREFIX_EPOCH_KEY = "ocga_epoch:";
+    static final long REMOTE_EPOCH_REFRESH_MILLIS = 1000;
+
+    private static final class SharedClient {
+        private final RedissonClient client;
+        private int references;
+
+        private SharedClient(RedissonClient client) {
+            this.client = client;
+        }
+    }
+
+    private static final class RemoteEpoch {
+        private final long epoch;
+        private final long timestamp;
+
+        private RemoteEpoch(long epoch, long timestamp) {
+            this.epoch = epoch;
+            this.timestamp = timestamp;
+        }
+    }
 
     public CacheManager() {
     }
@@ -68,6 +103,7 @@ public class CacheManager {
                     ? cache.getHost()
                     : CacheConfiguration.DEFAULT_HOST;
             redissonConfig.useSingleServer().setAddress(host);
+            redissonConfigKey = host;
 
             String codec = (StringUtils.isNotEmpty(cache.getSerialization()))
                     ? cache.getSerialization()
@@ -78,6 +114,7 @@ public class CacheManager {
 
             if (StringUtils.isNotEmpty(cache.getPassword())) {
                 redissonConfig.useSingleServer().setPassword(cache.getPassword());
+                redissonConfigKey += ":" + DigestUtils.sha1Hex(cache.getPassword());
             }
 
             if ("KRYO".equalsIgnoreCase(codec)) {
@@ -85,11 +122,16 @@ public class CacheManager {
             } else {
                 redissonConfig.setCodec(new JsonJacksonCodec());
             }
+            redissonConfigKey += ":" + codec.toUpperCase();
 
             redisState = true;
 
 //            redissonClient = Redisson.create(redissonConfig);
             redissonClient = null;
+
+            if (cache.getLocalMaxSize() > 0) {
+                localCache = new LocalCache(cache.getLocalMaxSize(), TimeUnit.SECONDS.toMillis(cache.getLocalTtl()));
+            }
         }
     }
 
@@ -99,21 +141,34 @@ public class CacheManager {
         QueryResult<T> queryResult = new QueryResult<>();
         if (isActive()) {
             long start = System.currentTimeMillis();
-            RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
-
-            try {
-                // We only retrieve the first field of the HASH, which is the only one that exist.
-                Map<Integer, Map<String, Object>> result = map.getAll(new HashSet<>(Collections.singletonList(0)));
+            String localKey = getLocalKey(key);
+            if (localCache != null) {
+                QueryResult<T> localResult = localCache.get(localKey);
+                if (localResult != null) {
+                    localResult.setDbTime((int) (System.currentTimeMillis() - start));
+                    return localResult;
+                }
+            }
 
-                if (result != null && !result.isEmpty()) {
-                    Object resultMap = result.get(0).get("result");
-                    queryResult = (QueryResult<T>) resultMap;
-                    queryResult.setDbTime((int) (System.currentTimeMillis() - start));
+            if (isRemoteActive()) {
+                try {
+                    RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
+                    // We only retrieve the first field of the HASH, which is the only one that exist.
+                    Map<Integer, Map<String, Object>> result = map.getAll(new HashSet<>(Collections.singletonList(0)));
+
+                    if (result != null && !result.isEmpty()) {
+                        Object resultMap = result.get(0).get("result");
+                        queryResult = (QueryResult<T>) resultMap;
+                        if (localCache != null) {
+                            localCache.put(localKey, queryResult);
+                        }
+                        queryResult.setDbTime((int) (System.currentTimeMillis() - start));
+                    }
+                } catch (RedisException e) {
+                    redisState = false;
+                    queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
+                    return queryResult;
                 }
-            } catch (RedisConnectionException e) {
-                redisState = false;
-                queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
-                return queryResult;
             }
         }
         return queryResult;
@@ -122,15 +177,20 @@ public class CacheManager {
     public void set(String key, Query query, QueryResult queryResult) {
 
         if (isActive()) {
-            if (queryResult.getDbTime() >= storageConfiguration.getCache().getSlowThreshold()
-                    && queryResult.getResult().size() >= storageConfiguration.getCache().getMaxResultSize()) {
-                RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
+            if (queryResult.getDbTime() < storageConfiguration.getCache().getSlowThreshold()) {
+                return;
+            }
+            if (localCache != null) {
+                localCache.put(getLocalKey(key), queryResult);
+            }
+            if (isRemoteActive() && queryResult.getResult().size() >= storageConfiguration.getCache().getMaxResultSize()) {
                 Map<String, Object> record = new HashMap<>();
                 record.put("query", query);
                 record.put("result", queryResult);
                 try {
+                    RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
                     map.fastPut(0, record);
-                } catch (RedisConnectionException e) {
+                } catch (RedisException e) {
                     redisState = false;
                     queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
                 }
@@ -138,6 +198,20 @@ public class CacheManager {
         }
     }
 
+    /**
+     * Build the cache key for a query over a study.
+     *
+     * The key contains the epoch of the study stored in Redis, that is increased by {@link #invalidate(String)}. Any
+     * modification of the study changes the epoch, making all the previous entries unreachable, without having to scan
+     * the keys. Unreachable entries are eventually evicted. The key does not depend on the process, so the entries
+     * stored in Redis are shared by all of them.
+     *
+     * @param studyId       Study id
+     * @param allowedType   Type of cached element. aln or var
+     * @param query         Query
+     * @param queryOptions  Query options
+     * @return              Cache key
+     */
     public String createKey(String studyId, String allowedType, Query query, QueryOptions queryOptions) {
 
         queryOptions.remove("cache");
@@ -145,6 +219,7 @@ public class CacheManager {
 
         StringBuilder key = new StringBuilder(PREFIX_DATABASE_KEY);
         key.append(studyId).append(":").append(allowedType);
+        key.append(":v").append(getStudyEpoch(studyId));
         SortedMap<String, SortedSet<Object>> map = new TreeMap<>();
 
         for (String item : query.keySet()) {
@@ -162,8 +237,91 @@ public class CacheManager {
         return key.toString();
     }
 
+    /**
+     * The cache is active if any of the levels is available. The in-process cache does not depend on Redis,
+     * so it keeps working when Redis is not reachable.
+     *
+     * @return if the cache is active
+     */
     public boolean isActive() {
-        return storageConfiguration.getCache().isActive() && redisState;
+        return storageConfiguration != null && storageConfiguration.getCache().isActive() && (localCache != null || redisState);
+    }
+
+    public boolean isRemoteActive() {
+        return redisState;
+    }
+
+    /**
+     * Get the epoch of the study stored in Redis, shared by all the processes.
+     *
+     * The epoch is read again at most every {@link #REMOTE_EPOCH_REFRESH_MILLIS}, so the invalidations from other
+     * processes take up to that time to be seen. If Redis is not reachable, the last epoch read is used.
+     *
+     * @param studyId Study id
+     * @return        Epoch of the study
+     */
+    public String getStudyEpoch(String studyId) {
+        return String.valueOf(getRemoteEpoch(studyId));
+    }
+
+    /**
+     * Get the key of the local cache. The epoch of this process is added to the key, so the local cache is invalidated
+     * even if Redis is not reachable.
+     *
+     * @param key Key created with {@link #createKey}, as ocga:{study}:{type}:v{epoch}:{sha1}
+     * @return    Key for the local cache
+     */
+    String getLocalKey(String key) {
+        int end = key.length();
+        for (int i = 0; i < 3; i++) {
+            end = key.lastIndexOf(':', end - 1);
+            if (end < 0) {
+                return key;
+            }
+        }
+        if (!key.startsWith(PREFIX_DATABASE_KEY) || end < PREFIX_DATABASE_KEY.length()) {
+            return key;
+        }
+        AtomicLong localEpoch = LOCAL_EPOCHS.get(key.substring(PREFIX_DATABASE_KEY.length(), end));
+        return key + "." + (localEpoch == null ? 0 : localEpoch.get());
+    }
+
+    /**
+     * Invalidate all the cached results of a study, in O(1). Increases the epoch of the study, so any key created
+     * from now on will be different. Previous entries are no longer reachable, and will be eventually evicted.
+     *
+     * @param studyId Study id
+     * @return        New epoch of the study
+     */
+    public String invalidate(String studyId) {
+        LOCAL_EPOCHS.computeIfAbsent(studyId, s -> new AtomicLong()).incrementAndGet();
+        if (isActive() && isRemoteActive()) {
+            try {
+                long epoch = getRemoteEpochCounter(studyId).incrementAndGet();
+                remoteEpochs.put(studyId, new RemoteEpoch(epoch, System.currentTimeMillis()));
+            } catch (RedisException e) {
+                redisState = false;
+            }
+        }
+        return getStudyEpoch(studyId);
+    }
+
+    private long getRemoteEpoch(String studyId) {
+        RemoteEpoch remoteEpoch = remoteEpochs.get(studyId);
+        long now = System.currentTimeMillis();
+        if ((remoteEpoch == null || now - remoteEpoch.timestamp > REMOTE_EPOCH_REFRESH_MILLIS) && isActive() && isRemoteActive()) {
+            try {
+                remoteEpoch = new RemoteEpoch(getRemoteEpochCounter(studyId).get(), now);
+                remoteEpochs.put(studyId, remoteEpoch);
+            } catch (RedisException e) {
+                redisState = false;
+            }
+        }
+        return remoteEpoch == null ? 0 : remoteEpoch.epoch;
+    }
+
+    private RAtomicLong getRemoteEpochCounter(String studyId) {
+        return getRedissonClient().getAtomicLong(PREFIX_EPOCH_KEY + studyId);
     }
 
     public boolean isTypeAllowed(String type) {
@@ -171,27 +329,68 @@ public class CacheManager {
     }
 
     public void clear() {
-        RKeys redisKeys = getRedissonClient().getKeys();
-        redisKeys.deleteByPattern(PREFIX_DATABASE_KEY + "*");
+        if (localCache != null) {
+            localCache.clear(PREFIX_DATABASE_KEY + "*");
+        }
+        if (isRemoteActive()) {
+            RKeys redisKeys = getRedissonClient().getKeys();
+            redisKeys.deleteByPattern(PREFIX_DATABASE_KEY + "*");
+        }
     }
 
     public void clear(Pattern pattern) {
-        RKeys redisKeys = getRedissonClient().getKeys();
-        redisKeys.deleteByPattern(pattern.toString());
+        if (localCache != null) {
+            localCache.clear(pattern.toString());
+        }
+        if (isRemoteActive()) {
+            RKeys redisKeys = getRedissonClient().getKeys();
+            redisKeys.deleteByPattern(pattern.toString());
+        }
+    }
+
+    public LocalCache getLocalCache() {
+        return localCache;
     }
 
     public void close() {
-        if (redissonClient != null) {
-            redissonClient.shutdown();
-            redissonClient = null;
+        if (localCache != null) {
+            localCache.clear();
+        }
+        synchronized (this) {
+            if (redissonClient != null) {
+                releaseRedissonClient(redissonConfigKey);
+                redissonClient = null;
+            }
         }
     }
 
     private synchronized RedissonClient getRedissonClient() {
         if (redissonClient == null) {
-            redissonClient = Redisson.create(redissonConfig);
+            redissonClient = acquireRedissonClient(redissonConfigKey, redissonConfig);
         }
         return redissonClient;
     }
 
+    private static RedissonClient acquireRedissonClient(String configKey, Config config) {
+        synchronized (REDISSON_CLIENTS) {
+            SharedClient sharedClient = REDISSON_CLIENTS.get(configKey);
+            if (sharedClient == null) {
+                sharedClient = new SharedClient(Redisson.create(config));
+                REDISSON_CLIENTS.put(configKey, sharedClient);
+            }
+            sharedClient.references++;
+            return sharedClient.client;
+        }
+    }
+
+    private static void releaseRedissonClient(String configKey) {
+        synchronized (REDISSON_CLIENTS) {
+            SharedClient sharedClient = REDISSON_CLIENTS.get(configKey);
+            if (sharedClient != null && --sharedClient.references == 0) {
+                REDISSON_CLIENTS.remove(configKey);
+                sharedClient.client.shutdown();
+            }
+        }
+    }
+
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.cache;
+
+import org.opencb.commons.datastore.core.QueryResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+/**
+ * In-process, size bounded, LRU cache of {@link QueryResult}. Used as first level cache in front of the remote Redis cache.
+ *
+ * Each entry is weighed in bytes when inserted. Least recently used entries are evicted until the total weight
+ * is below the configured maximum. Entries older than the TTL are discarded on read.
+ */
+public class LocalCache {
+
+    /** Approximate fixed overhead, in bytes, of each cached entry: key, map node, wrappers. */
+    static final long ENTRY_OVERHEAD = 256;
+    /** Approximate size, in bytes, of each element of a result. An annotated variant takes usually a few KB. */
+    static final long RESULT_WEIGHT = 2048;
+
+    private final long maxWeight;
+    private final long ttlMillis;
+    private final ToLongFunction<QueryResult> weigher;
+    private final LinkedHashMap<String, Entry> map;
+    private long weight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static final class Entry {
+        private final QueryResult queryResult;
+        private final long weight;
+        private final long expireTime;
+
+        private Entry(QueryResult queryResult, long weight, long expireTime) {
+            this.queryResult = queryResult;
+            this.weight = weight;
+            this.expireTime = expireTime;
+        }
+    }
+
+    public LocalCache(long maxWeight, long ttlMillis) {
+        this(maxWeight, ttlMillis, LocalCache::estimateWeight);
+    }
+
+    public LocalCache(long maxWeight, long ttlMillis, ToLongFunction<QueryResult> weigher) {
+        this.maxWeight = maxWeight;
+        this.ttlMillis = ttlMillis;
+        this.weigher = weigher;
+        // Access ordered map. Iteration order is from the least recently accessed to the most recently accessed.
+        this.map = new LinkedHashMap<>(64, 0.75f, true);
+        this.weight = 0;
+    }
+
+    public synchronized <T> QueryResult<T> get(String key) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (isExpired(entry, System.currentTimeMillis())) {
+            remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(entry.queryResult);
+    }
+
+    /**
+     * Add a QueryResult to the cache.
+     *
+     * @param key           Cache key
+     * @param queryResult   QueryResult to store
+     * @return              If the element was finally stored. Elements heavier than the whole cache are never stored.
+     */
+    public synchronized boolean put(String key, QueryResult queryResult) {
+        long entryWeight = weigher.applyAsLong(queryResult) + ENTRY_OVERHEAD;
+        remove(key);
+        if (entryWeight > maxWeight) {
+            return false;
+        }
+        long expireTime = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        map.put(key, new Entry(copy(queryResult), entryWeight, expireTime));
+        weight += entryWeight;
+        evict();
+        return true;
+    }
+
+    public synchronized void remove(String key) {
+        Entry entry = map.remove(key);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    /**
+     * Remove all the entries with a key matching the glob-style pattern used by Redis.
+     *
+     * @param keyPattern Redis key pattern. e.g. "ocga:*"
+     */
+    public synchronized void clear(String keyPattern) {
+        Pattern pattern = Pattern.compile(globToRegex(keyPattern));
+        Iterator<Map.Entry<String, Entry>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (pattern.matcher(entry.getKey()).matches()) {
+                weight -= entry.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = map.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            weight -= entry.weight;
+            iterator.remove();
+            if (!isExpired(entry, now)) {
+                evictions++;
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return entry.expireTime < now;
+    }
+
+    /**
+     * Copy of the QueryResult and its list of results, so callers can modify the returned object (e.g. dbTime, warnings
+     * or the list itself) without altering the cached element. Elements of the list are shared, and must not be modified.
+     */
+    private static <T> QueryResult<T> copy(QueryResult<T> queryResult) {
+        List<T> result = queryResult.getResult() == null ? null : new ArrayList<>(queryResult.getResult());
+        return new QueryResult<>(queryResult.getId(), queryResult.getDbTime(), queryResult.getNumResults(),
+                queryResult.getNumTotalResults(), queryResult.getWarningMsg(), queryResult.getErrorMsg(), result);
+    }
+
+    /**
+     * Cheap estimation of the in-memory size of a QueryResult, from the number of elements, as {@link #RESULT_WEIGHT}
+     * bytes each. Does not look into the elements, as this is done for every insertion.
+     *
+     * @param queryResult QueryResult to weigh
+     * @return Approximate size in bytes
+     */
+    static long estimateWeight(QueryResult queryResult) {
+        List<?> result = queryResult.getResult();
+        return result == null ? 0 : result.size() * RESULT_WEIGHT;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            switch (c) {
+                case '*':
+                    sb.append(".*");
+                    break;
+                case '?':
+                    sb.append('.');
+                    break;
+                default:
+                    sb.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "LocalCache{"
+                + "maxWeight=" + maxWeight
+                + ", ttlMillis=" + ttlMillis
+                + ", size=" + size()
+                + ", weight=" + getWeight()
+                + ", hits=" + getHits()
+                + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions()
+                + '}';
+    }
+}
@@ -40,12 +40,24 @@ public class CacheConfiguration {
      */
     private String allowedTypes;
 
+    /**
+     * Max size in bytes of the in-process cache in front of Redis. Use 0 to disable it.
+     */
+    private long localMaxSize;
+
+    /**
+     * Time to live in seconds of the elements of the in-process cache. Use 0 for no expiration.
+     */
+    private long localTtl;
+
     public static final boolean DEFAULT_ACTVE = true;
     public static final String DEFAULT_SERIALIZATION = "json";
     public static final String DEFAULT_ALLOWED_TYPE = "aln,var";
     public static final String DEFAULT_HOST = "localhost:6379";
     public static final String DEFAULT_PASSWORD = "";
     public static final int DEFAULT_MAX_FILE_SIZE = 500;
+    public static final long DEFAULT_LOCAL_MAX_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_LOCAL_TTL = 600;
 
     public CacheConfiguration() {
         this(DEFAULT_HOST, DEFAULT_ACTVE, DEFAULT_SERIALIZATION, 50, DEFAULT_MAX_FILE_SIZE, DEFAULT_PASSWORD,
@@ -61,6 +73,8 @@ public class CacheConfiguration {
         this.maxResultSize = maxFileSize;
         this.password = password;
         this.allowedTypes = allowedTypes;
+        this.localMaxSize = DEFAULT_LOCAL_MAX_SIZE;
+        this.localTtl = DEFAULT_LOCAL_TTL;
     }
 
     @Override
@@ -72,6 +86,8 @@ public class CacheConfiguration {
                 + ", slowThreshold=" + slowThreshold
                 + ", maxResultSize=" + maxResultSize
                 + ", allowedTypes='" + allowedTypes + '\''
+                + ", localMaxSize=" + localMaxSize
+                + ", localTtl=" + localTtl
                 + '}');
         return sb.toString();
     }
@@ -138,4 +154,22 @@ public class CacheConfiguration {
         this.allowedTypes = allowedTypes;
         return this;
     }
+
+    public long getLocalMaxSize() {
+        return localMaxSize;
+    }
+
+    public CacheConfiguration setLocalMaxSize(long localMaxSize) {
+        this.localMaxSize = localMaxSize;
+        return this;
+    }
+
+    public long getLocalTtl() {
+        return localTtl;
+    }
+
+    public CacheConfiguration setLocalTtl(long localTtl) {
+        this.localTtl = localTtl;
+        return this;
+    }
 }
@@ -29,6 +29,9 @@ public class SearchConfiguration {
     private boolean active;
     private int timeout;
     private int rows;
+    private int insertBatchSize;
+    private int insertThreads;
+    private int commitWithin;
 
     private static final String DEFAULT_HOST = "localhost:8983/solr/";
     private static final String DEFAULT_MODE = "cloud";
@@ -37,6 +40,9 @@ public class SearchConfiguration {
     private static final boolean DEFAULT_ACTIVE = true;
     private static final int DEFAULT_TIMEOUT = 30000;
     private static final int DEFAULT_ROWS = 10000;
+    private static final int DEFAULT_INSERT_BATCH_SIZE = 10000;
+    private static final int DEFAULT_INSERT_THREADS = 4;
+    private static final int DEFAULT_COMMIT_WITHIN = 60000;
 
     public SearchConfiguration() {
         this(DEFAULT_HOST, DEFAULT_MODE, DEFAULT_USER, DEFAULT_PASSWORD, DEFAULT_ACTIVE, DEFAULT_TIMEOUT, DEFAULT_ROWS);
@@ -50,6 +56,9 @@ public class SearchConfiguration {
         this.active = active;
         this.timeout = timeout;
         this.rows = rows;
+        this.insertBatchSize = DEFAULT_INSERT_BATCH_SIZE;
+        this.insertThreads = DEFAULT_INSERT_THREADS;
+        this.commitWithin = DEFAULT_COMMIT_WITHIN;
     }
 
     @Override
@@ -61,6 +70,9 @@ public class SearchConfiguration {
         sb.append(", active=").append(active);
         sb.append(", timeout=").append(timeout);
         sb.append(", rows=").append(rows);
+        sb.append(", insertBatchSize=").append(insertBatchSize);
+        sb.append(", insertThreads=").append(insertThreads);
+        sb.append(", commitWithin=").append(commitWithin);
         sb.append('}');
         return sb.toString();
     }
@@ -126,4 +138,36 @@ public class SearchConfiguration {
         this.rows = rows;
         return this;
     }
+
+    public int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    public SearchConfiguration setInsertBatchSize(int insertBatchSize) {
+        this.insertBatchSize = insertBatchSize;
+        return this;
+    }
+
+    public int getInsertThreads() {
+        return insertThreads;
+    }
+
+    public SearchConfiguration setInsertThreads(int insertThreads) {
+        this.insertThreads = insertThreads;
+        return this;
+    }
+
+    /**
+     * Maximum time, in milliseconds, before the documents added while loading are committed (soft commit) by Solr.
+     *
+     * @return commitWithin time in milliseconds
+     */
+    public int getCommitWithin() {
+        return commitWithin;
+    }
+
+    public SearchConfiguration setCommitWithin(int commitWithin) {
+        this.commitWithin = commitWithin;
+        return this;
+    }
 }
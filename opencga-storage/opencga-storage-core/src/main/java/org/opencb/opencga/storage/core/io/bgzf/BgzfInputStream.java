@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.opencb.opencga.storage.core.io.bgzf.BgzfOutputStream.BLOCK_FOOTER_LENGTH;
+
+/**
+ * Reads BGZF (blocked gzip) compressed data, as written by bgzip or {@link BgzfOutputStream}.
+ *
+ * The compressed blocks are read in order by the calling thread, and inflated ahead by a pool of threads.
+ */
+public class BgzfInputStream extends InputStream {
+
+    // Fixed part of the gzip header, before the extra subfields
+    private static final int FIXED_HEADER_LENGTH = 12;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final int maxPendingBlocks;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private byte[] block = EMPTY;
+    private int blockPosition = 0;
+    private boolean endOfInput = false;
+    private boolean closed = false;
+
+    public BgzfInputStream(InputStream in, int threads) {
+        this.in = in;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "bgzf-inflate-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        maxPendingBlocks = Math.max(1, threads) * 2;
+    }
+
+    /**
+     * Check if the given file is BGZF compressed, reading the header of the first block.
+     *
+     * @param path  File to check
+     * @return      If the file is BGZF compressed
+     * @throws IOException  If there is an error reading the file
+     */
+    public static boolean isBgzf(Path path) throws IOException {
+        try (InputStream is = Files.newInputStream(path)) {
+            byte[] header = new byte[FIXED_HEADER_LENGTH + 6];
+            int read = 0;
+            while (read < header.length) {
+                int n = is.read(header, read, header.length - read);
+                if (n < 0) {
+                    return false;
+                }
+                read += n;
+            }
+            return isBgzfHeader(header);
+        }
+    }
+
+    private static boolean isBgzfHeader(byte[] header) {
+        return header[0] == 31 && header[1] == -117 && header[2] == 8 && (header[3] & 4) != 0
+                && header[12] == 'B' && header[13] == 'C' && header[14] == 2 && header[15] == 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBlockIfNeeded()) {
+            return -1;
+        }
+        return block[blockPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBlockIfNeeded()) {
+            return -1;
+        }
+        int length = Math.min(len, block.length - blockPosition);
+        System.arraycopy(block, blockPosition, b, off, length);
+        blockPosition += length;
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return block.length - blockPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            executor.shutdownNow();
+            in.close();
+        }
+    }
+
+    /**
+     * Move to the next non empty block, if the current one is exhausted.
+     *
+     * @return  false if there are no more blocks
+     * @throws IOException  If there is an error reading or inflating the data
+     */
+    private boolean nextBlockIfNeeded() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (blockPosition == block.length) {
+            submitBlocks();
+            if (pendingBlocks.isEmpty()) {
+                return false;
+            }
+            try {
+                block = pendingBlocks.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while inflating BGZF block");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Error inflating BGZF block", e.getCause());
+            }
+            blockPosition = 0;
+        }
+        return true;
+    }
+
+    private void submitBlocks() throws IOException {
+        while (!endOfInput && pendingBlocks.size() < maxPendingBlocks) {
+            byte[] compressedBlock = readCompressedBlock();
+            if (compressedBlock == null) {
+                endOfInput = true;
+            } else {
+                pendingBlocks.add(executor.submit(() -> inflateBlock(compressedBlock)));
+            }
+        }
+    }
+
+    /**
+     * Read the next compressed block.
+     *
+     * @return  Complete compressed block, or null if the end of the input was reached
+     * @throws IOException  If the block is not valid
+     */
+    private byte[] readCompressedBlock() throws IOException {
+        byte[] header = new byte[FIXED_HEADER_LENGTH];
+        int read = readFully(header, 0, header.length);
+        if (read == 0) {
+            return null;
+        } else if (read < header.length || header[0] != 31 || header[1] != -117 || (header[3] & 4) == 0) {
+            throw new IOException("Not a BGZF block");
+        }
+        int extraLength = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+        byte[] extra = new byte[extraLength];
+        if (readFully(extra, 0, extraLength) < extraLength) {
+            throw new EOFException("Truncated BGZF block");
+        }
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extraLength; ) {
+            int subfieldLength = (extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8;
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && subfieldLength == 2) {
+                blockSize = ((extra[i + 4] & 0xFF) | (extra[i + 5] & 0xFF) << 8) + 1;
+            }
+            i += 4 + subfieldLength;
+        }
+        if (blockSize < 0) {
+            throw new IOException("Not a BGZF block. Missing BC subfield");
+        }
+
+        byte[] compressedBlock = new byte[blockSize];
+        System.arraycopy(header, 0, compressedBlock, 0, header.length);
+        System.arraycopy(extra, 0, compressedBlock, header.length, extraLength);
+        int offset = header.length + extraLength;
+        if (readFully(compressedBlock, offset, blockSize - offset) < blockSize - offset) {
+            throw new EOFException("Truncated BGZF block");
+        }
+        return compressedBlock;
+    }
+
+    private int readFully(byte[] b, int off, int len) throws IOException {
+        int read = 0;
+        while (read < len) {
+            int n = in.read(b, off + read, len - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    static byte[] inflateBlock(byte[] compressedBlock) throws IOException {
+        int extraLength = (compressedBlock[10] & 0xFF) | (compressedBlock[11] & 0xFF) << 8;
+        int dataOffset = FIXED_HEADER_LENGTH + extraLength;
+        int footer = compressedBlock.length - BLOCK_FOOTER_LENGTH;
+        int expectedCrc = readInt(compressedBlock, footer);
+        int uncompressedLength = readInt(compressedBlock, footer + 4);
+
+        byte[] data = new byte[uncompressedLength];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressedBlock, dataOffset, footer - dataOffset);
+            int inflated = 0;
+            while (inflated < uncompressedLength && !inflater.finished()) {
+                int n = inflater.inflate(data, inflated, uncompressedLength - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != uncompressedLength) {
+                throw new IOException("Corrupted BGZF block. Expected " + uncompressedLength + " bytes, found " + inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted BGZF block", e);
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, data.length);
+        if ((int) crc32.getValue() != expectedCrc) {
+            throw new IOException("Corrupted BGZF block. CRC32 mismatch");
+        }
+        return data;
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8 | (buffer[offset + 2] & 0xFF) << 16
+                | (buffer[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes BGZF (blocked gzip) compressed data, as used by bgzip and tabix.
+ *
+ * The data is split in blocks of up to 64KB, which are deflated by a pool of threads and written in order.
+ * The output is a valid multi-member gzip file.
+ *
+ * {@link #flush()} only writes the already compressed blocks. The current block is not closed until it is full,
+ * or the stream is closed.
+ */
+public class BgzfOutputStream extends OutputStream {
+
+    static final int MAX_BLOCK_SIZE = 64 * 1024;
+    static final int BLOCK_HEADER_LENGTH = 18;
+    static final int BLOCK_FOOTER_LENGTH = 8;
+    // Same as htsjdk. Leaves room for the deflate overhead of uncompressible data.
+    static final int UNCOMPRESSED_BLOCK_SIZE = 64 * 1024 - 38;
+    static final byte[] EOF_BLOCK = {
+            31, -117, 8, 4, 0, 0, 0, 0, 0, -1, 6, 0, 66, 67, 2, 0, 27, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+    };
+
+    /**
+     * Listener to be notified of every block written.
+     */
+    @FunctionalInterface
+    public interface BlockListener {
+        /**
+         * Called in order for every data block written into the output.
+         *
+         * @param uncompressedStart     Position of the block in the uncompressed data
+         * @param uncompressedLength    Uncompressed size of the block
+         * @param compressedStart       Position of the block in the compressed output
+         * @param compressedLength      Compressed size of the block
+         */
+        void onBlock(long uncompressedStart, int uncompressedLength, long compressedStart, int compressedLength);
+    }
+
+    private static final class PendingBlock {
+        private final long uncompressedStart;
+        private final int uncompressedLength;
+        private final Future<byte[]> block;
+
+        private PendingBlock(long uncompressedStart, int uncompressedLength, Future<byte[]> block) {
+            this.uncompressedStart = uncompressedStart;
+            this.uncompressedLength = uncompressedLength;
+            this.block = block;
+        }
+    }
+
+    private final OutputStream out;
+    private final int compressionLevel;
+    private final ExecutorService executor;
+    private final int maxPendingBlocks;
+    private final Deque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+    private BlockListener listener;
+    private byte[] buffer = new byte[UNCOMPRESSED_BLOCK_SIZE];
+    private int bufferLength = 0;
+    // Uncompressed position of the current block
+    private long uncompressedPosition = 0;
+    private long compressedPosition = 0;
+    private boolean closed = false;
+
+    public BgzfOutputStream(OutputStream out) {
+        this(out, 1);
+    }
+
+    public BgzfOutputStream(OutputStream out, int threads) {
+        this(out, threads, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public BgzfOutputStream(OutputStream out, int threads, int compressionLevel) {
+        this.out = out;
+        this.compressionLevel = compressionLevel;
+        if (threads > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "bgzf-deflate-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            maxPendingBlocks = threads * 2;
+        } else {
+            executor = null;
+            maxPendingBlocks = 0;
+        }
+    }
+
+    public BgzfOutputStream setListener(BlockListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * @return Number of uncompressed bytes written into this stream.
+     */
+    public long getPosition() {
+        return uncompressedPosition + bufferLength;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkOpen();
+        buffer[bufferLength++] = (byte) b;
+        if (bufferLength == buffer.length) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkOpen();
+        while (len > 0) {
+            int length = Math.min(len, buffer.length - bufferLength);
+            System.arraycopy(b, off, buffer, bufferLength, length);
+            bufferLength += length;
+            off += length;
+            len -= length;
+            if (bufferLength == buffer.length) {
+                submitBlock();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peek().block.isDone()) {
+            writePendingBlock();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (bufferLength > 0) {
+                submitBlock();
+            }
+            while (!pendingBlocks.isEmpty()) {
+                writePendingBlock();
+            }
+            out.write(EOF_BLOCK);
+            compressedPosition += EOF_BLOCK.length;
+        } finally {
+            closed = true;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            out.close();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = buffer;
+        int length = bufferLength;
+        long start = uncompressedPosition;
+        buffer = new byte[UNCOMPRESSED_BLOCK_SIZE];
+        bufferLength = 0;
+        uncompressedPosition += length;
+
+        if (executor == null) {
+            writeBlock(start, length, compressBlock(data, length, compressionLevel));
+        } else {
+            pendingBlocks.add(new PendingBlock(start, length, executor.submit(() -> compressBlock(data, length, compressionLevel))));
+            while (pendingBlocks.size() > maxPendingBlocks) {
+                writePendingBlock();
+            }
+        }
+    }
+
+    private void writePendingBlock() throws IOException {
+        PendingBlock pendingBlock = pendingBlocks.poll();
+        byte[] block;
+        try {
+            block = pendingBlock.block.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing BGZF block");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error compressing BGZF block", e.getCause());
+        }
+        writeBlock(pendingBlock.uncompressedStart, pendingBlock.uncompressedLength, block);
+    }
+
+    private void writeBlock(long uncompressedStart, int uncompressedLength, byte[] block) throws IOException {
+        out.write(block);
+        if (listener != null) {
+            listener.onBlock(uncompressedStart, uncompressedLength, compressedPosition, block.length);
+        }
+        compressedPosition += block.length;
+    }
+
+    /**
+     * Compress the data into a BGZF block.
+     *
+     * @param data              Uncompressed data
+     * @param length            Length of the data. Up to {@link #UNCOMPRESSED_BLOCK_SIZE}
+     * @param compressionLevel  Deflate compression level
+     * @return                  Complete BGZF block
+     * @throws IOException      If the compressed data does not fit in a block
+     */
+    static byte[] compressBlock(byte[] data, int length, int compressionLevel) throws IOException {
+        byte[] block = new byte[MAX_BLOCK_SIZE];
+        int maxCompressedLength = MAX_BLOCK_SIZE - BLOCK_HEADER_LENGTH - BLOCK_FOOTER_LENGTH;
+        int compressedLength = deflate(data, length, block, maxCompressedLength, compressionLevel);
+        if (compressedLength < 0) {
+            // Uncompressible data. Store without compression
+            compressedLength = deflate(data, length, block, maxCompressedLength, Deflater.NO_COMPRESSION);
+            if (compressedLength < 0) {
+                throw new IOException("Unable to fit " + length + " bytes in a BGZF block");
+            }
+        }
+        int blockLength = BLOCK_HEADER_LENGTH + compressedLength + BLOCK_FOOTER_LENGTH;
+
+        // Header. Gzip header with the BGZF extra subfield "BC", containing the total block size minus 1
+        block[0] = 31;
+        block[1] = -117;
+        block[2] = 8;   // CM = deflate
+        block[3] = 4;   // FLG = FEXTRA
+        // MTIME(4) = 0, XFL = 0
+        block[9] = -1;  // OS = unknown
+        block[10] = 6;  // XLEN = 6
+        block[12] = 'B';
+        block[13] = 'C';
+        block[14] = 2;  // SLEN = 2
+        writeShort(block, 16, blockLength - 1);
+
+        // Footer. CRC32 and uncompressed size
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, length);
+        int footer = BLOCK_HEADER_LENGTH + compressedLength;
+        writeInt(block, footer, (int) crc32.getValue());
+        writeInt(block, footer + 4, length);
+
+        return Arrays.copyOf(block, blockLength);
+    }
+
+    private static int deflate(byte[] data, int length, byte[] block, int maxCompressedLength, int compressionLevel) {
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            int compressedLength = deflater.deflate(block, BLOCK_HEADER_LENGTH, maxCompressedLength);
+            return deflater.finished() ? compressedLength : -1;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeShort(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        writeShort(buffer, offset, value);
+        writeShort(buffer, offset + 2, value >>> 16);
+    }
+}
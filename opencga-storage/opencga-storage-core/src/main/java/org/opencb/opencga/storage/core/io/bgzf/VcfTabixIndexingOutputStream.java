@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import htsjdk.tribble.SimpleFeature;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Builds a tabix index of the VCF written into a {@link BgzfOutputStream}, while it is being written.
+ *
+ * Each record is indexed with the virtual file offset of the start of its line, resolved once the BGZF block containing
+ * the line is written. The index is written when the stream is closed. Records must be sorted by position, and records
+ * from the same chromosome must be contiguous. Otherwise, no index is written.
+ */
+public class VcfTabixIndexingOutputStream extends FilterOutputStream implements BgzfOutputStream.BlockListener {
+
+    private static final int INFO_COLUMN = 7;
+
+    private final File indexFile;
+    private final TabixIndexCreator indexCreator = new TabixIndexCreator(TabixFormat.VCF);
+    // Records waiting for the address of its block, or for the end of its line
+    private final Deque<Record> records = new ArrayDeque<>();
+    private final Logger logger = LoggerFactory.getLogger(VcfTabixIndexingOutputStream.class);
+
+    // First columns of the current line, up to the INFO column
+    private byte[] columns = new byte[256];
+    private int columnsLength;
+    private int tabs;
+    private long position = 0;
+    private Record currentRecord;
+    private boolean headerLine;
+    private boolean lineStart = true;
+    private long endOfData = 0;
+    private boolean indexing = true;
+    private boolean closed = false;
+
+    private static final class Record {
+        private final long position;
+        private long virtualOffset = -1;
+        private SimpleFeature feature;
+
+        private Record(long position) {
+            this.position = position;
+        }
+    }
+
+    public VcfTabixIndexingOutputStream(BgzfOutputStream out, File indexFile) {
+        super(out);
+        this.indexFile = indexFile;
+        out.setListener(this);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        scan((byte) b);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            scan(b[i]);
+        }
+        out.write(b, off, len);
+    }
+
+    private void scan(byte b) {
+        if (lineStart) {
+            lineStart = false;
+            headerLine = b == '#';
+            columnsLength = 0;
+            tabs = 0;
+            if (!headerLine && indexing) {
+                currentRecord = new Record(position);
+                records.add(currentRecord);
+            }
+        }
+        if (b == '\n') {
+            if (currentRecord != null) {
+                currentRecord.feature = parseFeature();
+                currentRecord = null;
+                addResolvedRecords();
+            }
+            lineStart = true;
+        } else if (currentRecord != null && tabs <= INFO_COLUMN) {
+            if (b == '\t') {
+                tabs++;
+            }
+            if (columnsLength == columns.length) {
+                columns = Arrays.copyOf(columns, columns.length * 2);
+            }
+            columns[columnsLength++] = b;
+        }
+        position++;
+    }
+
+    private SimpleFeature parseFeature() {
+        String[] split = new String(columns, 0, columnsLength, StandardCharsets.UTF_8).split("\t");
+        String chromosome = split[0];
+        int start = Integer.parseInt(split[1]);
+        int end = start + Math.max(split[3].length(), 1) - 1;
+        if (split.length > INFO_COLUMN) {
+            for (String info : split[INFO_COLUMN].split(";")) {
+                if (info.startsWith("END=")) {
+                    end = Integer.parseInt(info.substring(4));
+                    break;
+                }
+            }
+        }
+        return new SimpleFeature(chromosome, start, end);
+    }
+
+    @Override
+    public void onBlock(long uncompressedStart, int uncompressedLength, long compressedStart, int compressedLength) {
+        for (Record record : records) {
+            if (record.position >= uncompressedStart + uncompressedLength) {
+                break;
+            } else if (record.virtualOffset < 0) {
+                record.virtualOffset = (compressedStart << 16) | (record.position - uncompressedStart);
+            }
+        }
+        endOfData = (compressedStart + compressedLength) << 16;
+        addResolvedRecords();
+    }
+
+    private void addResolvedRecords() {
+        while (!records.isEmpty() && records.peek().virtualOffset >= 0 && records.peek().feature != null) {
+            Record record = records.poll();
+            if (indexing) {
+                try {
+                    indexCreator.addFeature(record.feature, record.virtualOffset);
+                } catch (RuntimeException e) {
+                    logger.warn("Unable to index " + indexFile + ". " + e.getMessage());
+                    indexing = false;
+                    records.clear();
+                    currentRecord = null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.close();
+        if (indexing && records.isEmpty()) {
+            TabixIndex index = (TabixIndex) indexCreator.finalizeIndex(endOfData);
+            index.write(indexFile);
+        } else if (indexing) {
+            logger.warn("Unable to index " + indexFile + ". Last line is not complete");
+        }
+    }
+}
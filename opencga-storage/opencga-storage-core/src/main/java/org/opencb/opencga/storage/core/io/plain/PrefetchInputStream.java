@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.plain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads ahead a channel from a background thread, so the disk reads overlap with the processing of the data.
+ *
+ * The data is read into a small set of large direct buffers, that are recycled once consumed.
+ */
+public class PrefetchInputStream extends InputStream {
+
+    public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_NUM_BUFFERS = 3;
+
+    // Marks the end of the channel
+    private static final ByteBuffer EOF = ByteBuffer.allocate(0);
+
+    private final ReadableByteChannel channel;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private final BlockingQueue<ByteBuffer> filledBuffers;
+    private final Thread prefetchThread;
+    private volatile IOException exception;
+    private ByteBuffer buffer;
+    private boolean closed = false;
+
+    public PrefetchInputStream(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE, DEFAULT_NUM_BUFFERS);
+    }
+
+    public PrefetchInputStream(ReadableByteChannel channel, int bufferSize, int numBuffers) {
+        this.channel = channel;
+        freeBuffers = new ArrayBlockingQueue<>(numBuffers);
+        // One extra slot for the EOF mark
+        filledBuffers = new ArrayBlockingQueue<>(numBuffers + 1);
+        for (int i = 0; i < numBuffers; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        prefetchThread = new Thread(this::prefetch, "prefetch-input");
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+    }
+
+    private void prefetch() {
+        try {
+            while (true) {
+                ByteBuffer byteBuffer = freeBuffers.take();
+                byteBuffer.clear();
+                int read;
+                do {
+                    read = channel.read(byteBuffer);
+                } while (read >= 0 && byteBuffer.hasRemaining());
+                byteBuffer.flip();
+                if (byteBuffer.hasRemaining()) {
+                    filledBuffers.put(byteBuffer);
+                }
+                if (read < 0) {
+                    filledBuffers.put(EOF);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedByInterruptException e) {
+            // Stream closed
+            return;
+        } catch (IOException e) {
+            exception = e;
+        }
+        // Wake up the reader
+        filledBuffers.offer(EOF);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBufferIfNeeded()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBufferIfNeeded()) {
+            return -1;
+        }
+        int length = Math.min(len, buffer.remaining());
+        buffer.get(b, off, length);
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return buffer == null || buffer == EOF ? 0 : buffer.remaining();
+    }
+
+    private boolean nextBufferIfNeeded() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (buffer == EOF) {
+            return false;
+        }
+        if (buffer == null || !buffer.hasRemaining()) {
+            if (buffer != null) {
+                freeBuffers.add(buffer);
+            }
+            try {
+                buffer = filledBuffers.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading ahead");
+            }
+            if (buffer == EOF) {
+                if (exception != null) {
+                    throw exception;
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            prefetchThread.interrupt();
+            channel.close();
+        }
+    }
+}
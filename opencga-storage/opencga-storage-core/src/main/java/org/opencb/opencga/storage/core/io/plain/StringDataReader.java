@@ -17,11 +17,13 @@
 package org.opencb.opencga.storage.core.io.plain;
 
 import org.opencb.commons.io.DataReader;
+import org.opencb.opencga.storage.core.io.bgzf.BgzfInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xerial.snappy.SnappyInputStream;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -37,6 +39,7 @@ public class StringDataReader implements DataReader<String> {
 
     protected BufferedReader reader;
     protected final Path path;
+    protected final int threads;
     protected static Logger logger = LoggerFactory.getLogger(StringDataReader.class);
     protected long readLines = 0L;
     protected long lastAvailable = 0;
@@ -45,7 +48,16 @@ public class StringDataReader implements DataReader<String> {
     private BiConsumer<Long, Long> readLinesListener;
 
     public StringDataReader(Path path) {
+        this(path, 1);
+    }
+
+    /**
+     * @param path      File to read
+     * @param threads   Threads to use for decompressing BGZF files, or for reading ahead plain files.
+     */
+    public StringDataReader(Path path, int threads) {
         this.path = path;
+        this.threads = threads;
     }
 
     @Override
@@ -53,8 +65,15 @@ public class StringDataReader implements DataReader<String> {
         try {
             String fileName = path.toFile().getName();
             lastAvailable = getFileSize();
-            sizeInputStream = new SizeInputStream(new FileInputStream(path.toFile()), lastAvailable);
-            if (fileName.endsWith(".gz")) {
+            if (threads > 1 && !fileName.endsWith(".gz") && !fileName.endsWith(".snappy") && !fileName.endsWith(".snz")) {
+                sizeInputStream = new SizeInputStream(new PrefetchInputStream(FileChannel.open(path)), lastAvailable);
+            } else {
+                sizeInputStream = new SizeInputStream(new FileInputStream(path.toFile()), lastAvailable);
+            }
+            if (fileName.endsWith(".gz") && threads > 1 && BgzfInputStream.isBgzf(path)) {
+                logger.debug("BGZF input compress. Decompress with {} threads", threads);
+                this.reader = new BufferedReader(new InputStreamReader(new BgzfInputStream(sizeInputStream, threads)));
+            } else if (fileName.endsWith(".gz")) {
                 logger.debug("Gzip input compress");
                 this.reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(sizeInputStream)));
             } else if (fileName.endsWith(".snappy") || fileName.endsWith(".snz")) {
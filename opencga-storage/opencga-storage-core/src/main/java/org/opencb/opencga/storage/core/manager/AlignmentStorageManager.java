@@ -38,6 +38,7 @@ import org.opencb.opencga.core.models.Study;
 import org.opencb.opencga.storage.core.StorageEngineFactory;
 import org.opencb.opencga.storage.core.alignment.AlignmentStorageEngine;
 import org.opencb.opencga.storage.core.alignment.iterators.AlignmentIterator;
+import org.opencb.opencga.storage.core.alignment.local.CoveragePyramid;
 import org.opencb.opencga.storage.core.alignment.local.LocalAlignmentStorageEngine;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.manager.models.FileInfo;
@@ -48,6 +49,7 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -121,6 +123,14 @@ public class AlignmentStorageManager extends StorageManager {
         watch.stop();
         logger.info("Stats calculation took {} seconds", watch.getTime() / 1000.0);
 
+        // Keep the coverage in the study workspace, where it is looked for by the coverage queries. The coverage was built from the
+        // link, so it is renamed after the path of the original file.
+        Path coveragePath = CoveragePyramid.getPath(linkedBamFilePath, outDir);
+        if (coveragePath.toFile().exists()) {
+            Files.move(coveragePath, CoveragePyramid.getPath(fileInfo.getPath(), studyInfo.getWorkspace()),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+
         // Create the coverage
         logger.info("Calculating the coverage...");
         watch.reset();
@@ -206,7 +216,7 @@ public class AlignmentStorageManager extends StorageManager {
         StudyInfo studyInfo = getStudyInfo(studyIdStr, fileIdStr, sessionId);
         checkAlignmentBioformat(studyInfo.getFileInfos());
         FileInfo fileInfo = studyInfo.getFileInfo();
-        return alignmentStorageEngine.getDBAdaptor().coverage(fileInfo.getPath(), region, windowSize);
+        return alignmentStorageEngine.getDBAdaptor().coverage(fileInfo.getPath(), studyInfo.getWorkspace(), region, windowSize);
     }
 
 
@@ -223,6 +233,10 @@ public class AlignmentStorageManager extends StorageManager {
         return alignmentStorageEngine.getDBAdaptor().count(studyInfo.getFileInfo().getPath(), query, options);
     }
 
+    public AlignmentStorageEngine getAlignmentStorageEngine() {
+        return alignmentStorageEngine;
+    }
+
     private void checkAlignmentBioformat(List<FileInfo> fileInfo) throws CatalogException {
         for (FileInfo file : fileInfo) {
             if (!file.getBioformat().equals(File.Bioformat.ALIGNMENT)) {
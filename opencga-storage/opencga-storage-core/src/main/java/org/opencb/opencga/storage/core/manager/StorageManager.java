@@ -82,7 +82,19 @@ public abstract class StorageManager {
 
     public void clearCache(String studyId, String sessionId) throws CatalogException {
         String userId = catalogManager.getUserManager().getUserId(sessionId);
+        long id = catalogManager.getStudyManager().getId(userId, studyId);
+        invalidateCache(id);
+    }
 
+    /**
+     * Make unreachable all the cached results of the study. Operations modifying the study invalidate the cache
+     * from the {@link org.opencb.opencga.storage.core.variant.VariantStorageEngine}, so this is only needed to clear it on demand.
+     *
+     * @param studyId Study id
+     */
+    protected void invalidateCache(long studyId) {
+        String epoch = cacheManager.invalidate(String.valueOf(studyId));
+        logger.debug("Invalidated cache for study {}. New epoch: {}", studyId, epoch);
     }
 
 
@@ -76,8 +76,8 @@ public class VariantStorageManager extends StorageManager {
     }
 
     public void clearCache(String studyId, String type, String sessionId) throws CatalogException {
-        String userId = catalogManager.getUserManager().getUserId(sessionId);
-
+        // Cached results are versioned per study, not per type
+        clearCache(studyId, sessionId);
     }
 
     // -------------------------//
@@ -17,7 +17,6 @@
 package org.opencb.opencga.storage.core.variant;
 
 import com.google.common.base.Throwables;
-import com.google.common.collect.Iterators;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.opencb.biodata.models.core.Region;
@@ -38,6 +37,7 @@ import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.results.VariantQueryResult;
 import org.opencb.opencga.storage.core.StorageEngine;
 import org.opencb.opencga.storage.core.StoragePipelineResult;
+import org.opencb.opencga.storage.core.cache.CacheManager;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.exceptions.StoragePipelineException;
@@ -56,7 +56,7 @@ import org.opencb.opencga.storage.core.variant.io.VariantImporter;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
 import org.opencb.opencga.storage.core.variant.search.VariantSearchModel;
-import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchIterator;
+import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchIdIterator;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
 import org.opencb.opencga.storage.core.variant.stats.DefaultVariantStatisticsManager;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsManager;
@@ -73,6 +73,10 @@ import java.util.stream.Collectors;
 
 import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options.*;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.ID;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.STUDIES;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.MODIFIED_SINCE;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.isValidParam;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.validParams;
 import static org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager.QUERY_INTERSECT;
 import static org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager.SKIP_SEARCH;
 import static org.opencb.opencga.storage.core.variant.search.solr.VariantSearchUtils.*;
@@ -84,6 +88,7 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
 
     public static final String REMOVE_OPERATION_NAME = BatchFileOperation.Type.REMOVE.name().toLowerCase();
     private final AtomicReference<VariantSearchManager> variantSearchManager = new AtomicReference<>();
+    private final AtomicReference<CacheManager> cacheManager = new AtomicReference<>();
     private Logger logger = LoggerFactory.getLogger(VariantStorageEngine.class);
     private CellBaseUtils cellBaseUtils;
 
@@ -132,8 +137,11 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         TRANSFORM_BATCH_SIZE("transform.batch.size", 200),
         TRANSFORM_THREADS("transform.threads", 4),
         TRANSFORM_FORMAT("transform.format", "avro"),
+        TRANSFORM_PROTO_SLICE_SIZE("transform.proto.slice.size", 1000),    // Genomic size of each VcfSlice in the "proto" format
         LOAD_BATCH_SIZE("load.batch.size", 100),
         LOAD_THREADS("load.threads", 6),
+        EXPORT_THREADS("export.threads", 4),                // Number of threads compressing the exported file
+        EXPORT_INDEX("export.index", true),                 // Write a tabix index next to the exported VCF_GZ file
 
         MERGE_MODE("merge.mode", MergeMode.ADVANCED),
 
@@ -152,6 +160,10 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         INTERSECT_ALWAYS("intersect.always", false),                      // Force intersect queries
         INTERSECT_PARAMS_THRESHOLD("intersect.params.threshold", 3),      // Minimum number of QueryParams in the query to intersect
 
+        // Search index options
+        SEARCH_INDEX_INCREMENTAL("search.index.incremental", false),      // Only index the variants modified since the last index
+        SEARCH_INDEX_LAST_TIMESTAMP("search.index.last.timestamp", 0),   // StudyConfiguration attribute. Start time of the last index
+
         NUM_SAMPLES("numSamples", 1000);
 
         private final String key;
@@ -197,7 +209,11 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
      * */
     public void importData(URI inputFile, ObjectMap params) throws StorageEngineException, IOException {
         VariantImporter variantImporter = newVariantImporter();
-        variantImporter.importData(inputFile);
+        try {
+            variantImporter.importData(inputFile);
+        } finally {
+            invalidateCache();
+        }
     }
 
     /**
@@ -213,7 +229,13 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     public void importData(URI inputFile, VariantMetadata metadata, List<StudyConfiguration> studies, ObjectMap params)
             throws StorageEngineException, IOException {
         VariantImporter variantImporter = newVariantImporter();
-        variantImporter.importData(inputFile, metadata, studies);
+        try {
+            variantImporter.importData(inputFile, metadata, studies);
+        } finally {
+            for (StudyConfiguration studyConfiguration : studies) {
+                invalidateCache(studyConfiguration.getStudyId());
+            }
+        }
     }
 
     /**
@@ -288,7 +310,14 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     @Override
     public List<StoragePipelineResult> index(List<URI> inputFiles, URI outdirUri, boolean doExtract, boolean doTransform, boolean doLoad)
             throws StorageEngineException {
-        List<StoragePipelineResult> results = super.index(inputFiles, outdirUri, doExtract, doTransform, doLoad);
+        List<StoragePipelineResult> results;
+        try {
+            results = super.index(inputFiles, outdirUri, doExtract, doTransform, doLoad);
+        } finally {
+            if (doLoad) {
+                invalidateIndexedStudyCache();
+            }
+        }
         if (doLoad) {
             annotateLoadedFiles(outdirUri, inputFiles, results, getOptions());
             calculateStatsForLoadedFiles(outdirUri, inputFiles, results, getOptions());
@@ -312,7 +341,12 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
             throws VariantAnnotatorException, StorageEngineException, IOException {
         VariantAnnotator annotator = VariantAnnotatorFactory.buildVariantAnnotator(configuration, getStorageEngineId(), params);
         VariantAnnotationManager annotationManager = newVariantAnnotationManager(annotator);
-        annotationManager.annotate(query, params);
+        try {
+            annotationManager.annotate(query, params);
+        } finally {
+            // Annotations are shared by all the studies
+            invalidateCache();
+        }
     }
 
     /**
@@ -389,7 +423,11 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     public void calculateStats(String study, List<String> cohorts, QueryOptions options)
             throws StorageEngineException, IOException {
         VariantStatisticsManager statisticsManager = newVariantStatisticsManager();
-        statisticsManager.calculateStatistics(study, cohorts, options);
+        try {
+            statisticsManager.calculateStatistics(study, cohorts, options);
+        } finally {
+            invalidateCache(study);
+        }
     }
 
     /**
@@ -465,6 +503,19 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         searchIndex(new Query(), new QueryOptions());
     }
 
+    /**
+     * Load the variants into the search engine (Solr).
+     *
+     * If {@link Options#SEARCH_INDEX_INCREMENTAL} is set, only the variants modified since the last search index of the
+     * selected studies are loaded. The start time of each complete search index is stored in the StudyConfiguration,
+     * as {@link Options#SEARCH_INDEX_LAST_TIMESTAMP}.
+     *
+     * @param query         Variants to load
+     * @param queryOptions  Other options
+     * @throws StorageEngineException if there is any problem related with the StorageEngine
+     * @throws IOException            if there is any IO error
+     * @throws VariantSearchException if there is any problem with the search engine
+     */
     public void searchIndex(Query query, QueryOptions queryOptions) throws StorageEngineException, IOException,
             VariantSearchException {
 
@@ -475,19 +526,81 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         // first, create the collection it it does not exist
         variantSearchManager.create(dbName);
         if (configuration.getSearch().getActive() && variantSearchManager.isAlive(dbName)) {
+            boolean incremental = queryOptions != null && queryOptions.getBoolean(Options.SEARCH_INDEX_INCREMENTAL.key(),
+                    getOptions().getBoolean(Options.SEARCH_INDEX_INCREMENTAL.key(), false));
+            Query searchQuery = query == null ? new Query() : new Query(query);
+
+            // The watermark is only updated if all the variants from the studies are indexed
+            Set<VariantQueryParam> params = validParams(searchQuery);
+            params.remove(STUDIES);
+            boolean completeIndex = params.isEmpty();
+            List<Integer> studyIds = isValidParam(searchQuery, STUDIES)
+                    ? studyConfigurationManager.getStudyIds(searchQuery.getAsList(STUDIES.key()), null)
+                    : studyConfigurationManager.getStudyIds(null);
+            // Take the time before starting, so the variants modified during the load are loaded again in the next run
+            long startTime = System.currentTimeMillis();
+
+            if (incremental) {
+                long modifiedSince = getSearchIndexLastTimestamp(studyIds);
+                if (modifiedSince <= 0) {
+                    logger.info("No previous search index found. Indexing all the variants");
+                } else if (!isSearchIndexIncrementalSupported()) {
+                    logger.warn("Incremental search index not supported by the storage engine '{}'. Indexing all the variants",
+                            getStorageEngineId());
+                } else {
+                    logger.info("Indexing variants modified since {}", new Date(modifiedSince));
+                    searchQuery.put(MODIFIED_SINCE.key(), modifiedSince);
+                }
+            }
 
             // then, load variants
             queryOptions = new QueryOptions();
             queryOptions.put(QueryOptions.EXCLUDE, Arrays.asList(VariantField.STUDIES_SAMPLES_DATA, VariantField.STUDIES_FILES));
-            VariantDBIterator iterator = dbAdaptor.iterator(query, queryOptions);
-            ProgressLogger progressLogger = new ProgressLogger("Variants loaded in Solr:", () -> dbAdaptor.count(query).first(), 200);
+            VariantDBIterator iterator = dbAdaptor.iterator(searchQuery, queryOptions);
+            ProgressLogger progressLogger = new ProgressLogger("Variants loaded in Solr:", () -> dbAdaptor.count(searchQuery).first(),
+                    200);
             variantSearchManager.load(dbName, iterator, progressLogger);
+
+            if (completeIndex) {
+                for (Integer studyId : studyIds) {
+                    studyConfigurationManager.lockAndUpdate(studyId, studyConfiguration -> {
+                        studyConfiguration.getAttributes().put(Options.SEARCH_INDEX_LAST_TIMESTAMP.key(), startTime);
+                        return studyConfiguration;
+                    });
+                }
+            }
         } else {
             throw new StorageEngineException("Solr is not alive!");
         }
         dbAdaptor.close();
     }
 
+    /**
+     * Get the start time of the last complete search index of all the given studies.
+     *
+     * @param studyIds  Studies
+     * @return          Oldest search index timestamp, or 0 if any of the studies was never indexed.
+     */
+    protected long getSearchIndexLastTimestamp(List<Integer> studyIds) {
+        StudyConfigurationManager studyConfigurationManager = getStudyConfigurationManager();
+        long timestamp = Long.MAX_VALUE;
+        for (Integer studyId : studyIds) {
+            StudyConfiguration studyConfiguration = studyConfigurationManager.getStudyConfiguration(studyId, null).first();
+            timestamp = Math.min(timestamp, studyConfiguration.getAttributes().getLong(Options.SEARCH_INDEX_LAST_TIMESTAMP.key(), 0));
+        }
+        return timestamp == Long.MAX_VALUE ? 0 : timestamp;
+    }
+
+    /**
+     * Indicates if the DBAdaptor of this storage engine supports the {@link VariantQueryUtils#MODIFIED_SINCE} filter,
+     * required to execute incremental search indexes.
+     *
+     * @return If the incremental search index is supported
+     */
+    protected boolean isSearchIndexIncrementalSupported() {
+        return false;
+    }
+
     /**
      * Removes a file from the Variant Storage.
      *
@@ -595,6 +708,7 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
             }
             return studyConfiguration;
         });
+        invalidateCache(study);
     }
 
     /**
@@ -659,6 +773,87 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         return variantSearchManager.get();
     }
 
+    public CacheManager getCacheManager() {
+        if (cacheManager.get() == null) {
+            synchronized (cacheManager) {
+                if (cacheManager.get() == null) {
+                    cacheManager.set(new CacheManager(configuration));
+                }
+            }
+        }
+        return cacheManager.get();
+    }
+
+    /**
+     * Make unreachable all the cached query results of the study. Must be called after any modification of the study.
+     *
+     * Operations run through this engine already invalidate the cache. Use this method after modifying the study without
+     * the engine, e.g. loading statistics or annotations directly with their managers.
+     *
+     * Invalidation is called from finally blocks, so it never throws. Any failure is logged.
+     *
+     * @param studyId Study id
+     */
+    public void invalidateCache(int studyId) {
+        try {
+            String epoch = getCacheManager().invalidate(String.valueOf(studyId));
+            logger.debug("Invalidated cache for study {}. New epoch: {}", studyId, epoch);
+        } catch (RuntimeException e) {
+            logger.warn("Unable to invalidate the cache for study " + studyId, e);
+        }
+    }
+
+    /**
+     * Make unreachable all the cached query results of the study. If the study can not be resolved, invalidates all
+     * the studies.
+     *
+     * @param study StudyName or StudyId
+     */
+    public void invalidateCache(String study) {
+        Integer studyId;
+        try {
+            studyId = getStudyConfigurationManager().getStudyId(study, null);
+        } catch (StorageEngineException | RuntimeException e) {
+            logger.warn("Unable to read the study " + study + " to invalidate the cache", e);
+            studyId = null;
+        }
+        if (studyId == null) {
+            invalidateCache();
+        } else {
+            invalidateCache(studyId);
+        }
+    }
+
+    /**
+     * Make unreachable all the cached query results of the study given at {@link Options#STUDY_ID}, or of all the studies
+     * if missing. Used after loading files with {@link #index}.
+     */
+    protected void invalidateIndexedStudyCache() {
+        int studyId = getOptions().getInt(Options.STUDY_ID.key(), -1);
+        if (studyId < 0) {
+            invalidateCache();
+        } else {
+            invalidateCache(studyId);
+        }
+    }
+
+    /**
+     * Make unreachable all the cached query results of all the studies. Used after modifying data shared by all of them,
+     * like the annotations.
+     */
+    public void invalidateCache() {
+        List<Integer> studyIds;
+        try {
+            studyIds = getStudyConfigurationManager().getStudyIds(null);
+        } catch (StorageEngineException | RuntimeException e) {
+            logger.warn("Unable to read the studies to invalidate the cache", e);
+            return;
+        }
+        for (Integer studyId : studyIds) {
+            invalidateCache(studyId);
+        }
+    }
+
     public VariantQueryResult<Variant> getPhased(String variant, String studyName, String sampleName, QueryOptions options, int windowsSize)
             throws StorageEngineException {
         setDefaultTimeout(options);
@@ -959,11 +1154,12 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
                         .map(VariantSearchModel::getId)
                         .iterator();
             } else {
-                VariantSearchIterator nativeIterator = getVariantSearchManager().nativeIterator(dbName, query, queryOptions);
+                // Stream the IDs from Solr. The next page is prefetched while the storage engine fetches the current one
+                VariantSearchIdIterator idIterator = getVariantSearchManager().nativeIdIterator(dbName, query, queryOptions);
                 if (numTotalResults != null) {
-                    numTotalResults.set(nativeIterator.getNumFound());
+                    numTotalResults.set(idIterator.getNumFound());
                 }
-                variantsIterator = Iterators.transform(nativeIterator, VariantSearchModel::getId);
+                variantsIterator = idIterator;
             }
         } catch (VariantSearchException | IOException e) {
             throw new VariantQueryException("Error querying Solr", e);
@@ -974,5 +1170,9 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     @Override
     public void close() throws IOException {
         cellBaseUtils = null;
+        CacheManager cache = cacheManager.getAndSet(null);
+        if (cache != null) {
+            cache.close();
+        }
     }
 }
@@ -22,7 +22,6 @@ import htsjdk.variant.vcf.VCFConstants;
 import htsjdk.variant.vcf.VCFHeader;
 import htsjdk.variant.vcf.VCFHeaderLineType;
 import htsjdk.variant.vcf.VCFHeaderVersion;
-import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -34,6 +33,7 @@ import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.biodata.models.variant.avro.VariantAvro;
 import org.opencb.biodata.models.variant.metadata.VariantFileHeader;
 import org.opencb.biodata.models.variant.metadata.VariantFileHeaderComplexLine;
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
 import org.opencb.biodata.tools.variant.merge.VariantMerger;
 import org.opencb.biodata.tools.variant.stats.VariantSetStatsCalculator;
 import org.opencb.commons.ProgressLogger;
@@ -41,6 +41,7 @@ import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.io.DataWriter;
 import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.hpg.bigdata.core.io.ProtoFileWriter;
 import org.opencb.hpg.bigdata.core.io.avro.AvroFileWriter;
 import org.opencb.opencga.storage.core.StoragePipeline;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
@@ -55,7 +56,9 @@ import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 import org.opencb.opencga.storage.core.variant.transform.MalformedVariantHandler;
 import org.opencb.opencga.storage.core.variant.transform.VariantAvroTransformTask;
 import org.opencb.opencga.storage.core.variant.transform.VariantJsonTransformTask;
+import org.opencb.opencga.storage.core.variant.transform.VariantProtoTransformTask;
 import org.opencb.opencga.storage.core.variant.transform.VariantTransformTask;
+import org.opencb.opencga.storage.core.variant.transform.VcfSliceMergeWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -308,7 +311,7 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
         if ("avro".equals(format)) {
 
             //Reader
-            StringDataReader dataReader = new StringDataReader(input);
+            StringDataReader dataReader = new StringDataReader(input, numTasks);
             long fileSize = 0;
             try {
                 fileSize = dataReader.getFileSize();
@@ -372,7 +375,7 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
             end = System.currentTimeMillis();
         } else if ("json".equals(format)) {
             //Reader
-            StringDataReader dataReader = new StringDataReader(input);
+            StringDataReader dataReader = new StringDataReader(input, numTasks);
             long fileSize = 0;
             try {
                 fileSize = dataReader.getFileSize();
@@ -466,7 +469,68 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
             int batchSize, String extension, String compression, BiConsumer<String, RuntimeException> malformatedHandler,
             boolean failOnError)
             throws StorageEngineException {
-        throw new NotImplementedException("Please request feature");
+        String studyId = String.valueOf(getStudyId());
+        int numTasks = options.getInt(Options.TRANSFORM_THREADS.key(), Options.TRANSFORM_THREADS.defaultValue());
+        int sliceSize = options.getInt(Options.TRANSFORM_PROTO_SLICE_SIZE.key(), Options.TRANSFORM_PROTO_SLICE_SIZE.defaultValue());
+
+        //Reader
+        StringDataReader dataReader = new StringDataReader(input, numTasks);
+        long fileSize = 0;
+        try {
+            fileSize = dataReader.getFileSize();
+        } catch (IOException e) {
+            throw new StorageEngineException("Error reading file " + input, e);
+        }
+        ProgressLogger progressLogger = new ProgressLogger("Transforming file:", fileSize, 200);
+        dataReader.setReadBytesListener((totalRead, delta) -> progressLogger.increment(delta, "Bytes"));
+
+        //Writer. Length-delimited VcfSlices, one per genomic window
+        DataWriter<VcfSlice> dataWriter = new VcfSliceMergeWriter(new ProtoFileWriter<>(outputVariantsFile, compression), metadata,
+                studyId);
+
+        Supplier<VariantTransformTask<VcfSlice>> taskSupplier;
+        VariantSetStatsCalculator statsCalculator = new VariantSetStatsCalculator(studyId, metadata);
+        if (parser.equalsIgnoreCase(HTSJDK_PARSER)) {
+            logger.info("Using HTSJDK to read variants.");
+            Pair<VCFHeader, VCFHeaderVersion> header = readHtsHeader(input);
+            taskSupplier = () -> new VariantProtoTransformTask(header.getKey(), header.getValue(), studyId, metadata, outputMetaFile,
+                    statsCalculator, includeSrc, generateReferenceBlocks, sliceSize)
+                    .setFailOnError(failOnError)
+                    .addMalformedErrorHandler(malformatedHandler)
+                    .configureNormalizer(metadata.getHeader());
+        } else {
+            final VariantVcfFactory factory = createVariantVcfFactory(fileName);
+            logger.info("Using Biodata to read variants.");
+            taskSupplier = () -> new VariantProtoTransformTask(factory, studyId, metadata, outputMetaFile, statsCalculator,
+                    includeSrc, generateReferenceBlocks, sliceSize)
+                    .setFailOnError(failOnError)
+                    .addMalformedErrorHandler(malformatedHandler)
+                    .configureNormalizer(metadata.getHeader());
+        }
+
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                .setNumTasks(numTasks)
+                .setBatchSize(batchSize)
+                .setCapacity(options.getInt("blockingQueueCapacity", numTasks * 2))
+                .setSorted(true)
+                .build();
+        ParallelTaskRunner<String, VcfSlice> ptr;
+        try {
+            ptr = new ParallelTaskRunner<>(dataReader, taskSupplier, dataWriter, config);
+        } catch (Exception e) {
+            throw new StorageEngineException("Error while creating ParallelTaskRunner", e);
+        }
+
+        logger.info("Generating output file {}", outputVariantsFile);
+        logger.info("Multi thread transform... [1 reading, {} transforming, 1 writing]", numTasks);
+        long start = System.currentTimeMillis();
+        try {
+            ptr.run();
+        } catch (ExecutionException e) {
+            throw new StorageEngineException("Error while executing TransformVariants in ParallelTaskRunner", e);
+        }
+        long end = System.currentTimeMillis();
+        return new ImmutablePair<>(start, end);
     }
 
     @Override
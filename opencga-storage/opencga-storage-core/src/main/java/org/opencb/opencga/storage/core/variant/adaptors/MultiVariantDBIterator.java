@@ -62,6 +62,10 @@ public class MultiVariantDBIterator extends VariantDBIterator {
                                   Query query, QueryOptions options,
                                   BiFunction<Query, QueryOptions, VariantDBIterator> iteratorFactory) {
         this(buildQueryIterator(variantsIterator, batchSize, query), options, iteratorFactory);
+        if (variantsIterator instanceof AutoCloseable) {
+            // e.g. streaming iterators from the search engine
+            addCloseable((AutoCloseable) variantsIterator);
+        }
     }
 
     /**
@@ -63,6 +63,10 @@ public class VariantQueryUtils {
 
     public static final QueryParam ANNOT_EXPRESSION_GENES = QueryParam.create("annot_expression_genes", "", QueryParam.Type.TEXT_ARRAY);
     public static final QueryParam ANNOT_GO_GENES = QueryParam.create("annot_go_genes", "", QueryParam.Type.TEXT_ARRAY);
+    /**
+     * Internal param. Only variants modified (loaded, annotated, ...) after the given timestamp, in milliseconds.
+     */
+    public static final QueryParam MODIFIED_SINCE = QueryParam.create("modifiedSince", "", QueryParam.Type.INTEGER);
 
     private static Logger logger = LoggerFactory.getLogger(VariantQueryUtils.class);
 
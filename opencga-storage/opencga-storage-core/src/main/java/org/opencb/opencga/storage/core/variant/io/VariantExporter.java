@@ -21,6 +21,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.metadata.VariantMetadata;
 import org.opencb.commons.ProgressLogger;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.io.DataWriter;
@@ -85,7 +86,12 @@ public class VariantExporter {
         }
         outputFile = VariantWriterFactory.checkOutput(outputFile, outputFormat);
 
-        try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat)) {
+        ObjectMap options = queryOptions == null ? new ObjectMap() : queryOptions;
+        int threads = options.getInt(VariantStorageEngine.Options.EXPORT_THREADS.key(),
+                VariantStorageEngine.Options.EXPORT_THREADS.defaultValue());
+        boolean tabixIndex = options.getBoolean(VariantStorageEngine.Options.EXPORT_INDEX.key(),
+                VariantStorageEngine.Options.EXPORT_INDEX.defaultValue());
+        try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat, threads, tabixIndex)) {
             boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
             exportData(os, outputFormat, query, queryOptions, logProgress);
         }
@@ -27,6 +27,7 @@ import org.opencb.commons.utils.FileUtils;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.variant.io.avro.VariantAvroReader;
 import org.opencb.opencga.storage.core.variant.io.json.VariantJsonReader;
+import org.opencb.opencga.storage.core.variant.io.proto.VariantProtoReader;
 
 import java.io.File;
 import java.io.IOException;
@@ -55,7 +56,7 @@ public class VariantReaderUtils {
     /**
      * Get a variant data reader depending on the type of the input file.
      *
-     * @param input Stream Input variant file (avro, json, vcf)
+     * @param input Stream Input variant file (avro, json, proto, vcf)
      * @param metadata Optional VariantSource
      * @return  VariantReader
      * @throws StorageEngineException if the format is not valid or there is an error reading
@@ -66,6 +67,8 @@ public class VariantReaderUtils {
             return getVariantJsonReader(input, metadata);
         } else if (isAvro(fileName)) {
             return getVariantAvroReader(input, metadata);
+        } else if (isProto(fileName)) {
+            return getVariantProtoReader(input, metadata);
         } else if (isVcf(fileName)) {
             try {
                 return new VariantVcfHtsjdkReader(FileUtils.newInputStream(input), metadata);
@@ -103,6 +106,17 @@ public class VariantReaderUtils {
         return variantAvroReader;
     }
 
+    protected static VariantProtoReader getVariantProtoReader(Path input, VariantStudyMetadata metadata) throws StorageEngineException {
+        VariantProtoReader variantProtoReader;
+        if (isProto(input.toString())) {
+            String sourceFile = getMetaFromTransformedFile(input.toAbsolutePath().toString());
+            variantProtoReader = new VariantProtoReader(input.toAbsolutePath().toFile(), new File(sourceFile), metadata);
+        } else {
+            throw variantInputNotSupported(input);
+        }
+        return variantProtoReader;
+    }
+
     public static Path getMetaFromTransformedFile(Path variantsFile) {
         return Paths.get(getMetaFromTransformedFile(variantsFile.toString()));
     }
@@ -161,9 +175,9 @@ public class VariantReaderUtils {
     /**
      * Read the {@link VariantFileMetadata} from a variant file.
      *
-     * Accepted formats: Avro, Json and VCF
+     * Accepted formats: Avro, Json, Proto and VCF
      *
-     * @param input Input variant file (avro, json, vcf)
+     * @param input Input variant file (avro, json, proto, vcf)
      * @param metadata {@link VariantFileMetadata} to fill. Can be null
      * @return Read {@link VariantFileMetadata}
      * @throws StorageEngineException if the format is not valid or there is an error reading
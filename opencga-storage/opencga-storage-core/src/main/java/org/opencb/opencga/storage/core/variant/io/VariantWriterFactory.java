@@ -26,6 +26,8 @@ import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.io.DataWriter;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.bgzf.BgzfOutputStream;
+import org.opencb.opencga.storage.core.io.bgzf.VcfTabixIndexingOutputStream;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.metadata.VariantMetadataFactory;
@@ -41,7 +43,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
 
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.RETURNED_STUDIES;
 import static org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat.VCF;
@@ -54,6 +55,7 @@ import static org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.Va
  */
 public class VariantWriterFactory {
 
+    public static final String TABIX_INDEX_EXTENSION = ".tbi";
     private static Logger logger = LoggerFactory.getLogger(VariantWriterFactory.class);
     private final VariantDBAdaptor dbAdaptor;
 
@@ -180,6 +182,22 @@ public class VariantWriterFactory {
     }
 
     public static OutputStream getOutputStream(String output, VariantOutputFormat outputFormat) throws IOException {
+        return getOutputStream(output, outputFormat, 1, false);
+    }
+
+    /**
+     * Get the output stream for the given output file and format.
+     * Compressed text formats are written in BGZF, which is compatible with gzip.
+     *
+     * @param output        Output file. If null or empty, the standard output
+     * @param outputFormat  Output format
+     * @param threads       Number of threads compressing the output
+     * @param tabixIndex    Write a tabix index next to the output file. Only for VCF_GZ files
+     * @return              OutputStream
+     * @throws IOException  If there is any IO error
+     */
+    public static OutputStream getOutputStream(String output, VariantOutputFormat outputFormat, int threads, boolean tabixIndex)
+            throws IOException {
         boolean gzip = outputFormat.isGzip();
 
         // output format has priority over output name
@@ -192,9 +210,14 @@ public class VariantWriterFactory {
             logger.debug("writing to %s", output);
         }
 
-        // If compressed a GZip output stream is used
+        // If compressed a BGZF output stream is used
         if (gzip && outputFormat != VariantOutputFormat.AVRO_GZ) {
-            outputStream = new GZIPOutputStream(outputStream);
+            BgzfOutputStream bgzfOutputStream = new BgzfOutputStream(new BufferedOutputStream(outputStream), threads);
+            if (tabixIndex && outputFormat == VCF_GZ && !isStandardOutput(output)) {
+                outputStream = new VcfTabixIndexingOutputStream(bgzfOutputStream, new File(output + TABIX_INDEX_EXTENSION));
+            } else {
+                outputStream = bgzfOutputStream;
+            }
         } else {
             outputStream = new BufferedOutputStream(outputStream);
         }
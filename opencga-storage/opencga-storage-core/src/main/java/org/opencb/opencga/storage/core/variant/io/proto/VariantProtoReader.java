@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.proto;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.metadata.VariantStudyMetadata;
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
+import org.opencb.biodata.tools.variant.converters.proto.VcfSliceToVariantListConverter;
+import org.opencb.opencga.storage.core.variant.io.AbstractVariantReader;
+import org.xerial.snappy.SnappyInputStream;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads variants from a "proto" transformed file, a sequence of length-delimited {@link VcfSlice}.
+ */
+public class VariantProtoReader extends AbstractVariantReader {
+
+    private final File variantsFile;
+    private final VariantStudyMetadata metadata;
+    private VcfSliceToVariantListConverter converter;
+    private InputStream inputStream;
+
+    public VariantProtoReader(File variantsFile, File metadataFile, VariantStudyMetadata metadata) {
+        super(metadataFile.toPath(), metadata);
+        this.variantsFile = variantsFile;
+        this.metadata = metadata;
+    }
+
+    @Override
+    public boolean open() {
+        try {
+            InputStream is = new FileInputStream(variantsFile);
+            String fileName = variantsFile.getName();
+            if (fileName.endsWith(".gz")) {
+                is = new GZIPInputStream(is);
+            } else if (fileName.endsWith(".snappy") || fileName.endsWith(".snz")) {
+                is = new SnappyInputStream(is);
+            }
+            inputStream = new BufferedInputStream(is);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        try {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean pre() {
+        super.pre();
+        // Samples position is read from the metadata file
+        converter = new VcfSliceToVariantListConverter(metadata);
+        return true;
+    }
+
+    /**
+     * Read complete slices, until having at least batchSize variants.
+     *
+     * @param batchSize Minimum number of variants to read, if available
+     * @return          Read variants
+     */
+    @Override
+    public List<Variant> read(int batchSize) {
+        List<Variant> batch = new ArrayList<>(batchSize);
+        try {
+            while (batch.size() < batchSize) {
+                VcfSlice slice = VcfSlice.parseDelimitedFrom(inputStream);
+                if (slice == null) {
+                    break;
+                }
+                batch.addAll(converter.convert(slice));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return addSamplesPosition(batch);
+    }
+
+}
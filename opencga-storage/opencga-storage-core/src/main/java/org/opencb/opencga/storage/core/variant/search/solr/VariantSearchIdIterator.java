@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Streaming iterator over the variant ids matching a Solr query.
+ *
+ * Pages are fetched using cursorMarks, so the cost of each page does not depend on the offset. While the consumer
+ * iterates over one page, the next one is fetched in a background thread.
+ */
+public class VariantSearchIdIterator implements Iterator<String>, AutoCloseable {
+
+    private static final String ID = "id";
+
+    private final SolrClient solrClient;
+    private final String collection;
+    private final SolrQuery solrQuery;
+    private final int pageSize;
+    private final ExecutorService executor;
+
+    private Iterator<String> page = Collections.emptyIterator();
+    private Future<Page> nextPage;
+    private long numFound = -1;
+    // Max number of elements to fetch, including the elements to skip
+    private long remaining;
+    private boolean closed = false;
+
+    private static final class Page {
+        private final List<String> ids;
+        private final String nextCursorMark;
+        private final long numFound;
+        private final boolean last;
+
+        private Page(List<String> ids, String nextCursorMark, long numFound, boolean last) {
+            this.ids = ids;
+            this.nextCursorMark = nextCursorMark;
+            this.numFound = numFound;
+            this.last = last;
+        }
+    }
+
+    public VariantSearchIdIterator(SolrClient solrClient, String collection, SolrQuery solrQuery, int pageSize) {
+        this.solrClient = solrClient;
+        this.collection = collection;
+        this.solrQuery = solrQuery.getCopy();
+        this.pageSize = pageSize;
+
+        int skip = solrQuery.getStart() == null || solrQuery.getStart() < 0 ? 0 : solrQuery.getStart();
+        long limit = (solrQuery.getRows() == null || solrQuery.getRows() < 0) ? Long.MAX_VALUE : solrQuery.getRows();
+        this.remaining = limit == Long.MAX_VALUE ? Long.MAX_VALUE : limit + skip;
+
+        // CursorMarks require a sort over the unique key, and do not support "start"
+        this.solrQuery.setSort(SolrQuery.SortClause.asc(ID));
+        this.solrQuery.setFields(ID);
+        this.solrQuery.setStart(null);
+
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "solr-id-iterator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        this.executor = threadPoolExecutor;
+
+        nextPage = submit(CursorMarkParams.CURSOR_MARK_START);
+
+        // Cursors can not skip. Discard the first elements
+        for (int i = 0; i < skip && hasNext(); i++) {
+            next();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext()) {
+            if (nextPage == null) {
+                return false;
+            }
+            Page current = getNextPage();
+            if (current.last) {
+                nextPage = null;
+                executor.shutdown();
+            } else {
+                // Prefetch next page while the current one is consumed
+                nextPage = submit(current.nextCursorMark);
+            }
+            page = current.ids.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    public long getNumFound() {
+        if (numFound < 0 && nextPage != null) {
+            // Wait for the first page
+            hasNext();
+        }
+        return Math.max(numFound, 0);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (nextPage != null) {
+            nextPage.cancel(true);
+            nextPage = null;
+        }
+        executor.shutdownNow();
+    }
+
+    private Future<Page> submit(String cursorMark) {
+        int rows = (int) Math.min(pageSize, remaining);
+        remaining -= rows;
+        boolean lastPage = remaining == 0;
+        SolrQuery query = solrQuery.getCopy();
+        query.setRows(rows);
+        query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+        return executor.submit(() -> {
+            QueryResponse response = solrClient.query(collection, query);
+            List<String> ids = new ArrayList<>(response.getResults().size());
+            for (SolrDocument document : response.getResults()) {
+                ids.add(document.getFieldValue(ID).toString());
+            }
+            String nextCursorMark = response.getNextCursorMark();
+            boolean last = lastPage || ids.size() < rows || cursorMark.equals(nextCursorMark);
+            return new Page(ids, nextCursorMark, response.getResults().getNumFound(), last);
+        });
+    }
+
+    private Page getNextPage() {
+        try {
+            Page current = nextPage.get();
+            if (numFound < 0) {
+                numFound = current.numFound;
+            }
+            return current;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VariantQueryException("Interrupted while searching more variants", e);
+        } catch (ExecutionException | CancellationException e) {
+            if (closed) {
+                throw new NoSuchElementException("Iterator closed");
+            }
+            throw new VariantQueryException("Error searching more variants", e.getCause() == null ? e : e.getCause());
+        }
+    }
+}
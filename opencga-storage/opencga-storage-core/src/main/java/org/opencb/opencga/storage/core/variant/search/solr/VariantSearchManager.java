@@ -36,6 +36,7 @@ import org.opencb.biodata.formats.variant.io.VariantReader;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.annotation.ConsequenceTypeMappings;
 import org.opencb.commons.ProgressLogger;
+import org.opencb.commons.run.ParallelTaskRunner;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.result.FacetedQueryResult;
@@ -43,11 +44,13 @@ import org.opencb.commons.datastore.core.result.FacetedQueryResultItem;
 import org.opencb.commons.utils.CollectionUtils;
 import org.opencb.commons.utils.FileUtils;
 import org.opencb.opencga.core.results.VariantQueryResult;
+import org.opencb.opencga.storage.core.config.SearchConfiguration;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.exceptions.VariantSearchException;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.io.db.VariantDBReader;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 import org.opencb.opencga.storage.core.variant.search.VariantSearchModel;
 import org.opencb.opencga.storage.core.variant.search.VariantSearchToVariantConverter;
@@ -59,7 +62,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by wasim on 09/11/16.
@@ -293,6 +298,10 @@ public class VariantSearchManager {
     /**
      * Load a Solr core/collection from a variant DB iterator.
      *
+     * Batches of variants are converted and sent to Solr by a pool of {@link SearchConfiguration#getInsertThreads()} workers,
+     * so conversion overlaps with the ingestion of the previous batches. Documents are sent with commitWithin, letting Solr
+     * decide when to open a new searcher, and one single hard commit is executed at the end of the load.
+     *
      * @param collection        Collection name
      * @param variantDBIterator Iterator to retrieve the variants to load
      * @param progressLogger    Progress logger
@@ -302,25 +311,45 @@ public class VariantSearchManager {
     public void load(String collection, VariantDBIterator variantDBIterator, ProgressLogger progressLogger)
             throws IOException, VariantSearchException {
         if (variantDBIterator != null) {
-            int count = 0;
-            List<Variant> variantList = new ArrayList<>(DEFAULT_INSERT_SIZE);
-            while (variantDBIterator.hasNext()) {
-                Variant variant = variantDBIterator.next();
-                progressLogger.increment(1, () -> "up to position " + variant.toString());
-                variantList.add(variant);
-                count++;
-                if (count % DEFAULT_INSERT_SIZE == 0) {
-                    insert(collection, variantList);
-                    variantList.clear();
+            SearchConfiguration searchConfiguration = getSearchConfiguration();
+            int batchSize = searchConfiguration.getInsertBatchSize() > 0
+                    ? searchConfiguration.getInsertBatchSize()
+                    : DEFAULT_INSERT_SIZE;
+            int numThreads = Math.max(1, searchConfiguration.getInsertThreads());
+            int commitWithin = searchConfiguration.getCommitWithin();
+
+            AtomicLong count = new AtomicLong();
+            ParallelTaskRunner.TaskWithException<Variant, Object, VariantSearchException> loadTask = variantList -> {
+                if (!variantList.isEmpty()) {
+                    try {
+                        insert(collection, variantList, commitWithin);
+                    } catch (IOException e) {
+                        throw new VariantSearchException(e.getMessage(), e);
+                    }
+                    count.addAndGet(variantList.size());
+                    progressLogger.increment(variantList.size(),
+                            () -> "up to position " + variantList.get(variantList.size() - 1).toString());
                 }
+                return Collections.emptyList();
+            };
+
+            ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                    .setNumTasks(numThreads)
+                    .setBatchSize(batchSize)
+                    .setCapacity(numThreads * 2)
+                    .setAbortOnFail(true)
+                    .setSorted(false).build();
+            ParallelTaskRunner<Variant, Object> ptr =
+                    new ParallelTaskRunner<>(new VariantDBReader(variantDBIterator), loadTask, null, config);
+            try {
+                ptr.run();
+            } catch (ExecutionException e) {
+                throw new VariantSearchException("Error loading variants into Solr", e);
             }
+            // Single hard commit at the end of the load
+            commit(collection);
 
-            // insert the remaining variants
-            if (CollectionUtils.isNotEmpty(variantList)) {
-                insert(collection, variantList);
-            }
-
-            logger.debug("Variant search loading done: {} variants.", count);
+            logger.debug("Variant search loading done: {} variants.", count.get());
         }
     }
 
@@ -413,6 +442,23 @@ public class VariantSearchManager {
         }
     }
 
+    /**
+     * Return a streaming iterator over the IDs of the variants from a Solr core/collection matching the given query.
+     * Pages of {@link SearchConfiguration#getRows()} elements are fetched in background using cursorMarks.
+     *
+     * @param collection   Collection name
+     * @param query        Query
+     * @param queryOptions Query options. Only LIMIT and SKIP are used
+     * @return Iterator over the variant IDs
+     * @throws VariantSearchException VariantSearchException
+     */
+    public VariantSearchIdIterator nativeIdIterator(String collection, Query query, QueryOptions queryOptions)
+            throws VariantSearchException {
+        SolrQuery solrQuery = solrQueryParser.parse(query, queryOptions);
+        int pageSize = getSearchConfiguration().getRows() > 0 ? getSearchConfiguration().getRows() : DEFAULT_INSERT_SIZE;
+        return new VariantSearchIdIterator(solrClient, collection, solrQuery, pageSize);
+    }
+
     /**
      * Return faceted data from a Solr core/collection
      * according a given query.
@@ -466,22 +512,23 @@ public class VariantSearchManager {
     }
 
     /**
-     * Insert a list of variants into Solr.
+     * Insert a list of variants into Solr, without a hard commit.
      *
-     * @param variants List of variants to insert
+     * @param variants      List of variants to insert
+     * @param commitWithin  Max time in milliseconds for Solr to commit the documents. Negative to wait for an explicit commit.
      * @throws IOException            IOException
      * @throws VariantSearchException VariantSearchException
      */
-    private void insert(String collection, List<Variant> variants) throws IOException, VariantSearchException {
+    private void insert(String collection, List<Variant> variants, int commitWithin) throws IOException, VariantSearchException {
         if (variants != null && CollectionUtils.isNotEmpty(variants)) {
             List<VariantSearchModel> variantSearchModels = variantSearchToVariantConverter.convertListToStorageType(variants);
 
             if (!variantSearchModels.isEmpty()) {
                 UpdateResponse updateResponse;
                 try {
-                    updateResponse = solrClient.addBeans(collection, variantSearchModels);
-                    if (updateResponse.getStatus() == 0) {
-                        solrClient.commit(collection);
+                    updateResponse = solrClient.addBeans(collection, variantSearchModels, commitWithin);
+                    if (updateResponse.getStatus() != 0) {
+                        throw new VariantSearchException("Error inserting variants into Solr. Status: " + updateResponse.getStatus());
                     }
                 } catch (SolrServerException e) {
                     throw new VariantSearchException(e.getMessage(), e);
@@ -490,6 +537,21 @@ public class VariantSearchManager {
         }
     }
 
+    /**
+     * Hard commit of all the pending documents.
+     *
+     * @param collection Collection name
+     * @throws IOException            IOException
+     * @throws VariantSearchException VariantSearchException
+     */
+    private void commit(String collection) throws IOException, VariantSearchException {
+        try {
+            solrClient.commit(collection);
+        } catch (SolrServerException e) {
+            throw new VariantSearchException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Load a JSON file into the Solr core/collection.
      *
@@ -512,15 +574,16 @@ public class VariantSearchManager {
                 variants.add(variant);
                 count++;
                 if (count % DEFAULT_INSERT_SIZE == 0) {
-                    insert(collection, variants);
+                    insert(collection, variants, getSearchConfiguration().getCommitWithin());
                     variants.clear();
                 }
             }
 
             // Insert the remaining variants
             if (CollectionUtils.isNotEmpty(variants)) {
-                insert(collection, variants);
+                insert(collection, variants, getSearchConfiguration().getCommitWithin());
             }
+            commit(collection);
         }
     }
 
@@ -535,13 +598,18 @@ public class VariantSearchManager {
 
         do {
             variants = reader.read(bufferSize);
-            insert(collection, variants);
+            insert(collection, variants, getSearchConfiguration().getCommitWithin());
         } while (CollectionUtils.isNotEmpty(variants));
+        commit(collection);
 
         reader.close();
     }
 
 
+    private SearchConfiguration getSearchConfiguration() {
+        return storageConfiguration == null ? new SearchConfiguration() : storageConfiguration.getSearch();
+    }
+
     private FacetedQueryResultItem.Field processSolrPivot(String name, int index, Map<String, Set<String>> includes,
                                                           PivotField pivot) {
         String countName;
@@ -70,6 +70,14 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
     public static final String OUTPUT = "output";
     public static final String STATS_LOAD_PARALLEL = "stats.load.parallel";
     public static final boolean DEFAULT_STATS_LOAD_PARALLEL = true;
+    /** Use the {@link GenotypeCountVariantStatisticsCalculator} to calculate the stats of non aggregated studies. */
+    public static final String STATS_CALCULATOR_GENOTYPE_COUNT = "stats.calculator.genotypeCount";
+    public static final boolean DEFAULT_STATS_CALCULATOR_GENOTYPE_COUNT = false;
+    /** Load the calculated stats directly into the database, without the intermediate variant stats json file. */
+    public static final String STATS_LOAD_DIRECT = "stats.load.direct";
+    public static final boolean DEFAULT_STATS_LOAD_DIRECT = false;
+    /** Max number of batches waiting in each queue of the stats pipeline. Default: 2 x numTasks. */
+    public static final String STATS_QUEUE_CAPACITY = "stats.queue.capacity";
 
     private static final String VARIANT_STATS_SUFFIX = ".variants.stats.json.gz";
     private static final String SOURCE_STATS_SUFFIX = ".source.stats.json.gz";
@@ -97,9 +105,13 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
             throw new IllegalArgumentException(e);
         }
 
-        URI stats = createStats(dbAdaptor, output, study, cohorts, options);
+        if (options.getBoolean(STATS_LOAD_DIRECT, DEFAULT_STATS_LOAD_DIRECT)) {
+            createAndLoadStats(dbAdaptor, output, study, cohorts, options);
+        } else {
+            URI stats = createStats(dbAdaptor, output, study, cohorts, options);
 
-        loadStats(dbAdaptor, stats, study, options);
+            loadStats(dbAdaptor, stats, study, options);
+        }
     }
 
 
@@ -139,6 +151,19 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
         }
         return createStats(variantDBAdaptor, output, cohortsMap, null, studyConfiguration, options);
     }
+
+    public void createAndLoadStats(VariantDBAdaptor variantDBAdaptor, URI output, String study, List<String> cohorts,
+                                   QueryOptions options) throws IOException, StorageEngineException {
+
+        StudyConfigurationManager studyConfigurationManager = variantDBAdaptor.getStudyConfigurationManager();
+        StudyConfiguration studyConfiguration = studyConfigurationManager.getStudyConfiguration(study, options).first();
+        Map<String, Set<String>> cohortsMap = new HashMap<>(cohorts.size());
+        for (String cohort : cohorts) {
+            cohortsMap.put(cohort, Collections.emptySet());
+        }
+        createAndLoadStats(variantDBAdaptor, output, cohortsMap, null, studyConfiguration, options);
+    }
+
     /**
      * retrieves batches of Variants, delegates to obtain VariantStatsWrappers from those Variants, and writes them to the output URI.
      * <p>
@@ -164,14 +189,43 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
     public URI createStats(VariantDBAdaptor variantDBAdaptor, URI output, Map<String, Set<String>> cohorts,
                            Map<String, Integer> cohortIds, StudyConfiguration studyConfiguration, QueryOptions options)
             throws IOException, StorageEngineException {
+        return calculateStats(variantDBAdaptor, output, cohorts, cohortIds, studyConfiguration, options, false);
+    }
+
+    /**
+     * Calculates the stats and loads them directly into the database, with a single pipeline.
+     * Calculated {@link VariantStatsWrapper} are sent to the {@link VariantStatsDBWriter} without being serialized
+     * into the intermediate json file. Bounded queues between the reader, the tasks and the writer provide back-pressure.
+     * The source stats file is still written.
+     *
+     * @param variantDBAdaptor   to obtain the Variants
+     * @param output             where to write the source stats
+     * @param cohorts            cohorts (subsets) of the samples. key: cohort name, defaultValue: list of sample names.
+     * @param cohortIds          Cohort ID
+     * @param studyConfiguration Study configuration object
+     * @param options            (mandatory) fileId, (optional) filters to the query, batch size, number of threads to use...
+     * @throws IOException If any error occurs
+     * @throws StorageEngineException If any error occurs
+     */
+    public void createAndLoadStats(VariantDBAdaptor variantDBAdaptor, URI output, Map<String, Set<String>> cohorts,
+                                   Map<String, Integer> cohortIds, StudyConfiguration studyConfiguration, QueryOptions options)
+            throws IOException, StorageEngineException {
+        calculateStats(variantDBAdaptor, output, cohorts, cohortIds, studyConfiguration, options, true);
+    }
+
+    private URI calculateStats(VariantDBAdaptor variantDBAdaptor, URI output, Map<String, Set<String>> cohorts,
+                               Map<String, Integer> cohortIds, StudyConfiguration studyConfiguration, QueryOptions options,
+                               boolean directLoad)
+            throws IOException, StorageEngineException {
 //        String fileId;
         if (options == null) {
             options = new QueryOptions();
         }
 
         //Parse query options
-        int batchSize = options.getInt(Options.LOAD_BATCH_SIZE.key(), 100); // future optimization, threads, etc
-        int numTasks = options.getInt(Options.LOAD_THREADS.key(), 6);
+        int batchSize = options.getInt(Options.LOAD_BATCH_SIZE.key(), Options.LOAD_BATCH_SIZE.defaultValue());
+        int numTasks = options.getInt(Options.LOAD_THREADS.key(), Options.LOAD_THREADS.defaultValue());
+        int capacity = options.getInt(STATS_QUEUE_CAPACITY, numTasks * 2);
         boolean overwrite = options.getBoolean(Options.OVERWRITE_STATS.key(), false);
         boolean updateStats = options.getBoolean(Options.UPDATE_STATS.key(), false);
         Properties tagmap = VariantStatisticsManager.getAggregationMappingProperties(options);
@@ -212,19 +266,76 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
                 .append(QueryOptions.EXCLUDE, VariantField.ANNOTATION);
         logger.info("ReaderQueryOptions: " + readerOptions.toJson());
         VariantDBReader reader = new VariantDBReader(studyConfiguration, variantDBAdaptor, readerQuery, readerOptions);
-        List<ParallelTaskRunner.Task<Variant, String>> tasks = new ArrayList<>(numTasks);
         ProgressLogger progressLogger = new ProgressLogger("Calculated stats:",
                 () -> variantDBAdaptor.count(readerQuery).first(), 200).setBatchSize(5000);
-        for (int i = 0; i < numTasks; i++) {
-            tasks.add(new VariantStatsWrapperTask(overwrite, cohorts, studyConfiguration, variantSourceStats, tagmap, progressLogger));
+        boolean genotypeCountCalculator = options.getBoolean(STATS_CALCULATOR_GENOTYPE_COUNT, DEFAULT_STATS_CALCULATOR_GENOTYPE_COUNT);
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                .setNumTasks(numTasks)
+                .setBatchSize(batchSize)
+                .setCapacity(capacity)
+                .setAbortOnFail(true)
+                .build();
+
+        ParallelTaskRunner runner;
+        List<VariantStatsDBWriter> dbWriters = new ArrayList<>();
+        if (directLoad) {
+            final boolean overwriteStats = overwrite;
+            final Map<String, Set<String>> finalCohorts = cohorts;
+            final QueryOptions finalOptions = options;
+            if (options.getBoolean(STATS_LOAD_PARALLEL, DEFAULT_STATS_LOAD_PARALLEL)) {
+                // Each task calculates and writes its own batches.
+                runner = new ParallelTaskRunner<Variant, Object>(reader, () -> {
+                    VariantStatsTask task = new VariantStatsTask(overwriteStats, finalCohorts, studyConfiguration,
+                            variantSourceStats, tagmap, progressLogger, genotypeCountCalculator);
+                    VariantStatsDBWriter dbWriter = newVariantStatisticsDBWriter(variantDBAdaptor, studyConfiguration, finalOptions);
+                    dbWriter.pre();
+                    synchronized (dbWriters) {
+                        dbWriters.add(dbWriter);
+                    }
+                    return new ParallelTaskRunner.Task<Variant, Object>() {
+                        @Override
+                        public List<Object> apply(List<Variant> batch) {
+                            List<VariantStatsWrapper> stats = task.apply(batch);
+                            if (!stats.isEmpty()) {
+                                dbWriter.write(stats);
+                            }
+                            return Collections.emptyList();
+                        }
+
+                        @Override
+                        public void post() {
+                            task.post();
+                        }
+                    };
+                }, null, config);
+            } else {
+                List<ParallelTaskRunner.Task<Variant, VariantStatsWrapper>> tasks = new ArrayList<>(numTasks);
+                for (int i = 0; i < numTasks; i++) {
+                    tasks.add(new VariantStatsTask(overwrite, cohorts, studyConfiguration, variantSourceStats, tagmap, progressLogger,
+                            genotypeCountCalculator));
+                }
+                VariantStatsDBWriter dbWriter = newVariantStatisticsDBWriter(variantDBAdaptor, studyConfiguration, options);
+                dbWriters.add(dbWriter);
+                runner = new ParallelTaskRunner<>(reader, tasks, dbWriter, config);
+            }
+        } else {
+            List<ParallelTaskRunner.Task<Variant, String>> tasks = new ArrayList<>(numTasks);
+            for (int i = 0; i < numTasks; i++) {
+                tasks.add(new VariantStatsWrapperTask(overwrite, cohorts, studyConfiguration, variantSourceStats, tagmap, progressLogger,
+                        genotypeCountCalculator));
+            }
+            Path variantStatsPath = Paths.get(output.getPath() + VARIANT_STATS_SUFFIX);
+            logger.info("will write stats to {}", variantStatsPath);
+            StringDataWriter writer = new StringDataWriter(variantStatsPath, true);
+            runner = new ParallelTaskRunner<>(reader, tasks, writer, config);
+        }
+
+        if (directLoad) {
+            // Check the cohorts before writing any statistics, as loadStats does
+            VariantStatisticsManager.checkAndUpdateCalculatedCohorts(studyConfiguration, cohorts.keySet(), updateStats);
         }
-        Path variantStatsPath = Paths.get(output.getPath() + VARIANT_STATS_SUFFIX);
-        logger.info("will write stats to {}", variantStatsPath);
-        StringDataWriter writer = new StringDataWriter(variantStatsPath, true);
 
         // runner
-        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(numTasks).setBatchSize(batchSize).build();
-        ParallelTaskRunner runner = new ParallelTaskRunner<>(reader, tasks, writer, config);
         try {
             logger.info("starting stats creation for cohorts {}", cohorts.keySet());
             long start = System.currentTimeMillis();
@@ -233,6 +344,14 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
         } catch (ExecutionException e) {
             throw new StorageEngineException("Unable to calculate statistics.", e);
         }
+        if (directLoad) {
+            long writes = dbWriters.stream().mapToLong(VariantStatsDBWriter::getNumWrites).sum();
+            long variantStats = dbWriters.stream().mapToLong(VariantStatsDBWriter::getVariantStats).sum();
+            logger.info("Loaded stats of {} variants", variantStats);
+            if (writes < variantStats) {
+                logger.warn("provided statistics of {} variants, but only {} were updated", variantStats, writes);
+            }
+        }
         // source stats
         Path fileSourcePath = Paths.get(output.getPath() + SOURCE_STATS_SUFFIX);
         try (OutputStream outputSourceStream = getOutputStream(fileSourcePath, options)) {
@@ -245,54 +364,49 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
         return output;
     }
 
-    class VariantStatsWrapperTask implements ParallelTaskRunner.Task<Variant, String> {
+    /**
+     * Calculates the stats for a batch of variants, and updates the source stats.
+     */
+    class VariantStatsTask implements ParallelTaskRunner.Task<Variant, VariantStatsWrapper> {
 
         private boolean overwrite;
         private Map<String, Set<String>> cohorts;
         private StudyConfiguration studyConfiguration;
         private final ProgressLogger progressLogger;
         //        private String fileId;
-        private ObjectMapper jsonObjectMapper;
-        private ObjectWriter variantsWriter;
         private VariantSourceStats variantSourceStats;
         private Properties tagmap;
         private VariantStatisticsCalculator variantStatisticsCalculator;
 
-        VariantStatsWrapperTask(boolean overwrite, Map<String, Set<String>> cohorts,
-                                StudyConfiguration studyConfiguration,
-                                VariantSourceStats variantSourceStats, Properties tagmap, ProgressLogger progressLogger) {
+        VariantStatsTask(boolean overwrite, Map<String, Set<String>> cohorts,
+                         StudyConfiguration studyConfiguration,
+                         VariantSourceStats variantSourceStats, Properties tagmap, ProgressLogger progressLogger,
+                         boolean genotypeCountCalculator) {
             this.overwrite = overwrite;
             this.cohorts = cohorts;
             this.studyConfiguration = studyConfiguration;
             this.progressLogger = progressLogger;
-            jsonObjectMapper = new ObjectMapper(new JsonFactory());
-            jsonObjectMapper.addMixIn(VariantStats.class, VariantStatsJsonMixin.class);
-            jsonObjectMapper.addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
-            variantsWriter = jsonObjectMapper.writerFor(VariantStatsWrapper.class);
             this.variantSourceStats = variantSourceStats;
             this.tagmap = tagmap;
-            variantStatisticsCalculator = new VariantStatisticsCalculator(overwrite);
+            variantStatisticsCalculator = genotypeCountCalculator
+                    ? new GenotypeCountVariantStatisticsCalculator(overwrite)
+                    : new VariantStatisticsCalculator(overwrite);
             variantStatisticsCalculator.setAggregationType(studyConfiguration.getAggregation(), tagmap);
         }
 
         @Override
-        public List<String> apply(List<Variant> variants) {
+        public List<VariantStatsWrapper> apply(List<Variant> variants) {
 
-            List<String> strings = new ArrayList<>(variants.size());
             boolean defaultCohortAbsent = false;
 
+            long start = System.currentTimeMillis();
             List<VariantStatsWrapper> variantStatsWrappers = variantStatisticsCalculator.calculateBatch(variants,
                     studyConfiguration.getStudyName(), cohorts);
 
-            long start = System.currentTimeMillis();
             for (VariantStatsWrapper variantStatsWrapper : variantStatsWrappers) {
-                try {
-                    strings.add(variantsWriter.writeValueAsString(variantStatsWrapper));
-                    if (variantStatsWrapper.getCohortStats().get(StudyEntry.DEFAULT_COHORT) == null) {
-                        defaultCohortAbsent = true;
-                    }
-                } catch (JsonProcessingException e) {
-                    throw Throwables.propagate(e);
+                if (variantStatsWrapper.getCohortStats().get(StudyEntry.DEFAULT_COHORT) == null) {
+                    defaultCohortAbsent = true;
+                    break;
                 }
             }
 
@@ -304,7 +418,8 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
                     variantSourceStats.updateSampleStats(variants, null);  // TODO test
                 }
             }
-            logger.debug("another batch of {} elements calculated. time: {}ms", strings.size(), System.currentTimeMillis() - start);
+            logger.debug("another batch of {} elements calculated. time: {}ms", variantStatsWrappers.size(),
+                    System.currentTimeMillis() - start);
             if (!variants.isEmpty()) {
                 progressLogger.increment(variants.size(), () -> ", up to position "
                         + variants.get(variants.size() - 1).getChromosome()
@@ -315,7 +430,7 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
             } else {
                 logger.info("task with empty batch");
             }
-            return strings;
+            return variantStatsWrappers;
         }
 
         @Override
@@ -326,6 +441,48 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
         }
     }
 
+    /**
+     * Calculates the stats for a batch of variants, and serializes them into json.
+     */
+    class VariantStatsWrapperTask implements ParallelTaskRunner.Task<Variant, String> {
+
+        private final VariantStatsTask variantStatsTask;
+        private ObjectMapper jsonObjectMapper;
+        private ObjectWriter variantsWriter;
+
+        VariantStatsWrapperTask(boolean overwrite, Map<String, Set<String>> cohorts,
+                                StudyConfiguration studyConfiguration,
+                                VariantSourceStats variantSourceStats, Properties tagmap, ProgressLogger progressLogger,
+                                boolean genotypeCountCalculator) {
+            variantStatsTask = new VariantStatsTask(overwrite, cohorts, studyConfiguration, variantSourceStats, tagmap, progressLogger,
+                    genotypeCountCalculator);
+            jsonObjectMapper = new ObjectMapper(new JsonFactory());
+            jsonObjectMapper.addMixIn(VariantStats.class, VariantStatsJsonMixin.class);
+            jsonObjectMapper.addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
+            variantsWriter = jsonObjectMapper.writerFor(VariantStatsWrapper.class);
+        }
+
+        @Override
+        public List<String> apply(List<Variant> variants) {
+            List<VariantStatsWrapper> variantStatsWrappers = variantStatsTask.apply(variants);
+
+            List<String> strings = new ArrayList<>(variantStatsWrappers.size());
+            for (VariantStatsWrapper variantStatsWrapper : variantStatsWrappers) {
+                try {
+                    strings.add(variantsWriter.writeValueAsString(variantStatsWrapper));
+                } catch (JsonProcessingException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+            return strings;
+        }
+
+        @Override
+        public void post() {
+            variantStatsTask.post();
+        }
+    }
+
     public void loadStats(VariantDBAdaptor variantDBAdaptor, URI uri, String study, QueryOptions options) throws
             IOException, StorageEngineException {
         StudyConfigurationManager studyConfigurationManager = variantDBAdaptor.getStudyConfigurationManager();
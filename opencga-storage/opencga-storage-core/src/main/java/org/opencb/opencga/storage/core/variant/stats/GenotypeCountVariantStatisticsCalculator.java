@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.stats;
+
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.biodata.tools.variant.stats.AggregationUtils;
+import org.opencb.biodata.tools.variant.stats.VariantStatsCalculator;
+
+import java.util.*;
+
+/**
+ * Variant statistics calculator based on primitive genotype counters.
+ *
+ * Cohorts are translated into arrays of sample positions once per batch (or whenever the samples position
+ * of the StudyEntry changes). For each variant, the genotype of each sample is translated into a small integer
+ * code only once, and then each cohort is computed by counting codes into an int array. This way, the cost
+ * grows linearly with the number of samples, instead of with samples x cohorts hash lookups.
+ *
+ * Aggregated studies are delegated to the parent {@link VariantStatisticsCalculator}.
+ */
+public class GenotypeCountVariantStatisticsCalculator extends VariantStatisticsCalculator {
+
+    private final boolean overwrite;
+
+    // Cohort positions cache. Valid while the samplesPosition map is the same instance.
+    private Map<String, Integer> cachedSamplesPosition;
+    private Map<String, Set<String>> cachedCohorts;
+    private String[] cohortNames;
+    private int[][] cohortSamplePositions;
+
+    // Reusable per variant buffer with the genotype code of each sample
+    private int[] sampleCodes = new int[0];
+
+    public GenotypeCountVariantStatisticsCalculator() {
+        this(false);
+    }
+
+    public GenotypeCountVariantStatisticsCalculator(boolean overwrite) {
+        super(overwrite);
+        this.overwrite = overwrite;
+    }
+
+    @Override
+    public List<VariantStatsWrapper> calculateBatch(List<Variant> variants, String studyId, Map<String, Set<String>> samples) {
+        if (AggregationUtils.isAggregated(getAggregation()) || samples == null) {
+            return super.calculateBatch(variants, studyId, samples);
+        }
+        List<VariantStatsWrapper> variantStatsWrappers = new ArrayList<>(variants.size());
+
+        for (Variant variant : variants) {
+            StudyEntry study = null;
+            for (StudyEntry entry : variant.getStudies()) {
+                if (entry.getStudyId().equals(studyId)) {
+                    study = entry;
+                    break;
+                }
+            }
+            if (study == null) {
+                setSkippedFiles(getSkippedFiles() + 1);
+                continue;
+            }
+            // Clear any stats from the input
+            study.setStats(new HashMap<>());
+
+            Integer gtPosition = study.getFormatPositions().get("GT");
+            if (gtPosition == null) {
+                // No genotypes. Let the default implementation deal with it.
+                variantStatsWrappers.addAll(super.calculateBatch(Collections.singletonList(variant), studyId, samples));
+                continue;
+            }
+
+            updateCohortPositions(study.getSamplesPosition(), samples);
+
+            // Translate genotypes into codes. Each distinct genotype string is parsed only once per variant.
+            List<List<String>> samplesData = study.getSamplesData();
+            int numSamples = samplesData.size();
+            if (sampleCodes.length < numSamples) {
+                sampleCodes = new int[numSamples];
+            }
+            Map<String, Integer> gtDictionary = new HashMap<>();
+            List<String> gtStrings = new ArrayList<>();
+            for (int i = 0; i < numSamples; i++) {
+                List<String> sampleData = samplesData.get(i);
+                String gt = sampleData.size() > gtPosition ? sampleData.get(gtPosition) : null;
+                Integer code = gtDictionary.get(gt);
+                if (code == null) {
+                    code = gtStrings.size();
+                    gtDictionary.put(gt, code);
+                    gtStrings.add(gt);
+                }
+                sampleCodes[i] = code;
+            }
+            Genotype[] genotypes = new Genotype[gtStrings.size()];
+            for (int i = 0; i < genotypes.length; i++) {
+                String gt = gtStrings.get(i);
+                genotypes[i] = gt == null ? null : new Genotype(gt, variant.getReference(), variant.getAlternate());
+            }
+
+            Map<String, String> attributes = study.getAttributes() == null ? Collections.emptyMap() : study.getAttributes();
+            int[] counts = new int[genotypes.length];
+            for (int c = 0; c < cohortNames.length; c++) {
+                if (overwrite || study.getStats(cohortNames[c]) == null) {
+                    Arrays.fill(counts, 0);
+                    for (int position : cohortSamplePositions[c]) {
+                        counts[sampleCodes[position]]++;
+                    }
+                    VariantStats variantStats = new VariantStats(variant);
+                    calculate(genotypes, counts, attributes, variantStats);
+                    study.setStats(cohortNames[c], variantStats);
+                }
+            }
+
+            variantStatsWrappers.add(
+                    new VariantStatsWrapper(variant.getChromosome(), variant.getStart(), variant.getEnd(), study.getStats(),
+                            variant.getSv()));
+        }
+        return variantStatsWrappers;
+    }
+
+    /**
+     * Fill the VariantStats from the genotype counts.
+     *
+     * @param genotypes     Distinct genotypes. Null genotypes are ignored.
+     * @param counts        Number of samples with each genotype
+     * @param attributes    File attributes
+     * @param variantStats  VariantStats to fill
+     */
+    static void calculate(Genotype[] genotypes, int[] counts, Map<String, String> attributes, VariantStats variantStats) {
+        int refAlleleCount = 0;
+        int altAlleleCount = 0;
+        int missingAlleles = 0;
+        int missingGenotypes = 0;
+        // Only called alleles and genotypes without missing alleles are used for the frequencies
+        int totalAllelesCount = 0;
+        int totalGenotypesCount = 0;
+
+        for (int i = 0; i < genotypes.length; i++) {
+            Genotype genotype = genotypes[i];
+            int count = counts[i];
+            if (genotype == null || count == 0) {
+                continue;
+            }
+            variantStats.addGenotype(genotype, count);
+            boolean missing = false;
+            for (int allele : genotype.getAllelesIdx()) {
+                if (allele < 0) {
+                    missingAlleles += count;
+                    missing = true;
+                } else {
+                    totalAllelesCount += count;
+                    if (allele == 0) {
+                        refAlleleCount += count;
+                    } else if (allele == 1) {
+                        altAlleleCount += count;
+                    }
+                }
+            }
+            if (missing) {
+                missingGenotypes += count;
+            } else {
+                totalGenotypesCount += count;
+            }
+        }
+
+        variantStats.setRefAlleleCount(refAlleleCount);
+        variantStats.setAltAlleleCount(altAlleleCount);
+        variantStats.setMissingAlleles(missingAlleles);
+        variantStats.setMissingGenotypes(missingGenotypes);
+
+        // Same frequencies, MAF and MGF as the default calculator
+        VariantStatsCalculator.calculateAlleleFrequencies(totalAllelesCount, variantStats);
+        VariantStatsCalculator.calculateGenotypeFrequencies(totalGenotypesCount, variantStats);
+
+        if ("PASS".equals(attributes.get(StudyEntry.FILTER))) {
+            variantStats.setPassedFilters(true);
+        }
+        String qual = attributes.get(StudyEntry.QUAL);
+        if (qual != null && !qual.equals(".")) {
+            float quality = Float.parseFloat(qual);
+            if (quality >= 0) {
+                variantStats.setQuality(quality);
+            }
+        }
+    }
+
+    /**
+     * Translate the cohorts, from sets of sample names, to arrays of sample positions.
+     * Only executed when the samples position changes, typically once per batch or less.
+     *
+     * @param samplesPosition   Samples position from the StudyEntry
+     * @param cohorts           Cohorts to calculate
+     */
+    private void updateCohortPositions(Map<String, Integer> samplesPosition, Map<String, Set<String>> cohorts) {
+        if (samplesPosition == cachedSamplesPosition && cohorts == cachedCohorts) {
+            return;
+        }
+        cohortNames = new String[cohorts.size()];
+        cohortSamplePositions = new int[cohorts.size()][];
+        int c = 0;
+        for (Map.Entry<String, Set<String>> entry : cohorts.entrySet()) {
+            int[] positions = new int[entry.getValue().size()];
+            int i = 0;
+            for (String sample : entry.getValue()) {
+                Integer position = samplesPosition.get(sample);
+                if (position != null) {
+                    positions[i++] = position;
+                }
+            }
+            cohortNames[c] = entry.getKey();
+            cohortSamplePositions[c] = i == positions.length ? positions : Arrays.copyOf(positions, i);
+            c++;
+        }
+        cachedSamplesPosition = samplesPosition;
+        cachedCohorts = cohorts;
+    }
+}
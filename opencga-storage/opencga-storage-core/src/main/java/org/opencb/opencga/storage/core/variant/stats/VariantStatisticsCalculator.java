@@ -52,6 +52,10 @@ public class VariantStatisticsCalculator {
         this.skippedFiles = skippedFiles;
     }
 
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
     /**
      * if the study is aggregated i.e. it doesn't have sample data, call this before calculate. It is not needed if the
      * study does have samples.
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.transform;
+
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderVersion;
+import org.opencb.biodata.formats.variant.VariantFactory;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantFileMetadata;
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
+import org.opencb.biodata.tools.variant.converters.proto.VariantToVcfSliceConverter;
+import org.opencb.biodata.tools.variant.stats.VariantSetStatsCalculator;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transforms VCF lines into {@link VcfSlice}. Each slice contains the consecutive variants of a batch
+ * starting in the same genomic window of {@link #sliceSize} bases.
+ *
+ * Variants from the same window split in two batches produce two slices with the same position, that are merged by
+ * {@link VcfSliceMergeWriter}.
+ */
+public class VariantProtoTransformTask extends VariantTransformTask<VcfSlice> {
+
+    private final int sliceSize;
+    private final VariantToVcfSliceConverter sliceConverter = new VariantToVcfSliceConverter();
+
+    public VariantProtoTransformTask(VariantFactory factory, String studyId, VariantFileMetadata fileMetadata, Path outputFileJsonFile,
+                                     VariantSetStatsCalculator variantStatsTask, boolean includeSrc, boolean generateReferenceBlocks,
+                                     int sliceSize) {
+        super(factory, studyId, fileMetadata, outputFileJsonFile, variantStatsTask, includeSrc, generateReferenceBlocks);
+        this.sliceSize = sliceSize;
+    }
+
+    public VariantProtoTransformTask(VCFHeader header, VCFHeaderVersion version, String studyId, VariantFileMetadata fileMetadata,
+                                     Path outputFileJsonFile, VariantSetStatsCalculator variantStatsTask, boolean includeSrc,
+                                     boolean generateReferenceBlocks, int sliceSize) {
+        super(header, version, studyId, fileMetadata, outputFileJsonFile, variantStatsTask, includeSrc, generateReferenceBlocks);
+        this.sliceSize = sliceSize;
+    }
+
+    @Override
+    protected List<VcfSlice> encodeVariants(List<Variant> variants) {
+        List<VcfSlice> slices = new ArrayList<>();
+        List<Variant> sliceVariants = new ArrayList<>();
+        String chromosome = null;
+        int slicePosition = -1;
+        for (Variant variant : variants) {
+            int position = getSlicePosition(variant);
+            if (!variant.getChromosome().equals(chromosome) || position != slicePosition) {
+                if (!sliceVariants.isEmpty()) {
+                    slices.add(sliceConverter.convert(sliceVariants, slicePosition));
+                    sliceVariants = new ArrayList<>();
+                }
+                chromosome = variant.getChromosome();
+                slicePosition = position;
+            }
+            sliceVariants.add(variant);
+        }
+        if (!sliceVariants.isEmpty()) {
+            slices.add(sliceConverter.convert(sliceVariants, slicePosition));
+        }
+        return slices;
+    }
+
+    private int getSlicePosition(Variant variant) {
+        return (variant.getStart() / sliceSize) * sliceSize;
+    }
+}
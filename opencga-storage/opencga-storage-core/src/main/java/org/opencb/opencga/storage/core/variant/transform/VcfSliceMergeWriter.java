@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.transform;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantFileMetadata;
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
+import org.opencb.biodata.tools.variant.converters.proto.VariantToVcfSliceConverter;
+import org.opencb.biodata.tools.variant.converters.proto.VcfSliceToVariantListConverter;
+import org.opencb.commons.io.DataWriter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes {@link VcfSlice}s, keeping one slice per genomic window.
+ *
+ * A window split across two consecutive batches is produced as two slices with the same position. The last slice of
+ * each batch is kept until the next batch is received, and merged with its first slice if both belong to the same
+ * window. Requires the batches to be received in order.
+ */
+public class VcfSliceMergeWriter implements DataWriter<VcfSlice> {
+
+    private final DataWriter<VcfSlice> writer;
+    private final VariantFileMetadata metadata;
+    private final String studyId;
+    private final VariantToVcfSliceConverter toSliceConverter = new VariantToVcfSliceConverter();
+    private VcfSliceToVariantListConverter toVariantsConverter;
+    private VcfSlice pendingSlice;
+
+    public VcfSliceMergeWriter(DataWriter<VcfSlice> writer, VariantFileMetadata metadata, String studyId) {
+        this.writer = writer;
+        this.metadata = metadata;
+        this.studyId = studyId;
+    }
+
+    @Override
+    public boolean open() {
+        return writer.open();
+    }
+
+    @Override
+    public boolean close() {
+        return writer.close();
+    }
+
+    @Override
+    public boolean pre() {
+        return writer.pre();
+    }
+
+    @Override
+    public boolean post() {
+        if (pendingSlice != null) {
+            writer.write(Collections.singletonList(pendingSlice));
+            pendingSlice = null;
+        }
+        return writer.post();
+    }
+
+    @Override
+    public boolean write(List<VcfSlice> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        List<VcfSlice> slices = new ArrayList<>(batch.size());
+        VcfSlice first = batch.get(0);
+        if (pendingSlice != null) {
+            if (sameWindow(pendingSlice, first)) {
+                first = merge(pendingSlice, first);
+            } else {
+                slices.add(pendingSlice);
+            }
+        }
+        if (batch.size() == 1) {
+            pendingSlice = first;
+        } else {
+            slices.add(first);
+            slices.addAll(batch.subList(1, batch.size() - 1));
+            pendingSlice = batch.get(batch.size() - 1);
+        }
+        return slices.isEmpty() || writer.write(slices);
+    }
+
+    private static boolean sameWindow(VcfSlice slice, VcfSlice other) {
+        return slice.getPosition() == other.getPosition() && slice.getChromosome().equals(other.getChromosome());
+    }
+
+    private VcfSlice merge(VcfSlice slice, VcfSlice other) {
+        if (toVariantsConverter == null) {
+            // Samples are known once the header has been read
+            toVariantsConverter = new VcfSliceToVariantListConverter(metadata.toVariantStudyMetadata(studyId));
+        }
+        List<Variant> variants = new ArrayList<>(toVariantsConverter.convert(slice));
+        variants.addAll(toVariantsConverter.convert(other));
+        return toSliceConverter.convert(variants, slice.getPosition());
+    }
+}
@@ -0,0 +1,105 @@
+package org.opencb.opencga.storage.core.alignment.local;
+
+import htsjdk.samtools.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.tools.alignment.AlignmentOptions;
+import org.opencb.biodata.tools.alignment.BamManager;
+import org.opencb.biodata.tools.alignment.filters.AlignmentFilters;
+import org.opencb.biodata.tools.alignment.filters.SamRecordFilters;
+import org.opencb.biodata.tools.alignment.iterators.BamIterator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AlignmentCounterTest {
+
+    private Path bamPath;
+    private BamManagerPool pool;
+    private AlignmentCounter counter;
+    private Region region;
+
+    @Before
+    public void setUp() throws Exception {
+        bamPath = Paths.get(getClass().getResource("/HG00096.chrom20.small.bam").toURI());
+        pool = new BamManagerPool();
+        counter = new AlignmentCounter(pool, 4);
+
+        try (SamReader reader = SamReaderFactory.makeDefault().open(bamPath.toFile());
+             SAMRecordIterator iterator = reader.iterator()) {
+            SAMRecord first = iterator.next();
+            // Several sub-regions
+            region = new Region(first.getReferenceName(), first.getAlignmentStart(),
+                    first.getAlignmentStart() + 3 * AlignmentCounter.MIN_SUB_REGION_SIZE);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.close();
+    }
+
+    @Test
+    public void testCountAll() throws Exception {
+        long expected = 0;
+        try (SamReader reader = SamReaderFactory.makeDefault().open(bamPath.toFile());
+             SAMRecordIterator iterator = reader.iterator()) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                expected++;
+            }
+        }
+        assertTrue(expected > 0);
+        assertEquals(expected, counter.count(bamPath, null, SamRecordFilters::create, false, false));
+    }
+
+    @Test
+    public void testCountRegion() throws Exception {
+        assertEquals(expectedCount(region, SamRecordFilters::create, false),
+                counter.count(bamPath, region, SamRecordFilters::create, false, false));
+        assertEquals(expectedCount(region, SamRecordFilters::create, true),
+                counter.count(bamPath, region, SamRecordFilters::create, false, true));
+    }
+
+    @Test
+    public void testCountFiltered() throws Exception {
+        Supplier<AlignmentFilters<SAMRecord>> filters = () -> {
+            AlignmentFilters<SAMRecord> alignmentFilters = SamRecordFilters.create();
+            alignmentFilters.addMappingQualityFilter(30);
+            return alignmentFilters;
+        };
+        assertEquals(expectedCount(region, filters, false), counter.count(bamPath, region, filters, true, false));
+    }
+
+    @Test
+    public void testCountRegionAfterChromosomeEnd() throws Exception {
+        int length;
+        try (SamReader reader = SamReaderFactory.makeDefault().open(bamPath.toFile())) {
+            length = reader.getFileHeader().getSequence(region.getChromosome()).getSequenceLength();
+        }
+        Region outOfRange = new Region(region.getChromosome(), length + 1, length + 1000);
+        assertEquals(0, counter.count(bamPath, outOfRange, SamRecordFilters::create, false, false));
+        assertEquals(0, counter.count(bamPath, outOfRange, SamRecordFilters::create, true, false));
+    }
+
+    private long expectedCount(Region region, Supplier<AlignmentFilters<SAMRecord>> filters, boolean contained) throws Exception {
+        AlignmentOptions options = new AlignmentOptions();
+        options.setContained(contained);
+        BamManager bamManager = new BamManager(bamPath);
+        long count = 0;
+        BamIterator<SAMRecord> iterator = bamManager.iterator(region, filters.get(), options, SAMRecord.class);
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        iterator.close();
+        bamManager.close();
+        return count;
+    }
+}
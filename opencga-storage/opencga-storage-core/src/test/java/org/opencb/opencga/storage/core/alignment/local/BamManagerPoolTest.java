@@ -0,0 +1,114 @@
+package org.opencb.opencga.storage.core.alignment.local;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.tools.alignment.BamManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+public class BamManagerPoolTest {
+
+    private static final String BAM = "HG00096.chrom20.small.bam";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private Path bamPath;
+    private BamManagerPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        Path outdir = temporaryFolder.getRoot().toPath();
+        bamPath = outdir.resolve(BAM);
+        Files.copy(Paths.get(getClass().getResource("/" + BAM).toURI()), bamPath, StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(Paths.get(getClass().getResource("/" + BAM + ".bai").toURI()), outdir.resolve(BAM + ".bai"),
+                StandardCopyOption.REPLACE_EXISTING);
+        pool = new BamManagerPool(2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.close();
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        BamManager bamManager;
+        try (BamManagerPool.Lease lease = pool.borrow(bamPath)) {
+            bamManager = lease.getBamManager();
+        }
+        assertEquals(1, pool.getIdleCount());
+        try (BamManagerPool.Lease lease = pool.borrow(bamPath)) {
+            assertSame(bamManager, lease.getBamManager());
+            assertEquals(0, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    public void testThreadConfined() throws Exception {
+        try (BamManagerPool.Lease lease1 = pool.borrow(bamPath);
+             BamManagerPool.Lease lease2 = pool.borrow(bamPath)) {
+            assertNotSame(lease1.getBamManager(), lease2.getBamManager());
+        }
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void testStaleLease() throws Exception {
+        BamManagerPool.Lease stale = pool.borrow(bamPath);
+        BamManager bamManager = stale.getBamManager();
+        stale.close();
+        stale.close();
+        assertEquals(1, pool.getIdleCount());
+
+        try (BamManagerPool.Lease lease = pool.borrow(bamPath)) {
+            assertNotSame(stale, lease);
+            assertSame(bamManager, lease.getBamManager());
+            // Closing the stale lease again must not return the BamManager held by the new lease
+            stale.close();
+            assertEquals(0, pool.getIdleCount());
+            try (BamManagerPool.Lease other = pool.borrow(bamPath)) {
+                assertNotSame(bamManager, other.getBamManager());
+            }
+        }
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedLease() throws Exception {
+        BamManagerPool.Lease lease = pool.borrow(bamPath);
+        lease.close();
+        lease.getBamManager();
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        try (BamManagerPool.Lease lease1 = pool.borrow(bamPath);
+             BamManagerPool.Lease lease2 = pool.borrow(bamPath);
+             BamManagerPool.Lease lease3 = pool.borrow(bamPath)) {
+            assertNotNull(lease3.getBamManager());
+        }
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void testInvalidateOnModification() throws Exception {
+        BamManager bamManager;
+        try (BamManagerPool.Lease lease = pool.borrow(bamPath)) {
+            bamManager = lease.getBamManager();
+        }
+        Files.setLastModifiedTime(bamPath, FileTime.fromMillis(Files.getLastModifiedTime(bamPath).toMillis() + 10000));
+        try (BamManagerPool.Lease lease = pool.borrow(bamPath)) {
+            assertNotSame(bamManager, lease.getBamManager());
+        }
+        assertEquals(1, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,119 @@
+package org.opencb.opencga.storage.core.alignment.local;
+
+import htsjdk.samtools.*;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.alignment.RegionCoverage;
+import org.opencb.biodata.models.core.Region;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class CoveragePyramidTest {
+
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static Path bamPath;
+    private static Path coveragePath;
+    private static Region region;
+    private static int[] expectedDepth;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        bamPath = Paths.get(CoveragePyramidTest.class.getResource("/HG00096.chrom20.small.bam").toURI());
+        coveragePath = CoveragePyramid.getPath(bamPath, temporaryFolder.getRoot().toPath());
+        CoveragePyramid.build(bamPath, coveragePath);
+
+        // Expected depth of the first 64kb with reads, aligned with the bins of every level
+        try (SamReader reader = SamReaderFactory.makeDefault().open(bamPath.toFile())) {
+            SAMRecord first;
+            try (SAMRecordIterator iterator = reader.iterator()) {
+                first = iterator.next();
+            }
+            int start = ((first.getAlignmentStart() - 1) / 16384) * 16384 + 1;
+            region = new Region(first.getReferenceName(), start, start + 65535);
+            expectedDepth = new int[region.getEnd() - region.getStart() + 1];
+            try (SAMRecordIterator iterator = reader.queryOverlapping(region.getChromosome(), region.getStart(), region.getEnd())) {
+                while (iterator.hasNext()) {
+                    SAMRecord record = iterator.next();
+                    if (record.getReadUnmappedFlag() || record.getNotPrimaryAlignmentFlag() || record.getDuplicateReadFlag()) {
+                        continue;
+                    }
+                    for (AlignmentBlock block : record.getAlignmentBlocks()) {
+                        for (int i = 0; i < block.getLength(); i++) {
+                            int position = block.getReferenceStart() + i;
+                            if (position >= region.getStart() && position <= region.getEnd()) {
+                                expectedDepth[position - region.getStart()]++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBelowBaseLevel() throws Exception {
+        try (CoveragePyramid coveragePyramid = CoveragePyramid.open(coveragePath)) {
+            // Must be computed from the reads
+            assertNull(coveragePyramid.coverage(region, 1));
+            assertNull(coveragePyramid.coverage(region, CoveragePyramid.DEFAULT_LEVELS[0] - 1));
+        }
+    }
+
+    @Test
+    public void testLevels() throws Exception {
+        try (CoveragePyramid coveragePyramid = CoveragePyramid.open(coveragePath)) {
+            assertArrayEquals(CoveragePyramid.DEFAULT_LEVELS, coveragePyramid.getLevels());
+            for (int windowSize : new int[]{32, 256, 2048, 4096, 16384}) {
+                RegionCoverage coverage = coveragePyramid.coverage(region, windowSize);
+                assertEquals((expectedDepth.length - 1) / windowSize + 1, coverage.getValues().length);
+                for (int w = 0; w < coverage.getValues().length; w++) {
+                    int from = w * windowSize;
+                    int to = Math.min(from + windowSize, expectedDepth.length);
+                    double mean = 0;
+                    for (int i = from; i < to; i++) {
+                        mean += expectedDepth[i];
+                    }
+                    mean /= to - from;
+                    // Bins store the rounded mean
+                    assertEquals("windowSize " + windowSize + ", window " + w, mean, coverage.getValues()[w], 0.501);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMissingChromosome() throws Exception {
+        try (CoveragePyramid coveragePyramid = CoveragePyramid.open(coveragePath)) {
+            assertNull(coveragePyramid.coverage(new Region("NOT_A_CHROMOSOME", 1, 1000), 10));
+        }
+    }
+
+    @Test
+    public void testGetPath() throws Exception {
+        Path workspace = temporaryFolder.getRoot().toPath();
+        assertEquals(coveragePath, CoveragePyramid.getPath(bamPath, workspace));
+        assertEquals(workspace, coveragePath.getParent());
+        assertTrue(coveragePath.getFileName().toString().startsWith("HG00096.chrom20.small.bam."));
+        assertTrue(coveragePath.getFileName().toString().endsWith(CoveragePyramid.EXTENSION));
+        assertEquals(bamPath.resolveSibling("HG00096.chrom20.small.bam" + CoveragePyramid.EXTENSION),
+                CoveragePyramid.getPath(bamPath, null));
+
+        // Alignment files with the same name from different directories do not share the coverage in the workspace
+        Path otherBamPath = temporaryFolder.getRoot().toPath().resolve("other").resolve(bamPath.getFileName());
+        assertNotEquals(coveragePath, CoveragePyramid.getPath(otherBamPath, workspace));
+        assertEquals(coveragePath, CoveragePyramid.getPath(bamPath.getParent().resolve(".").resolve(bamPath.getFileName()), workspace));
+    }
+
+    @Test
+    public void testUpToDate() throws Exception {
+        assertTrue(CoveragePyramid.isUpToDate(bamPath, coveragePath));
+        assertFalse(CoveragePyramid.isUpToDate(bamPath, coveragePath.resolveSibling("missing" + CoveragePyramid.EXTENSION)));
+    }
+}
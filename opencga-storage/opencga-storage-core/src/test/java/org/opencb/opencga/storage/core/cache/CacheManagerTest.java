@@ -0,0 +1,115 @@
+package org.opencb.opencga.storage.core.cache;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.storage.core.config.CacheConfiguration;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CacheManagerTest {
+
+    private CacheManager cacheManager;
+
+    @BeforeClass
+    public static void checkRedis() {
+        String[] host = CacheConfiguration.DEFAULT_HOST.split(":");
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host[0], Integer.parseInt(host[1])), 1000);
+        } catch (IOException e) {
+            Assume.assumeNoException("Redis not available at " + CacheConfiguration.DEFAULT_HOST, e);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        StorageConfiguration configuration = new StorageConfiguration();
+        configuration.getCache().setSlowThreshold(0);
+        cacheManager = new CacheManager(configuration);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cacheManager.close();
+    }
+
+    private String key(String study) {
+        return cacheManager.createKey(study, "var", new Query("gene", "BRCA2"), new QueryOptions());
+    }
+
+    @Test
+    public void testStudyKeys() {
+        assertEquals(key("1"), key("1"));
+        assertNotEquals(key("1"), key("2"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        String key = key("1");
+        String otherStudyKey = key("2");
+        QueryResult<String> queryResult = new QueryResult<>("q", 100, 1, 1, "", "", Collections.singletonList("v"));
+        cacheManager.set(key, new Query(), queryResult);
+        assertEquals(1, cacheManager.get(key).getNumResults());
+
+        assertNotEquals(cacheManager.getStudyEpoch("1"), cacheManager.invalidate("1"));
+
+        String newKey = key("1");
+        assertNotEquals(key, newKey);
+        assertEquals(otherStudyKey, key("2"));
+    }
+
+    @Test
+    public void testKeysSharedByInstances() {
+        CacheManager other = new CacheManager(new StorageConfiguration());
+        try {
+            other.invalidate("1");
+            assertEquals(other.createKey("1", "var", new Query("gene", "BRCA2"), new QueryOptions()), key("1"));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void testInvalidateFromOtherInstance() throws InterruptedException {
+        String key = key("1");
+        CacheManager other = new CacheManager(new StorageConfiguration());
+        try {
+            other.invalidate("1");
+        } finally {
+            other.close();
+        }
+        Thread.sleep(CacheManager.REMOTE_EPOCH_REFRESH_MILLIS + 100);
+        assertNotEquals(key, key("1"));
+    }
+
+    @Test
+    public void testInvalidateLocalCache() {
+        String key = key("1");
+        String localKey = cacheManager.getLocalKey(key);
+        cacheManager.invalidate("1");
+        assertNotEquals(localKey, cacheManager.getLocalKey(key));
+    }
+
+    @Test
+    public void testClearKeepsEpochs() {
+        String epoch = cacheManager.invalidate("1");
+        cacheManager.clear();
+        CacheManager other = new CacheManager(new StorageConfiguration());
+        try {
+            assertEquals(epoch, other.getStudyEpoch("1"));
+        } finally {
+            other.close();
+        }
+    }
+}
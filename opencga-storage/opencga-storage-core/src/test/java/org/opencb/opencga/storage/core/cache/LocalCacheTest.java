@@ -0,0 +1,104 @@
+package org.opencb.opencga.storage.core.cache;
+
+import org.junit.Test;
+import org.opencb.commons.datastore.core.QueryResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class LocalCacheTest {
+
+    private static QueryResult<String> queryResult(String id) {
+        return new QueryResult<>(id, 100, 1, 1, "", "", new ArrayList<>(Collections.singletonList(id)));
+    }
+
+    @Test
+    public void testGetPut() {
+        LocalCache cache = new LocalCache(10000, 0);
+        assertNull(cache.get("ocga:1"));
+        assertTrue(cache.put("ocga:1", queryResult("q1")));
+
+        QueryResult<String> result = cache.get("ocga:1");
+        assertNotNull(result);
+        assertEquals("q1", result.getId());
+        assertEquals(Collections.singletonList("q1"), result.getResult());
+
+        // Modifications over the returned element do not affect the cached one
+        result.setDbTime(0);
+        result.getResult().clear();
+        assertEquals(100, cache.get("ocga:1").getDbTime());
+        assertEquals(Collections.singletonList("q1"), cache.get("ocga:1").getResult());
+
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testPutCopiesResult() {
+        LocalCache cache = new LocalCache(10000, 0);
+        QueryResult<String> queryResult = queryResult("q1");
+        cache.put("ocga:1", queryResult);
+
+        // Modifications over the stored element do not affect the cached one
+        queryResult.getResult().clear();
+        assertEquals(Collections.singletonList("q1"), cache.get("ocga:1").getResult());
+    }
+
+    @Test
+    public void testEstimateWeight() {
+        assertEquals(LocalCache.RESULT_WEIGHT, LocalCache.estimateWeight(queryResult("q1")));
+        LocalCache cache = new LocalCache(10000, 0);
+        cache.put("ocga:1", queryResult("q1"));
+        assertEquals(LocalCache.ENTRY_OVERHEAD + LocalCache.RESULT_WEIGHT, cache.getWeight());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        // Room for 2 elements
+        LocalCache cache = new LocalCache(2 * (LocalCache.ENTRY_OVERHEAD + 10), 0, qr -> 10);
+        cache.put("ocga:1", queryResult("q1"));
+        cache.put("ocga:2", queryResult("q2"));
+        // Access q1, so q2 becomes the least recently used
+        assertNotNull(cache.get("ocga:1"));
+        cache.put("ocga:3", queryResult("q3"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("ocga:1"));
+        assertNull(cache.get("ocga:2"));
+        assertNotNull(cache.get("ocga:3"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2 * (LocalCache.ENTRY_OVERHEAD + 10), cache.getWeight());
+    }
+
+    @Test
+    public void testTooHeavy() {
+        LocalCache cache = new LocalCache(LocalCache.ENTRY_OVERHEAD + 10, 0, qr -> 11);
+        assertFalse(cache.put("ocga:1", queryResult("q1")));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testExpire() throws InterruptedException {
+        LocalCache cache = new LocalCache(10000, 10);
+        cache.put("ocga:1", queryResult("q1"));
+        Thread.sleep(50);
+        assertNull(cache.get("ocga:1"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testClearPattern() {
+        LocalCache cache = new LocalCache(10000, 0);
+        cache.put("ocga:1:var:abc", queryResult("q1"));
+        cache.put("ocga:1:aln:abc", queryResult("q2"));
+        cache.put("ocga:2:var:abc", queryResult("q3"));
+
+        cache.clear("ocga:1:*");
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get("ocga:2:var:abc"));
+    }
+}
@@ -0,0 +1,94 @@
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.opencga.storage.core.io.plain.StringDataReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class BgzfInputStreamTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testParallelDecompression() throws Exception {
+        byte[] data = new byte[1000000];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 200000 < 100000 ? 'A' + random.nextInt(4) : random.nextInt());
+        }
+        File file = temporaryFolder.newFile("data.gz");
+        try (OutputStream os = new BgzfOutputStream(new FileOutputStream(file), 4)) {
+            os.write(data);
+        }
+
+        assertTrue(BgzfInputStream.isBgzf(file.toPath()));
+        try (InputStream is = new BgzfInputStream(new FileInputStream(file), 4)) {
+            assertArrayEquals(data, IOUtils.toByteArray(is));
+        }
+    }
+
+    @Test
+    public void testIsNotBgzf() throws Exception {
+        File file = temporaryFolder.newFile("data.gz");
+        try (OutputStream os = new GZIPOutputStream(new FileOutputStream(file))) {
+            os.write("1\t100\t.\tA\tC\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertFalse(BgzfInputStream.isBgzf(file.toPath()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedBlock() throws Exception {
+        ByteArrayOutputStream bgzf = new ByteArrayOutputStream();
+        try (OutputStream os = new BgzfOutputStream(bgzf)) {
+            os.write("1\t100\t.\tA\tC\n".getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] bytes = bgzf.toByteArray();
+        // Modify the CRC32 of the first block
+        bytes[bytes.length - BgzfOutputStream.EOF_BLOCK.length - 8]++;
+        try (InputStream is = new BgzfInputStream(new ByteArrayInputStream(bytes), 2)) {
+            IOUtils.toByteArray(is);
+        }
+    }
+
+    @Test
+    public void testReadLines() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 50000; i++) {
+            lines.add("1\t" + i + "\trs" + i + "\tA\tC\t.\tPASS\tDP=" + i);
+        }
+        File bgzf = temporaryFolder.newFile("variants.vcf.gz");
+        File plain = temporaryFolder.newFile("variants.vcf");
+        try (OutputStream os = new BgzfOutputStream(new FileOutputStream(bgzf), 4);
+             OutputStream plainOs = new FileOutputStream(plain)) {
+            for (String line : lines) {
+                os.write((line + '\n').getBytes(StandardCharsets.UTF_8));
+                plainOs.write((line + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        for (File file : new File[]{bgzf, plain}) {
+            for (int threads : new int[]{1, 4}) {
+                List<String> read = new ArrayList<>();
+                StringDataReader reader = new StringDataReader(file.toPath(), threads);
+                reader.open();
+                List<String> batch;
+                while (!(batch = reader.read(1000)).isEmpty()) {
+                    read.addAll(batch);
+                }
+                reader.close();
+                assertEquals(file + " with " + threads + " threads", lines, read);
+            }
+        }
+    }
+}
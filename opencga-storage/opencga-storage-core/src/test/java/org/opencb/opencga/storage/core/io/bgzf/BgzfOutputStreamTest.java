@@ -0,0 +1,115 @@
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.tribble.index.Block;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class BgzfOutputStreamTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testParallelCompression() throws Exception {
+        byte[] data = new byte[1000000];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            // Mix compressible and uncompressible data
+            data[i] = (byte) (i % 200000 < 100000 ? 'A' + random.nextInt(4) : random.nextInt());
+        }
+
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        try (OutputStream os = new BgzfOutputStream(single)) {
+            os.write(data);
+        }
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        List<long[]> blocks = new ArrayList<>();
+        try (BgzfOutputStream os = new BgzfOutputStream(parallel, 4)) {
+            os.setListener((uncompressedStart, uncompressedLength, compressedStart, compressedLength) ->
+                    blocks.add(new long[]{uncompressedStart, uncompressedLength, compressedStart, compressedLength}));
+            for (int i = 0; i < data.length; i += 1000) {
+                os.write(data, i, 1000);
+            }
+            assertEquals(data.length, os.getPosition());
+        }
+
+        // Blocks are written in order, whatever the number of threads
+        assertArrayEquals(single.toByteArray(), parallel.toByteArray());
+        assertArrayEquals(data, IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(parallel.toByteArray()))));
+
+        long uncompressed = 0;
+        long compressed = 0;
+        for (long[] block : blocks) {
+            assertEquals(uncompressed, block[0]);
+            assertEquals(compressed, block[2]);
+            assertTrue(block[3] <= BgzfOutputStream.MAX_BLOCK_SIZE);
+            uncompressed += block[1];
+            compressed += block[3];
+        }
+        assertEquals(data.length, uncompressed);
+        byte[] output = parallel.toByteArray();
+        assertEquals(compressed + BgzfOutputStream.EOF_BLOCK.length, output.length);
+        assertArrayEquals(BgzfOutputStream.EOF_BLOCK, Arrays.copyOfRange(output, output.length - BgzfOutputStream.EOF_BLOCK.length,
+                output.length));
+    }
+
+    @Test
+    public void testTabixIndex() throws Exception {
+        File vcf = temporaryFolder.newFile("variants.vcf.gz");
+        File tbi = new File(vcf.getPath() + ".tbi");
+
+        try (OutputStream os = new VcfTabixIndexingOutputStream(new BgzfOutputStream(new FileOutputStream(vcf), 4), tbi)) {
+            os.write("##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n".getBytes(StandardCharsets.UTF_8));
+            for (String chromosome : Arrays.asList("1", "2")) {
+                for (int i = 1; i <= 20000; i++) {
+                    os.write(line(chromosome, i * 100).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            os.write("2\t5000000\t.\tA\t<DEL>\t.\tPASS\tSVTYPE=DEL;END=5001000\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertTrue(tbi.exists());
+
+        TabixIndex index = new TabixIndex(tbi);
+        assertEquals(line("1", 150000), readFirstLine(vcf, index, "1", 150000, 150000));
+        assertEquals(line("2", 1999900), readFirstLine(vcf, index, "2", 1999900, 1999900));
+        assertEquals("2\t5000000\t.\tA\t<DEL>\t.\tPASS\tSVTYPE=DEL;END=5001000\n", readFirstLine(vcf, index, "2", 5000500, 5000500));
+        assertTrue(index.getBlocks("3", 1, 1000).isEmpty());
+    }
+
+    private static String line(String chromosome, int position) {
+        return chromosome + '\t' + position + "\trs" + position + "\tA\tC\t.\tPASS\tDP=" + position + '\n';
+    }
+
+    private static String readFirstLine(File vcf, TabixIndex index, String chromosome, int start, int end) throws IOException {
+        List<Block> blocks = index.getBlocks(chromosome, start, end);
+        assertFalse(blocks.isEmpty());
+        try (BlockCompressedInputStream is = new BlockCompressedInputStream(vcf)) {
+            is.seek(blocks.get(0).getStartPosition());
+            String line;
+            while ((line = is.readLine()) != null) {
+                String[] split = line.split("\t");
+                int lineEnd = split[7].contains("END=") ? Integer.parseInt(split[7].substring(split[7].indexOf("END=") + 4))
+                        : Integer.parseInt(split[1]);
+                // First overlapping line
+                if (split[0].equals(chromosome) && lineEnd >= start) {
+                    return line + '\n';
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package org.opencb.opencga.storage.core.manager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.tools.alignment.BamManager;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.StorageEngineFactory;
+import org.opencb.opencga.storage.core.alignment.AlignmentDBAdaptor;
+import org.opencb.opencga.storage.core.alignment.local.BamManagerPool;
+import org.opencb.opencga.storage.core.alignment.local.LocalAlignmentDBAdaptor;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.*;
+
+public class AlignmentStorageManagerTest {
+
+    private static final String BAM = "HG00096.chrom20.small.bam";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private Path bamPath;
+    private StorageEngineFactory storageEngineFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        Path outdir = temporaryFolder.getRoot().toPath();
+        bamPath = outdir.resolve(BAM);
+        Files.copy(Paths.get(getClass().getResource("/" + BAM).toURI()), bamPath, StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(Paths.get(getClass().getResource("/" + BAM + ".bai").toURI()), outdir.resolve(BAM + ".bai"),
+                StandardCopyOption.REPLACE_EXISTING);
+        storageEngineFactory = StorageEngineFactory.get(
+                StorageConfiguration.load(getClass().getResourceAsStream("/storage-configuration.yml"), "yml"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        BamManagerPool.closeShared();
+    }
+
+    @Test
+    public void testReadersSharedByManagers() throws Exception {
+        // A new AlignmentStorageManager is created for every REST request
+        AlignmentDBAdaptor dbAdaptor1 = new AlignmentStorageManager(null, storageEngineFactory).getAlignmentStorageEngine().getDBAdaptor();
+        AlignmentDBAdaptor dbAdaptor2 = new AlignmentStorageManager(null, storageEngineFactory).getAlignmentStorageEngine().getDBAdaptor();
+        BamManagerPool pool = ((LocalAlignmentDBAdaptor) dbAdaptor1).getBamManagerPool();
+        assertSame(pool, ((LocalAlignmentDBAdaptor) dbAdaptor2).getBamManagerPool());
+
+        QueryOptions options = new QueryOptions(QueryOptions.LIMIT, 10);
+        assertEquals(10, dbAdaptor1.get(bamPath, new Query(), options).getNumResults());
+        int idle = pool.getIdleCount();
+        assertTrue(idle > 0);
+        BamManager bamManager;
+        try (BamManagerPool.Lease lease = pool.borrow(bamPath)) {
+            bamManager = lease.getBamManager();
+        }
+
+        // The reader opened by the first manager is reused by the second one, so no new reader is added to the pool
+        assertEquals(10, dbAdaptor2.get(bamPath, new Query(), options).getNumResults());
+        assertEquals(idle, pool.getIdleCount());
+        try (BamManagerPool.Lease lease = pool.borrow(bamPath)) {
+            assertSame(bamManager, lease.getBamManager());
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.biodata.models.variant.avro.FileEntry;
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
 import org.opencb.biodata.models.variant.stats.VariantStats;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
@@ -52,6 +53,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Paths;
 import java.util.*;
@@ -96,6 +98,43 @@ public abstract class VariantStorageEngineTest extends VariantStorageBaseTest {
                 (fileMetadata));
     }
 
+    @Test
+    public void protoBasicIndex() throws Exception {
+        clearDB(DB_NAME);
+        StudyConfiguration studyConfiguration = newStudyConfiguration();
+        StoragePipelineResult etlResult = runDefaultETL(smallInputUri, variantStorageEngine, studyConfiguration,
+                new ObjectMap(VariantStorageEngine.Options.TRANSFORM_FORMAT.key(), "proto"));
+        assertTrue("Incorrect transform file extension " + etlResult.getTransformResult() + ". Expected 'variants.proto.gz'",
+                Paths.get(etlResult.getTransformResult()).toFile().getName().endsWith("variants.proto.gz"));
+
+        assertTrue(studyConfiguration.getIndexedFiles().contains(6));
+        VariantFileMetadata fileMetadata = checkTransformedVariants(etlResult.getTransformResult(), studyConfiguration);
+        checkLoadedVariants(variantStorageEngine.getDBAdaptor(), studyConfiguration, true, false, true, getExpectedNumLoadedVariants
+                (fileMetadata));
+    }
+
+    @Test
+    public void protoTransformWindowsAcrossBatches() throws Exception {
+        clearDB(DB_NAME);
+        StudyConfiguration studyConfiguration = newStudyConfiguration();
+        // Small batches and large windows, so most of the windows are split across batches
+        StoragePipelineResult etlResult = runDefaultETL(smallInputUri, variantStorageEngine, studyConfiguration,
+                new ObjectMap(VariantStorageEngine.Options.TRANSFORM_FORMAT.key(), "proto")
+                        .append(VariantStorageEngine.Options.TRANSFORM_BATCH_SIZE.key(), 10)
+                        .append(VariantStorageEngine.Options.TRANSFORM_PROTO_SLICE_SIZE.key(), 100000), true, false);
+
+        Set<String> windows = new HashSet<>();
+        try (InputStream is = new GZIPInputStream(new FileInputStream(Paths.get(etlResult.getTransformResult()).toFile()))) {
+            VcfSlice slice;
+            while ((slice = VcfSlice.parseDelimitedFrom(is)) != null) {
+                String window = slice.getChromosome() + ":" + slice.getPosition();
+                assertTrue("Duplicated slice " + window, windows.add(window));
+            }
+        }
+        assertFalse(windows.isEmpty());
+        checkTransformedVariants(etlResult.getTransformResult(), studyConfiguration);
+    }
+
     @Test
     public void multiIndex() throws Exception {
         clearDB(DB_NAME);
@@ -0,0 +1,109 @@
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class VariantSearchIdIteratorTest {
+
+    private List<String> ids;
+    private CursorSolrClient solrClient;
+
+    @Before
+    public void setUp() throws Exception {
+        ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add("1:" + (100 + i) + ":A:C");
+        }
+        solrClient = new CursorSolrClient(ids);
+    }
+
+    @Test
+    public void testIterateAll() throws Exception {
+        try (VariantSearchIdIterator iterator = new VariantSearchIdIterator(solrClient, "c", new SolrQuery("*:*"), 3)) {
+            assertEquals(ids, toList(iterator));
+            assertEquals(10, iterator.getNumFound());
+        }
+        // 3 + 3 + 3 + 1
+        assertEquals(4, solrClient.requests.get());
+    }
+
+    @Test
+    public void testLimitSkip() throws Exception {
+        SolrQuery solrQuery = new SolrQuery("*:*");
+        solrQuery.setStart(2);
+        solrQuery.setRows(5);
+        try (VariantSearchIdIterator iterator = new VariantSearchIdIterator(solrClient, "c", solrQuery, 3)) {
+            assertEquals(ids.subList(2, 7), toList(iterator));
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    public void testExactPages() throws Exception {
+        try (VariantSearchIdIterator iterator = new VariantSearchIdIterator(solrClient, "c", new SolrQuery("*:*"), 5)) {
+            assertEquals(ids, toList(iterator));
+        }
+    }
+
+    private static List<String> toList(VariantSearchIdIterator iterator) {
+        List<String> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    /**
+     * Serves the given sorted ids using the last returned id as cursorMark.
+     */
+    private static class CursorSolrClient extends SolrClient {
+        private final List<String> ids;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        CursorSolrClient(List<String> ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest request, String collection) {
+            requests.incrementAndGet();
+            SolrParams params = request.getParams();
+            String cursorMark = params.get(CursorMarkParams.CURSOR_MARK_PARAM);
+            int rows = params.getInt(CommonParams.ROWS);
+            int from = cursorMark.equals(CursorMarkParams.CURSOR_MARK_START) ? 0 : ids.indexOf(cursorMark) + 1;
+
+            SolrDocumentList documents = new SolrDocumentList();
+            documents.setNumFound(ids.size());
+            String nextCursorMark = cursorMark;
+            for (int i = from; i < Math.min(from + rows, ids.size()); i++) {
+                SolrDocument document = new SolrDocument();
+                document.setField("id", ids.get(i));
+                documents.add(document);
+                nextCursorMark = ids.get(i);
+            }
+
+            NamedList<Object> response = new NamedList<>();
+            response.add("response", documents);
+            response.add(CursorMarkParams.CURSOR_MARK_NEXT, nextCursorMark);
+            return response;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.ProgressLogger;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.solr.SolrExternalResource;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class VariantSearchManagerLoadTest {
+
+    @ClassRule
+    public static SolrExternalResource solr = new SolrExternalResource();
+
+    private static final int NUM_VARIANTS = 1234;
+
+    private VariantSearchManager variantSearchManager;
+    private List<Variant> variants;
+
+    @Before
+    public void setUp() throws Exception {
+        StorageConfiguration configuration = new StorageConfiguration();
+        configuration.getSearch()
+                .setInsertBatchSize(50)
+                .setInsertThreads(4)
+                // Far beyond the test duration. Documents are only visible after the final commit of the load.
+                .setCommitWithin(3600000);
+        variantSearchManager = new VariantSearchManager(null, configuration);
+        variantSearchManager.setSolrClient(solr.getSolrClient());
+
+        solr.getSolrClient().deleteByQuery(solr.coreName, "*:*");
+        solr.getSolrClient().commit(solr.coreName);
+
+        variants = new ArrayList<>(NUM_VARIANTS);
+        for (int i = 0; i < NUM_VARIANTS; i++) {
+            variants.add(new Variant("1", 1000 + i * 10, "A", "C"));
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        variantSearchManager.load(solr.coreName, iterator(variants), new ProgressLogger("Loaded variants"));
+
+        Set<String> expectedIds = new HashSet<>();
+        for (Variant variant : variants) {
+            expectedIds.add(variant.getChromosome() + ":" + variant.getStart() + ":" + variant.getReference() + ":"
+                    + variant.getAlternate());
+        }
+
+        SolrQuery solrQuery = new SolrQuery("*:*");
+        solrQuery.setFields("id");
+        solrQuery.setRows(NUM_VARIANTS * 2);
+        QueryResponse response = solr.getSolrClient().query(solr.coreName, solrQuery);
+
+        assertEquals(NUM_VARIANTS, response.getResults().getNumFound());
+        Set<String> ids = new HashSet<>();
+        for (SolrDocument document : response.getResults()) {
+            ids.add(document.getFieldValue("id").toString());
+        }
+        assertEquals(expectedIds, ids);
+    }
+
+    @Test
+    public void testLoadEmpty() throws Exception {
+        variantSearchManager.load(solr.coreName, iterator(Collections.emptyList()), new ProgressLogger("Loaded variants"));
+
+        QueryResponse response = solr.getSolrClient().query(solr.coreName, new SolrQuery("*:*").setRows(0));
+        assertEquals(0, response.getResults().getNumFound());
+    }
+
+    private static VariantDBIterator iterator(List<Variant> variants) {
+        Iterator<Variant> iterator = variants.iterator();
+        return new VariantDBIterator() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Variant next() {
+                return iterator.next();
+            }
+        };
+    }
+}
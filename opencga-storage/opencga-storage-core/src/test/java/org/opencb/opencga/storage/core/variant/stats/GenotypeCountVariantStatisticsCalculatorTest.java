@@ -0,0 +1,109 @@
+package org.opencb.opencga.storage.core.variant.stats;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.metadata.Aggregation;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class GenotypeCountVariantStatisticsCalculatorTest {
+
+    private static final String STUDY = "s1";
+    private List<Variant> variants;
+    private Map<String, Set<String>> cohorts;
+
+    @Before
+    public void setUp() throws Exception {
+        String[][] genotypes = {
+                {"0/0", "0/1", "1/1", "0/1", "./.", "0/0"},
+                {"0/0", "0/0", "0/0", "0/0", "0/0", "0/0"},
+                {"1/1", "./.", "./.", "0/1", "1/1", "0/0"},
+        };
+        LinkedHashMap<String, Integer> samplesPosition = new LinkedHashMap<>();
+        for (int i = 0; i < genotypes[0].length; i++) {
+            samplesPosition.put("S" + i, i);
+        }
+        variants = new ArrayList<>();
+        for (int v = 0; v < genotypes.length; v++) {
+            Variant variant = new Variant("1:" + (100 + v) + ":A:C");
+            StudyEntry studyEntry = new StudyEntry(STUDY, Collections.emptyList(), Collections.singletonList("GT"));
+            studyEntry.setSamplesPosition(samplesPosition);
+            List<List<String>> samplesData = new ArrayList<>();
+            for (String gt : genotypes[v]) {
+                samplesData.add(Collections.singletonList(gt));
+            }
+            studyEntry.setSamplesData(samplesData);
+            variant.addStudyEntry(studyEntry);
+            variants.add(variant);
+        }
+
+        cohorts = new LinkedHashMap<>();
+        cohorts.put(StudyEntry.DEFAULT_COHORT, samplesPosition.keySet());
+        cohorts.put("c1", new HashSet<>(Arrays.asList("S0", "S1", "S2")));
+        cohorts.put("c2", new HashSet<>(Arrays.asList("S3", "S4", "S5", "UNKNOWN_SAMPLE")));
+    }
+
+    @Test
+    public void testGenotypeCounts() {
+        GenotypeCountVariantStatisticsCalculator calculator = new GenotypeCountVariantStatisticsCalculator(true);
+        calculator.setAggregationType(Aggregation.NONE, null);
+        List<VariantStatsWrapper> wrappers = calculator.calculateBatch(variants, STUDY, cohorts);
+
+        assertEquals(3, wrappers.size());
+        VariantStats all = wrappers.get(0).getCohortStats().get(StudyEntry.DEFAULT_COHORT);
+        assertEquals(2, all.getGenotypesCount().get(new Genotype("0/0")).intValue());
+        assertEquals(2, all.getGenotypesCount().get(new Genotype("0/1")).intValue());
+        assertEquals(1, all.getGenotypesCount().get(new Genotype("1/1")).intValue());
+        assertEquals(6, all.getRefAlleleCount().intValue());
+        assertEquals(4, all.getAltAlleleCount().intValue());
+        assertEquals(2, all.getMissingAlleles().intValue());
+        assertEquals(1, all.getMissingGenotypes().intValue());
+
+        VariantStats c1 = wrappers.get(0).getCohortStats().get("c1");
+        assertEquals(3, c1.getRefAlleleCount() + c1.getAltAlleleCount());
+        VariantStats c2 = wrappers.get(2).getCohortStats().get("c2");
+        assertEquals(3, c2.getGenotypesCount().values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(3, c2.getAltAlleleCount().intValue());
+    }
+
+    @Test
+    public void testSameStatsAsDefaultCalculator() {
+        VariantStatisticsCalculator expectedCalculator = new VariantStatisticsCalculator(true);
+        expectedCalculator.setAggregationType(Aggregation.NONE, null);
+        GenotypeCountVariantStatisticsCalculator calculator = new GenotypeCountVariantStatisticsCalculator(true);
+        calculator.setAggregationType(Aggregation.NONE, null);
+
+        // Samples not in the study are ignored, but not supported by the default calculator
+        Map<String, Set<String>> knownCohorts = new LinkedHashMap<>(cohorts);
+        knownCohorts.put("c2", new HashSet<>(Arrays.asList("S3", "S4", "S5")));
+        List<VariantStatsWrapper> expected = expectedCalculator.calculateBatch(variants, STUDY, knownCohorts);
+        List<VariantStatsWrapper> actual = calculator.calculateBatch(variants, STUDY, cohorts);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            for (String cohort : cohorts.keySet()) {
+                VariantStats expectedStats = expected.get(i).getCohortStats().get(cohort);
+                VariantStats actualStats = actual.get(i).getCohortStats().get(cohort);
+                String message = "Variant " + i + ", cohort " + cohort;
+                assertEquals(message, expectedStats.getGenotypesCount(), actualStats.getGenotypesCount());
+                assertEquals(message, expectedStats.getGenotypesFreq(), actualStats.getGenotypesFreq());
+                assertEquals(message, expectedStats.getRefAlleleCount(), actualStats.getRefAlleleCount());
+                assertEquals(message, expectedStats.getAltAlleleCount(), actualStats.getAltAlleleCount());
+                assertEquals(message, expectedStats.getRefAlleleFreq(), actualStats.getRefAlleleFreq());
+                assertEquals(message, expectedStats.getAltAlleleFreq(), actualStats.getAltAlleleFreq());
+                assertEquals(message, expectedStats.getMissingAlleles(), actualStats.getMissingAlleles());
+                assertEquals(message, expectedStats.getMissingGenotypes(), actualStats.getMissingGenotypes());
+                assertEquals(message, expectedStats.getMaf(), actualStats.getMaf());
+                assertEquals(message, expectedStats.getMafAllele(), actualStats.getMafAllele());
+                assertEquals(message, expectedStats.getMgf(), actualStats.getMgf());
+                assertEquals(message, expectedStats.getMgfGenotype(), actualStats.getMgfGenotype());
+            }
+        }
+    }
+}
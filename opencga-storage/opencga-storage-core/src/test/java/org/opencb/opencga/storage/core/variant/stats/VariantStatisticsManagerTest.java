@@ -108,6 +108,41 @@ public abstract class VariantStatisticsManagerTest extends VariantStorageBaseTes
         checkCohorts(dbAdaptor, studyConfiguration);
     }
 
+    @Test
+    public void calculateStatsDirectLoadTest() throws Exception {
+        VariantStatisticsManager vsm = variantStorageEngine.newVariantStatisticsManager();
+        if (!(vsm instanceof DefaultVariantStatisticsManager)) {
+            return;
+        }
+        DefaultVariantStatisticsManager dvsm = (DefaultVariantStatisticsManager) vsm;
+
+        Integer fileId = studyConfiguration.getFileIds().get(Paths.get(inputUri).getFileName().toString());
+        QueryOptions options = new QueryOptions(VariantStorageEngine.Options.FILE_ID.key(), fileId);
+        options.put(VariantStorageEngine.Options.LOAD_BATCH_SIZE.key(), 100);
+        options.put(DefaultVariantStatisticsManager.STATS_LOAD_DIRECT, true);
+        Iterator<String> iterator = studyConfiguration.getSampleIds().keySet().iterator();
+
+        HashSet<String> cohort1 = new HashSet<>();
+        cohort1.add(iterator.next());
+        cohort1.add(iterator.next());
+
+        Map<String, Set<String>> cohorts = new HashMap<>();
+        Map<String, Integer> cohortIds = new HashMap<>();
+        cohorts.put("cohort1", cohort1);
+        cohortIds.put("cohort1", 10);
+
+        dvsm.createAndLoadStats(dbAdaptor, outputUri.resolve("cohort1.direct.stats"), cohorts, cohortIds, studyConfiguration, options);
+
+        studyConfiguration = dbAdaptor.getStudyConfigurationManager().getStudyConfiguration(studyConfiguration.getStudyId(), null).first();
+        assertTrue(studyConfiguration.getCalculatedStats().contains(10));
+        checkCohorts(dbAdaptor, studyConfiguration);
+
+        //Try to recalculate stats for cohort1. Will fail before writing any stats
+        thrown.expect(StorageEngineException.class);
+        thrown.expectMessage("already calculated");
+        dvsm.createAndLoadStats(dbAdaptor, outputUri.resolve("cohort1.direct.stats"), cohorts, cohortIds, studyConfiguration, options);
+    }
+
     @Test
     public void calculateStatsSeparatedCohortsTest() throws Exception {
         //Calculate stats for 2 cohorts separately
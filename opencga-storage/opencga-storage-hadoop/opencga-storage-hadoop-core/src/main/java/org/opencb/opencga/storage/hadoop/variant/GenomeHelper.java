@@ -128,6 +128,14 @@ public class GenomeHelper {
      * @return                  List of splits
      */
     public static List<byte[]> generateBootPreSplitsHuman(int numberOfSplits, BiFunction<String, Integer, byte[]> keyGenerator) {
+        return generateBootPreSplits(numberOfSplits, keyGenerator, getHumanChromosomeLengths());
+    }
+
+    /**
+     * TODO: Query CellBase to get the chromosomes and sizes!
+     * @return  Length of each human chromosome used to generate the pre splits
+     */
+    public static Map<String, Long> getHumanChromosomeLengths() {
         String[] chr = new String[]{"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15",
                 "16", "17", "18", "19", "20", "21", "22", "X", "Y", };
         long[] posarr = new long[]{249250621, 243199373, 198022430, 191154276, 180915260, 171115067, 159138663,
@@ -137,7 +145,7 @@ public class GenomeHelper {
         for (int i = 0; i < chr.length; i++) {
             regions.put(chr[i], posarr[i]);
         }
-        return generateBootPreSplits(numberOfSplits, keyGenerator, regions);
+        return regions;
     }
 
     static List<byte[]> generateBootPreSplits(int numberOfSplits, BiFunction<String, Integer, byte[]> keyGenerator,
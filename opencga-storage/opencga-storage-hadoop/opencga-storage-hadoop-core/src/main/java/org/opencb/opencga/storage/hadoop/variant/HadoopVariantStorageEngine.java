@@ -47,6 +47,7 @@ import org.opencb.opencga.storage.core.utils.CellBaseUtils;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.VariantStoragePipeline;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantFileMetadataDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
@@ -58,9 +59,11 @@ import org.opencb.opencga.storage.hadoop.auth.HBaseCredentials;
 import org.opencb.opencga.storage.hadoop.utils.HBaseDataWriter;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
 import org.opencb.opencga.storage.hadoop.variant.annotation.HadoopDefaultVariantAnnotationManager;
 import org.opencb.opencga.storage.hadoop.variant.executors.ExternalMRExecutor;
 import org.opencb.opencga.storage.hadoop.variant.executors.MRExecutor;
+import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsChunks;
 import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsDriver;
 import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsMapper;
 import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsTask;
@@ -82,6 +85,7 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 
 import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options.RESUME;
@@ -350,6 +354,7 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
                     logger.error("Problems shutting executer service down", e);
                 }
             }
+            invalidateIndexedStudyCache();
         }
         return concurrResult;
     }
@@ -417,51 +422,12 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
                     fileIds.add(entry.getKey().toString());
                 }
             }
-            if (options.getBoolean("local")) {
-                ProgressLogger progressLogger = new ProgressLogger("Process");
-                VariantHadoopDBAdaptor dbAdaptor = getDBAdaptor();
-                VariantDBReader dbReader = new VariantDBReader(dbAdaptor,
-                        buildQuery(study, sampleIds, fileIds),
-                        buildQueryOptions());
-                DataWriter<Put> writer = new HBaseDataWriter<>(dbAdaptor.getHBaseManager(), getVariantTableName());
-                ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(4).setBatchSize(10).build();
-                ParallelTaskRunner<Variant, Put> ptr = new ParallelTaskRunner<>(
-                        dbReader,
-                        () -> new FillGapsTask(dbAdaptor.getHBaseManager(), getArchiveTableName(studyId), studyConfiguration,
-                                dbAdaptor.getGenomeHelper(), sampleIds)
-                                .then((ParallelTaskRunner.TaskWithException<Put, Put, IOException>) list -> {
-                                    progressLogger.increment(list.size(), "variants");
-                                    return list;
-                                }),
-                        writer,
-                        config);
-
-                ptr.run();
+            if (options.getBoolean(FillGapsDriver.FILL_GAPS_CHUNKED, false)) {
+                fillGapsByChunks(study, studyId, sampleIds, fileIds, options);
+            } else if (options.getBoolean("local")) {
+                fillGapsLocal(studyConfiguration, sampleIds, buildQuery(study, sampleIds, fileIds));
             } else {
-                String hadoopRoute = options.getString(HADOOP_BIN, "hadoop");
-                String jar = getJarWithDependencies(options);
-
-                options.put(FillGapsMapper.SAMPLES, sampleIds);
-
-                Class execClass = FillGapsDriver.class;
-                String executable = hadoopRoute + " jar " + jar + ' ' + execClass.getName();
-                String args = FillGapsDriver.buildCommandLineArgs(
-                        getArchiveTableName(studyId),
-                        getVariantTableName(),
-                        studyId, fileIds, options);
-
-                long startTime = System.currentTimeMillis();
-                logger.info("------------------------------------------------------");
-                logger.info("Fill gaps of samples {} into variants table '{}'", samples, getVariantTableName());
-                logger.debug(executable + ' ' + args);
-                logger.info("------------------------------------------------------");
-                int exitValue = getMRExecutor(options).run(executable, args);
-                logger.info("------------------------------------------------------");
-                logger.info("Exit value: {}", exitValue);
-                logger.info("Total time: {}s", (System.currentTimeMillis() - startTime) / 1000.0);
-                if (exitValue != 0) {
-                    throw new StorageEngineException("Error filling gaps for samples " + samples);
-                }
+                fillGapsMR(studyId, sampleIds, fileIds, options);
             }
 
         } catch (RuntimeException | ExecutionException e) {
@@ -477,10 +443,183 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
                 return sc;
             });
             Runtime.getRuntime().removeShutdownHook(hook);
+            invalidateCache(studyId);
         }
 
     }
 
+    /**
+     * Fill gaps splitting the genome in region chunks, executed concurrently.
+     * Completed chunks are stored in the StudyConfiguration, so an interrupted execution can be resumed.
+     *
+     * A chunk is marked as completed only after its job succeeds. If any chunk fails, no more chunks are started, and the
+     * chunks already running are awaited before failing, so no job outlives the operation. Their progress is kept for the
+     * resume. If the operation is interrupted or the process killed, running MapReduce jobs are not stopped. This is safe,
+     * as filling the gaps of a chunk more than once writes the same values.
+     *
+     * @param study         Study
+     * @param studyId       Study id
+     * @param sampleIds     Samples to fill
+     * @param fileIds       Files of the samples
+     * @param options       Options
+     * @throws StorageEngineException if any chunk fails
+     * @throws ExecutionException if any chunk fails
+     */
+    private void fillGapsByChunks(String study, int studyId, List<Integer> sampleIds, Set<String> fileIds, ObjectMap options)
+            throws StorageEngineException, ExecutionException {
+        StudyConfigurationManager scm = getStudyConfigurationManager();
+        boolean resume = options.getBoolean(RESUME.key(), RESUME.defaultValue());
+        Set<String> completedChunks;
+        if (resume) {
+            QueryOptions noCache = new QueryOptions(StudyConfigurationManager.CACHED, false);
+            StudyConfiguration studyConfiguration = scm.getStudyConfiguration(studyId, noCache).first();
+            completedChunks = FillGapsChunks.getCompletedChunks(studyConfiguration, sampleIds);
+        } else {
+            scm.lockAndUpdate(study, sc -> {
+                FillGapsChunks.clearCompletedChunks(sc);
+                return sc;
+            });
+            completedChunks = Collections.emptySet();
+        }
+
+        GenomeHelper genomeHelper = getDBAdaptor().getGenomeHelper();
+        ArchiveRowKeyFactory rowKeyFactory = new ArchiveRowKeyFactory(genomeHelper.getChunkSize(), genomeHelper.getSeparator());
+        List<String> chunks = FillGapsChunks.buildChunks(options.getInt(ARCHIVE_TABLE_PRESPLIT_SIZE, 100), rowKeyFactory,
+                getChromosomes(studyId, fileIds));
+        List<String> pendingChunks = chunks.stream().filter(chunk -> !completedChunks.contains(chunk)).collect(Collectors.toList());
+        logger.info("Fill gaps in {} chunks. {} chunks already completed", pendingChunks.size(), chunks.size() - pendingChunks.size());
+
+        boolean local = options.getBoolean("local");
+        int workers = options.getInt(FillGapsDriver.FILL_GAPS_WORKERS, FillGapsDriver.FILL_GAPS_WORKERS_DEFAULT);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<>(pendingChunks.size());
+        try {
+            for (String chunk : pendingChunks) {
+                futures.add(executor.submit(() -> {
+                    StudyConfiguration studyConfiguration = scm.getStudyConfiguration(studyId, null).first();
+                    ObjectMap chunkOptions = new ObjectMap(options);
+                    chunkOptions.put(FillGapsDriver.FILL_GAPS_REGION, chunk);
+                    Query query = buildQuery(study, sampleIds, fileIds);
+                    query.put(VariantQueryParam.REGION.key(), chunk);
+
+                    logger.info("Fill gaps in chunk {}", chunk);
+                    if (local) {
+                        fillGapsLocal(studyConfiguration, sampleIds, query);
+                    } else {
+                        fillGapsMR(studyId, sampleIds, fileIds, chunkOptions);
+                    }
+                    scm.lockAndUpdate(studyId, sc -> {
+                        FillGapsChunks.addCompletedChunk(sc, sampleIds, chunk);
+                        return sc;
+                    });
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            // Do not start pending chunks, and wait for the running jobs to finish
+            futures.forEach(future -> future.cancel(false));
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Interrupted filling gaps", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // All chunks completed. Remove progress
+        scm.lockAndUpdate(studyId, sc -> {
+            FillGapsChunks.clearCompletedChunks(sc);
+            return sc;
+        });
+    }
+
+    /**
+     * Chromosomes of the given files, read from the stats of each file.
+     *
+     * @param studyId   Study id
+     * @param fileIds   Files
+     * @return Chromosomes
+     * @throws StorageEngineException if the stats of any file are missing
+     */
+    private Set<String> getChromosomes(int studyId, Set<String> fileIds) throws StorageEngineException {
+        Query query = new Query(VariantFileMetadataDBAdaptor.VariantFileMetadataQueryParam.STUDY_ID.key(), studyId)
+                .append(VariantFileMetadataDBAdaptor.VariantFileMetadataQueryParam.FILE_ID.key(), new ArrayList<>(fileIds));
+        Set<String> chromosomes = new HashSet<>();
+        try {
+            Iterator<VariantFileMetadata> iterator = getDBAdaptor().getVariantFileMetadataDBAdaptor().iterator(query, null);
+            while (iterator.hasNext()) {
+                VariantFileMetadata fileMetadata = iterator.next();
+                if (fileMetadata.getStats() == null || fileMetadata.getStats().getChromosomeCounts().isEmpty()) {
+                    throw new StorageEngineException("Unknown chromosomes for file " + fileMetadata.getPath()
+                            + ". Unable to fill gaps by chunks");
+                }
+                chromosomes.addAll(fileMetadata.getStats().getChromosomeCounts().keySet());
+            }
+        } catch (IOException e) {
+            throw new StorageEngineException("Error reading file metadata", e);
+        }
+        return chromosomes;
+    }
+
+    private void fillGapsLocal(StudyConfiguration studyConfiguration, List<Integer> sampleIds, Query query)
+            throws StorageEngineException, ExecutionException {
+        int studyId = studyConfiguration.getStudyId();
+        ProgressLogger progressLogger = new ProgressLogger("Process");
+        VariantHadoopDBAdaptor dbAdaptor = getDBAdaptor();
+        VariantDBReader dbReader = new VariantDBReader(dbAdaptor, query, buildQueryOptions());
+        DataWriter<Put> writer = new HBaseDataWriter<>(dbAdaptor.getHBaseManager(), getVariantTableName());
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(4).setBatchSize(10).build();
+        ParallelTaskRunner<Variant, Put> ptr = new ParallelTaskRunner<>(
+                dbReader,
+                () -> new FillGapsTask(dbAdaptor.getHBaseManager(), getArchiveTableName(studyId), studyConfiguration,
+                        dbAdaptor.getGenomeHelper(), sampleIds)
+                        .then((ParallelTaskRunner.TaskWithException<Put, Put, IOException>) list -> {
+                            progressLogger.increment(list.size(), "variants");
+                            return list;
+                        }),
+                writer,
+                config);
+
+        ptr.run();
+    }
+
+    private void fillGapsMR(int studyId, List<Integer> sampleIds, Set<String> fileIds, ObjectMap options)
+            throws StorageEngineException {
+        String hadoopRoute = options.getString(HADOOP_BIN, "hadoop");
+        String jar = getJarWithDependencies(options);
+
+        options.put(FillGapsMapper.SAMPLES, sampleIds);
+
+        Class execClass = FillGapsDriver.class;
+        String executable = hadoopRoute + " jar " + jar + ' ' + execClass.getName();
+        String args = FillGapsDriver.buildCommandLineArgs(
+                getArchiveTableName(studyId),
+                getVariantTableName(),
+                studyId, fileIds, options);
+
+        long startTime = System.currentTimeMillis();
+        logger.info("------------------------------------------------------");
+        logger.info("Fill gaps of samples {} into variants table '{}'", sampleIds, getVariantTableName());
+        logger.debug(executable + ' ' + args);
+        logger.info("------------------------------------------------------");
+        int exitValue = getMRExecutor(options).run(executable, args);
+        logger.info("------------------------------------------------------");
+        logger.info("Exit value: {}", exitValue);
+        logger.info("Total time: {}s", (System.currentTimeMillis() - startTime) / 1000.0);
+        if (exitValue != 0) {
+            throw new StorageEngineException("Error filling gaps for samples " + sampleIds);
+        }
+    }
+
     public AbstractHadoopVariantStoragePipeline newStoragePipeline(boolean connected, Map<? extends String, ?> extraOptions)
             throws StorageEngineException {
         ObjectMap options = new ObjectMap(configuration.getStorageEngine(STORAGE_ENGINE_ID).getVariant().getOptions());
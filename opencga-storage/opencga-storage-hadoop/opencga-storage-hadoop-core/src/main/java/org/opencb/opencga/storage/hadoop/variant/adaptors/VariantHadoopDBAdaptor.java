@@ -22,6 +22,7 @@ import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.types.PIntegerArray;
 import org.apache.phoenix.util.SchemaUtil;
 import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
@@ -68,6 +69,9 @@ import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.*;
@@ -77,6 +81,8 @@ import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils
  */
 public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
     public static final String NATIVE = "native";
+    // Ensembl gene ids of any species, e.g. ENSG00000139618, ENSMUSG00000041147 or ENSDARG00000012345.1
+    private static final Pattern ENSEMBL_GENE_ID = Pattern.compile("ENS[A-Z]*G\\d+(\\.\\d+)?");
     protected static Logger logger = LoggerFactory.getLogger(VariantHadoopDBAdaptor.class);
     private final String variantTable;
     private final VariantPhoenixHelper phoenixHelper;
@@ -435,26 +441,247 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
 
     @Override
     public QueryResult getFrequency(Query query, Region region, int regionIntervalSize) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException();
+        if (query == null) {
+            query = new Query();
+        }
+        // If interval is not provided is set to the value that returns 200 values
+        if (regionIntervalSize <= 0) {
+            regionIntervalSize = Math.max(1, (region.getEnd() - region.getStart()) / 200);
+        }
+
+        long startTime = System.currentTimeMillis();
+        String sql = queryParser.parseFrequency(query, region, regionIntervalSize);
+        logger.info(sql);
+        Map<Integer, Long> counts = new HashMap<>();
+        try (Statement statement = getJdbcConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) { // Cleans up Statement and RS
+            while (resultSet.next()) {
+                counts.put((int) resultSet.getLong(1), resultSet.getLong(2));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Same format as VariantMongoDBAdaptor, including the intervals without variants
+        List<ObjectMap> intervals = new ArrayList<>();
+        int firstChunkId = region.getStart() / regionIntervalSize;
+        int lastChunkId = region.getEnd() / regionIntervalSize;
+        for (int chunkId = firstChunkId; chunkId <= lastChunkId; chunkId++) {
+            long count = counts.getOrDefault(chunkId, 0L);
+            intervals.add(new ObjectMap("_id", chunkId)
+                    .append("start", chunkId == 0 ? 1 : chunkId * regionIntervalSize)
+                    .append("end", chunkId * regionIntervalSize + regionIntervalSize - 1)
+                    .append("chromosome", region.getChromosome())
+                    .append("features_count", count == 0 ? 0 : Math.log(count)));
+        }
+        return new QueryResult<>(region.toString(), (int) (System.currentTimeMillis() - startTime),
+                intervals.size(), intervals.size(), "", "", intervals);
     }
 
     @Override
     public QueryResult rank(Query query, String field, int numResults, boolean asc) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException();
+        QueryOptions options = new QueryOptions();
+        options.put("limit", numResults);
+        options.put("count", true);
+        options.put("order", (asc) ? 1 : -1);
+
+        return groupBy(query, field, options);
     }
 
+    /**
+     * Count the variants for each value of the given field. Scalar columns are grouped by Phoenix. Array columns, like genes or
+     * consequence types, can not be unnested by Phoenix, so variants are grouped by the whole array in the region servers, and only
+     * the count of each distinct array is split into its values here.
+     * <p>
+     * Returns a list of {"id", "count"} elements, as {@link #rank} and the MongoDB implementation. Unless the option "count" is
+     * true, each element contains also the list of "values" with the ids of the variants of the group.
+     *
+     * @param query     Query
+     * @param field     Field to group by: gene, ensemblGene, ct, biotype, type or chromosome
+     * @param options   Options. Accepts "count", "order", "limit" and "skip"
+     * @return  Count for each value
+     * @throws IllegalArgumentException if the field can not be grouped
+     */
     @Override
     public QueryResult groupBy(Query query, String field, QueryOptions options) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException();
+        return groupBy(query, Collections.singletonList(field), options);
     }
 
     @Override
     public QueryResult groupBy(Query query, List<String> fields, QueryOptions options) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException();
+        if (query == null) {
+            query = new Query();
+        }
+        if (options == null) {
+            options = new QueryOptions();
+        } else {
+            options = new QueryOptions(options); // Copy given QueryOptions.
+        }
+        if (options.getInt(QueryOptions.LIMIT, -1) <= 0) {
+            options.put(QueryOptions.LIMIT, 10);
+        }
+        boolean ascending = options.getInt("order", -1) > 0;
+        boolean count = options.getBoolean("count", false);
+
+        String warningMsg = "";
+        List<PhoenixHelper.Column> columns = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            columns.add(getGroupByColumn(field));
+        }
+        if (columns.size() > 1 && columns.stream().anyMatch(column -> column.getPDataType().isArrayType())) {
+            warningMsg = "Unable to group by multiple fields if any is an array. Using field[0] : '" + fields.get(0) + "'";
+            logger.warn(warningMsg);
+            fields = fields.subList(0, 1);
+            columns = columns.subList(0, 1);
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<ObjectMap> results;
+        try {
+            if (columns.get(0).getPDataType().isArrayType()) {
+                results = countArrayValues(query, fields.get(0), columns.get(0), ascending, options);
+            } else {
+                results = countScalarValues(query, fields, columns, ascending, options);
+            }
+            if (!count) {
+                for (ObjectMap result : results) {
+                    result.put("values", getGroupValues(query, fields, columns, result.get("id")));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return new QueryResult<>(String.join(",", fields), (int) (System.currentTimeMillis() - startTime),
+                results.size(), results.size(), warningMsg, "", results);
+    }
+
+    private List<ObjectMap> countScalarValues(Query query, List<String> fields, List<PhoenixHelper.Column> columns,
+                                              boolean ascending, QueryOptions options) throws SQLException {
+        String sql = queryParser.parseGroupBy(query, columns, ascending, options);
+        logger.info(sql);
+        List<ObjectMap> results = new ArrayList<>();
+        // Client side skip!
+        int skip = clientSideSkip ? options.getInt(QueryOptions.SKIP, 0) : 0;
+        try (Statement statement = getJdbcConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) { // Cleans up Statement and RS
+            while (resultSet.next()) {
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                Object id;
+                if (fields.size() == 1) {
+                    id = resultSet.getObject(1);
+                } else {
+                    ObjectMap ids = new ObjectMap();
+                    for (int i = 0; i < fields.size(); i++) {
+                        ids.put(fields.get(i), resultSet.getObject(i + 1));
+                    }
+                    id = ids;
+                }
+                results.add(new ObjectMap("id", id).append("count", resultSet.getLong(fields.size() + 1)));
+            }
+        }
+        return results;
+    }
+
+    private List<ObjectMap> countArrayValues(Query query, String field, PhoenixHelper.Column column, boolean ascending,
+                                             QueryOptions options) throws SQLException {
+        String sql = queryParser.parseGroupByArray(query, column);
+        logger.info(sql);
+        Predicate<String> valueFilter = getGroupByValueFilter(field);
+        boolean integerValues = column.getPDataType().equals(PIntegerArray.INSTANCE);
+        Map<Object, Long> counts = new HashMap<>();
+        try (Statement statement = getJdbcConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) { // Cleans up Statement and RS
+            Set<String> groupValues = new HashSet<>();
+            while (resultSet.next()) {
+                String joinedValues = resultSet.getString(1);
+                if (StringUtils.isEmpty(joinedValues)) {
+                    continue;
+                }
+                long count = resultSet.getLong(2);
+                // Count each variant only once per value
+                groupValues.clear();
+                for (String value : StringUtils.split(joinedValues, VariantSqlQueryParser.ARRAY_SEPARATOR)) {
+                    if (valueFilter.test(value)) {
+                        groupValues.add(value);
+                    }
+                }
+                for (String value : groupValues) {
+                    counts.merge(integerValues ? Integer.valueOf(value) : value, count, Long::sum);
+                }
+            }
+        }
+
+        Comparator<Map.Entry<Object, Long>> comparator = Map.Entry.comparingByValue();
+        return counts.entrySet().stream()
+                .sorted(ascending ? comparator : comparator.reversed())
+                .skip(Math.max(0, options.getInt(QueryOptions.SKIP, 0)))
+                .limit(options.getInt(QueryOptions.LIMIT))
+                .map(entry -> new ObjectMap("id", entry.getKey()).append("count", entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> getGroupValues(Query query, List<String> fields, List<PhoenixHelper.Column> columns, Object id)
+            throws SQLException {
+        List<Object> values;
+        if (fields.size() == 1) {
+            values = Collections.singletonList(id);
+        } else {
+            values = new ArrayList<>(fields.size());
+            for (String field : fields) {
+                values.add(((ObjectMap) id).get(field));
+            }
+        }
+        String sql = queryParser.parseGroupByValues(query, columns, values);
+        logger.debug(sql);
+        List<String> variants = new ArrayList<>();
+        try (Statement statement = getJdbcConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) { // Cleans up Statement and RS
+            while (resultSet.next()) {
+                variants.add(new Variant(resultSet.getString(1), resultSet.getInt(2),
+                        resultSet.getString(3), resultSet.getString(4)).toString());
+            }
+        }
+        return variants;
+    }
+
+    private static PhoenixHelper.Column getGroupByColumn(String field) {
+        switch (field) {
+            case "chromosome":
+                return VariantPhoenixHelper.VariantColumn.CHROMOSOME;
+            case "type":
+                return VariantPhoenixHelper.VariantColumn.TYPE;
+            case "ct":
+            case "consequence_type":
+                return VariantPhoenixHelper.VariantColumn.SO;
+            case "biotype":
+                return VariantPhoenixHelper.VariantColumn.BIOTYPE;
+            case "gene":
+            case "ensemblGene":
+                return VariantPhoenixHelper.VariantColumn.GENES;
+            default:
+                throw new IllegalArgumentException("Unable to group by field '" + field + "'. Expected one of "
+                        + "[gene, ensemblGene, ct, consequence_type, biotype, type, chromosome]");
+        }
+    }
+
+    private static Predicate<String> getGroupByValueFilter(String field) {
+        // The genes column contains both gene names and ensembl gene ids, of any species
+        switch (field) {
+            case "ensemblGene":
+                return value -> ENSEMBL_GENE_ID.matcher(value).matches();
+            case "chromosome":
+            case "type":
+            case "ct":
+            case "consequence_type":
+            case "biotype":
+                return value -> true;
+            case "gene":
+            default:
+                return value -> !ENSEMBL_GENE_ID.matcher(value).matches();
+        }
     }
 
     /**
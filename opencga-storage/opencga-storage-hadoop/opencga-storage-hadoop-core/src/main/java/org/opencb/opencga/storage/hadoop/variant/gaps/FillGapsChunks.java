@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.gaps;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Splits the fill gaps operation into region chunks, and keeps track of the completed chunks in the StudyConfiguration,
+ * so an interrupted operation can be resumed.
+ *
+ * The chunks are sized by the pre splits of the archive table. Chromosomes not known by
+ * {@link GenomeHelper#generateBootPreSplitsHuman} are processed in one chunk per chromosome.
+ */
+public final class FillGapsChunks {
+
+    static final String COMPLETED_CHUNKS = "fill_gaps.completed_chunks";
+    static final String SAMPLES = "fill_gaps.samples";
+
+    private FillGapsChunks() {
+    }
+
+    /**
+     * Split the genome in chunks, using the same split points as the archive table.
+     *
+     * @param numberOfSplits    Number of splits of the archive table
+     * @param rowKeyFactory     Archive row key factory
+     * @param chromosomes       Chromosomes present in the study. Those without pre splits get one chunk each.
+     * @return  Ordered list of chunks
+     */
+    public static List<String> buildChunks(int numberOfSplits, ArchiveRowKeyFactory rowKeyFactory, Collection<String> chromosomes) {
+        Map<String, Long> humanChromosomes = GenomeHelper.getHumanChromosomeLengths();
+        Map<String, TreeSet<Integer>> cuts = new HashMap<>();
+        for (byte[] split : GenomeHelper.generateBootPreSplitsHuman(numberOfSplits, rowKeyFactory::generateBlockIdAsBytes)) {
+            String blockId = Bytes.toString(split);
+            String chromosome = rowKeyFactory.extractChromosomeFromBlockId(blockId);
+            long position = rowKeyFactory.extractPositionFromBlockId(blockId);
+            cuts.computeIfAbsent(chromosome, k -> new TreeSet<>()).add((int) position);
+        }
+
+        List<String> chunks = new ArrayList<>();
+        for (String chromosome : humanChromosomes.keySet().stream().sorted().collect(Collectors.toList())) {
+            int length = humanChromosomes.get(chromosome).intValue();
+            int start = 1;
+            for (Integer cut : cuts.getOrDefault(chromosome, new TreeSet<>())) {
+                if (cut > start && cut <= length) {
+                    chunks.add(new Region(chromosome, start, cut - 1).toString());
+                    start = cut;
+                }
+            }
+            // Last chunk of the chromosome has no end, in case the chromosome is bigger than expected
+            chunks.add(new Region(chromosome, start, Integer.MAX_VALUE).toString());
+        }
+        chromosomes.stream()
+                .map(Region::normalizeChromosome)
+                .filter(chromosome -> !humanChromosomes.containsKey(chromosome))
+                .distinct()
+                .sorted()
+                .forEach(chromosome -> chunks.add(new Region(chromosome, 1, Integer.MAX_VALUE).toString()));
+        return chunks;
+    }
+
+    /**
+     * Chunks already completed for the same set of samples.
+     *
+     * @param studyConfiguration    StudyConfiguration
+     * @param samples               Samples to fill
+     * @return Completed chunks
+     */
+    public static Set<String> getCompletedChunks(StudyConfiguration studyConfiguration, Collection<Integer> samples) {
+        if (!samplesKey(samples).equals(studyConfiguration.getAttributes().getString(SAMPLES))) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(studyConfiguration.getAttributes().getAsStringList(COMPLETED_CHUNKS));
+    }
+
+    /**
+     * Mark a chunk as completed. Discards the progress of any other set of samples.
+     *
+     * @param studyConfiguration    StudyConfiguration
+     * @param samples               Samples to fill
+     * @param chunk                 Completed chunk
+     */
+    public static void addCompletedChunk(StudyConfiguration studyConfiguration, Collection<Integer> samples, String chunk) {
+        Set<String> completedChunks = new LinkedHashSet<>(getCompletedChunks(studyConfiguration, samples));
+        completedChunks.add(chunk);
+        studyConfiguration.getAttributes().put(SAMPLES, samplesKey(samples));
+        studyConfiguration.getAttributes().put(COMPLETED_CHUNKS, new ArrayList<>(completedChunks));
+    }
+
+    /**
+     * Remove any progress from the StudyConfiguration.
+     *
+     * @param studyConfiguration    StudyConfiguration
+     */
+    public static void clearCompletedChunks(StudyConfiguration studyConfiguration) {
+        studyConfiguration.getAttributes().remove(SAMPLES);
+        studyConfiguration.getAttributes().remove(COMPLETED_CHUNKS);
+    }
+
+    private static String samplesKey(Collection<Integer> samples) {
+        return samples.stream().sorted().map(Object::toString).collect(Collectors.joining(","));
+    }
+}
@@ -1,5 +1,6 @@
 package org.opencb.opencga.storage.hadoop.variant.gaps;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.filter.CompareFilter;
@@ -8,6 +9,7 @@ import org.apache.hadoop.hbase.filter.SubstringComparator;
 import org.apache.hadoop.mapreduce.Job;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.hadoop.variant.AbstractAnalysisTableDriver;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantSqlQueryParser;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
@@ -30,6 +32,10 @@ public class FillGapsDriver extends AbstractAnalysisTableDriver {
     public static final String FILL_GAPS_OPERATION_NAME = "fill_gaps";
     public static final String FILL_GAPS_INPUT = "fill-gaps.input";
     public static final String FILL_GAPS_INPUT_DEFAULT = "phoenix";
+    public static final String FILL_GAPS_REGION = "fill-gaps.region";
+    public static final String FILL_GAPS_CHUNKED = "fill-gaps.chunked";
+    public static final String FILL_GAPS_WORKERS = "fill-gaps.workers";
+    public static final int FILL_GAPS_WORKERS_DEFAULT = 4;
     private Collection<Integer> samples;
     private final Logger logger = LoggerFactory.getLogger(FillGapsDriver.class);
 
@@ -52,9 +58,13 @@ public class FillGapsDriver extends AbstractAnalysisTableDriver {
 
     @Override
     protected Job setupJob(Job job, String archiveTableName, String variantTableName) throws IOException {
-        if (getConf().get(FILL_GAPS_INPUT, FILL_GAPS_INPUT_DEFAULT).equalsIgnoreCase("phoenix")) {
+        String region = getConf().get(FILL_GAPS_REGION);
+        if (StringUtils.isNotEmpty(region) || getConf().get(FILL_GAPS_INPUT, FILL_GAPS_INPUT_DEFAULT).equalsIgnoreCase("phoenix")) {
             // Sql
             Query query = buildQuery(getStudyId(), samples, getFiles());
+            if (StringUtils.isNotEmpty(region)) {
+                query.put(VariantQueryParam.REGION.key(), region);
+            }
             QueryOptions options = buildQueryOptions();
             String sql = new VariantSqlQueryParser(getHelper(), getAnalysisTable(), getStudyConfigurationManager())
                     .parse(query, options).getSql();
@@ -15,6 +15,7 @@ import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapper;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -25,7 +26,11 @@ import java.util.stream.Collectors;
 public class FillGapsMapper extends VariantMapper<ImmutableBytesWritable, Mutation> {
 
     public static final String SAMPLES = "samples";
+    public static final String BATCH_SIZE = "fill-gaps.batch.size";
+    public static final int DEFAULT_BATCH_SIZE = 100;
     private FillGapsTask fillGapsTask;
+    private int batchSize;
+    private List<Variant> variants;
 
     public static void setSamples(Job job, Collection<Integer> sampleIds) {
         job.getConfiguration().set(SAMPLES, sampleIds.stream().map(Object::toString).collect(Collectors.joining(",")));
@@ -54,19 +59,33 @@ public class FillGapsMapper extends VariantMapper<ImmutableBytesWritable, Mutati
         fillGapsTask = new FillGapsTask(hBaseManager, archiveTableName, studyConfiguration, helper, samples);
         fillGapsTask.pre();
 
+        batchSize = configuration.getInt(BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        variants = new ArrayList<>(batchSize);
     }
 
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
+        flush(context);
         super.cleanup(context);
         fillGapsTask.post();
     }
 
     @Override
     protected void map(Object key, Variant variant, Context context) throws IOException, InterruptedException {
-        Put put = fillGapsTask.fillGaps(variant);
-        if (put != null && !put.isEmpty()) {
+        // Variants are filled in batches, so neighbouring variants share the archive reads
+        variants.add(variant);
+        if (variants.size() >= batchSize) {
+            flush(context);
+        }
+    }
+
+    private void flush(Context context) throws IOException, InterruptedException {
+        if (variants.isEmpty()) {
+            return;
+        }
+        for (Put put : fillGapsTask.apply(variants)) {
             context.write(new ImmutableBytesWritable(put.getRow()), put);
         }
+        variants.clear();
     }
 }
@@ -99,9 +99,22 @@ public class FillGapsTask implements TaskWithException<Variant, Put, IOException
 
     @Override
     public List<Put> apply(List<Variant> list) throws IOException {
-        List<Put> puts = new ArrayList<>(list.size());
+        // Group the variants of the batch by archive block, and read all the blocks with one multi-get
+        List<Set<Integer>> missingSamplesList = new ArrayList<>(list.size());
+        Map<String, Set<Integer>> blockFiles = new LinkedHashMap<>();
         for (Variant variant : list) {
-            Put put = fillGaps(variant);
+            Set<Integer> missingSamples = getMissingSamples(variant);
+            missingSamplesList.add(missingSamples);
+            if (requiresFill(missingSamples)) {
+                blockFiles.computeIfAbsent(archiveRowKeyFactory.generateBlockId(variant), k -> new HashSet<>())
+                        .addAll(getFileIds(missingSamples));
+            }
+        }
+        SliceCache sliceCache = readSlices(blockFiles);
+
+        List<Put> puts = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            Put put = fillGaps(list.get(i), missingSamplesList.get(i), sliceCache);
             if (put != null && !put.isEmpty()) {
                 puts.add(put);
             }
@@ -124,14 +137,9 @@ public class FillGapsTask implements TaskWithException<Variant, Put, IOException
      * @throws IOException if fails reading from HBAse
      */
     public Put fillGaps(Variant variant) throws IOException {
-        HashSet<Integer> missingSamples = new HashSet<>();
-        for (Integer sampleId : samples) {
-            if (variant.getStudies().get(0).getSampleData(studyConfiguration.getSampleIds().inverse().get(sampleId)).get(0).equals("?/?")) {
-                missingSamples.add(sampleId);
-            }
-        }
-        return fillGaps(variant, missingSamples);
+        return fillGaps(variant, getMissingSamples(variant));
     }
+
     /**
      * @param variant        Variant to fill
      * @param missingSamples Missing samples in this variant
@@ -139,26 +147,27 @@ public class FillGapsTask implements TaskWithException<Variant, Put, IOException
      * @throws IOException if fails reading from HBAse
      */
     public Put fillGaps(Variant variant, Set<Integer> missingSamples) throws IOException {
-        if (samples.size() == missingSamples.size() || missingSamples.isEmpty()) {
+        if (!requiresFill(missingSamples)) {
             // Nothing to do!
             return null;
         }
+        String blockId = archiveRowKeyFactory.generateBlockId(variant);
+        SliceCache sliceCache = readSlices(Collections.singletonMap(blockId, getFileIds(missingSamples)));
+        return fillGaps(variant, missingSamples, sliceCache);
+    }
 
-        Set<Integer> fileIds = new HashSet<>();
-        for (Integer missingSample : missingSamples) {
-            fileIds.add(samplesFileMap.get(missingSample));
-        }
-        Get get = new Get(Bytes.toBytes(archiveRowKeyFactory.generateBlockId(variant)));
-        for (Integer fileId : fileIds) {
-            get.addColumn(helper.getColumnFamily(), fileToColumnMap.get(fileId));
+    private Put fillGaps(Variant variant, Set<Integer> missingSamples, SliceCache sliceCache) throws IOException {
+        if (!requiresFill(missingSamples)) {
+            // Nothing to do!
+            return null;
         }
 
+        String blockId = archiveRowKeyFactory.generateBlockId(variant);
         Put put = new Put(VariantPhoenixKeyFactory.generateVariantRowKey(variant));
-        Result result = archiveTable.get(get);
-        for (Integer fileId : fileIds) {
-            byte[] bytes = result.getValue(helper.getColumnFamily(), fileToColumnMap.get(fileId));
-            if (bytes != null) {
-                VcfSliceProtos.VcfSlice vcfSlice = VcfSliceProtos.VcfSlice.parseFrom(bytes);
+        for (Integer fileId : getFileIds(missingSamples)) {
+            DecodedSlice slice = sliceCache.get(blockId, fileId);
+            if (slice != null) {
+                VcfSliceProtos.VcfSlice vcfSlice = slice.vcfSlice;
                 String chromosome = vcfSlice.getChromosome();
                 int position = vcfSlice.getPosition();
 
@@ -172,9 +181,7 @@ public class FillGapsTask implements TaskWithException<Variant, Put, IOException
                     int start = VcfRecordProtoToVariantConverter.getStart(vcfRecord, position);
                     int end = VcfRecordProtoToVariantConverter.getEnd(vcfRecord, position);
                     if (overlapsWith(variant, chromosome, start, end)) {
-                        VcfRecordProtoToVariantConverter converter = new VcfRecordProtoToVariantConverter(vcfSlice.getFields(),
-                                fileToSamplePositions.get(fileId), fileId.toString(), studyConfiguration.getStudyName());
-                        Variant archiveVariant = converter.convert(vcfRecord, chromosome, position);
+                        Variant archiveVariant = slice.getConverter().convert(vcfRecord, chromosome, position);
                         if (archiveVariant.getType().equals(VariantType.NO_VARIATION)) {
                             FileEntry fileEntry = archiveVariant.getStudies().get(0).getFiles().get(0);
                             fileEntry.getAttributes().remove(VCFConstants.END_KEY);
@@ -214,6 +221,101 @@ public class FillGapsTask implements TaskWithException<Variant, Put, IOException
         return put;
     }
 
+    private Set<Integer> getMissingSamples(Variant variant) {
+        HashSet<Integer> missingSamples = new HashSet<>();
+        for (Integer sampleId : samples) {
+            if (variant.getStudies().get(0).getSampleData(studyConfiguration.getSampleIds().inverse().get(sampleId)).get(0).equals("?/?")) {
+                missingSamples.add(sampleId);
+            }
+        }
+        return missingSamples;
+    }
+
+    private boolean requiresFill(Set<Integer> missingSamples) {
+        return samples.size() != missingSamples.size() && !missingSamples.isEmpty();
+    }
+
+    private Set<Integer> getFileIds(Set<Integer> missingSamples) {
+        Set<Integer> fileIds = new HashSet<>();
+        for (Integer missingSample : missingSamples) {
+            fileIds.add(samplesFileMap.get(missingSample));
+        }
+        return fileIds;
+    }
+
+    /**
+     * Read the given files from the given archive blocks, with one multi-get.
+     *
+     * @param blockFiles Files to read from each block
+     * @return Cache with the read slices
+     * @throws IOException if fails reading from HBase
+     */
+    private SliceCache readSlices(Map<String, Set<Integer>> blockFiles) throws IOException {
+        List<String> blockIds = new ArrayList<>(blockFiles.keySet());
+        List<Get> gets = new ArrayList<>(blockIds.size());
+        for (String blockId : blockIds) {
+            Get get = new Get(Bytes.toBytes(blockId));
+            for (Integer fileId : blockFiles.get(blockId)) {
+                get.addColumn(helper.getColumnFamily(), fileToColumnMap.get(fileId));
+            }
+            gets.add(get);
+        }
+        Result[] results = gets.isEmpty() ? new Result[0] : archiveTable.get(gets);
+        Map<String, Result> resultsMap = new HashMap<>(blockIds.size());
+        for (int i = 0; i < blockIds.size(); i++) {
+            resultsMap.put(blockIds.get(i), results[i]);
+        }
+        return new SliceCache(resultsMap);
+    }
+
+    /**
+     * Archive slices read for a batch of variants. Each slice is parsed only once, and shares the converter
+     * among all the variants of the batch.
+     */
+    private final class SliceCache {
+        private final Map<String, Result> results;
+        private final Map<String, Map<Integer, Optional<DecodedSlice>>> slices = new HashMap<>();
+
+        private SliceCache(Map<String, Result> results) {
+            this.results = results;
+        }
+
+        private DecodedSlice get(String blockId, Integer fileId) throws IOException {
+            Map<Integer, Optional<DecodedSlice>> blockSlices = slices.computeIfAbsent(blockId, k -> new HashMap<>());
+            Optional<DecodedSlice> slice = blockSlices.get(fileId);
+            if (slice == null) {
+                Result result = results.get(blockId);
+                byte[] bytes = result == null ? null : result.getValue(helper.getColumnFamily(), fileToColumnMap.get(fileId));
+                if (bytes == null) {
+                    slice = Optional.empty();
+                } else {
+                    slice = Optional.of(new DecodedSlice(fileId, VcfSliceProtos.VcfSlice.parseFrom(bytes)));
+                }
+                blockSlices.put(fileId, slice);
+            }
+            return slice.orElse(null);
+        }
+    }
+
+    private final class DecodedSlice {
+        private final Integer fileId;
+        private final VcfSliceProtos.VcfSlice vcfSlice;
+        private VcfRecordProtoToVariantConverter converter;
+
+        private DecodedSlice(Integer fileId, VcfSliceProtos.VcfSlice vcfSlice) {
+            this.fileId = fileId;
+            this.vcfSlice = vcfSlice;
+        }
+
+        private VcfRecordProtoToVariantConverter getConverter() {
+            if (converter == null) {
+                converter = new VcfRecordProtoToVariantConverter(vcfSlice.getFields(),
+                        fileToSamplePositions.get(fileId), fileId.toString(), studyConfiguration.getStudyName());
+            }
+            return converter;
+        }
+    }
+
     public static boolean overlapsWith(Variant variant, String chromosome, int start, int end) {
 //        return variant.overlapWith(chromosome, start, end, true);
         if (!StringUtils.equals(variant.getChromosome(), chromosome)) {
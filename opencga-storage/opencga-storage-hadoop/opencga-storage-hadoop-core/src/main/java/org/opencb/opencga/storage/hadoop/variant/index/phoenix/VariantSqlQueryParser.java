@@ -63,6 +63,9 @@ import static org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPho
  */
 public class VariantSqlQueryParser {
 
+    // Separator of the values of an array column in a GROUP BY. Not present in gene names, biotypes or SO accessions.
+    public static final String ARRAY_SEPARATOR = ",";
+
     private final GenomeHelper genomeHelper;
     private final String variantTable;
     private final Logger logger = LoggerFactory.getLogger(VariantSqlQueryParser.class);
@@ -144,6 +147,20 @@ public class VariantSqlQueryParser {
             }
         }
 
+        appendLimitSkip(sb, options);
+
+        phoenixSQLQuery.sql = sb.toString();
+        return phoenixSQLQuery;
+    }
+
+    /**
+     * Append the LIMIT and OFFSET clauses. If the server does not support OFFSET, the skipped rows are added to the LIMIT,
+     * and have to be skipped by the client.
+     *
+     * @param sb        SQL query
+     * @param options   Query options
+     */
+    private void appendLimitSkip(StringBuilder sb, QueryOptions options) {
         if (clientSideSkip) {
             int skip = Math.max(0, options.getInt(QueryOptions.SKIP));
             if (options.getInt(QueryOptions.LIMIT) > 0) {
@@ -158,9 +175,110 @@ public class VariantSqlQueryParser {
                 sb.append(" OFFSET ").append(options.getInt(QueryOptions.SKIP));
             }
         }
+    }
 
-        phoenixSQLQuery.sql = sb.toString();
-        return phoenixSQLQuery;
+    /**
+     * Count the variants in each interval of a region.
+     * <p>
+     * Returns two columns: the interval id ({@code POSITION / intervalSize}) and the number of variants.
+     *
+     * @param query         Query to parse
+     * @param region        Region to split in intervals
+     * @param intervalSize  Size of each interval
+     * @return SQL query
+     */
+    public String parseFrequency(Query query, Region region, int intervalSize) {
+        String interval = "FLOOR(" + VariantColumn.POSITION + " / " + intervalSize + ")";
+        StringBuilder sb = new StringBuilder("SELECT ").append(interval).append(", COUNT(*)");
+        appendAggregationFromWhere(sb, query, Collections.singletonList(getRegionFilter(region)));
+        sb.append(" GROUP BY ").append(interval);
+        return sb.toString();
+    }
+
+    /**
+     * Count the variants for each distinct combination of values of the given columns.
+     * <p>
+     * Returns one column for each grouped column, followed by the number of variants. Results are sorted by the count, and paginated
+     * with the {@link QueryOptions#LIMIT} and {@link QueryOptions#SKIP} options. If the server does not support OFFSET, the
+     * skipped groups are returned too, and have to be skipped by the client. Array columns can not be unnested by Phoenix,
+     * see {@link #parseGroupByArray}.
+     *
+     * @param query     Query to parse
+     * @param columns   Scalar columns to group by
+     * @param ascending Sort by ascending count
+     * @param options   Query options
+     * @return SQL query
+     */
+    public String parseGroupBy(Query query, List<Column> columns, boolean ascending, QueryOptions options) {
+        String groupBy = columns.stream().map(Column::column).collect(Collectors.joining(","));
+        List<String> notNull = columns.stream().map(column -> column.column() + " IS NOT NULL").collect(Collectors.toList());
+
+        StringBuilder sb = new StringBuilder("SELECT ").append(groupBy).append(", COUNT(*)");
+        appendAggregationFromWhere(sb, query, notNull);
+        sb.append(" GROUP BY ").append(groupBy)
+                .append(" ORDER BY COUNT(*) ").append(ascending ? "ASC" : "DESC");
+        appendLimitSkip(sb, options);
+        return sb.toString();
+    }
+
+    /**
+     * Count the variants for each distinct content of an array column, aggregated in the region servers.
+     * <p>
+     * Phoenix does not support to unnest arrays in a GROUP BY, so variants are grouped by the whole array, joined with
+     * {@link #ARRAY_SEPARATOR}. Returns two columns: the joined array and the number of variants. Variants sharing values have
+     * usually the same array (e.g. genes of the same locus), so there are far less groups than variants. The counts of each
+     * single value are obtained adding up the groups containing it.
+     *
+     * @param query     Query to parse
+     * @param column    Array column
+     * @return SQL query
+     */
+    public String parseGroupByArray(Query query, Column column) {
+        String joined = "ARRAY_TO_STRING(" + column.column() + ", '" + ARRAY_SEPARATOR + "')";
+        StringBuilder sb = new StringBuilder("SELECT ").append(joined).append(", COUNT(*)");
+        appendAggregationFromWhere(sb, query, Collections.singletonList(column.column() + " IS NOT NULL"));
+        sb.append(" GROUP BY ").append(joined);
+        return sb.toString();
+    }
+
+    /**
+     * Select the variants of one group returned by {@link #parseGroupBy} or {@link #parseGroupByArray}.
+     * <p>
+     * Returns the columns CHROMOSOME, POSITION, REFERENCE and ALTERNATE of the variants matching the query where each column
+     * contains the given value. Array columns match if any of its elements is the value.
+     *
+     * @param query     Query to parse
+     * @param columns   Grouped columns
+     * @param values    Value of each grouped column
+     * @return SQL query
+     */
+    public String parseGroupByValues(Query query, List<Column> columns, List<?> values) {
+        List<String> groupFilters = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            groupFilters.add(buildFilter(columns.get(i), "=", values.get(i)));
+        }
+        StringBuilder sb = new StringBuilder("SELECT ")
+                .append(VariantColumn.CHROMOSOME).append(',')
+                .append(VariantColumn.POSITION).append(',')
+                .append(VariantColumn.REFERENCE).append(',')
+                .append(VariantColumn.ALTERNATE);
+        appendAggregationFromWhere(sb, query, groupFilters);
+        return sb.toString();
+    }
+
+    private void appendAggregationFromWhere(StringBuilder sb, Query query, List<String> extraFilters) {
+        try {
+            Set<Column> dynamicColumns = new HashSet<>();
+            List<String> regionFilters = getRegionFilters(query);
+            List<String> filters = new ArrayList<>(getOtherFilters(query, new QueryOptions(), dynamicColumns));
+            filters.addAll(extraFilters);
+
+            appendFromStatement(sb, dynamicColumns);
+            appendWhereStatement(sb, regionFilters, filters);
+        } catch (VariantQueryException e) {
+            e.setQuery(query);
+            throw e;
+        }
     }
 
     /**
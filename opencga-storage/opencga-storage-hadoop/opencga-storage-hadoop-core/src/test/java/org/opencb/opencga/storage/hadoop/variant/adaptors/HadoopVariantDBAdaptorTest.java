@@ -51,7 +51,6 @@ import static org.junit.runners.Parameterized.Parameters;
 public class HadoopVariantDBAdaptorTest extends VariantDBAdaptorTest implements HadoopVariantStorageTest {
 
     private static final boolean FILES = true;
-    private static final boolean GROUP_BY = false;
     private static final boolean CT_GENES = false;
     protected static final boolean MISSING_ALLELE = false;
 
@@ -139,12 +138,6 @@ public class HadoopVariantDBAdaptorTest extends VariantDBAdaptorTest implements
     }
 
 
-    @Override
-    public void rank_gene() throws Exception {
-        Assume.assumeTrue(GROUP_BY);
-        super.rank_gene();
-    }
-
     @Override
     public void testExcludeFiles() {
         Assume.assumeTrue(FILES);
@@ -169,19 +162,6 @@ public class HadoopVariantDBAdaptorTest extends VariantDBAdaptorTest implements
         super.testGetAllVariants_negatedGenotypesMixed();
     }
 
-    @Override
-    @Ignore
-    public void groupBy_gene_limit_0() throws Exception {
-        Assume.assumeTrue(GROUP_BY);
-        super.groupBy_gene_limit_0();
-    }
-
-    @Override
-    public void groupBy_gene() throws Exception {
-        Assume.assumeTrue(GROUP_BY);
-        super.groupBy_gene();
-    }
-
     @Override
     public void testGetAllVariants_files() {
         Assume.assumeTrue(FILES);
@@ -194,12 +174,6 @@ public class HadoopVariantDBAdaptorTest extends VariantDBAdaptorTest implements
         super.testGetAllVariants_filterNoFile();
     }
 
-    @Override
-    public void rank_ct() throws Exception {
-        Assume.assumeTrue(GROUP_BY);
-        super.rank_ct();
-    }
-
     @Override
     public void limitSkip(Query query, QueryOptions options) {
         Assume.assumeTrue("Unable to paginate queries without sorting", options.getBoolean(QueryOptions.SORT, false));
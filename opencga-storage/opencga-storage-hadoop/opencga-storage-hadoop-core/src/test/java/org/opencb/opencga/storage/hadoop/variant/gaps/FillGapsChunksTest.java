@@ -0,0 +1,61 @@
+package org.opencb.opencga.storage.hadoop.variant.gaps;
+
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class FillGapsChunksTest {
+
+    @Test
+    public void testBuildChunks() {
+        List<String> chunks = FillGapsChunks.buildChunks(100, new ArchiveRowKeyFactory(1000, '_'),
+                Arrays.asList("chr1", "1", "X", "GL000220.1"));
+
+        // One chunk for the chromosome without pre splits
+        assertEquals(new Region("GL000220.1", 1, Integer.MAX_VALUE).toString(), chunks.get(chunks.size() - 1));
+        assertEquals(new HashSet<>(chunks).size(), chunks.size());
+
+        // Chunks of each chromosome are contiguous, and cover the whole chromosome
+        Map<String, Integer> lastEnd = new HashMap<>();
+        for (String chunk : chunks.subList(0, chunks.size() - 1)) {
+            Region region = new Region(chunk);
+            assertEquals(chunk, lastEnd.getOrDefault(region.getChromosome(), 0) + 1, region.getStart());
+            lastEnd.put(region.getChromosome(), region.getEnd());
+        }
+        assertEquals(GenomeHelper.getHumanChromosomeLengths().keySet(), lastEnd.keySet());
+        for (Integer end : lastEnd.values()) {
+            assertEquals(Integer.MAX_VALUE, end.intValue());
+        }
+        assertTrue(chunks.size() > GenomeHelper.getHumanChromosomeLengths().size() + 1);
+
+        // No extra chunks if all the chromosomes have pre splits
+        assertEquals(chunks.subList(0, chunks.size() - 1),
+                FillGapsChunks.buildChunks(100, new ArchiveRowKeyFactory(1000, '_'), Arrays.asList("chr1", "X")));
+    }
+
+    @Test
+    public void testCompletedChunks() {
+        StudyConfiguration sc = new StudyConfiguration(1, "s1");
+        List<Integer> samples = Arrays.asList(2, 1);
+
+        assertEquals(Collections.emptySet(), FillGapsChunks.getCompletedChunks(sc, samples));
+        FillGapsChunks.addCompletedChunk(sc, samples, "1:1-1000");
+        FillGapsChunks.addCompletedChunk(sc, samples, "GL000220.1:1-1000");
+        assertEquals(new HashSet<>(Arrays.asList("1:1-1000", "GL000220.1:1-1000")),
+                FillGapsChunks.getCompletedChunks(sc, Arrays.asList(1, 2)));
+
+        // Progress of other samples is not reused
+        assertEquals(Collections.emptySet(), FillGapsChunks.getCompletedChunks(sc, Arrays.asList(1, 3)));
+        FillGapsChunks.addCompletedChunk(sc, Arrays.asList(1, 3), "2:1-1000");
+        assertEquals(Collections.singleton("2:1-1000"), FillGapsChunks.getCompletedChunks(sc, Arrays.asList(1, 3)));
+
+        FillGapsChunks.clearCompletedChunks(sc);
+        assertEquals(Collections.emptySet(), FillGapsChunks.getCompletedChunks(sc, Arrays.asList(1, 3)));
+    }
+}
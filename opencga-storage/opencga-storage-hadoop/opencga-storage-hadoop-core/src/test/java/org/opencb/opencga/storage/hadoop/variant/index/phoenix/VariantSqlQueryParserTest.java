@@ -0,0 +1,52 @@
+package org.opencb.opencga.storage.hadoop.variant.index.phoenix;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.dummy.DummyStudyConfigurationAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VariantSqlQueryParserTest {
+
+    private GenomeHelper genomeHelper;
+    private StudyConfigurationManager scm;
+
+    @Before
+    public void setUp() throws Exception {
+        genomeHelper = new GenomeHelper(new Configuration());
+        scm = new StudyConfigurationManager(new DummyStudyConfigurationAdaptor());
+    }
+
+    private String parseGroupBy(boolean clientSideSkip, QueryOptions options) {
+        return new VariantSqlQueryParser(genomeHelper, "VARIANTS", scm, null, clientSideSkip)
+                .parseGroupBy(new Query(), Collections.singletonList(VariantPhoenixHelper.VariantColumn.TYPE), false, options);
+    }
+
+    @Test
+    public void testGroupByServerSideSkip() {
+        String sql = parseGroupBy(false, new QueryOptions(QueryOptions.LIMIT, 10).append(QueryOptions.SKIP, 5));
+        assertTrue(sql, sql.endsWith(" LIMIT 10 OFFSET 5"));
+    }
+
+    @Test
+    public void testGroupByClientSideSkip() {
+        String sql = parseGroupBy(true, new QueryOptions(QueryOptions.LIMIT, 10).append(QueryOptions.SKIP, 5));
+        assertTrue(sql, sql.endsWith(" LIMIT 15"));
+        assertFalse(sql, sql.contains("OFFSET"));
+    }
+
+    @Test
+    public void testGroupByClientSideSkipWithoutLimit() {
+        String sql = parseGroupBy(true, new QueryOptions(QueryOptions.SKIP, 5));
+        assertFalse(sql, sql.contains("LIMIT"));
+        assertFalse(sql, sql.contains("OFFSET"));
+    }
+}
@@ -87,20 +87,25 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
         COLLECTION_FILES("collection.files", "files"),
         COLLECTION_STUDIES("collection.studies",  "studies"),
         COLLECTION_STAGE("collection.stage",  "stage"),
+        COLLECTION_DENSITY("collection.density",  "density"),
         BULK_SIZE("bulkSize",  100),
         DEFAULT_GENOTYPE("defaultGenotype", Arrays.asList("0/0", "0|0")),
         ALREADY_LOADED_VARIANTS("alreadyLoadedVariants", 0),
         LOADED_GENOTYPES("loadedGenotypes", null),
         STAGE("stage", false),
         STAGE_RESUME("stage.resume", false),
-        STAGE_PARALLEL_WRITE("stage.parallel.write", false),
+        STAGE_PARALLEL_WRITE("stage.parallel.write", true),
+        STAGE_WRITE_CONCERN("stage.write.concern", ""),   // Write concern name for the stage collection. e.g. "W1", "JOURNALED"
         STAGE_CLEAN_WHILE_LOAD("stage.clean.while.load", true),
         MERGE("merge", false),
         MERGE_SKIP("merge.skip", false), // Internal use only
         MERGE_RESUME("merge.resume", false),
         MERGE_IGNORE_OVERLAPPING_VARIANTS("merge.ignore-overlapping-variants", false),   //Do not look for overlapping variants
         MERGE_PARALLEL_WRITE("merge.parallel.write", false),
-        MERGE_BATCH_SIZE("merge.batch.size", 10);          //Number of files to merge directly from first to second collection
+        MERGE_PARALLEL_CHROMOSOMES("merge.parallel.chromosomes", 1),   //Number of chromosomes to merge concurrently
+        MERGE_BATCH_SIZE("merge.batch.size", 10),          //Number of files to merge directly from first to second collection
+        ITERATOR_PARALLEL("iterator.parallel", 1),         //Number of concurrent cursors of non paginated iterators
+        ITERATOR_PARALLEL_PARTITION_SIZE("iterator.parallel.partition.size", 500000);
 
         private final String key;
         private final Object value;
@@ -229,6 +234,7 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
             throw e;
         } finally {
             Runtime.getRuntime().removeShutdownHook(hook);
+            invalidateCache(studyId);
         }
     }
 
@@ -374,11 +380,19 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
             for (StoragePipeline storagePipeline : storageResultMap.values()) {
                 storagePipeline.close();
             }
+            if (doLoad) {
+                invalidateIndexedStudyCache();
+            }
         }
 
         return results;
     }
 
+    @Override
+    protected boolean isSearchIndexIncrementalSupported() {
+        return true;
+    }
+
     @Override
     public VariantMongoDBAdaptor getDBAdaptor() throws StorageEngineException {
         // Lazy initialization of dbAdaptor
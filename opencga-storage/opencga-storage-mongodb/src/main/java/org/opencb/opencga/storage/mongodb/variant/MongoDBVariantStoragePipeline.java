@@ -20,6 +20,8 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.mongodb.WriteConcern;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.bson.Document;
 import org.opencb.biodata.formats.variant.io.VariantReader;
@@ -61,6 +63,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -85,6 +90,10 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
             VariantType.TRANSLOCATION,
             VariantType.BREAKEND));
 
+    // Chromosomes already merged by a parallel merge, and the files being merged
+    static final String MERGED_CHROMOSOMES = "merge.parallel.completed_chromosomes";
+    static final String MERGED_CHROMOSOMES_FILES = "merge.parallel.files";
+
     private final VariantMongoDBAdaptor dbAdaptor;
     private final ObjectMap loadStats = new ObjectMap();
     private final Logger logger = LoggerFactory.getLogger(MongoDBVariantStoragePipeline.class);
@@ -260,7 +269,7 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
         VariantStudyMetadata metadata = fileMetadata.toVariantStudyMetadata(String.valueOf(getStudyId()));
         int numRecords = fileMetadata.getStats().getNumVariants();
         int batchSize = options.getInt(Options.LOAD_BATCH_SIZE.key(), Options.LOAD_BATCH_SIZE.defaultValue());
-        int bulkSize = options.getInt(BULK_SIZE.key(), batchSize);
+        int bulkSize = options.getInt(BULK_SIZE.key(), Math.max(batchSize, 1000));
         int loadThreads = options.getInt(Options.LOAD_THREADS.key(), Options.LOAD_THREADS.defaultValue());
         final int numReaders = 1;
 //        final int numTasks = loadThreads == 1 ? 1 : loadThreads - numReaders; //Subtract the reader thread
@@ -268,6 +277,14 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
         MongoDBCollection stageCollection = dbAdaptor.getStageCollection();
 
         try {
+            String stageWriteConcern = options.getString(STAGE_WRITE_CONCERN.key(), STAGE_WRITE_CONCERN.defaultValue());
+            if (StringUtils.isNotEmpty(stageWriteConcern)) {
+                WriteConcern writeConcern = WriteConcern.valueOf(stageWriteConcern);
+                if (writeConcern == null) {
+                    throw new IllegalArgumentException("Unknown write concern '" + stageWriteConcern + "'");
+                }
+                stageCollection = stageCollection.withWriteConcern(writeConcern);
+            }
             StudyConfiguration studyConfiguration = getStudyConfiguration();
 
             //Reader
@@ -289,9 +306,10 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
             //Runner
             ProgressLogger progressLogger = new ProgressLogger("Write variants in STAGE collection:", numRecords, 200);
             MongoDBVariantStageConverterTask converterTask = new MongoDBVariantStageConverterTask(progressLogger);
+            int writeThreads = options.getBoolean(STAGE_PARALLEL_WRITE.key(), STAGE_PARALLEL_WRITE.defaultValue()) ? loadThreads : 1;
             MongoDBVariantStageLoader stageLoader =
                     new MongoDBVariantStageLoader(stageCollection, studyConfiguration.getStudyId(), fileId,
-                            isResumeStage(options));
+                            isResumeStage(options), writeThreads, bulkSize);
 
             ParallelTaskRunner<Variant, ?> ptr;
             ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
@@ -299,13 +317,8 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                     .setNumTasks(loadThreads)
                     .setBatchSize(batchSize)
                     .setAbortOnFail(true).build();
-            if (options.getBoolean(STAGE_PARALLEL_WRITE.key(), STAGE_PARALLEL_WRITE.defaultValue())) {
-                logger.info("Multi thread stage load... [{} readerThreads, {} writerThreads]", numReaders, loadThreads);
-                ptr = new ParallelTaskRunner<>(variantReader, remapIdsTask.then(converterTask).then(stageLoader), null, config);
-            } else {
-                logger.info("Multi thread stage load... [{} readerThreads, {} tasks, {} writerThreads]", numReaders, loadThreads, 1);
-                ptr = new ParallelTaskRunner<>(variantReader, remapIdsTask.then(converterTask), stageLoader, config);
-            }
+            logger.info("Multi thread stage load... [{} readerThreads, {} tasks, {} writerThreads]", numReaders, loadThreads, writeThreads);
+            ptr = new ParallelTaskRunner<>(variantReader, remapIdsTask.then(converterTask), stageLoader, config);
 
             Thread hook = new Thread(() -> {
                 try {
@@ -464,6 +477,8 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
         ListMultimap<String, Integer> chromosomeInLoadedFiles = LinkedListMultimap.create();
         // List of all the indexed files that cover each chromosome
         ListMultimap<String, Integer> chromosomeInFilesToLoad = LinkedListMultimap.create();
+        // Number of variants in each chromosome from all the indexed files and the files to load. Null if unknown
+        Map<String, Long> chromosomeCounts = new HashMap<>();
 
         Set<String> wholeGenomeFiles = new HashSet<>();
         Set<String> byChromosomeFiles = new HashSet<>();
@@ -480,6 +495,15 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                     wholeGenomeFiles.add(fileMetadata.getPath());
                 }
             }
+            if (studyConfiguration.getIndexedFiles().contains(fileId) || fileIds.contains(fileId)) {
+                if (fileMetadata.getStats() == null || fileMetadata.getStats().getChromosomeCounts().isEmpty()) {
+                    chromosomeCounts = null;
+                } else if (chromosomeCounts != null) {
+                    for (Map.Entry<String, ? extends Number> entry : fileMetadata.getStats().getChromosomeCounts().entrySet()) {
+                        chromosomeCounts.merge(entry.getKey(), entry.getValue().longValue(), Long::sum);
+                    }
+                }
+            }
             // If the file is indexed, add to the map of chromosome->fileId
             for (String chromosome : fileMetadata.getStats().getChromosomeCounts().keySet()) {
                 if (studyConfiguration.getIndexedFiles().contains(fileId)) {
@@ -506,6 +530,7 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
             });
             Runtime.getRuntime().addShutdownHook(hook);
             try {
+                dbAdaptor.getDensityIndex().initIfEmpty(dbAdaptor.getVariantsCollection());
                 if (!wholeGenomeFiles.isEmpty() && !byChromosomeFiles.isEmpty()) {
                     String message = "Impossible to merge files splitted and not splitted by chromosome at the same time! "
                             + "Files covering only one chromosome: " + byChromosomeFiles + ". "
@@ -514,16 +539,20 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                     throw new StorageEngineException(message);
                 }
 
-                if (chromosomesToLoad.isEmpty()) {
+                int parallelChromosomes = options.getInt(MERGE_PARALLEL_CHROMOSOMES.key(), MERGE_PARALLEL_CHROMOSOMES.defaultValue());
+                if (chromosomesToLoad.isEmpty() && parallelChromosomes > 1 && chromosomeCounts != null && chromosomeCounts.size() > 1) {
+                    writeResult = mergeChromosomesInParallel(fileIds, batchSize, loadThreads, parallelChromosomes,
+                            studyConfiguration, chromosomeCounts);
+                } else if (chromosomesToLoad.isEmpty()) {
                     writeResult = mergeByChromosome(fileIds, batchSize, loadThreads,
-                            studyConfiguration, null, studyConfiguration.getIndexedFiles());
+                            studyConfiguration, null, studyConfiguration.getIndexedFiles(), null);
                 } else {
                     writeResult = new MongoDBVariantWriteResult();
                     for (String chromosome : chromosomesToLoad) {
                         List<Integer> filesToLoad = chromosomeInFilesToLoad.get(chromosome);
                         Set<Integer> indexedFiles = new HashSet<>(chromosomeInLoadedFiles.get(chromosome));
                         MongoDBVariantWriteResult aux = mergeByChromosome(filesToLoad, batchSize, loadThreads,
-                                studyConfiguration, chromosome, indexedFiles);
+                                studyConfiguration, chromosome, indexedFiles, null);
                         writeResult.merge(aux);
                     }
                 }
@@ -536,6 +565,11 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
             getStudyConfigurationManager().atomicSetStatus(getStudyId(), BatchFileOperation.Status.DONE, MERGE.key(), fileIds);
         }
 
+        if (!dbAdaptor.getDensityIndex().isReady()) {
+            // The density index could not be updated incrementally. e.g. resumed merge
+            dbAdaptor.getDensityIndex().rebuild(dbAdaptor.getVariantsCollection());
+        }
+
         if (!options.getBoolean(STAGE_CLEAN_WHILE_LOAD.key(), STAGE_CLEAN_WHILE_LOAD.defaultValue())) {
             StopWatch time = StopWatch.createStarted();
             logger.info("Deleting variant records from Stage collection");
@@ -578,8 +612,138 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
         });
     }
 
+    /**
+     * Merge the given files running one reader-merger-loader pipeline per chromosome, with several pipelines at the same time.
+     * Biggest chromosomes are merged first. The merged chromosomes are registered in the StudyConfiguration, so a resumed merge
+     * does not need to merge them again.
+     *
+     * @param fileIds               FileIDs of the files to be merged
+     * @param batchSize             Batch size
+     * @param loadThreads           Total number of threads, shared between all the pipelines
+     * @param parallelChromosomes   Number of chromosomes to merge concurrently
+     * @param studyConfiguration    StudyConfiguration
+     * @param chromosomeCounts      Number of variants per chromosome
+     * @return                      Write Result with times and count
+     * @throws StorageEngineException  If there is a problem merging any chromosome
+     */
+    private MongoDBVariantWriteResult mergeChromosomesInParallel(List<Integer> fileIds, int batchSize, int loadThreads,
+                                                                 int parallelChromosomes, StudyConfiguration studyConfiguration,
+                                                                 Map<String, Long> chromosomeCounts)
+            throws StorageEngineException {
+        int studyId = studyConfiguration.getStudyId();
+        Set<String> completedChromosomes;
+        if (isResumeMerge(options)) {
+            completedChromosomes = getMergedChromosomes(studyConfiguration, fileIds);
+        } else {
+            completedChromosomes = Collections.emptySet();
+            getStudyConfigurationManager().lockAndUpdate(studyId, sc -> {
+                clearMergedChromosomes(sc);
+                return sc;
+            });
+        }
+        List<String> chromosomes = new ArrayList<>(chromosomeCounts.keySet());
+        chromosomes.removeAll(completedChromosomes);
+        chromosomes.sort(Comparator.comparing(chromosomeCounts::get).reversed());
+        if (!completedChromosomes.isEmpty()) {
+            logger.info("Skip already merged chromosomes {}", completedChromosomes);
+        }
+        if (chromosomes.isEmpty()) {
+            // Resumed merge interrupted after merging the last chromosome
+            logger.info("All chromosomes from files {} already merged", fileIds);
+            getStudyConfigurationManager().lockAndUpdate(studyId, sc -> {
+                clearMergedChromosomes(sc);
+                return sc;
+            });
+            return new MongoDBVariantWriteResult();
+        }
+        logger.info("Merging files {} in {} chromosomes, {} at the same time", fileIds, chromosomes.size(), parallelChromosomes);
+
+        MongoDBVariantStageReader stageReader = new MongoDBVariantStageReader(dbAdaptor.getStageCollection(), studyId);
+        ProgressLogger progressLogger = new ProgressLogger("Write variants in VARIANTS collection:", stageReader::countNumVariants, 200);
+        progressLogger.setApproximateTotalCount(stageReader.countAproxNumVariants());
+
+        int threadsPerChromosome = Math.max(1, loadThreads / parallelChromosomes);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelChromosomes, chromosomes.size()));
+        List<Future<MongoDBVariantWriteResult>> futures = new ArrayList<>(chromosomes.size());
+        for (String chromosome : chromosomes) {
+            futures.add(executor.submit(() -> {
+                // Do not share the StudyConfiguration between pipelines
+                StudyConfiguration sc = new StudyConfiguration(studyConfiguration);
+                MongoDBVariantWriteResult result = mergeByChromosome(fileIds, batchSize, threadsPerChromosome, sc, chromosome,
+                        new HashSet<>(sc.getIndexedFiles()), progressLogger);
+                getStudyConfigurationManager().lockAndUpdate(studyId, studyConfigurationToUpdate -> {
+                    addMergedChromosome(studyConfigurationToUpdate, fileIds, chromosome);
+                    return studyConfigurationToUpdate;
+                });
+                return result;
+            }));
+        }
+        executor.shutdown();
+
+        MongoDBVariantWriteResult writeResult = new MongoDBVariantWriteResult();
+        try {
+            for (Future<MongoDBVariantWriteResult> future : futures) {
+                writeResult.merge(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Interrupted while merging files " + fileIds, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StorageEngineException) {
+                throw (StorageEngineException) e.getCause();
+            }
+            throw new StorageEngineException("Error merging files " + fileIds, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        getStudyConfigurationManager().lockAndUpdate(studyId, sc -> {
+            clearMergedChromosomes(sc);
+            return sc;
+        });
+        return writeResult;
+    }
+
+    /**
+     * Get the chromosomes already merged by a parallel merge of the given files.
+     *
+     * @param studyConfiguration    StudyConfiguration
+     * @param fileIds               Files being merged
+     * @return                      Merged chromosomes. Empty if the registered progress is from other files
+     */
+    static Set<String> getMergedChromosomes(StudyConfiguration studyConfiguration, List<Integer> fileIds) {
+        if (!fileIds.toString().equals(studyConfiguration.getAttributes().getString(MERGED_CHROMOSOMES_FILES))) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(studyConfiguration.getAttributes().getAsStringList(MERGED_CHROMOSOMES));
+    }
+
+    /**
+     * Register a chromosome as merged. Discards the progress registered for other files.
+     *
+     * @param studyConfiguration    StudyConfiguration
+     * @param fileIds               Files being merged
+     * @param chromosome            Merged chromosome
+     */
+    static void addMergedChromosome(StudyConfiguration studyConfiguration, List<Integer> fileIds, String chromosome) {
+        Set<String> mergedChromosomes = new LinkedHashSet<>(getMergedChromosomes(studyConfiguration, fileIds));
+        mergedChromosomes.add(chromosome);
+        studyConfiguration.getAttributes().put(MERGED_CHROMOSOMES_FILES, fileIds.toString());
+        studyConfiguration.getAttributes().put(MERGED_CHROMOSOMES, new ArrayList<>(mergedChromosomes));
+    }
+
+    /**
+     * Remove any registered parallel merge progress.
+     *
+     * @param studyConfiguration    StudyConfiguration
+     */
+    static void clearMergedChromosomes(StudyConfiguration studyConfiguration) {
+        studyConfiguration.getAttributes().remove(MERGED_CHROMOSOMES_FILES);
+        studyConfiguration.getAttributes().remove(MERGED_CHROMOSOMES);
+    }
+
     private MongoDBVariantWriteResult mergeByChromosome(List<Integer> fileIds, int batchSize, int loadThreads,
-            StudyConfiguration studyConfiguration, String chromosomeToLoad, Set<Integer> indexedFiles)
+            StudyConfiguration studyConfiguration, String chromosomeToLoad, Set<Integer> indexedFiles, ProgressLogger sharedProgressLogger)
             throws StorageEngineException {
         MongoDBCollection stageCollection = dbAdaptor.getStageCollection();
         MongoDBVariantStageReader reader = new MongoDBVariantStageReader(stageCollection, studyConfiguration.getStudyId(),
@@ -591,15 +755,18 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
         }
         boolean resume = isResumeMerge(options);
         boolean cleanWhileLoading = options.getBoolean(STAGE_CLEAN_WHILE_LOAD.key(), STAGE_CLEAN_WHILE_LOAD.defaultValue());
-        ProgressLogger progressLogger = new ProgressLogger("Write variants in VARIANTS collection:", reader::countNumVariants, 200);
-        progressLogger.setApproximateTotalCount(reader.countAproxNumVariants());
+        ProgressLogger progressLogger = sharedProgressLogger;
+        if (progressLogger == null) {
+            progressLogger = new ProgressLogger("Write variants in VARIANTS collection:", reader::countNumVariants, 200);
+            progressLogger.setApproximateTotalCount(reader.countAproxNumVariants());
+        }
 
         boolean ignoreOverlapping = studyConfiguration.getAttributes().getBoolean(MERGE_IGNORE_OVERLAPPING_VARIANTS.key(),
                 MERGE_IGNORE_OVERLAPPING_VARIANTS.defaultValue());
         MongoDBVariantMerger variantMerger = new MongoDBVariantMerger(dbAdaptor, studyConfiguration, fileIds, indexedFiles, resume,
                 ignoreOverlapping);
         MongoDBVariantMergeLoader variantLoader = new MongoDBVariantMergeLoader(
-                dbAdaptor.getVariantsCollection(), stageCollection, dbAdaptor.getStudiesCollection(),
+                dbAdaptor.getVariantsCollection(), stageCollection, dbAdaptor.getStudiesCollection(), dbAdaptor.getDensityIndex(),
                 studyConfiguration, fileIds, resume, cleanWhileLoading, progressLogger);
 
         ParallelTaskRunner<Document, MongoDBOperations> ptrMerge;
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.adaptors;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.VariantStringIdConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Updates.*;
+
+/**
+ * Number of variants per chromosome bin, at several fixed bin sizes, in total and for each study.
+ *
+ * Maintained incrementally by the {@link org.opencb.opencga.storage.mongodb.variant.load.variants.MongoDBVariantMergeLoader}
+ * and by the removal operations of the {@link VariantMongoDBAdaptor}. Used to answer unfiltered
+ * {@link VariantMongoDBAdaptor#getFrequency} requests without scanning the variants collection.
+ *
+ * The index is only used while it is marked as ready. Any operation that can not keep the counts up to date (e.g. a resumed load)
+ * invalidates it, and it has to be rebuilt with {@link #rebuild}.
+ */
+public class VariantDensityIndex {
+
+    public static final int[] BIN_SIZES = {1000, 10000, 100000, 1000000};
+    public static final int MIN_BINS_PER_INTERVAL = 100;
+
+    public static final String CHROMOSOME_FIELD = "chr";
+    public static final String SIZE_FIELD = "size";
+    public static final String BIN_FIELD = "bin";
+    public static final String COUNT_FIELD = "count";
+    public static final String STUDIES_FIELD = "studies";
+    public static final String READY_FIELD = "ready";
+
+    private static final String METADATA_ID = "_metadata";
+    private static final QueryOptions UPSERT = new QueryOptions(MongoDBCollection.UPSERT, true);
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoDBCollection collection;
+    private final Logger logger = LoggerFactory.getLogger(VariantDensityIndex.class);
+
+    public VariantDensityIndex(MongoDBCollection collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Counts to be added or subtracted from the index.
+     */
+    public static class Delta {
+        private final Map<String, BinIncrement> increments = new HashMap<>();
+
+        /**
+         * Add a variant to the total count of the bins containing its start.
+         *
+         * @param variantId Id of the variant document
+         * @param inc       Value to increment
+         */
+        public void addVariant(String variantId, int inc) {
+            add(variantId, COUNT_FIELD, inc);
+        }
+
+        /**
+         * Add a variant to the count of a study in the bins containing its start.
+         *
+         * @param variantId Id of the variant document
+         * @param studyId   Study
+         * @param inc       Value to increment
+         */
+        public void addStudy(String variantId, int studyId, int inc) {
+            add(variantId, STUDIES_FIELD + '.' + studyId, inc);
+        }
+
+        public void addVariant(String chromosome, int start, int inc) {
+            add(chromosome, start, COUNT_FIELD, inc);
+        }
+
+        public void addStudy(String chromosome, int start, int studyId, int inc) {
+            add(chromosome, start, STUDIES_FIELD + '.' + studyId, inc);
+        }
+
+        public boolean isEmpty() {
+            return increments.isEmpty();
+        }
+
+        private void add(String variantId, String field, int inc) {
+            // Variant ids start with "{chromosome}:{start}:", where both values may be padded with spaces
+            int chrEnd = variantId.indexOf(VariantStringIdConverter.SEPARATOR_CHAR);
+            int startEnd = variantId.indexOf(VariantStringIdConverter.SEPARATOR_CHAR, chrEnd + 1);
+            String chromosome = variantId.substring(0, chrEnd).trim();
+            int start = Integer.parseInt(variantId.substring(chrEnd + 1, startEnd < 0 ? variantId.length() : startEnd).trim());
+            add(chromosome, start, field, inc);
+        }
+
+        private void add(String chromosome, int start, String field, int inc) {
+            for (int binSize : BIN_SIZES) {
+                int bin = start / binSize;
+                increments.computeIfAbsent(buildId(chromosome, binSize, bin), key -> new BinIncrement(chromosome, binSize, bin))
+                        .fields.merge(field, inc, Integer::sum);
+            }
+        }
+    }
+
+    private static class BinIncrement {
+        private final String chromosome;
+        private final int binSize;
+        private final int bin;
+        private final Map<String, Integer> fields = new HashMap<>();
+
+        BinIncrement(String chromosome, int binSize, int bin) {
+            this.chromosome = chromosome;
+            this.binSize = binSize;
+            this.bin = bin;
+        }
+    }
+
+    public void createIndexes() {
+        collection.createIndex(new Document(CHROMOSOME_FIELD, 1).append(SIZE_FIELD, 1).append(BIN_FIELD, 1),
+                new ObjectMap(MongoDBCollection.BACKGROUND, true));
+    }
+
+    /**
+     * Apply a set of increments to the index.
+     *
+     * @param delta Increments to apply
+     */
+    public void apply(Delta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        List<Bson> queries = new ArrayList<>(delta.increments.size());
+        List<Bson> updates = new ArrayList<>(delta.increments.size());
+        for (Map.Entry<String, BinIncrement> entry : delta.increments.entrySet()) {
+            BinIncrement increment = entry.getValue();
+            List<Bson> update = new ArrayList<>(increment.fields.size() + 3);
+            update.add(setOnInsert(CHROMOSOME_FIELD, increment.chromosome));
+            update.add(setOnInsert(SIZE_FIELD, increment.binSize));
+            update.add(setOnInsert(BIN_FIELD, increment.bin));
+            increment.fields.forEach((field, inc) -> update.add(inc(field, inc)));
+            queries.add(eq("_id", entry.getKey()));
+            updates.add(combine(update));
+        }
+        collection.update(queries, updates, UPSERT);
+    }
+
+    /**
+     * Remove all the counts of a study.
+     *
+     * @param studyId Study to remove
+     */
+    public void removeStudy(int studyId) {
+        collection.update(exists(CHROMOSOME_FIELD), unset(STUDIES_FIELD + '.' + studyId), new QueryOptions(MongoDBCollection.MULTI, true));
+    }
+
+    /**
+     * Get the number of variants in each interval of a region.
+     *
+     * Intervals are identified by {@code start / intervalSize}. The counts are the sum of the bins of the largest bin size that is
+     * either a divisor of the interval size, or at least {@value #MIN_BINS_PER_INTERVAL} times smaller than the interval.
+     * Bins not aligned with the intervals are assigned to the interval containing their start.
+     *
+     * @param region        Region
+     * @param intervalSize  Size of each interval
+     * @param studyId       Count only the variants from this study. Null for all the variants.
+     * @return Number of variants for each interval id, or null if the index can not answer this request.
+     */
+    public Map<Long, Long> getFrequency(Region region, int intervalSize, Integer studyId) {
+        int binSize = getBinSize(intervalSize);
+        if (binSize <= 0 || !isReady()) {
+            return null;
+        }
+        String countField = studyId == null ? COUNT_FIELD : STUDIES_FIELD + '.' + studyId;
+        Bson query = and(
+                eq(CHROMOSOME_FIELD, region.getChromosome()),
+                eq(SIZE_FIELD, binSize),
+                gte(BIN_FIELD, region.getStart() / binSize),
+                lte(BIN_FIELD, region.getEnd() / binSize));
+
+        Map<Long, Long> counts = new HashMap<>();
+        FindIterable<Document> iterable = collection.nativeQuery()
+                .find(query, Projections.include(BIN_FIELD, countField), new QueryOptions())
+                .batchSize(BATCH_SIZE);
+        try (MongoCursor<Document> cursor = iterable.iterator()) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                Number count = studyId == null
+                        ? document.get(COUNT_FIELD, Number.class)
+                        : document.get(STUDIES_FIELD, new Document()).get(studyId.toString(), Number.class);
+                if (count != null && count.longValue() > 0) {
+                    long binStart = ((Number) document.get(BIN_FIELD)).longValue() * binSize;
+                    counts.merge(binStart / intervalSize, count.longValue(), Long::sum);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Split a chromosome in consecutive regions with a similar number of variants, using the largest bin size.
+     * The regions cover the whole chromosome. If the index is not ready, returns the whole chromosome as one region.
+     *
+     * @param chromosome        Chromosome
+     * @param variantsPerRegion Approximate number of variants of each region
+     * @return Sorted list of regions
+     */
+    public List<Region> splitChromosome(String chromosome, long variantsPerRegion) {
+        List<Region> regions = new ArrayList<>();
+        long start = 0;
+        if (isReady()) {
+            long binSize = BIN_SIZES[BIN_SIZES.length - 1];
+            Bson query = and(eq(CHROMOSOME_FIELD, chromosome), eq(SIZE_FIELD, binSize));
+            FindIterable<Document> iterable = collection.nativeQuery()
+                    .find(query, Projections.include(BIN_FIELD, COUNT_FIELD), new QueryOptions())
+                    .sort(new Document(BIN_FIELD, 1))
+                    .batchSize(BATCH_SIZE);
+            long count = 0;
+            try (MongoCursor<Document> cursor = iterable.iterator()) {
+                while (cursor.hasNext()) {
+                    Document document = cursor.next();
+                    Number binCount = document.get(COUNT_FIELD, Number.class);
+                    count += binCount == null ? 0 : binCount.longValue();
+                    long end = (((Number) document.get(BIN_FIELD)).longValue() + 1) * binSize - 1;
+                    if (count >= variantsPerRegion && end < Integer.MAX_VALUE) {
+                        regions.add(new Region(chromosome, (int) start, (int) end));
+                        start = end + 1;
+                        count = 0;
+                    }
+                }
+            }
+        }
+        regions.add(new Region(chromosome, (int) start, Integer.MAX_VALUE));
+        return regions;
+    }
+
+    static int getBinSize(int intervalSize) {
+        for (int i = BIN_SIZES.length - 1; i >= 0; i--) {
+            // Not aligned bins may move up to one bin from each interval to the next one
+            if (intervalSize % BIN_SIZES[i] == 0 || BIN_SIZES[i] * (long) MIN_BINS_PER_INTERVAL <= intervalSize) {
+                return BIN_SIZES[i];
+            }
+        }
+        return -1;
+    }
+
+    public boolean isReady() {
+        Document metadata = collection.find(eq("_id", METADATA_ID), null, null).first();
+        return metadata != null && metadata.getBoolean(READY_FIELD, false);
+    }
+
+    /**
+     * Mark the index as not usable until it is rebuilt.
+     */
+    public void invalidate() {
+        setReady(false);
+    }
+
+    /**
+     * Mark the index as ready if there are no variants yet, so it can be maintained incrementally from the first load.
+     *
+     * @param variantsCollection Variants collection
+     */
+    public void initIfEmpty(MongoDBCollection variantsCollection) {
+        if (!isReady() && variantsCollection.count().first() == 0) {
+            collection.remove(exists(CHROMOSOME_FIELD), new QueryOptions(MongoDBCollection.MULTI, true));
+            setReady(true);
+        }
+    }
+
+    /**
+     * Rebuild the whole index from the variants collection.
+     *
+     * @param variantsCollection Variants collection
+     */
+    public void rebuild(MongoDBCollection variantsCollection) {
+        logger.info("Rebuilding variant density index");
+        setReady(false);
+        collection.remove(exists(CHROMOSOME_FIELD), new QueryOptions(MongoDBCollection.MULTI, true));
+
+        String studyIdField = DocumentToVariantConverter.STUDIES_FIELD + '.' + DocumentToStudyVariantEntryConverter.STUDYID_FIELD;
+        Bson projection = Projections.include(DocumentToVariantConverter.CHROMOSOME_FIELD, DocumentToVariantConverter.START_FIELD,
+                studyIdField);
+        FindIterable<Document> iterable = variantsCollection.nativeQuery()
+                .find(new Document(), projection, new QueryOptions())
+                .batchSize(BATCH_SIZE);
+        Delta delta = new Delta();
+        int variants = 0;
+        try (MongoCursor<Document> cursor = iterable.iterator()) {
+            while (cursor.hasNext()) {
+                addDocument(delta, cursor.next(), 1, true);
+                if (++variants % (BATCH_SIZE * 100) == 0) {
+                    apply(delta);
+                    delta = new Delta();
+                }
+            }
+        }
+        apply(delta);
+        setReady(true);
+        logger.info("Variant density index rebuilt with {} variants", variants);
+    }
+
+    /**
+     * Add a variant document, with at least the chromosome, start and study ids, to a delta.
+     *
+     * @param delta         Delta to modify
+     * @param document      Variant document
+     * @param inc           Value to increment
+     * @param total         Increment also the total count
+     */
+    public static void addDocument(Delta delta, Document document, int inc, boolean total) {
+        String chromosome = document.getString(DocumentToVariantConverter.CHROMOSOME_FIELD);
+        int start = ((Number) document.get(DocumentToVariantConverter.START_FIELD)).intValue();
+        if (total) {
+            delta.addVariant(chromosome, start, inc);
+        }
+        List<Document> studies = document.get(DocumentToVariantConverter.STUDIES_FIELD, Collections.<Document>emptyList());
+        for (Document study : studies) {
+            Number studyId = study.get(DocumentToStudyVariantEntryConverter.STUDYID_FIELD, Number.class);
+            if (studyId != null) {
+                delta.addStudy(chromosome, start, studyId.intValue(), inc);
+            }
+        }
+    }
+
+    private void setReady(boolean ready) {
+        collection.update(eq("_id", METADATA_ID), set(READY_FIELD, ready), UPSERT);
+    }
+
+    private static String buildId(String chromosome, int binSize, int bin) {
+        return chromosome + '_' + binSize + '_' + bin;
+    }
+}
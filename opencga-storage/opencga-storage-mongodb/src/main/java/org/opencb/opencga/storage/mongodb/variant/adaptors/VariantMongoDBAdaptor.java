@@ -42,6 +42,7 @@ import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.commons.datastore.mongodb.MongoDBCollection;
 import org.opencb.commons.datastore.mongodb.MongoDataStore;
 import org.opencb.commons.datastore.mongodb.MongoDataStoreManager;
+import org.opencb.commons.datastore.mongodb.MongoPersistentCursor;
 import org.opencb.opencga.core.results.VariantQueryResult;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.config.StorageEngineConfiguration;
@@ -50,6 +51,7 @@ import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 import org.opencb.opencga.storage.mongodb.auth.MongoCredentials;
@@ -63,6 +65,7 @@ import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.mongodb.client.model.Filters.*;
@@ -92,6 +95,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
     private final StorageConfiguration storageConfiguration;
     private final MongoCredentials credentials;
     private final VariantMongoDBQueryParser queryParser;
+    private final VariantDensityIndex densityIndex;
 
     private StudyConfigurationManager studyConfigurationManager;
     private final ObjectMap configuration;
@@ -133,6 +137,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                 : storageEngineConfiguration.getVariant().getOptions();
 
         queryParser = new VariantMongoDBQueryParser(studyConfigurationManager);
+        densityIndex = new VariantDensityIndex(
+                db.getCollection(configuration.getString(COLLECTION_DENSITY.key(), COLLECTION_DENSITY.defaultValue())));
         NUMBER_INSTANCES.incrementAndGet();
     }
 
@@ -148,6 +154,10 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         return db.getCollection(configuration.getString(COLLECTION_STUDIES.key(), COLLECTION_STUDIES.defaultValue()));
     }
 
+    public VariantDensityIndex getDensityIndex() {
+        return densityIndex;
+    }
+
     protected MongoDataStore getDB() {
         return db;
     }
@@ -166,6 +176,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
     public QueryResult remove(Query query, QueryOptions options) {
         Bson mongoQuery = queryParser.parseQuery(query);
         logger.debug("Delete to be executed: '{}'", mongoQuery.toString());
+        decrementDensityIndex(mongoQuery, null);
         QueryResult queryResult = variantsCollection.remove(mongoQuery, options);
 
         return queryResult;
@@ -264,6 +275,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         // Update and remove variants from variants collection
         int studyId = sc.getStudyId();
         logger.info("Remove files from variants collection - step 1/3"); // Remove study if only contains removed files
+        decrementDensityIndex(studiesToRemoveQuery, studyId);
         long updatedVariantsDocuments = removeStudyFromVariants(studyId, studiesToRemoveQuery).first().getModifiedCount();
 
 
@@ -294,6 +306,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                             in(DocumentToVariantConverter.STUDIES_FIELD + ".$." + GENOTYPES_FIELD + '.' + gt, sampleIds)));
         }
 
+        updates.add(set(DocumentToVariantConverter.LAST_UPDATE_FIELD, System.currentTimeMillis()));
+
         Bson update = combine(updates);
         logger.debug("removeFile: query = " + query.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
         logger.debug("removeFile: update = " + update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
@@ -331,6 +345,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
 
         logger.info("Remove study from variants collection - step 1/" + (purge ? '2' : '1'));
         QueryResult<UpdateResult> result = removeStudyFromVariants(studyId, query);
+        densityIndex.removeStudy(studyId);
 
         if (purge) {
             logger.info("Remove study from variants collection - step 2/2");
@@ -355,7 +370,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         // { $pull : { files : {  sid : <studyId> } } }
         Bson update = combine(
                 pull(DocumentToVariantConverter.STUDIES_FIELD, eq(STUDYID_FIELD, studyId)),
-                pull(DocumentToVariantConverter.STATS_FIELD, eq(DocumentToVariantStatsConverter.STUDY_ID, studyId))
+                pull(DocumentToVariantConverter.STATS_FIELD, eq(DocumentToVariantStatsConverter.STUDY_ID, studyId)),
+                set(DocumentToVariantConverter.LAST_UPDATE_FIELD, System.currentTimeMillis())
         );
         logger.debug("removeStudy: query = {}", query.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
         logger.debug("removeStudy: update = {}", update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
@@ -370,9 +386,44 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
 
     private long removeEmptyVariants() {
         Bson purgeQuery = exists(DocumentToVariantConverter.STUDIES_FIELD + '.' + STUDYID_FIELD, false);
+        decrementDensityIndex(purgeQuery, null);
         return variantsCollection.remove(purgeQuery, new QueryOptions(MULTI, true)).first().getDeletedCount();
     }
 
+    /**
+     * Subtract from the density index the variants matching the query, before they are removed.
+     *
+     * @param query     Variants to be removed
+     * @param studyId   Subtract only from this study. If null, subtract from the total count and from all the studies.
+     */
+    private void decrementDensityIndex(Bson query, Integer studyId) {
+        if (!densityIndex.isReady()) {
+            // Will be rebuilt
+            return;
+        }
+        Bson projection = Projections.include(DocumentToVariantConverter.CHROMOSOME_FIELD, DocumentToVariantConverter.START_FIELD,
+                DocumentToVariantConverter.STUDIES_FIELD + '.' + STUDYID_FIELD);
+        FindIterable<Document> iterable = variantsCollection.nativeQuery().find(query, projection, new QueryOptions()).batchSize(1000);
+        VariantDensityIndex.Delta delta = new VariantDensityIndex.Delta();
+        int variants = 0;
+        try (MongoCursor<Document> cursor = iterable.iterator()) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                if (studyId == null) {
+                    VariantDensityIndex.addDocument(delta, document, -1, true);
+                } else {
+                    delta.addStudy(document.getString(DocumentToVariantConverter.CHROMOSOME_FIELD),
+                            ((Number) document.get(DocumentToVariantConverter.START_FIELD)).intValue(), studyId, -1);
+                }
+                if (++variants % 100000 == 0) {
+                    densityIndex.apply(delta);
+                    delta = new VariantDensityIndex.Delta();
+                }
+            }
+        }
+        densityIndex.apply(delta);
+    }
+
     private long removeEmptyVariantsFromStage() {
         Bson purgeQuery = eq(StageDocumentToVariantConverter.STUDY_FILE_FIELD, Collections.emptyList());
         return getStageCollection().remove(purgeQuery, new QueryOptions(MULTI, true)).first().getDeletedCount();
@@ -517,6 +568,15 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         DocumentToVariantConverter converter = getDocumentToVariantConverter(query, options);
         options.putIfAbsent(MongoDBCollection.BATCH_SIZE, 100);
 
+        int parallel = options.getInt(ITERATOR_PARALLEL.key(),
+                configuration.getInt(ITERATOR_PARALLEL.key(), ITERATOR_PARALLEL.defaultValue()));
+        if (parallel > 1
+                && !options.containsKey(QueryOptions.TIMEOUT)
+                && !options.containsKey(QueryOptions.LIMIT)
+                && !options.containsKey(QueryOptions.SKIP)) {
+            return parallelIterator(query, options, mongoQuery, projection, parallel);
+        }
+
         // Short unsorted queries with timeout or limit don't need the persistent cursor.
         if (options.containsKey(QueryOptions.TIMEOUT)
                 || options.containsKey(QueryOptions.LIMIT)
@@ -532,6 +592,102 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         }
     }
 
+    /**
+     * Iterator reading several disjoint "_id" ranges concurrently, decoding the variants in the worker threads.
+     * Partitions are whole chromosomes, split into balanced regions if the density index is ready, and restricted to the regions
+     * of the query, if any.
+     */
+    private VariantDBIterator parallelIterator(Query query, QueryOptions options, Document mongoQuery, Document projection,
+                                               int threads) {
+        // After creating the projection, the sort is either removed or "_id"
+        boolean sorted = options.containsKey(QueryOptions.SORT);
+        int batchSize = options.getInt(MongoDBCollection.BATCH_SIZE);
+        int partitionSize = options.getInt(ITERATOR_PARALLEL_PARTITION_SIZE.key(),
+                configuration.getInt(ITERATOR_PARALLEL_PARTITION_SIZE.key(), ITERATOR_PARALLEL_PARTITION_SIZE.defaultValue()));
+
+        List<Region> queryRegions = getQueryRegions(query);
+        List<Region> regions = new ArrayList<>();
+        if (queryRegions == null) {
+            for (Object chromosome : variantsCollection.distinct(DocumentToVariantConverter.CHROMOSOME_FIELD, null).getResult()) {
+                regions.addAll(densityIndex.splitChromosome(chromosome.toString(), partitionSize));
+            }
+        } else {
+            Set<String> chromosomes = queryRegions.stream().map(Region::getChromosome).collect(Collectors.toSet());
+            for (String chromosome : chromosomes) {
+                regions.addAll(intersectRegions(densityIndex.splitChromosome(chromosome, partitionSize), queryRegions));
+            }
+        }
+        regions.sort(Comparator.comparing(region -> VariantStringIdConverter.buildId(region.getChromosome(), region.getStart())));
+
+        List<Supplier<MongoCursor<Document>>> partitions = new ArrayList<>(regions.size());
+        for (Region region : regions) {
+            Bson partitionQuery = and(mongoQuery, getIdRange(region));
+            if (sorted) {
+                partitions.add(() -> new MongoPersistentCursor(variantsCollection, partitionQuery, projection, options));
+            } else {
+                partitions.add(() -> variantsCollection.nativeQuery().find(partitionQuery, projection, options)
+                        .batchSize(batchSize).iterator());
+            }
+        }
+        logger.debug("Using mongodb parallel iterator with {} threads over {} partitions", threads, partitions.size());
+        return new VariantMongoDBParallelIterator(partitions, () -> getDocumentToVariantConverter(query, options), threads, batchSize,
+                sorted);
+    }
+
+    /**
+     * Get the regions the query is restricted to.
+     *
+     * @param query Query
+     * @return Merged regions, or null if the query has no region filters, or has other filters combined with them with OR
+     */
+    private static List<Region> getQueryRegions(Query query) {
+        if (!isValidParam(query, REGION) && !isValidParam(query, CHROMOSOME)
+                || isValidParam(query, ID) || isValidParam(query, GENE) || isValidParam(query, ANNOT_XREF)) {
+            return null;
+        }
+        List<Region> regions = new ArrayList<>();
+        if (isValidParam(query, CHROMOSOME)) {
+            regions.addAll(Region.parseRegions(query.getString(CHROMOSOME.key()), true));
+        }
+        if (isValidParam(query, REGION)) {
+            regions.addAll(Region.parseRegions(query.getString(REGION.key()), true));
+        }
+        return VariantMongoDBQueryParser.mergeRegions(regions);
+    }
+
+    /**
+     * Intersect each partition with a list of regions, discarding the empty intersections.
+     *
+     * @param partitions    Partitions
+     * @param regions       Non overlapping regions
+     * @return Intersections
+     */
+    static List<Region> intersectRegions(List<Region> partitions, List<Region> regions) {
+        List<Region> intersections = new ArrayList<>();
+        for (Region partition : partitions) {
+            for (Region region : regions) {
+                if (partition.getChromosome().equals(region.getChromosome())) {
+                    int start = Math.max(partition.getStart(), region.getStart());
+                    int end = Math.min(partition.getEnd(), region.getEnd());
+                    if (start <= end) {
+                        intersections.add(new Region(partition.getChromosome(), start, end));
+                    }
+                }
+            }
+        }
+        return intersections;
+    }
+
+    private static Bson getIdRange(Region region) {
+        Bson lowerBound = gte("_id", VariantStringIdConverter.buildId(region.getChromosome(), region.getStart()));
+        if (region.getEnd() == Integer.MAX_VALUE) {
+            // Any id from this chromosome. ';' is the next char after the separator
+            return and(lowerBound, lt("_id", VariantStringIdConverter.convertChromosome(region.getChromosome()) + ';'));
+        } else {
+            return and(lowerBound, lt("_id", VariantStringIdConverter.buildId(region.getChromosome(), region.getEnd() + 1)));
+        }
+    }
+
     @Override
     public QueryResult getFrequency(Query query, Region region, int regionIntervalSize) {
         // db.variants.aggregate( { $match: { $and: [ {chr: "1"}, {start: {$gt: 251391, $lt: 2701391}} ] }},
@@ -547,6 +703,11 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
             regionIntervalSize = (region.getEnd() - region.getStart()) / 200;
         }
 
+        QueryResult densityResult = getFrequencyFromDensityIndex(query, region, regionIntervalSize);
+        if (densityResult != null) {
+            return densityResult;
+        }
+
         Document start = new Document("$gt", region.getStart());
         start.append("$lt", region.getEnd());
 
@@ -640,6 +801,64 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                 resultList.size(), resultList.size(), null, null, resultList);
     }
 
+    /**
+     * Answer unfiltered frequency requests, or filtered only by one study, from the {@link VariantDensityIndex}.
+     *
+     * @param query                 Query
+     * @param region                Region
+     * @param regionIntervalSize    Interval size
+     * @return Same result as the aggregation, or null if the density index can not be used.
+     */
+    private QueryResult getFrequencyFromDensityIndex(Query query, Region region, int regionIntervalSize) {
+        if (regionIntervalSize <= 0) {
+            return null;
+        }
+        Integer studyId = null;
+        if (query != null) {
+            for (VariantQueryParam param : VariantQueryParam.values()) {
+                if (param != STUDIES && isValidParam(query, param)) {
+                    return null;
+                }
+            }
+            if (isValidParam(query, STUDIES)) {
+                String study = query.getString(STUDIES.key());
+                if (isNegated(study) || study.contains(",") || study.contains(";")) {
+                    return null;
+                }
+                studyId = studyConfigurationManager.getStudyId(study, null);
+            }
+        }
+
+        long dbTimeStart = System.currentTimeMillis();
+        Map<Long, Long> counts = densityIndex.getFrequency(region, regionIntervalSize, studyId);
+        long dbTimeEnd = System.currentTimeMillis();
+        if (counts == null) {
+            return null;
+        }
+
+        // Same format as the aggregation
+        BasicDBList resultList = new BasicDBList();
+        int firstChunkId = queryParser.getChunkId(region.getStart(), regionIntervalSize);
+        int lastChunkId = queryParser.getChunkId(region.getEnd(), regionIntervalSize);
+        for (int chunkId = firstChunkId; chunkId <= lastChunkId; chunkId++) {
+            Document intervalObj = new Document();
+            long count = counts.getOrDefault((long) chunkId, 0L);
+            intervalObj.put("_id", chunkId);
+            intervalObj.put("start", queryParser.getChunkStart(chunkId, regionIntervalSize));
+            intervalObj.put("end", queryParser.getChunkEnd(chunkId, regionIntervalSize));
+            intervalObj.put("chromosome", region.getChromosome());
+            if (count == 0) {
+                intervalObj.put("features_count", 0);
+            } else {
+                intervalObj.put("features_count", Math.log(count));
+            }
+            resultList.add(intervalObj);
+        }
+
+        return new QueryResult(region.toString(), ((Long) (dbTimeEnd - dbTimeStart)).intValue(),
+                resultList.size(), resultList.size(), null, null, resultList);
+    }
+
     @Override
     public QueryResult rank(Query query, String field, int numResults, boolean asc) {
         QueryOptions options = new QueryOptions();
@@ -791,6 +1010,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         boolean overwrite = options.getBoolean(VariantStorageEngine.Options.OVERWRITE_STATS.key(), false);
         //TODO: Use the StudyConfiguration to change names to ids
 
+        long timestamp = System.currentTimeMillis();
+
         // TODO make unset of 'st' if already present?
         for (VariantStatsWrapper wrapper : variantStatsWrappers) {
             Map<String, VariantStats> cohortStats = wrapper.getCohortStats();
@@ -837,7 +1058,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
 
                 Document push = new Document("$push",
                         new Document(DocumentToVariantConverter.STATS_FIELD,
-                                new Document("$each", cohorts)));
+                                new Document("$each", cohorts)))
+                        .append("$set", new Document(DocumentToVariantConverter.LAST_UPDATE_FIELD, timestamp));
                 pushQueriesBulkList.add(find);
                 pushUpdatesBulkList.add(push);
             }
@@ -877,7 +1099,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                         new Document(DocumentToVariantStatsConverter.STUDY_ID, studyConfiguration.getStudyId())
                                 .append(DocumentToVariantStatsConverter.COHORT_ID, cohortId)
                 )
-        );
+        ).append("$set", new Document(DocumentToVariantConverter.LAST_UPDATE_FIELD, System.currentTimeMillis()));
         logger.debug("deleteStats: query = {}", query);
         logger.debug("deleteStats: update = {}", update);
 
@@ -891,6 +1113,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         List<Bson> updates = new LinkedList<>();
 
         long start = System.nanoTime();
+        long timestamp = System.currentTimeMillis();
         DocumentToVariantConverter variantConverter = getDocumentToVariantConverter(new Query(), queryOptions);
         for (VariantAnnotation variantAnnotation : variantAnnotations) {
             String id;
@@ -909,7 +1132,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
             DocumentToVariantAnnotationConverter converter = new DocumentToVariantAnnotationConverter();
             Document convertedVariantAnnotation = converter.convertToStorageType(variantAnnotation);
             Document update = new Document("$set", new Document(DocumentToVariantConverter.ANNOTATION_FIELD + ".0",
-                    convertedVariantAnnotation));
+                    convertedVariantAnnotation)
+                    .append(DocumentToVariantConverter.LAST_UPDATE_FIELD, timestamp));
             queries.add(find);
             updates.add(update);
         }
@@ -923,7 +1147,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         Document queryDocument = queryParser.parseQuery(query);
         Document updateDocument = DocumentToVariantAnnotationConverter.convertToStorageType(attribute);
         return variantsCollection.update(queryDocument,
-                set(DocumentToVariantConverter.CUSTOM_ANNOTATION_FIELD + '.' + name, updateDocument),
+                combine(set(DocumentToVariantConverter.CUSTOM_ANNOTATION_FIELD + '.' + name, updateDocument),
+                        set(DocumentToVariantConverter.LAST_UPDATE_FIELD, System.currentTimeMillis())),
                 new QueryOptions(MULTI, true));
     }
 
@@ -931,7 +1156,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         Document mongoQuery = queryParser.parseQuery(query);
         logger.debug("deleteAnnotation: query = {}", mongoQuery);
 
-        Document update = new Document("$set", new Document(DocumentToVariantConverter.ANNOTATION_FIELD + ".0", null));
+        Document update = new Document("$set", new Document(DocumentToVariantConverter.ANNOTATION_FIELD + ".0", null)
+                .append(DocumentToVariantConverter.LAST_UPDATE_FIELD, System.currentTimeMillis()));
         logger.debug("deleteAnnotation: update = {}", update);
         return variantsCollection.update(mongoQuery, update, new QueryOptions(MULTI, true));
     }
@@ -1030,6 +1256,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                 .append(DocumentToVariantConverter.START_FIELD, 1)
                 .append(DocumentToVariantConverter.END_FIELD, 1), onBackground);
         variantsCollection.createIndex(new Document(DocumentToVariantConverter.IDS_FIELD, 1), onBackground);
+        variantsCollection.createIndex(new Document(DocumentToVariantConverter.LAST_UPDATE_FIELD, 1), onBackgroundSparse);
 
         // Study indices
         ////////////////
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.adaptors;
+
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Iterates over a set of disjoint partitions of a query, reading several partitions concurrently.
+ *
+ * Each partition is read by a worker thread, with its own cursor and converter, and the converted variants are handed to the
+ * consumer in batches through bounded queues. If sorted, the partitions are returned one after the other, in the given order.
+ * Otherwise, the variants are returned as soon as they are available.
+ */
+public class VariantMongoDBParallelIterator extends VariantDBIterator {
+
+    private static final int QUEUE_CAPACITY = 10;
+    private static final Batch END = new Batch(Collections.emptyList(), null);
+
+    private final int batchSize;
+    private final int numPartitions;
+    private final boolean sorted;
+    private final List<BlockingQueue<Batch>> queues;
+    private final ExecutorService executor;
+    private int finishedPartitions = 0;
+    private Iterator<Variant> batch = Collections.emptyIterator();
+    private volatile boolean closed = false;
+
+    private static final class Batch {
+        private final List<Variant> variants;
+        private final RuntimeException error;
+
+        private Batch(List<Variant> variants, RuntimeException error) {
+            this.variants = variants;
+            this.error = error;
+        }
+    }
+
+    //Package protected
+    VariantMongoDBParallelIterator(List<Supplier<MongoCursor<Document>>> partitions, Supplier<DocumentToVariantConverter> converterFactory,
+                                   int threads, int batchSize, boolean sorted) {
+        this.batchSize = batchSize > 0 ? batchSize : 100;
+        this.numPartitions = partitions.size();
+        this.sorted = sorted;
+
+        int numQueues = sorted ? numPartitions : 1;
+        int capacity = sorted ? QUEUE_CAPACITY : QUEUE_CAPACITY * threads;
+        queues = new ArrayList<>(numQueues);
+        for (int i = 0; i < numQueues; i++) {
+            queues.add(new LinkedBlockingQueue<>(capacity));
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "variant-mongodb-iterator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Partitions are submitted in order, so the partition being consumed is always being read when sorted
+        for (int i = 0; i < numPartitions; i++) {
+            Supplier<MongoCursor<Document>> partition = partitions.get(i);
+            BlockingQueue<Batch> queue = sorted ? queues.get(i) : queues.get(0);
+            executor.submit(() -> read(partition, converterFactory, queue));
+        }
+        executor.shutdown();
+    }
+
+    private void read(Supplier<MongoCursor<Document>> partition, Supplier<DocumentToVariantConverter> converterFactory,
+                      BlockingQueue<Batch> queue) {
+        try {
+            if (closed) {
+                return;
+            }
+            DocumentToVariantConverter converter = converterFactory.get();
+            try (MongoCursor<Document> cursor = partition.get()) {
+                List<Variant> variants = new ArrayList<>(batchSize);
+                while (!closed && cursor.hasNext()) {
+                    variants.add(converter.convertToDataModelType(cursor.next()));
+                    if (variants.size() >= batchSize) {
+                        put(queue, new Batch(variants, null));
+                        variants = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!variants.isEmpty()) {
+                    put(queue, new Batch(variants, null));
+                }
+            }
+            put(queue, END);
+        } catch (RuntimeException e) {
+            put(queue, new Batch(Collections.emptyList(), e));
+        }
+    }
+
+    private void put(BlockingQueue<Batch> queue, Batch batch) {
+        try {
+            // Do not block forever if the consumer closes the iterator
+            boolean added = false;
+            while (!closed && !added) {
+                added = queue.offer(batch, 1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!batch.hasNext()) {
+            if (finishedPartitions == numPartitions) {
+                return false;
+            }
+            BlockingQueue<Batch> queue = sorted ? queues.get(finishedPartitions) : queues.get(0);
+            Batch next = fetch(() -> take(queue));
+            if (next.error != null) {
+                throw new VariantQueryException("Error reading variants", next.error);
+            } else if (next == END) {
+                finishedPartitions++;
+            } else {
+                batch = next.variants.iterator();
+            }
+        }
+        return true;
+    }
+
+    private Batch take(BlockingQueue<Batch> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VariantQueryException("Interrupted while reading variants", e);
+        }
+    }
+
+    @Override
+    public Variant next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return batch.next();
+    }
+
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        executor.shutdownNow();
+        super.close();
+    }
+}
@@ -210,6 +210,10 @@ public class VariantMongoDBQueryParser {
 //                query.getString(VariantQueryParams.TYPE.key()), builder, QueryOperation.AND);
             }
 
+            if (isValidParam(query, MODIFIED_SINCE)) {
+                builder.and(DocumentToVariantConverter.LAST_UPDATE_FIELD).greaterThanEquals(query.getLong(MODIFIED_SINCE.key()));
+            }
+
             /* ANNOTATION PARAMS */
             parseAnnotationQueryParams(query, builder);
 
@@ -1376,37 +1380,95 @@ public class VariantMongoDBQueryParser {
         return builder;
     }
 
+    /**
+     * Adds a region filter to the query. Regions are merged and sorted, and then, depending on its size, each region is
+     * filtered by an "_id" range or by the indexed chunk ids.
+     *
+     * Large regions are filtered by "_id" range, one clause each. Small regions are grouped in one single clause, selecting
+     * all their chunks with one "$in" over the "_at.chunkIds" index, and then discarding the variants out of the exact ranges.
+     * This avoids huge "$or" queries for gene panels with hundreds of small regions.
+     *
+     * @param regions   List of regions
+     * @param builder   QueryBuilder
+     * @return          Same QueryBuilder
+     */
     private QueryBuilder getRegionFilter(List<Region> regions, QueryBuilder builder) {
         if (regions != null && !regions.isEmpty()) {
-            DBObject[] objects = new DBObject[regions.size()];
-            int i = 0;
-            for (Region region : regions) {
-                DBObject regionObject = new BasicDBObject();
-//                if (region.getEnd() - region.getStart() < 1000000) {
-//                    List<String> chunkIds = getChunkIds(region);
-//                    regionObject.put(DocumentToVariantConverter.AT_FIELD + '.' + DocumentToVariantConverter
-//                            .CHUNK_IDS_FIELD,
-//                            new Document("$in", chunkIds));
-//                } else {
-//                    regionObject.put(DocumentToVariantConverter.CHROMOSOME_FIELD, region.getChromosome());
-//                }
-
-                int end = region.getEnd();
-                if (end < Integer.MAX_VALUE) { // Avoid overflow
-                    end++;
+            List<Region> smallRegions = new ArrayList<>();
+            List<DBObject> objects = new ArrayList<>();
+            for (Region region : mergeRegions(regions)) {
+                if (isSmallRegion(region)) {
+                    smallRegions.add(region);
+                } else {
+                    objects.add(getRegionIdRangeFilter(region));
                 }
-                regionObject.put("_id", new Document()
-                        .append("$gte", VariantStringIdConverter.buildId(region.getChromosome(), region.getStart()))
-                        .append("$lt", VariantStringIdConverter.buildId(region.getChromosome(), end)));
+            }
 
-                objects[i] = regionObject;
-                i++;
+            if (smallRegions.size() == 1) {
+                objects.add(getRegionIdRangeFilter(smallRegions.get(0)));
+            } else if (!smallRegions.isEmpty()) {
+                Set<String> chunkIds = new LinkedHashSet<>();
+                List<DBObject> ranges = new ArrayList<>(smallRegions.size());
+                for (Region region : smallRegions) {
+                    chunkIds.addAll(getChunkIds(region));
+                    ranges.add(getRegionIdRangeFilter(region));
+                }
+                objects.add(new BasicDBObject(DocumentToVariantConverter.AT_FIELD + '.' + DocumentToVariantConverter.CHUNK_IDS_FIELD,
+                        new BasicDBObject("$in", chunkIds))
+                        .append("$or", ranges));
             }
-            builder.or(objects);
+            builder.or(objects.toArray(new DBObject[0]));
         }
         return builder;
     }
 
+    private DBObject getRegionIdRangeFilter(Region region) {
+        int end = region.getEnd();
+        if (end < Integer.MAX_VALUE) { // Avoid overflow
+            end++;
+        }
+        return new BasicDBObject("_id", new Document()
+                .append("$gte", VariantStringIdConverter.buildId(region.getChromosome(), region.getStart()))
+                .append("$lt", VariantStringIdConverter.buildId(region.getChromosome(), end)));
+    }
+
+    /**
+     * Regions spanning a few chunks are cheaper to filter with the chunk ids index.
+     *
+     * @param region    Region
+     * @return          If the region should be filtered by chunk ids
+     */
+    static boolean isSmallRegion(Region region) {
+        return ((long) region.getEnd()) - region.getStart() < VariantMongoDBAdaptor.CHUNK_SIZE_BIG;
+    }
+
+    /**
+     * Sort the regions by chromosome and start, merging overlapping or adjacent regions.
+     *
+     * @param regions   List of regions
+     * @return          Sorted list of non overlapping regions
+     */
+    static List<Region> mergeRegions(List<Region> regions) {
+        List<Region> sorted = new ArrayList<>(regions);
+        sorted.sort(Comparator.comparing(Region::getChromosome).thenComparing(Region::getStart));
+
+        List<Region> merged = new ArrayList<>(sorted.size());
+        Region last = null;
+        for (Region region : sorted) {
+            if (last != null && last.getChromosome().equals(region.getChromosome())
+                    && region.getStart() <= ((long) last.getEnd()) + 1) {
+                if (region.getEnd() > last.getEnd()) {
+                    last = new Region(last.getChromosome(), last.getStart(), region.getEnd());
+                    merged.set(merged.size() - 1, last);
+                }
+            } else {
+                last = new Region(region.getChromosome(), region.getStart(), region.getEnd());
+                merged.add(last);
+            }
+        }
+        return merged;
+    }
+
     /* *******************
      * Auxiliary methods *
      * *******************/
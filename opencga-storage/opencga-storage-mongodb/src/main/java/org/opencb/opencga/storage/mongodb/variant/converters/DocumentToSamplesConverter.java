@@ -18,7 +18,6 @@ package org.opencb.opencga.storage.mongodb.variant.converters;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
-import com.google.protobuf.InvalidProtocolBufferException;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
 import org.bson.types.Binary;
@@ -36,9 +35,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.zip.DataFormatException;
 
 import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.MongoDBVariantOptions.DEFAULT_GENOTYPE;
 
@@ -55,6 +52,10 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
     // . Use "getIndexedIdSamplesMap()"
     private final Map<Integer, LinkedHashMap<String, Integer>> __returnedSamplesPosition;
     private final Map<Integer, Set<String>> studyDefaultGenotypeSet;
+    // Position to return of each sample from a file, by study and file. -1 if not returned
+    private final Map<Integer, Map<Integer, int[]>> __fileSamplesPosition;
+    // Genotypes in data model format, from its storage format
+    private final Map<String, String> genotypesDictionary;
     private Map<Integer, LinkedHashSet<Integer>> returnedSamples;
     private StudyConfigurationManager studyConfigurationManager;
     private String returnedUnknownGenotype;
@@ -112,6 +113,8 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         __studySamplesId = new HashMap<>();
         __returnedSamplesPosition = new HashMap<>();
         studyDefaultGenotypeSet = new HashMap<>();
+        __fileSamplesPosition = new HashMap<>();
+        genotypesDictionary = new HashMap<>();
         returnedSamples = Collections.emptyMap();
         studyConfigurationManager = null;
         returnedUnknownGenotype = null;
@@ -237,9 +240,6 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
             filesWithSamplesData = Collections.emptySet();
         }
 
-        List<List<String>> samplesData = new ArrayList<>(sampleIds.size());
-
-
         // An array of genotypes is initialized with the most common one
 //        String mostCommonGtString = mongoGenotypes.getString("def");
         Set<String> defaultGenotypes = studyDefaultGenotypeSet.get(studyId);
@@ -252,15 +252,15 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         }
 
         // Add the samples to the file
-        for (int i = 0; i < sampleIds.size(); i++) {
-            String[] values;
-            if (excludeGenotypes) {
-                values = new String[extraFields.size()];
-            } else {
-                values = new String[1 + extraFields.size()];
-                values[0] = mostCommonGtString;
+        // Extra fields are only decoded when accessed. See LazySampleData
+        int extraFieldsOffset = excludeGenotypes ? 0 : 1; //Skip GT
+        LazySampleData[] lazySamplesData = new LazySampleData[sampleIds.size()];
+        List<List<String>> samplesData = new ArrayList<>(Arrays.asList(lazySamplesData));
+        for (int i = 0; i < lazySamplesData.length; i++) {
+            lazySamplesData[i] = new LazySampleData(extraFieldsOffset + extraFields.size(), extraFieldsOffset);
+            if (!excludeGenotypes) {
+                lazySamplesData[i].set(0, mostCommonGtString);
             }
-            samplesData.add(Arrays.asList(values));
         }
 
 
@@ -283,11 +283,13 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
                         genotype = returnedUnknownGenotype;
                     }
                 } else {
-                    genotype = genotypeToDataModelType(dbo.getKey());
+                    // Share the same instance for all the variants
+                    genotype = genotypesDictionary.computeIfAbsent(dbo.getKey(), DocumentToSamplesConverter::genotypeToDataModelType);
                 }
                 for (Integer sampleId : (List<Integer>) dbo.getValue()) {
-                    if (idSamples.containsKey(sampleId)) {
-                        samplesData.get(samplesPositionToReturn.get(idSamples.get(sampleId))).set(0, genotype);
+                    String sampleName = idSamples.get(sampleId);
+                    if (sampleName != null) {
+                        lazySamplesData[samplesPositionToReturn.get(sampleName)].set(0, genotype);
                     }
                 }
             }
@@ -303,82 +305,27 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
                     samplesDataDocument = files.get(-fid)
                             .get(DocumentToStudyVariantEntryConverter.SAMPLE_DATA_FIELD, Document.class);
                 }
+                int[] fileSamplesPosition = getFileSamplesPosition(studyConfiguration, fid, samplesPositionToReturn);
                 if (samplesDataDocument != null) {
-                    int extraFieldPosition;
-                    if (excludeGenotypes) {
-                        extraFieldPosition = 0; //There are no GT
-                    } else {
-                        extraFieldPosition = 1; //Skip GT
+                    LazySampleData.FieldValues[] fields = new LazySampleData.FieldValues[extraFields.size()];
+                    for (int i = 0; i < fields.length; i++) {
+                        String extraField = extraFields.get(i).toLowerCase();
+                        byte[] byteArray = samplesDataDocument.containsKey(extraField)
+                                ? samplesDataDocument.get(extraField, Binary.class).getData()
+                                : null;
+                        fields[i] = new LazySampleData.FieldValues(byteArray, compressExtraParams);
                     }
-                    for (String extraField : extraFields) {
-                        extraField = extraField.toLowerCase();
-                        byte[] byteArray = samplesDataDocument == null || !samplesDataDocument.containsKey(extraField)
-                                ? null
-                                : samplesDataDocument.get(extraField, Binary.class).getData();
-
-                        VariantMongoDBProto.OtherFields otherFields = null;
-                        if (compressExtraParams && byteArray != null && byteArray.length > 0) {
-                            try {
-                                byteArray = CompressionUtils.decompress(byteArray);
-                            } catch (IOException e) {
-                                throw new UncheckedIOException(e);
-                            } catch (DataFormatException ignore) {
-                                //It was not actually compressed, so it failed decompressing
-                            }
-                        }
-                        try {
-                            if (byteArray != null && byteArray.length > 0) {
-                                otherFields = VariantMongoDBProto.OtherFields.parseFrom(byteArray);
-                            }
-                        } catch (InvalidProtocolBufferException e) {
-                            throw new UncheckedIOException(e);
-                        }
-                        Supplier<String> supplier;
-                        if (otherFields == null) {
-                            supplier = () -> UNKNOWN_FIELD;
-                        } else if (otherFields.getIntValuesCount() > 0) {
-                            final Iterator<Integer> iterator = otherFields.getIntValuesList().iterator();
-                            supplier = () -> iterator.hasNext() ? INTEGER_COMPLEX_TYPE_CONVERTER.convertToDataModelType(iterator.next())
-                                    : UNKNOWN_FIELD;
-                        } else if (otherFields.getFloatValuesCount() > 0) {
-                            final Iterator<Integer> iterator = otherFields.getFloatValuesList().iterator();
-                            supplier = () -> iterator.hasNext() ? FLOAT_COMPLEX_TYPE_CONVERTER.convertToDataModelType(iterator.next())
-                                    : UNKNOWN_FIELD;
-                        } else {
-                            final Iterator<String> iterator = otherFields.getStringValuesList().iterator();
-                            supplier = () -> iterator.hasNext() ? iterator.next() : UNKNOWN_FIELD;
-                        }
-                        for (Integer sampleId : studyConfiguration.getSamplesInFiles().get(fid)) {
-                            String sampleName = studyConfiguration.getSampleIds().inverse().get(sampleId);
-                            Integer samplePosition = samplesPositionToReturn.get(sampleName);
-                            if (samplePosition == null) {
-                                // The sample on this position is not returned. Skip this value.
-                                supplier.get();
-                            } else {
-                                samplesData.get(samplePosition).set(extraFieldPosition, supplier.get());
-                            }
+                    for (int sampleIndex = 0; sampleIndex < fileSamplesPosition.length; sampleIndex++) {
+                        // Samples not returned are skipped.
+                        if (fileSamplesPosition[sampleIndex] >= 0) {
+                            lazySamplesData[fileSamplesPosition[sampleIndex]].setFields(fields, sampleIndex);
                         }
-
-                        extraFieldPosition++;
                     }
                 } else {
-                    int extraFieldPosition;
-                    if (excludeGenotypes) {
-                        extraFieldPosition = 0; //There are no GT
-                    } else {
-                        extraFieldPosition = 1; //Skip GT
-                    }
-                    for (int i = 0; i < extraFields.size(); i++) {
-                        for (Integer sampleId : studyConfiguration.getSamplesInFiles().get(fid)) {
-                            String sampleName = studyConfiguration.getSampleIds().inverse().get(sampleId);
-                            Integer samplePosition = samplesPositionToReturn.get(sampleName);
-                            if (samplePosition != null) {
-                                if (samplesData.get(samplePosition).get(extraFieldPosition) == null) {
-                                    samplesData.get(samplePosition).set(extraFieldPosition, UNKNOWN_FIELD);
-                                }
-                            }
+                    for (int samplePosition : fileSamplesPosition) {
+                        if (samplePosition >= 0) {
+                            lazySamplesData[samplePosition].fillUnknownFields();
                         }
-                        extraFieldPosition++;
                     }
                 }
             }
@@ -631,11 +578,13 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         }
         __studySamplesId.clear();
         __returnedSamplesPosition.clear();
+        __fileSamplesPosition.clear();
     }
 
     public void addStudyConfiguration(StudyConfiguration studyConfiguration) {
         this.studyConfigurations.put(studyConfiguration.getStudyId(), studyConfiguration);
         this.__studySamplesId.put(studyConfiguration.getStudyId(), null);
+        this.__fileSamplesPosition.remove(studyConfiguration.getStudyId());
 
         Set defGenotypeSet = studyConfiguration.getAttributes().get(DEFAULT_GENOTYPE.key(), Set.class);
         if (defGenotypeSet == null) {
@@ -702,6 +651,26 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         return __returnedSamplesPosition.get(studyConfiguration.getStudyId());
     }
 
+    /**
+     * Lazy usage of the position to return of each sample from a file, in the same order as in {@link
+     * StudyConfiguration#getSamplesInFiles()}.
+     **/
+    private int[] getFileSamplesPosition(StudyConfiguration studyConfiguration, int fileId,
+                                         LinkedHashMap<String, Integer> samplesPositionToReturn) {
+        return __fileSamplesPosition.computeIfAbsent(studyConfiguration.getStudyId(), key -> new HashMap<>())
+                .computeIfAbsent(fileId, key -> {
+                    LinkedHashSet<Integer> samplesInFile = studyConfiguration.getSamplesInFiles().get(fileId);
+                    BiMap<Integer, String> sampleNames = studyConfiguration.getSampleIds().inverse();
+                    int[] positions = new int[samplesInFile.size()];
+                    int i = 0;
+                    for (Integer sampleId : samplesInFile) {
+                        Integer samplePosition = samplesPositionToReturn.get(sampleNames.get(sampleId));
+                        positions[i++] = samplePosition == null ? -1 : samplePosition;
+                    }
+                    return positions;
+                });
+    }
+
     public static String genotypeToDataModelType(String genotype) {
         return StringUtils.replace(genotype, "-1", ".");
     }
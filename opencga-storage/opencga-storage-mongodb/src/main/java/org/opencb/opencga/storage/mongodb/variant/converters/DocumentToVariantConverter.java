@@ -66,6 +66,8 @@ public class DocumentToVariantConverter extends AbstractDocumentConverter implem
     public static final String STATS_FIELD = "stats";
 
     public static final String AT_FIELD = "_at";
+    /** Last modification time of the variant, in milliseconds. Used to find the variants modified since a given time. */
+    public static final String LAST_UPDATE_FIELD = "_lu";
     public static final String CHUNK_IDS_FIELD = "chunkIds";
 
 //    public static final String ID_FIELD = "id";
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.converters;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.opencb.commons.utils.CompressionUtils;
+import org.opencb.opencga.storage.mongodb.variant.protobuf.VariantMongoDBProto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.zip.DataFormatException;
+
+import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter.*;
+
+/**
+ * Data of one sample. The FORMAT fields stored in the file sample data are only decoded on first access.
+ *
+ * The first {@code offset} values (i.e. the genotype) are not read from the file, and have to be set explicitly.
+ * Fixed size list, like {@link java.util.Arrays#asList}.
+ *
+ * Once built, the list can be read from multiple threads, e.g. by the consumers of a parallel iterator. Decoded values are
+ * immutable strings, so a value decoded at the same time by two threads is just decoded twice. Modifications are not
+ * thread safe, and must be done before handing the list to other threads.
+ */
+class LazySampleData extends AbstractList<String> implements RandomAccess {
+
+    private final String[] values;
+    private final int offset;
+    // Source of the values after the offset. Shared by all the samples from the same file. Null if none.
+    private FieldValues[] fields;
+    // Position of this sample within the file
+    private int sampleIndex;
+
+    LazySampleData(int size, int offset) {
+        this.values = new String[size];
+        this.offset = offset;
+    }
+
+    /**
+     * Values of one FORMAT field for all the samples of a file, as stored in the sample data of the file.
+     * The stored bytes are decompressed and parsed on first access, only once, even if the samples are read from
+     * multiple threads.
+     */
+    static final class FieldValues {
+        // Guarded by this. Discarded once decoded.
+        private byte[] data;
+        private final boolean compressed;
+        // Published by the volatile write of decoded
+        private VariantMongoDBProto.OtherFields otherFields;
+        private volatile boolean decoded;
+
+        FieldValues(byte[] data, boolean compressed) {
+            this.data = data;
+            this.compressed = compressed;
+        }
+
+        String get(int sampleIndex) {
+            VariantMongoDBProto.OtherFields otherFields = getOtherFields();
+            if (otherFields == null) {
+                return UNKNOWN_FIELD;
+            } else if (otherFields.getIntValuesCount() > 0) {
+                return sampleIndex < otherFields.getIntValuesCount()
+                        ? INTEGER_COMPLEX_TYPE_CONVERTER.convertToDataModelType(otherFields.getIntValues(sampleIndex))
+                        : UNKNOWN_FIELD;
+            } else if (otherFields.getFloatValuesCount() > 0) {
+                return sampleIndex < otherFields.getFloatValuesCount()
+                        ? FLOAT_COMPLEX_TYPE_CONVERTER.convertToDataModelType(otherFields.getFloatValues(sampleIndex))
+                        : UNKNOWN_FIELD;
+            } else {
+                return sampleIndex < otherFields.getStringValuesCount() ? otherFields.getStringValues(sampleIndex) : UNKNOWN_FIELD;
+            }
+        }
+
+        private VariantMongoDBProto.OtherFields getOtherFields() {
+            if (!decoded) {
+                synchronized (this) {
+                    if (!decoded) {
+                        otherFields = decode(data, compressed);
+                        data = null;
+                        decoded = true;
+                    }
+                }
+            }
+            return otherFields;
+        }
+
+        private static VariantMongoDBProto.OtherFields decode(byte[] data, boolean compressed) {
+            if (data == null) {
+                return null;
+            }
+            byte[] byteArray = data;
+            if (compressed && byteArray.length > 0) {
+                try {
+                    byteArray = CompressionUtils.decompress(byteArray);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (DataFormatException ignore) {
+                    //It was not actually compressed, so it failed decompressing
+                }
+            }
+            try {
+                if (byteArray.length > 0) {
+                    return VariantMongoDBProto.OtherFields.parseFrom(byteArray);
+                }
+            } catch (InvalidProtocolBufferException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Read the values after the offset from the given fields. Discards any previous value.
+     *
+     * @param fields        Values of each field for all the samples of the file
+     * @param sampleIndex   Position of this sample within the file
+     */
+    void setFields(FieldValues[] fields, int sampleIndex) {
+        this.fields = fields;
+        this.sampleIndex = sampleIndex;
+        for (int i = offset; i < values.length; i++) {
+            values[i] = null;
+        }
+    }
+
+    /**
+     * Set to {@link DocumentToSamplesConverter#UNKNOWN_FIELD} all the missing values after the offset.
+     */
+    void fillUnknownFields() {
+        for (int i = offset; i < values.length; i++) {
+            if (get(i) == null) {
+                values[i] = UNKNOWN_FIELD;
+            }
+        }
+    }
+
+    @Override
+    public String get(int index) {
+        String value = values[index];
+        if (value == null && index >= offset && fields != null && fields[index - offset] != null) {
+            value = fields[index - offset].get(sampleIndex);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public String set(int index, String element) {
+        String previous = get(index);
+        values[index] = element;
+        if (index >= offset && fields != null && fields[index - offset] != null) {
+            // Do not modify the shared array
+            fields = fields.clone();
+            fields[index - offset] = null;
+        }
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+}
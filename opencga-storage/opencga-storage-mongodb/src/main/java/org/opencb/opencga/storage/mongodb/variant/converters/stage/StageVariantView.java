@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.converters.stage;
+
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.bson.types.Binary;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAvro;
+import org.opencb.biodata.models.variant.avro.VariantType;
+import org.opencb.commons.utils.CompressionUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+
+import static org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToCompactBinaryConverter.COMPRESSED_BODY;
+import static org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToCompactBinaryConverter.MAGIC;
+
+/**
+ * Flyweight view over a variant stored with the {@link VariantToCompactBinaryConverter}.
+ *
+ * Reads the header fields directly from the buffer, without building the variant. Strings are only decoded when requested.
+ * The full variant is only decoded by {@link #toVariant()}. Not thread safe. The same view can be reused calling to
+ * {@link #wrap(ByteBuffer)} again.
+ */
+public class StageVariantView {
+
+    private static final SpecificDatumReader<VariantAvro> READER = new SpecificDatumReader<>(VariantAvro.getClassSchema());
+
+    private ByteBuffer buffer;
+    private int position;
+    private boolean compressedBody;
+    private int chromosomeOffset;
+    private int start;
+    private int end;
+    private int typeOffset;
+    private int referenceOffset;
+    private int alternateOffset;
+    private int callOffset;
+    private int numSecondaryAlternates;
+    private int bodyOffset;
+
+    /**
+     * Check if the given data was written with the {@link VariantToCompactBinaryConverter}.
+     *
+     * @param data  Stored data
+     * @return      If the data is in the compact format
+     */
+    public static boolean isCompact(byte[] data) {
+        return data.length > 2 && data[0] == MAGIC;
+    }
+
+    /**
+     * Wrap a stored variant.
+     *
+     * @param binary    Stored variant. Must be in the compact format
+     * @return          this
+     */
+    public StageVariantView wrap(Binary binary) {
+        return wrap(ByteBuffer.wrap(binary.getData()));
+    }
+
+    /**
+     * Wrap a stored variant. Reads the header from the current position of the buffer, without modifying it.
+     *
+     * @param buffer    Stored variant. Must be in the compact format
+     * @return          this
+     */
+    public StageVariantView wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int offset = buffer.position();
+        if (buffer.get(offset) != MAGIC) {
+            throw new IllegalArgumentException("Unknown stage variant format " + buffer.get(offset));
+        }
+        compressedBody = (buffer.get(offset + 1) & COMPRESSED_BODY) != 0;
+        position = offset + 2;
+        chromosomeOffset = skipString();
+        start = readInt();
+        end = readInt();
+        typeOffset = skipString();
+        referenceOffset = skipString();
+        alternateOffset = skipString();
+        callOffset = skipString();
+        numSecondaryAlternates = readInt();
+        bodyOffset = position;
+        return this;
+    }
+
+    public String getChromosome() {
+        return readString(chromosomeOffset);
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public VariantType getType() {
+        String type = readString(typeOffset);
+        return type.isEmpty() ? null : VariantType.valueOf(type);
+    }
+
+    public String getReference() {
+        return readString(referenceOffset);
+    }
+
+    public String getAlternate() {
+        return readString(alternateOffset);
+    }
+
+    /**
+     * @return Original call of the variant, or null if none.
+     */
+    public String getCall() {
+        String call = readString(callOffset);
+        return call.isEmpty() ? null : call;
+    }
+
+    public int getNumSecondaryAlternates() {
+        return numSecondaryAlternates;
+    }
+
+    public boolean isCompressedBody() {
+        return compressedBody;
+    }
+
+    /**
+     * Decode the full variant. If the body is not compressed, it is decoded directly from the wrapped buffer, without copying it.
+     *
+     * @return  Decoded variant
+     */
+    public Variant toVariant() {
+        try {
+            byte[] data;
+            int offset;
+            int length;
+            if (compressedBody || !buffer.hasArray()) {
+                byte[] body = new byte[buffer.limit() - bodyOffset];
+                ByteBuffer duplicate = buffer.duplicate();
+                duplicate.position(bodyOffset);
+                duplicate.get(body);
+                data = compressedBody ? CompressionUtils.decompress(body) : body;
+                offset = 0;
+                length = data.length;
+            } else {
+                data = buffer.array();
+                offset = buffer.arrayOffset() + bodyOffset;
+                length = buffer.limit() - bodyOffset;
+            }
+            BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(data, offset, length, null);
+            return new Variant(READER.read(null, decoder));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DataFormatException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int readInt() {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer.get(position++) & 0xFF;
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        // Zig-zag decoding, like Avro
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Skip a string from the current position.
+     *
+     * @return  Position of the string
+     */
+    private int skipString() {
+        int offset = position;
+        int length = readInt();
+        position += length;
+        return offset;
+    }
+
+    private String readString(int offset) {
+        int current = position;
+        position = offset;
+        int length = readInt();
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(position);
+            duplicate.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        position = current;
+        return value;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.converters.stage;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.bson.types.Binary;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.FileEntry;
+import org.opencb.biodata.models.variant.avro.VariantAvro;
+import org.opencb.commons.datastore.core.ComplexTypeConverter;
+import org.opencb.commons.utils.CompressionUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Compact binary format for the variants in the stage collection.
+ *
+ * Starts with a small uncompressed header with the fields needed by the merge to classify the variant, followed by the
+ * Avro serialized variant. The Avro body is only compressed when it is big enough to benefit from it, so small variants
+ * can be decoded directly from the stored bytes.
+ *
+ * Header: magic, flags, chromosome, start, end, type, reference, alternate, call, number of secondary alternates.
+ * Numbers and strings are encoded like in Avro.
+ *
+ * Binaries written by {@link VariantToAvroBinaryConverter} are still readable.
+ *
+ * @see StageVariantView
+ */
+public class VariantToCompactBinaryConverter implements ComplexTypeConverter<Variant, Binary> {
+
+    // Any zlib stream, as written by VariantToAvroBinaryConverter, starts with 0x78
+    static final byte MAGIC = 0x01;
+    static final byte COMPRESSED_BODY = 0x01;
+    // Minimum size of the Avro body to be compressed
+    static final int COMPRESSION_THRESHOLD = 256;
+
+    private final SpecificDatumWriter<VariantAvro> writer = new SpecificDatumWriter<>(VariantAvro.getClassSchema());
+    private final VariantToAvroBinaryConverter legacyConverter = new VariantToAvroBinaryConverter();
+
+    @Override
+    public Variant convertToDataModelType(Binary object) {
+        if (StageVariantView.isCompact(object.getData())) {
+            return new StageVariantView().wrap(object).toVariant();
+        } else {
+            return legacyConverter.convertToDataModelType(object);
+        }
+    }
+
+    @Override
+    public Binary convertToStorageType(Variant variant) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+            writer.write(variant.getImpl(), encoder);
+            encoder.flush();
+            byte[] body = outputStream.toByteArray();
+            byte flags = 0;
+            if (body.length >= COMPRESSION_THRESHOLD) {
+                byte[] compressedBody = CompressionUtils.compress(body);
+                if (compressedBody.length < body.length) {
+                    body = compressedBody;
+                    flags |= COMPRESSED_BODY;
+                }
+            }
+
+            outputStream.reset();
+            outputStream.write(MAGIC);
+            outputStream.write(flags);
+            encoder.writeString(variant.getChromosome());
+            encoder.writeInt(variant.getStart());
+            encoder.writeInt(variant.getEnd());
+            encoder.writeString(variant.getType() == null ? "" : variant.getType().name());
+            encoder.writeString(variant.getReference());
+            encoder.writeString(variant.getAlternate());
+            encoder.writeString(getCall(variant));
+            encoder.writeInt(getNumSecondaryAlternates(variant));
+            encoder.flush();
+            outputStream.write(body);
+            return new Binary(outputStream.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String getCall(Variant variant) {
+        if (variant.getStudies().isEmpty()) {
+            return "";
+        }
+        StudyEntry studyEntry = variant.getStudies().get(0);
+        if (studyEntry.getFiles() == null || studyEntry.getFiles().isEmpty()) {
+            return "";
+        }
+        FileEntry file = studyEntry.getFiles().get(0);
+        return file.getCall() == null ? "" : file.getCall();
+    }
+
+    private static int getNumSecondaryAlternates(Variant variant) {
+        if (variant.getStudies().isEmpty() || variant.getStudies().get(0).getSecondaryAlternates() == null) {
+            return 0;
+        }
+        return variant.getStudies().get(0).getSecondaryAlternates().size();
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.opencb.opencga.storage.mongodb.variant.load.stage;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.mongodb.ErrorCategory;
 import com.mongodb.MongoBulkWriteException;
@@ -31,12 +33,13 @@ import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.mongodb.MongoDBCollection;
 import org.opencb.commons.io.DataWriter;
 import org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter;
-import org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToAvroBinaryConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToCompactBinaryConverter;
 import org.opencb.opencga.storage.mongodb.variant.load.MongoDBVariantWriteResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,20 +64,53 @@ public class MongoDBVariantStageLoader implements DataWriter<ListMultimap<Docume
     private final boolean resumeStageLoad;
     private final String studyFile;
     private final String studyIdStr;
+    private final int writeThreads;
+    private final int bulkSize;
+    private final ExecutorService executor;
+    private final ListMultimap<Document, Binary> buffer = LinkedListMultimap.create();
     private static final Logger LOGGER = LoggerFactory.getLogger(MongoDBVariantStageLoader.class);
 
     private final MongoDBVariantWriteResult writeResult = new MongoDBVariantWriteResult();
 
-    public static final ComplexTypeConverter<Variant, Binary> VARIANT_CONVERTER_DEFAULT = new VariantToAvroBinaryConverter();
+    public static final ComplexTypeConverter<Variant, Binary> VARIANT_CONVERTER_DEFAULT = new VariantToCompactBinaryConverter();
 
     public static final StageDocumentToVariantConverter STAGE_TO_VARIANT_CONVERTER = new StageDocumentToVariantConverter();
 
     public MongoDBVariantStageLoader(MongoDBCollection collection, int studyId, int fileId, boolean resumeStageLoad) {
+        this(collection, studyId, fileId, resumeStageLoad, 1, 0);
+    }
+
+    /**
+     * Stage loader writing with several threads.
+     *
+     * The written variants are buffered until there are enough to fill one bulk write for each thread. Then, the buffer is sorted
+     * and split in disjoint ranges of "_id", one for each thread, so two threads never upsert the same document at the same time.
+     *
+     * @param collection        Stage collection
+     * @param studyId           Study id
+     * @param fileId            File id
+     * @param resumeStageLoad   Resume a previous stage load
+     * @param writeThreads      Number of threads writing in the stage collection. If 1, write on the caller thread, without buffering.
+     * @param bulkSize          Number of documents for each bulk write
+     */
+    public MongoDBVariantStageLoader(MongoDBCollection collection, int studyId, int fileId, boolean resumeStageLoad,
+                                     int writeThreads, int bulkSize) {
         this.collection = collection;
         fieldName = studyId + "." + fileId;
         studyFile = studyId + "_" + fileId;
         studyIdStr = String.valueOf(studyId);
         this.resumeStageLoad = resumeStageLoad;
+        this.writeThreads = writeThreads;
+        this.bulkSize = bulkSize;
+        if (writeThreads > 1) {
+            executor = Executors.newFixedThreadPool(writeThreads, r -> {
+                Thread thread = new Thread(r, "stage-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            executor = null;
+        }
     }
 
     @Override
@@ -89,12 +125,76 @@ public class MongoDBVariantStageLoader implements DataWriter<ListMultimap<Docume
 
     @Override
     public boolean write(List<ListMultimap<Document, Binary>> batch) {
-        for (ListMultimap<Document, Binary> map : batch) {
-            insert(map);
+        if (executor == null) {
+            for (ListMultimap<Document, Binary> map : batch) {
+                insert(map);
+            }
+        } else {
+            synchronized (buffer) {
+                for (ListMultimap<Document, Binary> map : batch) {
+                    buffer.putAll(map);
+                }
+                if (buffer.keySet().size() >= bulkSize * writeThreads) {
+                    flush();
+                }
+            }
         }
         return true;
     }
 
+    @Override
+    public boolean post() {
+        if (executor != null) {
+            synchronized (buffer) {
+                flush();
+            }
+            executor.shutdown();
+        }
+        return true;
+    }
+
+    /**
+     * Write all the buffered variants, splitting them in disjoint "_id" ranges, one for each write thread.
+     * Waits until all the ranges are written.
+     */
+    private void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<Document> ids = new ArrayList<>(buffer.keySet());
+        ids.sort(Comparator.comparing(id -> id.getString(StageDocumentToVariantConverter.ID_FIELD)));
+
+        int rangeSize = (ids.size() + writeThreads - 1) / writeThreads;
+        List<Future<MongoDBVariantWriteResult>> futures = new ArrayList<>(writeThreads);
+        int from = 0;
+        while (from < ids.size()) {
+            int to = Math.min(from + rangeSize, ids.size());
+            // Never split documents with the same _id in different ranges
+            while (to < ids.size() && ids.get(to).getString(StageDocumentToVariantConverter.ID_FIELD)
+                    .equals(ids.get(to - 1).getString(StageDocumentToVariantConverter.ID_FIELD))) {
+                to++;
+            }
+            ListMultimap<Document, Binary> range = LinkedListMultimap.create();
+            for (Document id : ids.subList(from, to)) {
+                range.putAll(id, buffer.get(id));
+            }
+            futures.add(executor.submit(() -> insert(range)));
+            from = to;
+        }
+        buffer.clear();
+
+        for (Future<MongoDBVariantWriteResult> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+    }
+
     public MongoDBVariantWriteResult insert(ListMultimap<Document, Binary> ids) {
         final long start = System.nanoTime();
 
@@ -20,6 +20,7 @@ import com.mongodb.ErrorCategory;
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 import org.apache.commons.lang3.time.StopWatch;
 import org.bson.Document;
 import org.bson.conversions.Bson;
@@ -29,6 +30,7 @@ import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.commons.datastore.mongodb.MongoDBCollection;
 import org.opencb.commons.io.DataWriter;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantDensityIndex;
 import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
 import org.opencb.opencga.storage.mongodb.variant.load.MongoDBVariantWriteResult;
 import org.slf4j.Logger;
@@ -59,6 +61,8 @@ import static org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVaria
  *   Removes the files from the indexed field. {@link STUDY_FILE_FIELD}
  *   Sets {studyId}.{fileId} fields to NULL.
  *   Do NOT remove ($unset) the field. See {@link MongoDBVariantMerger#alreadyProcessedStageDocument}
+ * Updates the {@link VariantDensityIndex} with the new variants and new study entries.
+ *   A resumed load can not know which variants were already inserted, so the index is invalidated instead.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
@@ -77,6 +81,7 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
     private final ProgressLogger progressLogger;
     private final MongoDBCollection variantsCollection;
     private final MongoDBCollection stageCollection;
+    private final VariantDensityIndex densityIndex;
     private final boolean resume;
     private final boolean cleanWhileLoading;
     private final Integer studyId;
@@ -89,12 +94,14 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
     private final Bson cleanStage;
 
     public MongoDBVariantMergeLoader(MongoDBCollection variantsCollection, MongoDBCollection stageCollection,
-                                     MongoDBCollection studiesCollection, StudyConfiguration studyConfiguration, List<Integer> fileIds,
+                                     MongoDBCollection studiesCollection, VariantDensityIndex densityIndex,
+                                     StudyConfiguration studyConfiguration, List<Integer> fileIds,
                                      boolean resume, boolean cleanWhileLoading, ProgressLogger progressLogger) {
         this.progressLogger = progressLogger;
         this.variantsCollection = variantsCollection;
         this.stageCollection = stageCollection;
         this.studiesCollection = studiesCollection;
+        this.densityIndex = densityIndex;
         this.resume = resume;
         this.studyId = studyConfiguration.getStudyId();
         this.fileIds = fileIds;
@@ -120,6 +127,10 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
         cleanStageDuplicated = combine(cleanStageDuplicatedList);
         cleanStage = combine(cleanStageList);
 
+        if (resume && densityIndex != null) {
+            densityIndex.invalidate();
+        }
+
     }
 
     @Override
@@ -144,8 +155,14 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
         long newVariantsTime = 0; // Impossible to know how much time spend in insert or update in operation "UPSERT"
         StopWatch existingVariants = StopWatch.createStarted();
         long newVariants = 0;
+        VariantDensityIndex.Delta densityDelta = new VariantDensityIndex.Delta();
         if (!mongoDBOps.getNewStudy().getQueries().isEmpty()) {
-            newVariants = executeMongoDBOperationsNewStudy(mongoDBOps, true);
+            // Copy ids. May be modified by executeMongoDBOperationsNewStudy
+            List<String> newStudyIds = new ArrayList<>(mongoDBOps.getNewStudy().getIds());
+            newVariants = executeMongoDBOperationsNewStudy(mongoDBOps, true, densityDelta);
+            for (String id : newStudyIds) {
+                densityDelta.addStudy(id, studyId, 1);
+            }
         }
         existingVariants.stop();
         StopWatch fillGapsVariants = StopWatch.createStarted();
@@ -158,6 +175,10 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
         }
         fillGapsVariants.stop();
 
+        if (densityIndex != null && !resume) {
+            densityIndex.apply(densityDelta);
+        }
+
         updateStage(mongoDBOps);
 
         long updatesNewStudyExistingVariant = mongoDBOps.getNewStudy().getUpdates().size() - newVariants;
@@ -230,7 +251,7 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
         return modifiedCount;
     }
 
-    private int executeMongoDBOperationsNewStudy(MongoDBOperations mongoDBOps, boolean retry) {
+    private int executeMongoDBOperationsNewStudy(MongoDBOperations mongoDBOps, boolean retry, VariantDensityIndex.Delta densityDelta) {
         int newVariants = 0;
         MongoDBOperations.NewStudy newStudy = mongoDBOps.getNewStudy();
         try {
@@ -270,10 +291,14 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
                 }
                 // Add upserted documents
                 newVariants += update.first().getUpserts().size();
+                addUpserts(newStudy.getIds(), update.first().getUpserts(), densityDelta);
             }
         } catch (MongoBulkWriteException e) {
             // Add upserted documents
             newVariants += e.getWriteResult().getUpserts().size();
+            if (!resume) {
+                addUpserts(newStudy.getIds(), e.getWriteResult().getUpserts(), densityDelta);
+            }
             Set<String> duplicatedNonInsertedId = new HashSet<>();
             for (BulkWriteError writeError : e.getWriteErrors()) {
                 if (!ErrorCategory.fromErrorCode(writeError.getCode()).equals(ErrorCategory.DUPLICATE_KEY)) {
@@ -311,7 +336,7 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
                         iteratorUpdate.remove();
                     }
                 }
-                newVariants += executeMongoDBOperationsNewStudy(mongoDBOps, false);
+                newVariants += executeMongoDBOperationsNewStudy(mongoDBOps, false, densityDelta);
             } else {
                 throw e;
             }
@@ -319,6 +344,16 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
         return newVariants;
     }
 
+    private void addUpserts(List<String> ids, List<BulkWriteUpsert> upserts, VariantDensityIndex.Delta densityDelta) {
+        if (upserts.isEmpty()) {
+            return;
+        }
+        List<String> idsList = ids instanceof RandomAccess ? ids : new ArrayList<>(ids);
+        for (BulkWriteUpsert upsert : upserts) {
+            densityDelta.addVariant(idsList.get(upsert.getIndex()), 1);
+        }
+    }
+
     protected void onUpdateError(String updateName, QueryResult<BulkWriteResult> update, List<Bson> queries, List<String> queryIds) {
         onUpdateError(updateName, update, queries, queryIds, variantsCollection);
     }
@@ -357,6 +392,9 @@ public class MongoDBVariantMergeLoader implements DataWriter<MongoDBOperations>
     @Override
     public boolean post() {
         VariantMongoDBAdaptor.createIndexes(new QueryOptions(), variantsCollection);
+        if (densityIndex != null) {
+            densityIndex.createIndexes();
+        }
         return true;
     }
 //    protected void onInsertError(MongoDBOperations mongoDBOps, BulkWriteResult writeResult) {
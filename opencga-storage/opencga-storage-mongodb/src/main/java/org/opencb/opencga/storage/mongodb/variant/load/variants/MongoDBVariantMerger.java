@@ -42,6 +42,7 @@ import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesCo
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.stage.StageVariantView;
 import org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStageLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +56,7 @@ import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEn
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter.UNKNOWN_GENOTYPE;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter.*;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter.IDS_FIELD;
+import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter.LAST_UPDATE_FIELD;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter.STUDIES_FIELD;
 import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter.ID_FIELD;
 import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter.SECONDARY_ALTERNATES_FIELD;
@@ -477,12 +479,21 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
                 }
 
                 Binary file = duplicatedVariants.get(0);
-                Variant variant = VARIANT_CONVERTER_DEFAULT.convertToDataModelType(file);
-                if (MongoDBVariantStoragePipeline.SKIPPED_VARIANTS.contains(variant.getType())) {
+                // Read the type from the compact header, if any, before decoding the whole variant
+                VariantType type = StageVariantView.isCompact(file.getData()) ? new StageVariantView().wrap(file).getType() : null;
+                Variant variant = null;
+                if (type == null) {
+                    variant = VARIANT_CONVERTER_DEFAULT.convertToDataModelType(file);
+                    type = variant.getType();
+                }
+                if (MongoDBVariantStoragePipeline.SKIPPED_VARIANTS.contains(type)) {
                     mongoDBOps.setSkipped(mongoDBOps.getSkipped() + 1);
                     skipped++;
                     continue;
                 }
+                if (variant == null) {
+                    variant = VARIANT_CONVERTER_DEFAULT.convertToDataModelType(file);
+                }
                 if (StringUtils.isNotEmpty(variant.getId()) && !variant.getId().equals(variant.toString())) {
                     ids.add(variant.getId());
                 }
@@ -601,10 +612,14 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
 //                        // Duplicated variant
                 logDuplicatedVariant(mainVariant, files.size(), fileId);
                 for (Binary binary : files) {
-                    Variant duplicatedVariant = VARIANT_CONVERTER_DEFAULT.convertToDataModelType(binary);
-                    String call = duplicatedVariant.getStudies().get(0).getFiles().get(0).getCall();
+                    // Duplicated variants are not merged. Read the call from the compact header, if any.
+                    String call = StageVariantView.isCompact(binary.getData()) ? new StageVariantView().wrap(binary).getCall() : null;
                     if (call == null) {
-                        call = duplicatedVariant.toString();
+                        Variant duplicatedVariant = VARIANT_CONVERTER_DEFAULT.convertToDataModelType(binary);
+                        call = duplicatedVariant.getStudies().get(0).getFiles().get(0).getCall();
+                        if (call == null) {
+                            call = duplicatedVariant.toString();
+                        }
                     }
                     duplicatedVariantsList.add(call);
                 }
@@ -1048,6 +1063,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
                                            int alternatesFromStage, List<Document> secondaryAlternates, Document gts,
                                            boolean newStudy, boolean newVariant, MongoDBOperations mongoDBOps) {
         final String id;
+        final long timestamp = System.currentTimeMillis();
 
         if (!excludeGenotypes) {
             mongoDBOps.getGenotypes().addAll(gts.keySet());
@@ -1070,6 +1086,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
 
                 List<Bson> updates = new ArrayList<>();
                 updates.add(push(STUDIES_FIELD, studyDocument));
+                updates.add(set(LAST_UPDATE_FIELD, timestamp));
                 if (newVariant) {
                     Document variantDocument = variantConverter.convertToStorageType(emptyVar);
                     updates.add(addEachToSet(IDS_FIELD, ids));
@@ -1083,6 +1100,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
                             }
                         }
                     }
+                    variantDocument.append(LAST_UPDATE_FIELD, timestamp);
                     mongoDBOps.getNewStudy().getVariants().add(variantDocument);
                     id = variantDocument.getString("_id");
                 } else {
@@ -1115,6 +1133,9 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
                 mergeUpdates.add(addEachToSet(STUDIES_FIELD + ".$." + ALTERNATES_FIELD, secondaryAlternates));
             }
 
+            if (!mergeUpdates.isEmpty() || !fileDocuments.isEmpty()) {
+                mergeUpdates.add(set(LAST_UPDATE_FIELD, timestamp));
+            }
             if (!fileDocuments.isEmpty()) {
                 mongoDBOps.getExistingStudy().getIds().add(id);
                 mongoDBOps.getExistingStudy().getQueries().add(and(eq("_id", id),
@@ -42,6 +42,7 @@ import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngineTest;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantFileMetadataDBAdaptor;
 import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.MongoDBVariantOptions;
 import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
@@ -223,6 +224,111 @@ public class MongoVariantStorageEngineTest extends VariantStorageEngineTest impl
         assertTrue(count > 0);
     }
 
+    @Test
+    public void stageParallelWriteTest() throws Exception {
+        StudyConfiguration studyConfiguration = createStudyConfiguration();
+        runDefaultETL(smallInputUri, variantStorageEngine, studyConfiguration, new ObjectMap()
+                .append(MongoDBVariantOptions.STAGE.key(), true)
+                .append(MongoDBVariantOptions.STAGE_PARALLEL_WRITE.key(), false)
+                .append(MongoDBVariantOptions.MERGE.key(), false));
+
+        // Stage the same file in a different set of collections, with several writers and small bulks
+        runDefaultETL(smallInputUri, getVariantStorageEngine("2"), studyConfiguration, new ObjectMap()
+                .append(MongoDBVariantOptions.STAGE.key(), true)
+                .append(MongoDBVariantOptions.STAGE_PARALLEL_WRITE.key(), true)
+                .append(MongoDBVariantOptions.BULK_SIZE.key(), 10)
+                .append(VariantStorageEngine.Options.LOAD_THREADS.key(), 4)
+                .append(MongoDBVariantOptions.MERGE.key(), false));
+
+        MongoDataStore mongoDataStore = getMongoDataStoreManager(DB_NAME).get(DB_NAME);
+        MongoDBCollection stageCollection = mongoDataStore.getCollection(MongoDBVariantOptions.COLLECTION_STAGE.defaultValue());
+        MongoDBCollection stage2Collection = mongoDataStore.getCollection(MongoDBVariantOptions.COLLECTION_STAGE.defaultValue() + "2");
+        assertTrue(compareCollections(stageCollection, stage2Collection) > 0);
+    }
+
+    @Test
+    public void mergeParallelChromosomesTest() throws Exception {
+        StudyConfiguration studyConfiguration = createStudyConfiguration();
+        runDefaultETL(smallInputUri, variantStorageEngine, studyConfiguration, new ObjectMap()
+                .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false)
+                .append(VariantStorageEngine.Options.ANNOTATE.key(), false));
+
+        // Merge the same file in a different set of collections, running one pipeline per chromosome
+        MongoDBVariantStorageEngine variantStorageEngine2 = getVariantStorageEngine("2");
+        runDefaultETL(smallInputUri, variantStorageEngine2, studyConfiguration, new ObjectMap()
+                .append(MongoDBVariantOptions.MERGE_PARALLEL_CHROMOSOMES.key(), 4)
+                .append(VariantStorageEngine.Options.LOAD_THREADS.key(), 4)
+                .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false)
+                .append(VariantStorageEngine.Options.ANNOTATE.key(), false));
+
+        MongoDataStore mongoDataStore = getMongoDataStoreManager(DB_NAME).get(DB_NAME);
+        MongoDBCollection variantsCollection = mongoDataStore.getCollection(MongoDBVariantOptions.COLLECTION_VARIANTS.defaultValue());
+        MongoDBCollection variants2Collection = mongoDataStore.getCollection(MongoDBVariantOptions.COLLECTION_VARIANTS.defaultValue() + "2");
+        assertEquals(variantsCollection.count().first().longValue(), compareCollections(variants2Collection, variantsCollection));
+
+        // Progress is cleared once the merge finishes
+        studyConfiguration = variantStorageEngine2.getDBAdaptor().getStudyConfigurationManager()
+                .getStudyConfiguration(studyConfiguration.getStudyId(), null).first();
+        assertEquals(Collections.emptySet(), MongoDBVariantStoragePipeline.getMergedChromosomes(studyConfiguration,
+                Collections.singletonList(FILE_ID)));
+    }
+
+    @Test
+    public void mergeParallelChromosomesResumeAllMergedTest() throws Exception {
+        StudyConfiguration studyConfiguration = createStudyConfiguration();
+        StoragePipelineResult storagePipelineResult = runDefaultETL(smallInputUri, variantStorageEngine, studyConfiguration, new ObjectMap()
+                .append(MongoDBVariantOptions.STAGE.key(), true)
+                .append(MongoDBVariantOptions.MERGE.key(), false));
+
+        VariantMongoDBAdaptor dbAdaptor = (VariantMongoDBAdaptor) variantStorageEngine.getDBAdaptor();
+        int studyId = studyConfiguration.getStudyId();
+        List<Integer> fileIds = Collections.singletonList(FILE_ID);
+        Query query = new Query(VariantFileMetadataDBAdaptor.VariantFileMetadataQueryParam.STUDY_ID.key(), studyId)
+                .append(VariantFileMetadataDBAdaptor.VariantFileMetadataQueryParam.FILE_ID.key(), FILE_ID);
+        Set<String> chromosomes = dbAdaptor.getVariantFileMetadataDBAdaptor().iterator(query, null).next()
+                .getStats().getChromosomeCounts().keySet();
+        assertTrue(chromosomes.size() > 1);
+
+        // Merge interrupted after merging every chromosome, but before being marked as DONE
+        dbAdaptor.getStudyConfigurationManager().lockAndUpdate(studyId, sc -> {
+            StudyConfigurationManager.addBatchOperation(sc, MongoDBVariantOptions.MERGE.key(), fileIds, false,
+                    BatchFileOperation.Type.LOAD);
+            for (String chromosome : chromosomes) {
+                MongoDBVariantStoragePipeline.addMergedChromosome(sc, fileIds, chromosome);
+            }
+            return sc;
+        });
+
+        runETL(variantStorageEngine, storagePipelineResult.getTransformResult(), outputUri, new ObjectMap()
+                .append(VariantStorageEngine.Options.ANNOTATE.key(), false)
+                .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false)
+                .append(MongoDBVariantOptions.STAGE.key(), true)
+                .append(MongoDBVariantOptions.MERGE_RESUME.key(), true)
+                .append(MongoDBVariantOptions.MERGE_PARALLEL_CHROMOSOMES.key(), 4)
+                .append(MongoDBVariantOptions.MERGE.key(), true), false, false, true);
+
+        studyConfiguration = dbAdaptor.getStudyConfigurationManager().getStudyConfiguration(studyId, null).first();
+        assertTrue(studyConfiguration.getIndexedFiles().contains(FILE_ID));
+        assertEquals(Collections.emptySet(), MongoDBVariantStoragePipeline.getMergedChromosomes(studyConfiguration, fileIds));
+    }
+
+    @Test
+    public void mergedChromosomesProgressTest() {
+        StudyConfiguration studyConfiguration = new StudyConfiguration(1, "s1");
+        List<Integer> fileIds = Arrays.asList(1, 2);
+
+        assertEquals(Collections.emptySet(), MongoDBVariantStoragePipeline.getMergedChromosomes(studyConfiguration, fileIds));
+        MongoDBVariantStoragePipeline.addMergedChromosome(studyConfiguration, fileIds, "1");
+        MongoDBVariantStoragePipeline.addMergedChromosome(studyConfiguration, fileIds, "X");
+        assertEquals(new HashSet<>(Arrays.asList("1", "X")), MongoDBVariantStoragePipeline.getMergedChromosomes(studyConfiguration, fileIds));
+
+        // Progress of other files is not reused
+        assertEquals(Collections.emptySet(), MongoDBVariantStoragePipeline.getMergedChromosomes(studyConfiguration, Arrays.asList(1, 3)));
+
+        MongoDBVariantStoragePipeline.clearMergedChromosomes(studyConfiguration);
+        assertEquals(Collections.emptySet(), MongoDBVariantStoragePipeline.getMergedChromosomes(studyConfiguration, fileIds));
+    }
+
     @Test
     public void loadStageConcurrent() throws Exception {
         StudyConfiguration studyConfiguration = createStudyConfiguration();
@@ -564,7 +670,8 @@ public class MongoVariantStorageEngineTest extends VariantStorageEngineTest impl
                 .append(MongoDBVariantOptions.COLLECTION_STUDIES.key(), MongoDBVariantOptions.COLLECTION_STUDIES.defaultValue() + collectionSufix)
                 .append(MongoDBVariantOptions.COLLECTION_FILES.key(), MongoDBVariantOptions.COLLECTION_FILES.defaultValue() + collectionSufix)
                 .append(MongoDBVariantOptions.COLLECTION_STAGE.key(), MongoDBVariantOptions.COLLECTION_STAGE.defaultValue() + collectionSufix)
-                .append(MongoDBVariantOptions.COLLECTION_VARIANTS.key(), MongoDBVariantOptions.COLLECTION_VARIANTS.defaultValue() + collectionSufix);
+                .append(MongoDBVariantOptions.COLLECTION_VARIANTS.key(), MongoDBVariantOptions.COLLECTION_VARIANTS.defaultValue() + collectionSufix)
+                .append(MongoDBVariantOptions.COLLECTION_DENSITY.key(), MongoDBVariantOptions.COLLECTION_DENSITY.defaultValue() + collectionSufix);
 
         variantStorageEngine.getOptions().putAll(renameCollections);
         return variantStorageEngine;
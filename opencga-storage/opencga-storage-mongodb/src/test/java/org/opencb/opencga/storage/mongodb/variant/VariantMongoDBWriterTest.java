@@ -499,7 +499,8 @@ public class VariantMongoDBWriterTest implements MongoDBVariantStorageTest {
                 studyConfiguration.getIndexedFiles(), false, ignoreOverlappingVariants);
         boolean resume = false;
         MongoDBVariantMergeLoader variantLoader = new MongoDBVariantMergeLoader(variantsCollection, dbAdaptor.getStageCollection(),
-                dbAdaptor.getStudiesCollection(), studyConfiguration, fileIds, resume, cleanWhileLoading, null);
+                dbAdaptor.getStudiesCollection(), dbAdaptor.getDensityIndex(), studyConfiguration, fileIds, resume, cleanWhileLoading,
+                null);
 
         reader.open();
         reader.pre();
@@ -19,19 +19,23 @@ package org.opencb.opencga.storage.mongodb.variant.adaptors;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptorTest;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageTest;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.*;
 
 import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.MongoDBVariantOptions.ITERATOR_PARALLEL;
+import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.MongoDBVariantOptions.ITERATOR_PARALLEL_PARTITION_SIZE;
 
 /**
  * @author Alejandro Aleman Ramos <aaleman@cipf.es>
@@ -120,4 +124,101 @@ public class VariantMongoDBAdaptorTest extends VariantDBAdaptorTest implements M
         assertEquals(numVariantsChr1, numVariantsNoAnnotation);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void densityIndexTest() throws Exception {
+        VariantDensityIndex densityIndex = ((VariantMongoDBAdaptor) dbAdaptor).getDensityIndex();
+        assertTrue(densityIndex.isReady());
+
+        int intervalSize = 1000000;
+        Map<Long, Long> expected = new HashMap<>();
+        for (Variant variant : dbAdaptor) {
+            if (variant.getChromosome().equals("1")) {
+                expected.merge((long) variant.getStart() / intervalSize, 1L, Long::sum);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        Region region = new Region("1", 1, 250 * intervalSize);
+        assertEquals(expected, densityIndex.getFrequency(region, intervalSize, null));
+        assertEquals(expected, densityIndex.getFrequency(region, intervalSize, studyConfiguration.getStudyId()));
+
+        fileIndexed = false;
+        ((VariantMongoDBAdaptor) dbAdaptor).removeStudy(studyConfiguration.getStudyName(), new QueryOptions("purge", true));
+        assertEquals(Collections.emptyMap(), densityIndex.getFrequency(region, intervalSize, null));
+        assertEquals(Collections.emptyMap(), densityIndex.getFrequency(region, intervalSize, studyConfiguration.getStudyId()));
+    }
+
+    @Test
+    public void densityIndexWholeChromosomeTest() throws Exception {
+        VariantDensityIndex densityIndex = ((VariantMongoDBAdaptor) dbAdaptor).getDensityIndex();
+        assertTrue(densityIndex.isReady());
+
+        // Whole chromosome histogram. The interval is not a multiple of any bin size bigger than 1000
+        Region region = new Region("1", 1, 249250621);
+        int intervalSize = 1245000;
+        int binSize = VariantDensityIndex.getBinSize(intervalSize);
+        assertEquals(10000, binSize);
+
+        Map<Long, Long> expected = new HashMap<>();
+        for (Variant variant : dbAdaptor) {
+            if (variant.getChromosome().equals("1")) {
+                expected.merge((long) variant.getStart() / binSize * binSize / intervalSize, 1L, Long::sum);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, densityIndex.getFrequency(region, intervalSize, null));
+        assertEquals(expected, densityIndex.getFrequency(region, intervalSize, studyConfiguration.getStudyId()));
+    }
+
+    @Test
+    public void densityIndexBinSize() {
+        assertEquals(1000000, VariantDensityIndex.getBinSize(5000000));
+        assertEquals(10000, VariantDensityIndex.getBinSize(250000));
+        assertEquals(10000, VariantDensityIndex.getBinSize(1245000));
+        assertEquals(10000, VariantDensityIndex.getBinSize(1246253));
+        assertEquals(1000, VariantDensityIndex.getBinSize(322512));
+        assertEquals(-1, VariantDensityIndex.getBinSize(12345));
+    }
+
+    @Test
+    public void parallelIteratorTest() throws Exception {
+        Query query = new Query(VariantQueryParam.STUDIES.key(), studyConfiguration.getStudyId());
+        List<String> expected = iteratorIds(query, new QueryOptions(QueryOptions.SORT, true));
+        assertEquals(NUM_VARIANTS, expected.size());
+
+        QueryOptions parallelOptions = new QueryOptions(ITERATOR_PARALLEL.key(), 4)
+                .append(ITERATOR_PARALLEL_PARTITION_SIZE.key(), 100);
+        assertEquals(expected, iteratorIds(query, new QueryOptions(parallelOptions).append(QueryOptions.SORT, true)));
+
+        List<String> unsorted = iteratorIds(query, new QueryOptions(parallelOptions));
+        assertEquals(new HashSet<>(expected), new HashSet<>(unsorted));
+        assertEquals(expected.size(), unsorted.size());
+
+        query.append(VariantQueryParam.REGION.key(), "1:1-20000000,2");
+        expected = iteratorIds(query, new QueryOptions(QueryOptions.SORT, true));
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, iteratorIds(query, new QueryOptions(parallelOptions).append(QueryOptions.SORT, true)));
+    }
+
+    @Test
+    public void parallelIteratorPartitions() {
+        List<Region> partitions = Arrays.asList(
+                new Region("1", 0, 999),
+                new Region("1", 1000, 1999),
+                new Region("1", 2000, Integer.MAX_VALUE),
+                new Region("2", 0, Integer.MAX_VALUE));
+        List<Region> regions = Arrays.asList(new Region("1", 500, 1500), new Region("3", 1, 100));
+
+        assertEquals("[1:500-999, 1:1000-1500]", VariantMongoDBAdaptor.intersectRegions(partitions, regions).toString());
+        assertEquals("[1:2000-" + Integer.MAX_VALUE + "]", VariantMongoDBAdaptor.intersectRegions(partitions,
+                Collections.singletonList(new Region("1", 2000, Integer.MAX_VALUE))).toString());
+    }
+
+    private List<String> iteratorIds(Query query, QueryOptions options) throws Exception {
+        List<String> ids = new ArrayList<>();
+        try (VariantDBIterator iterator = dbAdaptor.iterator(new Query(query), options)) {
+            iterator.forEachRemaining(variant -> ids.add(variant.toString()));
+        }
+        return ids;
+    }
+
+}
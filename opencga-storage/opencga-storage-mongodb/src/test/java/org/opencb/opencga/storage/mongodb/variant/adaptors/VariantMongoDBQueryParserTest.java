@@ -4,25 +4,28 @@ import org.bson.Document;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.dummy.DummyStudyConfigurationAdaptor;
 import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.List;
+import java.util.*;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.IS;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.MODIFIED_SINCE;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.NOT;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.OR;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter.*;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantAnnotationConverterTest.ANY;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantAnnotationConverterTest.checkEqualDocuments;
+import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter.LAST_UPDATE_FIELD;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter.STUDIES_FIELD;
 
 /**
@@ -72,6 +75,15 @@ public class VariantMongoDBQueryParserTest {
         return sc;
     }
 
+    @Test
+    public void testQueryModifiedSince() {
+        Document mongoQuery = parser.parseQuery(new Query().append(MODIFIED_SINCE.key(), 1000L));
+
+        Document expected = new Document(LAST_UPDATE_FIELD, new Document("$gte", 1000L));
+
+        checkEqualDocuments(expected, mongoQuery);
+    }
+
     @Test
     public void testQuerySampleAddFile() {
         Document mongoQuery = parser.parseQuery(new Query().append(STUDIES.key(), "study_1").append(SAMPLES.key(), "sample_10101"));
@@ -238,4 +250,46 @@ public class VariantMongoDBQueryParserTest {
         checkEqualDocuments(expected, mongoQuery);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testMergeRegions() {
+        List<Region> regions = VariantMongoDBQueryParser.mergeRegions(Arrays.asList(
+                new Region("2", 10, 20),
+                new Region("1", 1000, 2000),
+                new Region("1", 150, 300),
+                new Region("1", 100, 200),
+                new Region("1", 301, 400),
+                new Region("1", 350, 360)));
+
+        assertEquals(Arrays.asList(new Region("1", 100, 400), new Region("1", 1000, 2000), new Region("2", 10, 20)), regions);
+    }
+
+    @Test
+    public void testQueryRegionsPlan() {
+        Document mongoQuery = parser.parseQuery(new Query()
+                .append(REGION.key(), "1:5000-5200,2:1-100000000,1:1000-1100,1:1050-1500"));
+
+        List<?> or = (List<?>) mongoQuery.get("$or");
+        assertEquals(2, or.size());
+
+        // Large region filtered by _id range
+        Map<?, ?> largeRegion = (Map<?, ?>) or.get(0);
+        assertEquals(Collections.singleton("_id"), largeRegion.keySet());
+
+        // Small regions grouped by chunk id
+        Map<?, ?> smallRegions = (Map<?, ?>) or.get(1);
+        String chunkIdsField = DocumentToVariantConverter.AT_FIELD + '.' + DocumentToVariantConverter.CHUNK_IDS_FIELD;
+        Collection<?> chunkIds = (Collection<?>) ((Map<?, ?>) smallRegions.get(chunkIdsField)).get("$in");
+        assertEquals(new HashSet<>(Arrays.asList("1_1_1k", "1_5_1k")), new HashSet<>(chunkIds));
+        assertEquals(2, ((List<?>) smallRegions.get("$or")).size());
+    }
+
+    @Test
+    public void testQuerySingleSmallRegion() {
+        Document mongoQuery = parser.parseQuery(new Query().append(REGION.key(), "1:1000-1100"));
+
+        List<?> or = (List<?>) mongoQuery.get("$or");
+        assertEquals(1, or.size());
+        assertTrue(((Map<?, ?>) or.get(0)).containsKey("_id"));
+    }
+
+}
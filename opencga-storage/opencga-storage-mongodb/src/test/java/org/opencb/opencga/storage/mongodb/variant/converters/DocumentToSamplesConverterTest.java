@@ -18,6 +18,9 @@ package org.opencb.opencga.storage.mongodb.variant.converters;
 
 import org.junit.Test;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
+import org.opencb.opencga.storage.mongodb.variant.protobuf.VariantMongoDBProto;
+
+import java.util.Arrays;
 
 import static org.junit.Assert.*;
 
@@ -68,6 +71,42 @@ public class DocumentToSamplesConverterTest {
 
     }
 
+    @Test
+    public void testLazySampleData() throws Exception {
+        byte[] dp = VariantMongoDBProto.OtherFields.newBuilder()
+                .addAllIntValues(Arrays.asList(11, 0, 21))
+                .build().toByteArray();
+        byte[] ft = VariantMongoDBProto.OtherFields.newBuilder()
+                .addAllStringValues(Arrays.asList("PASS", "LowQual"))
+                .build().toByteArray();
+        LazySampleData.FieldValues[] fields = {
+                new LazySampleData.FieldValues(dp, false),
+                new LazySampleData.FieldValues(ft, false),
+                new LazySampleData.FieldValues(null, false)};
+
+        LazySampleData sample0 = new LazySampleData(4, 1);
+        LazySampleData sample2 = new LazySampleData(4, 1);
+        sample0.set(0, "0/1");
+        sample2.set(0, "1/1");
+        sample0.setFields(fields, 0);
+        sample2.setFields(fields, 2);
+        sample2.set(1, "30");
+
+        assertEquals(Arrays.asList("0/1", "10", "PASS", "."), sample0);
+        // Missing values
+        assertEquals(Arrays.asList("1/1", "30", ".", "."), sample2);
+
+        // Other samples from the same file are not modified
+        LazySampleData sample1 = new LazySampleData(4, 1);
+        sample1.setFields(fields, 1);
+        assertEquals(Arrays.asList(null, ".", "LowQual", "."), sample1);
+
+        // Samples without data
+        LazySampleData sample3 = new LazySampleData(3, 0);
+        sample3.fillUnknownFields();
+        assertEquals(Arrays.asList(".", ".", "."), sample3);
+    }
+
     public void testInteger(String dataModelType) {
         assertEquals(dataModelType, DocumentToSamplesConverter.INTEGER_COMPLEX_TYPE_CONVERTER.convertToDataModelType(DocumentToSamplesConverter.INTEGER_COMPLEX_TYPE_CONVERTER.convertToStorageType(dataModelType)));
     }
@@ -0,0 +1,99 @@
+package org.opencb.opencga.storage.mongodb.variant.converters.stage;
+
+import org.bson.types.Binary;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.AlternateCoordinate;
+import org.opencb.biodata.models.variant.avro.VariantType;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class VariantToCompactBinaryConverterTest {
+
+    private final VariantToCompactBinaryConverter converter = new VariantToCompactBinaryConverter();
+
+    private static Variant createVariant(String variantStr, int numSamples) {
+        Variant variant = new Variant(variantStr);
+        StudyEntry studyEntry = new StudyEntry("2", "1");
+        studyEntry.getFile("2").getAttributes().put("QUAL", "0.01");
+        studyEntry.getFile("2").setCall("1000:A:C,T:0");
+        studyEntry.setFormatAsString("GT:DP");
+        for (int i = 0; i < numSamples; i++) {
+            Map<String, String> data = new HashMap<>();
+            data.put("GT", i % 3 == 0 ? "0/1" : "0/0");
+            data.put("DP", String.valueOf(i % 50));
+            studyEntry.addSampleData("S" + i, data);
+        }
+        variant.addStudyEntry(studyEntry);
+        return variant;
+    }
+
+    @Test
+    public void testSmallVariant() {
+        Variant variant = createVariant("1:1000:A:C", 2);
+        Binary binary = converter.convertToStorageType(variant);
+
+        assertTrue(StageVariantView.isCompact(binary.getData()));
+        StageVariantView view = new StageVariantView().wrap(binary);
+        assertFalse(view.isCompressedBody());
+        assertEquals("1", view.getChromosome());
+        assertEquals(1000, view.getStart());
+        assertEquals(1000, view.getEnd());
+        assertEquals(VariantType.SNV, view.getType());
+        assertEquals("A", view.getReference());
+        assertEquals("C", view.getAlternate());
+        assertEquals("1000:A:C,T:0", view.getCall());
+        assertEquals(0, view.getNumSecondaryAlternates());
+
+        assertEquals(variant.toJson(), view.toVariant().toJson());
+        assertEquals(variant.toJson(), converter.convertToDataModelType(binary).toJson());
+    }
+
+    @Test
+    public void testCompressedBody() {
+        Variant variant = createVariant("1:1000:A:-", 500);
+        variant.getStudies().get(0).getFile("2").setCall(null);
+        variant.getStudies().get(0).setSecondaryAlternates(Collections.singletonList(
+                new AlternateCoordinate("1", 1000, 1000, "A", "T", VariantType.SNV)));
+        Binary binary = converter.convertToStorageType(variant);
+
+        StageVariantView view = new StageVariantView().wrap(binary);
+        assertTrue(view.isCompressedBody());
+        assertEquals(VariantType.INDEL, view.getType());
+        assertEquals("", view.getAlternate());
+        assertNull(view.getCall());
+        assertEquals(1, view.getNumSecondaryAlternates());
+
+        assertEquals(variant.toJson(), converter.convertToDataModelType(binary).toJson());
+    }
+
+    @Test
+    public void testWrapBufferWithOffset() {
+        Variant variant = createVariant("2:500:C:T", 3);
+        byte[] data = converter.convertToStorageType(variant).getData();
+        byte[] padded = new byte[data.length + 10];
+        System.arraycopy(data, 0, padded, 5, data.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded, 5, data.length).slice();
+
+        StageVariantView view = new StageVariantView().wrap(buffer);
+        assertEquals("2", view.getChromosome());
+        assertEquals(500, view.getStart());
+        assertEquals(variant.toJson(), view.toVariant().toJson());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testReadLegacyFormat() {
+        Variant variant = createVariant("1:1000:A:C", 2);
+        Binary binary = new VariantToAvroBinaryConverter().convertToStorageType(variant);
+
+        assertFalse(StageVariantView.isCompact(binary.getData()));
+        assertEquals(variant.toJson(), converter.convertToDataModelType(binary).toJson());
+    }
+}